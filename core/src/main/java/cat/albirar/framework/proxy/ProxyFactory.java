@@ -19,17 +19,22 @@
 
 package cat.albirar.framework.proxy;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 
 import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.Factory;
 import org.springframework.util.Assert;
 
 /**
  * A factory to create proxies for interfaces or classes.
  * Use a JDK Dynamic Proxy if the type is an interface.
  * Use a CGLib proxy if the type is a concrete class.
+ * <p>The constructor of the JDK Dynamic Proxy class of each interface is searched once, and the CGLib proxy class of each
+ * concrete class is enhanced once and kept as a {@link Factory prototype}; so creating many proxies of a type, each one with its
+ * own handler, only creates the proxies.</p>
  * 
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
@@ -37,6 +42,46 @@ import org.springframework.util.Assert;
 public class ProxyFactory
 {
     private static ProxyFactory singleton;
+    /** The constructor of the JDK Dynamic Proxy class of each interface. */
+    private static final ClassValue<Constructor<?>> interfaceProxies = new ClassValue<Constructor<?>>()
+    {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type)
+        {
+            try
+            {
+                return Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(java.lang.reflect.InvocationHandler.class);
+            }
+            catch(NoSuchMethodException e)
+            {
+                throw new IllegalStateException("The proxy class of '".concat(type.getName()).concat("' doesn't have the proxy constructor"), e);
+            }
+        }
+    };
+    /** Handler of the prototypes of the CGLib proxies, that answers null (or zero for primitives) to all the calls. */
+    private static final org.springframework.cglib.proxy.InvocationHandler PROTOTYPE_HANDLER = new org.springframework.cglib.proxy.InvocationHandler()
+    {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            return null;
+        }
+    };
+    /** The prototype of the CGLib proxy class of each concrete class. */
+    private static final ClassValue<Factory> classProxies = new ClassValue<Factory>()
+    {
+        @Override
+        protected Factory computeValue(Class<?> type)
+        {
+            Enhancer enhancer;
+            
+            enhancer = new Enhancer();
+            enhancer.setSuperclass(type);
+            enhancer.setClassLoader(type.getClassLoader());
+            enhancer.setCallback(PROTOTYPE_HANDLER);
+            return (Factory) enhancer.create();
+        }
+    };
     /**
      * Factory instantiation method.
      * @return A singleton proxy factory
@@ -74,15 +119,9 @@ public class ProxyFactory
     @SuppressWarnings("unchecked")
     private <T> T newProxyForConcreteClass(org.springframework.cglib.proxy.Callback handler, Class<T> type)
     {
-        Enhancer enhancer;
-        
         Assert.isTrue(!Modifier.isAbstract(type.getModifiers()), "The type should to be a concrete class");
         
-        enhancer = new Enhancer();
-        enhancer.setSuperclass(type);
-        enhancer.setClassLoader(type.getClassLoader());
-        enhancer.setCallback(handler);
-        return (T)enhancer.create();
+        return (T)classProxies.get(type).newInstance(handler);
     }
     /**
      * Create a proxy for the indicated type.
@@ -94,10 +133,14 @@ public class ProxyFactory
     private <T> T newProxyForInterface(java.lang.reflect.InvocationHandler handler, Class<T> type)
     {
         Assert.isTrue(type.isInterface(), "The type should to be an interface");
-        return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class[]
+        try
+        {
+            return (T)interfaceProxies.get(type).newInstance(handler);
+        }
+        catch(ReflectiveOperationException e)
         {
-                type
-        }, handler);
+            throw new IllegalStateException("Cannot create the proxy of '".concat(type.getName()).concat("'"), e);
+        }
     }
     /**
      * A class for wrap a {@link IProxyHandler} into a "dynamic proxy" or a "cglib proxy".
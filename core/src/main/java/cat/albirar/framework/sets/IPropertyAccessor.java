@@ -0,0 +1,75 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets;
+
+/**
+ * A compiled accessor for a property path of a model, as {@code customer.address.city}.
+ * <p>The navigation is <i>null safe</i>: if the bean or any intermediate property is null, {@link #get(Object)} returns null.</p>
+ * <p>Accessors are compiled once for each model and path and cached, so get them with
+ * {@link SetUtils#compileAccessor(Class, String)} and reuse them. Are immutable and thread safe.</p>
+ * @param <T> The model type
+ * @param <V> The property type. For primitive properties is the wrapper type
+ * @see SetUtils#compileAccessor(Class, String)
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public interface IPropertyAccessor<T, V>
+{
+    /**
+     * The model of the accessor.
+     * @return The model
+     */
+    public Class<T> getModelRoot();
+    /**
+     * The property path of the accessor.
+     * @return The property path
+     */
+    public PropertyPath getPropertyPath();
+    /**
+     * The type of the property, as declared in the model.
+     * @return The property type, can be a primitive type
+     */
+    public Class<?> getPropertyType();
+    /**
+     * Indicate if the property can be read.
+     * @return true if the last property of the path have a getter and false if not
+     */
+    public boolean isReadable();
+    /**
+     * Indicate if the property can be written.
+     * @return true if the last property of the path have a setter and false if not
+     */
+    public boolean isWritable();
+    /**
+     * Read the property of the bean.
+     * @param bean The bean, can be null
+     * @return The property value, or null if {@code bean} or any intermediate property is null
+     * @throws UnsupportedOperationException If the property cannot be read, see {@link #isReadable()}
+     */
+    public V get(T bean);
+    /**
+     * Write the property of the bean.
+     * @param bean The bean, required
+     * @param value The value to write
+     * @throws IllegalArgumentException If {@code bean} is null or if {@code value} is null and the property type is primitive
+     * @throws IllegalStateException If any intermediate property is null
+     * @throws UnsupportedOperationException If the property cannot be written, see {@link #isWritable()}
+     */
+    public void set(T bean, V value);
+}
@@ -40,6 +40,8 @@ public interface ISet<T> extends Set<String>, Serializable
 
     /**
      * Add the property name indicated to this set.
+     * <p>The property name can be a wildcard, {@code path.*} for all the properties of simple type of the model denoted by {@code path}
+     * or {@code path.**{n}} for all the properties up to {@code n} segments under {@code path}, see {@link SetUtils#checkPathsForModel(Class, Collection)}.</p>
      * @param propertyName The property name
      * @throws IllegalArgumentException if the property name is null or empty or only whitespace or if property name is unknown in the {@link #getModelRoot() root model} of this set
      */
@@ -50,9 +52,88 @@ public interface ISet<T> extends Set<String>, Serializable
      * Add the property names of the indicated collection to this set.
      * @param c The collection, if null no elements are added and no errors are reported but returns false
      * @return true if at least one property was added and false if not
-     * @throws IllegalArgumentException if any of the collection property name is null or empty or only whitespace or if any of the collection property name is unknown in the {@link #getModelRoot() root model} of this set
+     * @throws IllegalArgumentException if any of the collection property name is null or empty or only whitespace or if any of the collection property name is unknown in the {@link #getModelRoot() root model} of this set.
+     * The implementations can check the collection as a batch and report all the incorrect property names in one {@link InvalidPropertyPathsException}, without add any of them
      */
     @Override
     boolean addAll(Collection<? extends String> c);
     
+    /**
+     * Creates a new set with the property paths of this set and the property paths of the indicated collection.
+     * This set is not modified.
+     * @param c The collection, if null a copy of this set is returned
+     * @return The new set, with the same {@link #getModelRoot() root model}
+     * @throws IllegalArgumentException if any of the collection property name is null or empty or only whitespace or if any of the collection property name is unknown in the {@link #getModelRoot() root model} of this set
+     */
+    public ISet<T> union(Collection<? extends String> c);
+
+    /**
+     * Creates a new set with the property paths of this set that are also in the indicated collection.
+     * This set is not modified.
+     * @param c The collection, if null an empty set is returned
+     * @return The new set, with the same {@link #getModelRoot() root model}
+     */
+    public ISet<T> intersect(Collection<?> c);
+
+    /**
+     * Creates a new set with the property paths of this set that are not in the indicated collection.
+     * This set is not modified.
+     * @param c The collection, if null a copy of this set is returned
+     * @return The new set, with the same {@link #getModelRoot() root model}
+     */
+    public ISet<T> minus(Collection<?> c);
+
+    /**
+     * Check if all the property paths of this set are in the indicated collection.
+     * @param c The collection, required
+     * @return true if this set is a subset of {@code c} and false if not
+     * @throws IllegalArgumentException If {@code c} is null
+     */
+    public boolean isSubsetOf(Collection<?> c);
+
+    /**
+     * Check if this set contains any property path under the indicated property path.
+     * That is, any property path that starts with {@code propertyPath} followed by a dot.
+     * @param propertyPath The property path, required
+     * @return true if any property path of this set is under {@code propertyPath} and false if not
+     * @throws IllegalArgumentException If {@code propertyPath} is null or empty or only whitespace
+     */
+    public boolean containsPrefix(String propertyPath);
+
+    /**
+     * Creates a new set with the property paths of this set that are under the indicated property path, re-based onto
+     * the model of the property.
+     * By example, for a path {@code customer} of type {@code Customer}, the property path {@code customer.address.city} of this set
+     * is returned as {@code address.city} in a set with {@code Customer} as {@link #getModelRoot() root model}.
+     * This set is not modified.
+     * @param propertyPath The property path, required
+     * @return The new set, with the property type of {@code propertyPath} as {@link #getModelRoot() root model}
+     * @throws IllegalArgumentException If {@code propertyPath} is null or empty or only whitespace or it's unknown in the {@link #getModelRoot() root model} of this set
+     */
+    public ISet<?> subSetAt(String propertyPath);
+
+    /**
+     * Creates an immutable copy of this set.
+     * The frozen set cannot be modified, caches his hash code and can be read from any thread without synchronization.
+     * @return The frozen set, with the same {@link #getModelRoot() root model} and property paths, or this set if it's already frozen
+     */
+    public ISet<T> freeze();
+
+    /**
+     * A view of this set as {@link PropertyPath property paths}.
+     * The view is backed by this set, so changes on this set are reflected on the view and vice versa. The view don't
+     * create substrings, as the property paths are interned and hold their dotted strings.
+     * @return The view
+     */
+    public Set<PropertyPath> propertyPaths();
+
+    /**
+     * A 64 bit fingerprint of the {@link #getModelRoot() root model} and the property paths of this set, to use as cache key.
+     * The fingerprint doesn't depend on the order of the property paths nor on the implementation, so equal sets of the same
+     * root model have the same fingerprint, and is the same on any JVM. It's updated on each change, so getting it don't
+     * iterate the property paths.
+     * As any hash, different sets can have the same fingerprint, although it's very unlikely.
+     * @return The fingerprint
+     */
+    public long getFingerprint();
 }
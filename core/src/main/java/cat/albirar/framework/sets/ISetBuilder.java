@@ -58,9 +58,11 @@ public interface ISetBuilder<T>
 {
     /**
      * Add a property to the set.
+     * The property path can be a wildcard, {@code path.*} or {@code path.**{n}}, that is kept as is on the {@link #buildFrozen() frozen sets},
+     * see {@link SetUtils#frozenSetOf(Class, java.util.Collection)}.
      * @param propertyPath The property path
      * @return The builder itself
-     * @throws IllegalArgumentException If the {@code propertyPath} is null or empty or whitespace or root model have not a property denoted with this path
+     * @throws IllegalArgumentException If the {@code propertyPath} is null or empty or whitespace or root model have not a property denoted with this path or the wildcard is not correct
      */
     public ISetBuilder<T> addProperty(String propertyPath);
     /**
@@ -87,6 +89,11 @@ public interface ISetBuilder<T>
      * Reset the stack of property path.
      */
     public void resetPropertyPathStack();
+    /**
+     * Reset the builder for reuse: the recorded properties are removed and the {@link #resetPropertyPathStack() stack of property path} is reset.
+     * The sets already built are not affected.
+     */
+    public void reset();
     /**
      * Gets the current property path, relative to root model.
      * @return The current property path. If path is at root model, returns an empty string
@@ -102,4 +109,10 @@ public interface ISetBuilder<T>
      * @return The builded set. Can be empty if no operations was made since call to {@link #instantiateBuilderFor(Class) instantiate} to call to {@link #build()}
      */
     public ISet<T> build();
+    /**
+     * Final operation of building, creates an immutable {@link ISet set} with the information recorded from the instantiation.
+     * Avoids the copy of {@link #build()} followed by {@link ISet#freeze()}.
+     * @return The builded set, immutable. Can be empty if no operations was made
+     */
+    public ISet<T> buildFrozen();
 }
@@ -0,0 +1,75 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets;
+
+import java.io.IOException;
+
+/**
+ * An exception to report that a set was encoded with {@link SetCodec#encode(ISet, java.io.DataOutput) property ordinals}
+ * for a model that differs from the local model, as indicated by its {@link SetUtils#modelFingerprint(Class) fingerprint}.
+ * <p>The set should to be encoded again in {@link SetCodec#encodePortable(ISet, java.io.DataOutput) portable} form.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class IncompatibleModelException extends IOException
+{
+    private static final long serialVersionUID = -1532868421093563610L;
+
+    private final Class<?> model;
+    private final long expectedFingerprint;
+    private final long actualFingerprint;
+    /**
+     * Constructor.
+     * @param model The model
+     * @param expectedFingerprint The fingerprint of the encoded set
+     * @param actualFingerprint The fingerprint of the local model
+     */
+    public IncompatibleModelException(Class<?> model, long expectedFingerprint, long actualFingerprint)
+    {
+        super(String.format("The model '%s' has fingerprint %016x but the set was encoded for %016x"
+                , model.getName(), actualFingerprint, expectedFingerprint));
+        this.model = model;
+        this.expectedFingerprint = expectedFingerprint;
+        this.actualFingerprint = actualFingerprint;
+    }
+    /**
+     * The model of the set.
+     * @return The model
+     */
+    public Class<?> getModel()
+    {
+        return model;
+    }
+    /**
+     * The fingerprint of the model when the set was encoded.
+     * @return The fingerprint
+     */
+    public long getExpectedFingerprint()
+    {
+        return expectedFingerprint;
+    }
+    /**
+     * The fingerprint of the local model.
+     * @return The fingerprint
+     */
+    public long getActualFingerprint()
+    {
+        return actualFingerprint;
+    }
+}
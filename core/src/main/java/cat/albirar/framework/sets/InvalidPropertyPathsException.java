@@ -0,0 +1,66 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An exception to report all the incorrect or unknown property paths of a batch, like {@link ISet#addAll(Collection)}.
+ * @see SetUtils#checkPathsForModel(Class, Collection)
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class InvalidPropertyPathsException extends IllegalArgumentException
+{
+    private static final long serialVersionUID = 4315729856041783361L;
+
+    private final Class<?> model;
+    private final List<String> invalidPaths;
+    /**
+     * Constructor.
+     * @param model The model of the paths
+     * @param invalidPaths The incorrect or unknown property paths, null, empty or whitespace paths included
+     */
+    public InvalidPropertyPathsException(Class<?> model, Collection<String> invalidPaths)
+    {
+        super("The property paths " + invalidPaths + " are incorrect or doesn't exists at model '" + model.getName() + "'");
+        this.model = model;
+        this.invalidPaths = Collections.unmodifiableList(new ArrayList<String>(invalidPaths));
+    }
+    /**
+     * The model of the paths.
+     * @return The model
+     */
+    public Class<?> getModel()
+    {
+        return model;
+    }
+    /**
+     * The incorrect or unknown property paths.
+     * @return The unmodifiable list of paths
+     */
+    public List<String> getInvalidPaths()
+    {
+        return invalidPaths;
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+/**
+ * A property path, as {@code customer.address.city}, split in his property names.
+ * <p>The property paths are interned: there are only one instance for each property path, so equality is identity and
+ * the hash code, the dotted string and the property names are calculated once. Every property path is linked to his
+ * {@link #parent() parent}, so {@link #parent()}, {@link #startsWith(PropertyPath)} and the {@link #segment(int) property names}
+ * don't create any object, and {@link #child(String)} or {@link #of(String)} of an already known property path doesn't create
+ * any substring.</p>
+ * <p>The property paths are not related to any model, only the syntax is checked: each property name should to be a
+ * java identifier, see {@link SetUtils#PROPERTY_PATH_PATTERN}. So any string, even from untrusted input, can be interned,
+ * and the parents only keep weak references to their children: a property path is released once it's not referenced,
+ * nor any of its descendants, and is created again on next use.</p>
+ * <p>Instances are immutable and thread safe.</p>
+ * @see ISet#propertyPaths()
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class PropertyPath implements Comparable<PropertyPath>, Serializable
+{
+    private static final long serialVersionUID = 6316542823416209931L;
+    /** Initial capacity of the table of children, a power of two. */
+    private static final int INITIAL_CAPACITY = 4;
+    /** The root of all property paths, the empty path. */
+    private static final PropertyPath ROOT = new PropertyPath();
+    /** The references to the released property paths, to remove them from their parents. */
+    private static final ReferenceQueue<PropertyPath> released = new ReferenceQueue<PropertyPath>();
+    
+    /** The dotted property path, the only serialized state. */
+    private final String path;
+    private final transient PropertyPath parent;
+    private final transient String name;
+    private final transient int depth;
+    private final transient int hash;
+    /**
+     * The known children, a hash table by property name, or null if none. Modified with the lock of this path; the reads
+     * without lock can miss a child, and then search it again with the lock.
+     */
+    private transient volatile ChildReference [] children;
+    /** The number of references on {@link #children}, released or not. */
+    private transient int childCount;
+    
+    /**
+     * Constructor for {@link #ROOT}.
+     */
+    private PropertyPath()
+    {
+        this.path = "";
+        this.parent = null;
+        this.name = "";
+        this.depth = 0;
+        this.hash = 0;
+    }
+    /**
+     * Constructor for a child.
+     * @param parent The parent
+     * @param name The property name
+     */
+    private PropertyPath(PropertyPath parent, String name)
+    {
+        this.parent = parent;
+        this.name = name;
+        this.path = (parent == ROOT ? name : parent.path.concat(".").concat(name));
+        this.depth = parent.depth + 1;
+        this.hash = path.hashCode();
+    }
+    /**
+     * Gets the property path for the indicated dotted string.
+     * @param propertyPath The dotted property path, required
+     * @return The interned property path
+     * @throws IllegalArgumentException If {@code propertyPath} is null or empty or only whitespace or is not well formed
+     */
+    public static PropertyPath of(String propertyPath)
+    {
+        Assert.hasText(propertyPath, "The property path is required");
+        return ROOT.resolve(propertyPath);
+    }
+    /**
+     * Gets the property path of the indicated property name relative to this path.
+     * @param propertyName The property name, required
+     * @return The interned property path
+     * @throws IllegalArgumentException If {@code propertyName} is null or empty or only whitespace or is not a java identifier
+     */
+    public PropertyPath child(String propertyName)
+    {
+        Assert.hasText(propertyName, "The property name is required");
+        if(propertyName.indexOf('.') >= 0)
+        {
+            throw malformed(propertyName);
+        }
+        return childAt(propertyName, 0, propertyName.length());
+    }
+    /**
+     * Gets the property path of the indicated dotted string relative to this path.
+     * @param relativePath The relative dotted property path, required
+     * @return The interned property path
+     * @throws IllegalArgumentException If {@code relativePath} is null or empty or only whitespace or is not well formed
+     */
+    public PropertyPath resolve(String relativePath)
+    {
+        PropertyPath p;
+        int from;
+        int to;
+        
+        Assert.hasText(relativePath, "The property path is required");
+        p = this;
+        from = 0;
+        do
+        {
+            if((to = relativePath.indexOf('.', from)) < 0)
+            {
+                to = relativePath.length();
+            }
+            p = p.childAt(relativePath, from, to);
+            from = to + 1;
+        }
+        while(to < relativePath.length());
+        return p;
+    }
+    /**
+     * The parent of this property path.
+     * @return The parent, or null if this path is only a property name
+     */
+    public PropertyPath parent()
+    {
+        return (parent == ROOT ? null : parent);
+    }
+    /**
+     * The last property name of this path.
+     * @return The property name, the same instance for all the descendants of this path
+     */
+    public String getName()
+    {
+        return name;
+    }
+    /**
+     * The number of property names of this path.
+     * @return The depth, one or more
+     */
+    public int depth()
+    {
+        return depth;
+    }
+    /**
+     * Gets the property name at the indicated position.
+     * @param index The position, from 0 to {@link #depth()} - 1
+     * @return The property name, the same instance for all the paths with the same prefix up to {@code index}
+     * @throws IndexOutOfBoundsException If index is out of range
+     */
+    public String segment(int index)
+    {
+        if(index < 0 || index >= depth)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", depth: " + depth);
+        }
+        return ancestor(index + 1).name;
+    }
+    /**
+     * Check if this path starts with the indicated path, that is, if this path is the indicated path or a descendant of it.
+     * @param prefix The prefix, required
+     * @return true if this path starts with {@code prefix} and false if not
+     * @throws IllegalArgumentException If {@code prefix} is null
+     */
+    public boolean startsWith(PropertyPath prefix)
+    {
+        Assert.notNull(prefix, "The prefix is required");
+        return (prefix.depth <= depth && ancestor(prefix.depth) == prefix);
+    }
+    /**
+     * Equality is identity, the instances are interned.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        return (o == this);
+    }
+    /**
+     * The same as the hash code of the dotted string.
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+    /**
+     * Natural order of the dotted strings.
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(PropertyPath o)
+    {
+        return path.compareTo(o.path);
+    }
+    /**
+     * The dotted property path.
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+    /**
+     * Gets the ancestor at the indicated depth.
+     * @param d The depth, from 0 to {@link #depth}
+     * @return The ancestor, this path if {@code d} is {@link #depth}
+     */
+    private PropertyPath ancestor(int d)
+    {
+        PropertyPath p;
+        
+        p = this;
+        while(p.depth > d)
+        {
+            p = p.parent;
+        }
+        return p;
+    }
+    /**
+     * Gets or creates the child for a region of a string.
+     * @param s The string
+     * @param from The start of property name, inclusive
+     * @param to The end of property name, exclusive
+     * @return The child
+     * @throws IllegalArgumentException If the property name is not a java identifier
+     */
+    private PropertyPath childAt(String s, int from, int to)
+    {
+        PropertyPath p;
+        int h;
+        
+        h = hash(s, from, to);
+        if((p = find(children, s, from, to, h)) != null)
+        {
+            return p;
+        }
+        if(!isIdentifier(s, from, to))
+        {
+            throw malformed(s);
+        }
+        // Before take the lock of this path, as it takes the lock of other paths
+        expungeReleased();
+        synchronized(this)
+        {
+            if((p = find(children, s, from, to, h)) == null)
+            {
+                p = new PropertyPath(this, s.substring(from, to));
+                addChild(p, h);
+            }
+            return p;
+        }
+    }
+    /**
+     * Add a child to {@link #children}, growing the table if needed. Called with the lock of this path.
+     * @param child The child
+     * @param h The hash of its property name
+     */
+    private void addChild(PropertyPath child, int h)
+    {
+        ChildReference [] c;
+        int n;
+        
+        c = children;
+        if(c == null)
+        {
+            c = new ChildReference[INITIAL_CAPACITY];
+        }
+        else if(childCount >= c.length - (c.length >>> 2))
+        {
+            // Drop the released ones and grow if still needed
+            c = rehash(c, (countAlive(c) >= c.length >>> 1 ? c.length << 1 : c.length));
+        }
+        n = h & (c.length - 1);
+        c[n] = new ChildReference(child, this, h, c[n]);
+        childCount++;
+        // Publish the table, the new reference is complete as its fields are final
+        children = c;
+    }
+    /**
+     * Copy the alive children to a new table. Called with the lock of this path.
+     * @param c The current table
+     * @param length The length of the new table, a power of two
+     * @return The new table
+     */
+    private ChildReference [] rehash(ChildReference [] c, int length)
+    {
+        ChildReference [] nc;
+        PropertyPath p;
+        int n;
+        
+        nc = new ChildReference[length];
+        childCount = 0;
+        for(ChildReference r : c)
+        {
+            for(; r != null; r = r.next)
+            {
+                if((p = r.get()) != null)
+                {
+                    n = r.hash & (length - 1);
+                    nc[n] = new ChildReference(p, this, r.hash, nc[n]);
+                    childCount++;
+                }
+            }
+        }
+        return nc;
+    }
+    /**
+     * Count the children not released.
+     * @param c The table
+     * @return The number of children
+     */
+    private static int countAlive(ChildReference [] c)
+    {
+        int n;
+        
+        n = 0;
+        for(ChildReference r : c)
+        {
+            for(; r != null; r = r.next)
+            {
+                if(r.get() != null)
+                {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+    /**
+     * Remove from their parents the references to the released property paths.
+     */
+    private static void expungeReleased()
+    {
+        ChildReference r;
+        Set<PropertyPath> parents;
+        
+        if((r = (ChildReference) released.poll()) == null)
+        {
+            return;
+        }
+        // Each parent once, even if many of its children are released
+        parents = Collections.newSetFromMap(new IdentityHashMap<PropertyPath, Boolean>());
+        for(; r != null; r = (ChildReference) released.poll())
+        {
+            parents.add(r.parent);
+        }
+        for(PropertyPath parent : parents)
+        {
+            synchronized(parent)
+            {
+                if(parent.children != null)
+                {
+                    // The table is copied, the readers without lock keep the previous one
+                    parent.children = parent.rehash(parent.children, parent.children.length);
+                }
+            }
+        }
+    }
+    /**
+     * Keep the interned instance on deserialization.
+     * @return The interned property path
+     * @throws ObjectStreamException Never
+     */
+    private Object readResolve() throws ObjectStreamException
+    {
+        return of(path);
+    }
+    /**
+     * Search a property name on a table of children, without create the property name string.
+     * @param children The table, can be null
+     * @param s The string
+     * @param from The start of property name on string, inclusive
+     * @param to The end of property name on string, exclusive
+     * @param h The hash of the property name, see {@link #hash(String, int, int)}
+     * @return The child, or null if not found
+     */
+    private static PropertyPath find(ChildReference [] children, String s, int from, int to, int h)
+    {
+        ChildReference r;
+        PropertyPath p;
+        
+        if(children != null)
+        {
+            for(r = children[h & (children.length - 1)]; r != null; r = r.next)
+            {
+                if(r.hash == h && (p = r.get()) != null && p.name.length() == to - from && s.startsWith(p.name, from))
+                {
+                    return p;
+                }
+            }
+        }
+        return null;
+    }
+    /**
+     * The hash of a region of a string, the same as {@link String#hashCode()} of the region, spread.
+     * @param s The string
+     * @param from The start of region, inclusive
+     * @param to The end of region, exclusive
+     * @return The hash
+     */
+    private static int hash(String s, int from, int to)
+    {
+        int h;
+        
+        h = 0;
+        for(int i = from; i < to; i++)
+        {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+    /**
+     * Check if the region of a string is a java identifier.
+     * @param s The string
+     * @param from The start of region, inclusive
+     * @param to The end of region, exclusive
+     * @return true if java identifier and false if not or region is empty
+     */
+    private static boolean isIdentifier(String s, int from, int to)
+    {
+        int cp;
+        
+        if(from >= to)
+        {
+            return false;
+        }
+        for(int i = from; i < to; i += Character.charCount(cp))
+        {
+            cp = s.codePointAt(i);
+            if(i == from ? !Character.isJavaIdentifierStart(cp) : !Character.isJavaIdentifierPart(cp))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * The exception for not well formed property paths.
+     * @param s The property path
+     * @return The exception
+     */
+    private static IllegalArgumentException malformed(String s)
+    {
+        return new IllegalArgumentException("The property path '" + s + "' is incorrect!");
+    }
+    /**
+     * A weak reference to a child, linked to the next reference with the same position on the table.
+     * Immutable, the tables are copied to remove the references.
+     */
+    private static final class ChildReference extends WeakReference<PropertyPath>
+    {
+        /** The parent of the child, to remove the reference once the child is released. */
+        final PropertyPath parent;
+        /** The hash of the property name of the child. */
+        final int hash;
+        /** The next reference with the same position, or null. */
+        final ChildReference next;
+        
+        /**
+         * Constructor.
+         * @param child The child
+         * @param parent The parent of the child
+         * @param hash The hash of the property name of the child
+         * @param next The next reference with the same position, or null
+         */
+        ChildReference(PropertyPath child, PropertyPath parent, int hash, ChildReference next)
+        {
+            super(child, released);
+            this.parent = parent;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
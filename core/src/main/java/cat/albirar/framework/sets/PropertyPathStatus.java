@@ -0,0 +1,47 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets;
+
+/**
+ * The result of check a property path against a model.
+ * @see SetUtils#checkPathStatusForModel(Class, String)
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public enum PropertyPathStatus
+{
+    /** The property path is not well formed, that is, doesn't match with {@link SetUtils#PROPERTY_PATH_PATTERN}. */
+    MALFORMED,
+    /** The property path is well formed but the model doesn't have any property denoted by the path. */
+    INVALID,
+    /** The property path is valid and denotes a property of a simple type. */
+    VALID,
+    /** The property path is valid and denotes a property that is a model, so is also a prefix of other valid paths. */
+    VALID_PREFIX;
+    
+    /**
+     * Check if status is for a valid property path.
+     * @return true if {@link #VALID} or {@link #VALID_PREFIX} and false if not
+     */
+    public boolean isValid()
+    {
+        return (this == VALID || this == VALID_PREFIX);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.impl.SetBinaryCodec;
+
+/**
+ * Compact binary encoding of {@link ISet sets} and {@link cat.albirar.framework.sets.registry.INamedSet named sets}, for
+ * replication and distributed caches.
+ * <p>Two forms are available:
+ * <ul>
+ * <li>{@link #encode(ISet, DataOutput) Ordinals form}: each property name is encoded as his position in the sorted property names
+ * of his model, with the {@link SetUtils#modelFingerprint(Class) fingerprint} of the model. The smaller, for nodes that share
+ * the models.</li>
+ * <li>{@link #encodePortable(ISet, DataOutput) Portable form}: the property names are encoded once, in a names table. For nodes
+ * that can have different versions of the models.</li>
+ * </ul>
+ * The {@link #decode(DataInput)} reads both forms. If a set in ordinals form is decoded with a different model, an
+ * {@link IncompatibleModelException} is thrown, and the set should to be sent again in portable form.</p>
+ * <p>Java serialization of sets uses the portable form.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class SetCodec
+{
+    /**
+     * Encode the set in ordinals form.
+     * @param set The set, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null
+     */
+    public static void encode(ISet<?> set, DataOutput out) throws IOException
+    {
+        SetBinaryCodec.encode(set, out, false);
+    }
+    /**
+     * Encode the set in portable form.
+     * @param set The set, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null
+     */
+    public static void encodePortable(ISet<?> set, DataOutput out) throws IOException
+    {
+        SetBinaryCodec.encode(set, out, true);
+    }
+    /**
+     * Encode the set in ordinals form.
+     * @param set The set, required
+     * @return The encoded set
+     * @throws IllegalArgumentException If {@code set} is null
+     */
+    public static byte [] encode(ISet<?> set)
+    {
+        return toBytes(set, false);
+    }
+    /**
+     * Encode the set in portable form.
+     * @param set The set, required
+     * @return The encoded set
+     * @throws IllegalArgumentException If {@code set} is null
+     */
+    public static byte [] encodePortable(ISet<?> set)
+    {
+        return toBytes(set, true);
+    }
+    /**
+     * Decode a set encoded in any form.
+     * @param in The input, required
+     * @return The set, of the same kind of the encoded set (named or not, mutable or {@link ISet#freeze() frozen})
+     * @throws IOException If an I/O error occurs or the data is not a valid encoded set
+     * @throws IncompatibleModelException If the set was encoded in ordinals form and the model fingerprint doesn't match
+     * @throws ClassNotFoundException If the model class is not found
+     * @throws InvalidPropertyPathsException If the set was encoded in portable form and any path is not valid for the model
+     * @throws IllegalArgumentException If {@code in} is null
+     */
+    public static ISet<?> decode(DataInput in) throws IOException, ClassNotFoundException
+    {
+        return SetBinaryCodec.decode(in);
+    }
+    /**
+     * Decode a set encoded in any form.
+     * @param data The encoded set, required
+     * @return The set, of the same kind of the encoded set (named or not, mutable or {@link ISet#freeze() frozen})
+     * @throws IOException If the data is not a valid encoded set
+     * @throws IncompatibleModelException If the set was encoded in ordinals form and the model fingerprint doesn't match
+     * @throws ClassNotFoundException If the model class is not found
+     * @throws InvalidPropertyPathsException If the set was encoded in portable form and any path is not valid for the model
+     * @throws IllegalArgumentException If {@code data} is null
+     */
+    public static ISet<?> decode(byte [] data) throws IOException, ClassNotFoundException
+    {
+        Assert.notNull(data, "The data is required");
+        return SetBinaryCodec.decode(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+    /**
+     * Encode the set in memory.
+     * @param set The set
+     * @param portable The form
+     * @return The encoded set
+     */
+    private static byte [] toBytes(ISet<?> set, boolean portable)
+    {
+        ByteArrayOutputStream bos;
+        
+        bos = new ByteArrayOutputStream();
+        try
+        {
+            SetBinaryCodec.encode(set, new DataOutputStream(bos), portable);
+        }
+        catch(IOException e)
+        {
+            // Never on memory
+            throw new IllegalStateException(e);
+        }
+        return bos.toByteArray();
+    }
+}
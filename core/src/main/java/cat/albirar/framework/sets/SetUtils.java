@@ -19,15 +19,22 @@
 
 package cat.albirar.framework.sets;
 
-import java.beans.PropertyDescriptor;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
-import cat.albirar.framework.sets.impl.ModelDescriptor;
+import cat.albirar.framework.sets.impl.ModelPathIndex;
+import cat.albirar.framework.sets.impl.PathWildcard;
+import cat.albirar.framework.sets.impl.PropertyAccessorDefaultImpl;
+import cat.albirar.framework.sets.impl.SetBitSetImpl;
 import cat.albirar.framework.sets.impl.SetBuilderDefaultImpl;
 import cat.albirar.framework.sets.impl.SetDefaultImpl;
+import cat.albirar.framework.sets.impl.SetFrozenImpl;
+import cat.albirar.framework.sets.impl.SetTrieImpl;
 
 /**
  * Utilities and factory to instantiate {@link ISet sets} and {@link ISetBuilder builders}.
@@ -77,8 +84,6 @@ public abstract class SetUtils
     public static final String PROPERTY_PATTERN = "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*";
     /** The property path RE pattern. */
     public static final String PROPERTY_PATH_PATTERN = "(" + PROPERTY_PATTERN + ")(\\." + PROPERTY_PATTERN + ")*";
-    /** A path pattern matcher for check. */
-    private static final Pattern pathPattern = Pattern.compile(PROPERTY_PATH_PATTERN);
     /**
      * Instantiate a {@link ISet} for the indicated root model.
      * @param rootModel The root model, required
@@ -88,6 +93,41 @@ public abstract class SetUtils
     {
         return new SetDefaultImpl<T>(rootModel);
     }
+    /**
+     * Instantiate a bit vector {@link ISet} for the indicated root model.
+     * Membership and set operations between bit vector sets of the same root model are operations on words of bits,
+     * useful for sets that are intersected or compared frequently.
+     * @param rootModel The root model, required
+     * @return The instantiated set
+     */
+    public static <T> ISet<T> instantiateBitSetFor(Class<T> rootModel)
+    {
+        return new SetBitSetImpl<T>(rootModel);
+    }
+    /**
+     * Instantiate a memory compact {@link ISet} for the indicated root model.
+     * The property paths are stored as a trie of shared property names, useful for sets with a lot of deep property paths.
+     * @param rootModel The root model, required
+     * @return The instantiated set
+     */
+    public static <T> ISet<T> instantiateTrieSetFor(Class<T> rootModel)
+    {
+        return new SetTrieImpl<T>(rootModel);
+    }
+    /**
+     * Creates an immutable {@link ISet} for the indicated root model with the indicated property paths.
+     * The {@link PathWildcard wildcards} ({@code path.*} and {@code path.**{n}}) are kept as is, so the set is compact and
+     * {@link ISet#contains(Object)} is answered without expand them.
+     * @param rootModel The root model, required
+     * @param propertyPaths The property paths and wildcards, required
+     * @return The frozen set
+     * @throws IllegalArgumentException If rootModel or propertyPaths are null
+     * @throws InvalidPropertyPathsException If any of the property paths or wildcards is incorrect or unknown in the model
+     */
+    public static <T> ISet<T> frozenSetOf(Class<T> rootModel, Collection<? extends String> propertyPaths)
+    {
+        return SetFrozenImpl.of(rootModel, propertyPaths);
+    }
     /**
      * Create a new instance of builder to operate to.
      * @param rootModel The root model of the set
@@ -97,6 +137,17 @@ public abstract class SetUtils
     {
         return new SetBuilderDefaultImpl<T>(rootModel);
     }
+    /**
+     * Gets a reusable builder for the indicated root model, reset and owned by the current thread.
+     * Avoids the creation of a builder on each use, but the builder should not be retained nor used by nested operations on the same thread.
+     * @param rootModel The root model, required
+     * @return The builder
+     * @throws IllegalArgumentException If the {@code rootModel} is null
+     */
+    public static <T> ISetBuilder<T> pooledBuilderFor(Class<T> rootModel)
+    {
+        return SetBuilderDefaultImpl.pooledFor(rootModel);
+    }
     /**
      * Check if path is correct for the indicated model.
      * @param model The model
@@ -106,38 +157,189 @@ public abstract class SetUtils
      */
     public static boolean checkPathForModel(Class<?> model, String propertyPath)
     {
-        StringTokenizer stk;
-        ModelDescriptor pathFollower;
-        PropertyDescriptor pdesc;
-        String ppath;
-        
-        Assert.hasText(propertyPath, "The property path is required and cannot be empty or only whitespace");
+        PropertyPathStatus status;
         
-        // Check pattern
-        if(!pathPattern.matcher(propertyPath).matches())
+        status = checkPathStatusForModel(model, propertyPath);
+        if(status == PropertyPathStatus.MALFORMED)
         {
             throw new IllegalArgumentException(String.format("The property path '%s' is incorrect!"
                     , propertyPath));
         }
-        stk = new StringTokenizer(propertyPath, ".");
-        pathFollower = new ModelDescriptor(model);
-        while(stk.hasMoreTokens())
+        return status.isValid();
+    }
+    /**
+     * Check a batch of paths for the indicated model.
+     * The paths are sorted and checked with {@link ModelPathIndex#checkAll(String[])}, so the shared prefixes are resolved once.
+     * All the incorrect paths are reported in one exception.
+     * <p>The {@link PathWildcard wildcards} ({@code path.*} and {@code path.**{n}}) are replaced by the property paths that
+     * they denote, {@link ModelPathIndex#expand(PathWildcard) expanded} once per model.</p>
+     * @param model The model, required
+     * @param propertyPaths The property paths and wildcards, required
+     * @return The property paths, sorted
+     * @throws IllegalArgumentException If model or propertyPaths are null
+     * @throws InvalidPropertyPathsException If any of the property paths is null or empty or only whitespace, or not correct format, or unknown in the model
+     */
+    public static String [] checkPathsForModel(Class<?> model, Collection<? extends String> propertyPaths)
+    {
+        String [] paths;
+        PropertyPathStatus [] status;
+        List<String> invalid;
+        List<String> expanded;
+        ModelPathIndex index;
+        int n;
+        
+        Assert.notNull(model, "The model is required");
+        Assert.notNull(propertyPaths, "The property paths are required");
+        index = ModelPathIndex.forModel(model);
+        paths = new String[propertyPaths.size()];
+        invalid = new ArrayList<String>();
+        expanded = null;
+        n = 0;
+        for(String p : propertyPaths)
         {
-            ppath = stk.nextToken();
-            if( (pdesc = pathFollower.getProperties().get(ppath)) != null)
+            if(PathWildcard.isWildcard(p))
             {
-                if(stk.hasMoreTokens())
+                if(expanded == null)
+                {
+                    expanded = new ArrayList<String>();
+                }
+                if(!expandWildcard(index, p, expanded))
                 {
-                    pathFollower = new ModelDescriptor(pdesc.getPropertyType());
+                    invalid.add(p);
                 }
             }
+            else if(StringUtils.hasText(p))
+            {
+                paths[n++] = p;
+            }
             else
             {
-                // Error
-                return false;
+                invalid.add(p);
+            }
+        }
+        if(n < paths.length)
+        {
+            paths = Arrays.copyOf(paths, n);
+        }
+        Arrays.sort(paths);
+        status = index.checkAll(paths);
+        for(int i = 0; i < paths.length; i++)
+        {
+            if(!status[i].isValid())
+            {
+                invalid.add(paths[i]);
             }
         }
+        if(!invalid.isEmpty())
+        {
+            throw new InvalidPropertyPathsException(model, invalid);
+        }
+        if(expanded != null)
+        {
+            n = paths.length;
+            paths = Arrays.copyOf(paths, n + expanded.size());
+            for(String p : expanded)
+            {
+                paths[n++] = p;
+            }
+            Arrays.sort(paths);
+        }
+        return paths;
+    }
+    /**
+     * Expand a wildcard, if correct.
+     * @param index The index of the model
+     * @param wildcard The text of the wildcard
+     * @param expanded The list to add the property paths
+     * @return true if expanded and false if the wildcard is not correct for the model
+     */
+    private static boolean expandWildcard(ModelPathIndex index, String wildcard, List<String> expanded)
+    {
+        PathWildcard w;
+        
+        try
+        {
+            w = PathWildcard.parse(wildcard);
+        }
+        catch(IllegalArgumentException e)
+        {
+            return false;
+        }
+        if(!w.isValidFor(index))
+        {
+            return false;
+        }
+        expanded.addAll(Arrays.asList(index.expand(w)));
         return true;
     }
-
+    /**
+     * Check the path against the indicated model and return the detailed status.
+     * Uses the compiled {@link ModelPathIndex index} of the model, so the path is read only once and no objects are created.
+     * @param model The model, required
+     * @param propertyPath The property path, required
+     * @return The status of the path: {@link PropertyPathStatus#MALFORMED malformed}, {@link PropertyPathStatus#INVALID invalid},
+     * {@link PropertyPathStatus#VALID valid} or {@link PropertyPathStatus#VALID_PREFIX valid and prefix of other paths}
+     * @throws IllegalArgumentException If model is null or if the property path is null or empty or only whitespace
+     */
+    public static PropertyPathStatus checkPathStatusForModel(Class<?> model, String propertyPath)
+    {
+        Assert.hasText(propertyPath, "The property path is required and cannot be empty or only whitespace");
+        return ModelPathIndex.forModel(model).check(propertyPath);
+    }
+    /**
+     * Resolve the type of the property denoted by the indicated path in the indicated model.
+     * @param model The model, required
+     * @param propertyPath The property path, required
+     * @return The type of the property
+     * @throws IllegalArgumentException If model is null or if the property path is null or empty or only whitespace or it's unknown in the model
+     */
+    public static Class<?> resolvePathType(Class<?> model, String propertyPath)
+    {
+        Class<?> type;
+        
+        Assert.hasText(propertyPath, "The property path is required and cannot be empty or only whitespace");
+        if((type = ModelPathIndex.forModel(model).typeOf(propertyPath)) == null)
+        {
+            throw new IllegalArgumentException("The property path '".concat(propertyPath)
+                    .concat("' doesn't exists at model '")
+                    .concat(model.getName())
+                    .concat("'"));
+        }
+        return type;
+    }
+    /**
+     * Gets the fingerprint of the model, a 64 bit hash of the property names and types of the model and all his nested models.
+     * The fingerprint is the same between virtual machines for the same model definition.
+     * @param model The model, required
+     * @return The fingerprint
+     * @throws IllegalArgumentException If model is null
+     * @see SetCodec
+     */
+    public static long modelFingerprint(Class<?> model)
+    {
+        return ModelPathIndex.forModel(model).fingerprint();
+    }
+    /**
+     * Compile an accessor for read and write the property denoted by the indicated path in the indicated model.
+     * <p>The accessor is compiled once and cached, so successive calls for the same model and path returns the same instance.
+     * Reading through the accessor is null safe: if any intermediate property is null, the result is null.</p>
+     * <pre>
+     * IPropertyAccessor&lt;Model, String&gt; city;
+     * 
+     * city = SetUtils.compileAccessor(Model.class, "customer.address.city");
+     * for(Model m : rows)
+     * {
+     *     process(city.get(m));
+     * }
+     * </pre>
+     * @param model The model, required
+     * @param propertyPath The property path, required
+     * @return The accessor. The {@code V} type is not checked, see {@link IPropertyAccessor#getPropertyType()}
+     * @throws IllegalArgumentException If model is null or if the property path is null or empty or only whitespace or it's unknown in the model,
+     * or if any intermediate property cannot be read
+     */
+    public static <T, V> IPropertyAccessor<T, V> compileAccessor(Class<T> model, String propertyPath)
+    {
+        return PropertyAccessorDefaultImpl.forPath(model, propertyPath);
+    }
 }
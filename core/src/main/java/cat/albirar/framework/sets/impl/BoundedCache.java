@@ -0,0 +1,169 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * A cache with a maximum number of entries, for the compiled engines of sets, like the projections and the JSON writers.
+ * <p>The sets used as keys can be built from each request, so the cache cannot grow without limit. When the capacity is
+ * exceeded, the entries not used since the last eviction are removed first (a clock, or second chance, approximation of
+ * the least recently used), so the reads only mark the entry as used and never block.</p>
+ * <p>Instances are thread safe.</p>
+ * @param <K> The key type
+ * @param <V> The value type
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class BoundedCache<K, V>
+{
+    private final ConcurrentMap<K, Entry<V>> entries;
+    private final int capacity;
+    
+    /**
+     * Constructor.
+     * @param capacity The maximum number of entries, should to be positive
+     * @throws IllegalArgumentException If capacity is not positive
+     */
+    public BoundedCache(int capacity)
+    {
+        Assert.isTrue(capacity > 0, "The capacity should to be positive");
+        this.capacity = capacity;
+        entries = new ConcurrentHashMap<K, Entry<V>>();
+    }
+    /**
+     * Gets the value of the key, marking it as used.
+     * @param key The key, required
+     * @return The value or null if the key is not cached
+     */
+    public V get(K key)
+    {
+        Entry<V> e;
+        
+        if((e = entries.get(key)) == null)
+        {
+            return null;
+        }
+        if(!e.used)
+        {
+            e.used = true;
+        }
+        return e.value;
+    }
+    /**
+     * Cache the value of the key, unless the key is already cached; evicts entries if the capacity is exceeded.
+     * @param key The key, required
+     * @param value The value, required
+     * @return The cached value, {@code value} or the value already cached for the key
+     */
+    public V putIfAbsent(K key, V value)
+    {
+        Entry<V> previous;
+        
+        if((previous = entries.putIfAbsent(key, new Entry<V>(value))) != null)
+        {
+            previous.used = true;
+            return previous.value;
+        }
+        if(entries.size() > capacity)
+        {
+            evict(key);
+        }
+        return value;
+    }
+    /**
+     * Remove entries until the capacity is not exceeded. The used entries are marked as not used and survive one pass.
+     * @param added The key just added, that is never removed
+     */
+    private synchronized void evict(K added)
+    {
+        Iterator<Map.Entry<K, Entry<V>>> it;
+        Map.Entry<K, Entry<V>> me;
+        Entry<V> e;
+        
+        while(entries.size() > capacity)
+        {
+            it = entries.entrySet().iterator();
+            while(it.hasNext() && entries.size() > capacity)
+            {
+                me = it.next();
+                e = me.getValue();
+                if(me.getKey().equals(added))
+                {
+                    continue;
+                }
+                if(e.used)
+                {
+                    e.used = false;
+                }
+                else
+                {
+                    it.remove();
+                }
+            }
+        }
+    }
+    /**
+     * The number of cached entries.
+     * @return The number of entries, never more than the capacity once the last put is finished
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+    /**
+     * The maximum number of entries.
+     * @return The capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+    /**
+     * Remove all the entries.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+    /**
+     * A cached value and his use mark.
+     */
+    private static final class Entry<V>
+    {
+        final V value;
+        /** If the entry was used since the last eviction pass. Benign race, is only a hint for the eviction. */
+        volatile boolean used;
+        
+        /**
+         * Constructor, a new entry is not marked as used: survives only the eviction of his own addition.
+         * @param value The value
+         */
+        Entry(V value)
+        {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+/**
+ * Approximate heap sizes of the objects held by the sets, to compare the footprint of the implementations.
+ * The sizes are the usual of a 64 bit JVM, without compressed references, and are not exact.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+final class HeapSize
+{
+    /** Approximate heap size of an object with a few fields. */
+    static final long OBJECT_BYTES = 32L;
+    /** Approximate heap size of a {@link java.util.TreeMap} entry. */
+    static final long ENTRY_BYTES = 40L;
+    /** Approximate heap size of a reference. */
+    static final long REFERENCE_BYTES = 8L;
+    /** Approximate heap size of the header of an array. */
+    static final long ARRAY_BYTES = 16L;
+    
+    /**
+     * Not instantiable.
+     */
+    private HeapSize()
+    {
+    }
+    /**
+     * Approximate heap size of a string, with its characters.
+     * @param s The string
+     * @return The size, in bytes
+     */
+    static long of(String s)
+    {
+        return OBJECT_BYTES + ARRAY_BYTES + 2L * s.length();
+    }
+    /**
+     * Approximate heap size of an array of references.
+     * @param length The length of the array
+     * @return The size, in bytes
+     */
+    static long ofArray(int length)
+    {
+        return ARRAY_BYTES + REFERENCE_BYTES * length;
+    }
+}
@@ -27,42 +27,115 @@ import java.util.TreeMap;
 import org.springframework.beans.BeanUtils;
 import org.springframework.util.Assert;
 
+import cat.albirar.framework.sets.PropertyPath;
+
 /**
  * A model descriptor.
  * Holds information about a model in set operations.
+ * <p>Instances are immutable. The property information of each model is resolved only once and shared by all the descriptors
+ * of the same model through the {@link ModelDescriptorCache}, so use {@link ModelDescriptorCache#getDescriptor(Class)}
+ * to get the descriptor of a model and {@link #withRelativePath(String, String)} to get a descriptor relative to a path.</p>
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
  */
 public class ModelDescriptor
 {
-    private String relativePath;
-    private String originalPath;
-    private Class<?> model;
-    private Map<String, PropertyDescriptor> properties;
+    private final String relativePath;
+    private final String originalPath;
+    private final PropertyPath propertyPath;
+    private final Class<?> model;
+    private final Map<String, PropertyDescriptor> properties;
     /**
      * Constructor for model.
      * @param model The model, required
      * @throws IllegalArgumentException If model is null
      */
     public ModelDescriptor(Class<?> model)
+    {
+        this("", "", model);
+    }
+    /**
+     * Constructor for model and relative path to calculate property path.
+     * @param relativePath The relative path of this model
+     * @param originalPath The original path of this model
+     * @param model The model, required
+     * @throws IllegalArgumentException If model is null
+     */
+    public ModelDescriptor(String relativePath, String originalPath, Class<?> model)
     {
         Assert.notNull(model, "The model is required");
-        relativePath = "";
-        originalPath = "";
+        this.relativePath = relativePath;
+        this.originalPath = originalPath;
+        this.propertyPath = null;
         this.model = model;
-        properties = Collections.synchronizedMap(new TreeMap<String, PropertyDescriptor>());
-        resolveProperties();
+        this.properties = ModelDescriptorCache.getDescriptor(model).properties;
     }
     /**
-     * Constructor for model and relative path to calculate property path.
+     * Constructor for share the resolved properties of a model.
      * @param relativePath The relative path of this model
+     * @param originalPath The original path of this model
+     * @param propertyPath The relative path of this model as {@link PropertyPath}, or null if root or unknown
      * @param model The model
+     * @param properties The resolved, and unmodifiable, properties of the model
      */
-    public ModelDescriptor(String relativePath, String originalPath, Class<?> model)
+    ModelDescriptor(String relativePath, String originalPath, PropertyPath propertyPath, Class<?> model, Map<String, PropertyDescriptor> properties)
     {
-        this(model);
         this.relativePath = relativePath;
         this.originalPath = originalPath;
+        this.propertyPath = propertyPath;
+        this.model = model;
+        this.properties = properties;
+    }
+    /**
+     * Resolve the properties of a model.
+     * Used by {@link ModelDescriptorCache} the first time that a model is requested.
+     * @param model The model
+     * @return The root descriptor for the model
+     */
+    static ModelDescriptor resolve(Class<?> model)
+    {
+        PropertyDescriptor [] pd;
+        Map<String, PropertyDescriptor> props;
+        
+        pd = BeanUtils.getPropertyDescriptors(model);
+        props = new TreeMap<String, PropertyDescriptor>();
+        for(PropertyDescriptor prop : pd)
+        {
+            props.put(prop.getName(), prop);
+        }
+        return new ModelDescriptor("", "", null, model, Collections.unmodifiableMap(props));
+    }
+    /**
+     * Gets a descriptor for the same model but with the indicated relative and original path.
+     * The resolved properties are shared, no introspection is made.
+     * @param relativePath The relative path for the new descriptor
+     * @param originalPath The original path for the new descriptor
+     * @return The descriptor
+     */
+    public ModelDescriptor withRelativePath(String relativePath, String originalPath)
+    {
+        return new ModelDescriptor(relativePath, originalPath, null, model, properties);
+    }
+    /**
+     * Gets a descriptor for the same model but with the indicated relative property path and original path.
+     * The resolved properties are shared, no introspection is made, and {@link #resolvePath(String)} of the new descriptor
+     * uses the interned property paths instead of concatenate strings.
+     * @param propertyPath The relative property path for the new descriptor, required
+     * @param originalPath The original path for the new descriptor
+     * @return The descriptor
+     */
+    public ModelDescriptor withPropertyPath(PropertyPath propertyPath, String originalPath)
+    {
+        Assert.notNull(propertyPath, "The property path is required");
+        return new ModelDescriptor(propertyPath.toString(), originalPath, propertyPath, model, properties);
+    }
+    /**
+     * The described model.
+     * @return The model
+     */
+    public Class<?> getModel()
+    {
+        return model;
     }
     /**
      * The relative path of this model; if root, the relative path is an empty string.
@@ -73,6 +146,15 @@ public class ModelDescriptor
         return relativePath;
     }
     
+    /**
+     * The relative path of this model as {@link PropertyPath}.
+     * @return The relative property path, or null if root or if the descriptor was created from a relative path string
+     */
+    public PropertyPath getPropertyPath()
+    {
+        return propertyPath;
+    }
+    
     /**
      * The original path for this descriptor.
      * @return the originalPath
@@ -85,6 +167,7 @@ public class ModelDescriptor
      * Resolve the indicated path with relative.
      * @param path The path to resolve
      * @return The resolved path
+     * @throws IllegalArgumentException If this descriptor have a {@link #getPropertyPath() property path} and {@code path} is not well formed
      */
     public String resolvePath(String path)
     {
@@ -92,28 +175,28 @@ public class ModelDescriptor
         {
             return path;
         }
+        if(propertyPath != null)
+        {
+            // The resolved path is interned, no concatenation
+            return propertyPath.resolve(path).toString();
+        }
         return relativePath.concat(".").concat(path);
     }
     /**
      * The property descriptor map of the model
-     * @return The map of property descriptors, with the property name as key
+     * @return The unmodifiable map of property descriptors, with the property name as key
      */
     public Map<String, PropertyDescriptor> getProperties()
     {
         return properties;
     }
     /**
-     * Resolve properties of the model.
+     * Gets the descriptor of the property with the indicated name.
+     * @param propertyName The property name
+     * @return The descriptor or null if the model doesn't have a property with this name
      */
-    private void resolveProperties()
+    public PropertyDescriptor getProperty(String propertyName)
     {
-        PropertyDescriptor [] pd;
-        
-        pd = BeanUtils.getPropertyDescriptors(model);
-        for(PropertyDescriptor prop : pd)
-        {
-            properties.put(prop.getName(), prop);
-        }
+        return properties.get(propertyName);
     }
-
 }
@@ -0,0 +1,124 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * JVM wide cache of {@link ModelDescriptor model descriptors}.
+ * <p>The properties of each model are introspected once and the resulting {@link ModelDescriptor} is shared by
+ * all threads. The cache is keyed by {@link Class} with a {@link ClassValue}, so the descriptors are held by the
+ * model class itself and doesn't pin any {@link ClassLoader}: when a model class is unloaded, its descriptor goes with it.</p>
+ * <p>The cache report the number of lookups resolved without introspection ({@link #getHitCount() hits}) and the number of
+ * introspections made ({@link #getMissCount() misses}).</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class ModelDescriptorCache
+{
+    /** Number of lookups resolved without introspect the model. */
+    private static final AtomicLong hits = new AtomicLong();
+    /** Number of lookups that needs to introspect the model. */
+    private static final AtomicLong misses = new AtomicLong();
+    /** Set by {@link #descriptors} on the thread that introspects a model, to tell hits from misses. */
+    private static final ThreadLocal<boolean []> introspected = new ThreadLocal<boolean []>()
+    {
+        @Override
+        protected boolean [] initialValue()
+        {
+            return new boolean[1];
+        }
+    };
+    /** The descriptors, one for each model. */
+    private static final ClassValue<ModelDescriptor> descriptors = new ClassValue<ModelDescriptor>()
+    {
+        @Override
+        protected ModelDescriptor computeValue(Class<?> type)
+        {
+            ModelDescriptor descriptor;
+            
+            descriptor = ModelDescriptor.resolve(type);
+            introspected.get()[0] = true;
+            misses.incrementAndGet();
+            return descriptor;
+        }
+    };
+    /**
+     * Gets the descriptor for the indicated model.
+     * The returned descriptor is the root descriptor, that is, with an empty relative path.
+     * @param model The model, required
+     * @return The descriptor
+     * @throws IllegalArgumentException If model is null
+     */
+    public static ModelDescriptor getDescriptor(Class<?> model)
+    {
+        boolean [] flag;
+        ModelDescriptor descriptor;
+        
+        Assert.notNull(model, "The model is required");
+        flag = introspected.get();
+        flag[0] = false;
+        descriptor = descriptors.get(model);
+        if(!flag[0])
+        {
+            hits.incrementAndGet();
+        }
+        return descriptor;
+    }
+    /**
+     * Remove the descriptor of the indicated model, if any.
+     * The next lookup of the model will introspect again the model.
+     * @param model The model, required
+     * @throws IllegalArgumentException If model is null
+     */
+    public static void evict(Class<?> model)
+    {
+        Assert.notNull(model, "The model is required");
+        descriptors.remove(model);
+    }
+    /**
+     * Number of lookups resolved from the cache, without introspect the model.
+     * @return The hit count
+     */
+    public static long getHitCount()
+    {
+        return hits.get();
+    }
+    /**
+     * Number of lookups that needs to introspect the model.
+     * @return The miss count
+     */
+    public static long getMissCount()
+    {
+        return misses.get();
+    }
+    /**
+     * Reset the hit and miss counters.
+     * The cached descriptors are not affected. Each counter is reset on its own, so lookups made meanwhile can be counted
+     * on one of them only, but none of them can be negative.
+     */
+    public static void resetStatistics()
+    {
+        hits.set(0L);
+        misses.set(0L);
+    }
+}
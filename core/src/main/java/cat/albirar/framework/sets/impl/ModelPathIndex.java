@@ -0,0 +1,671 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.PropertyPathStatus;
+
+/**
+ * Compiled index of the property paths of a model.
+ * <p>Each model have a single index, that holds its property names in an open addressing hash table. The index of
+ * each nested model is resolved lazily, the first time a path goes through the property, and is shared with any
+ * other path or model that reach the same type. So the indexes form a trie of valid segments that follows the model
+ * graph (cycles included) and it's built only for the parts of the graph that are used.</p>
+ * <p>The {@link #check(String)} walks the characters of the path only once, hashing each segment as is read, and
+ * doesn't allocate any object.</p>
+ * <p>The properties of each model are also numbered in natural order of names, see {@link #propertyOrdinal(String)}, and
+ * the whole graph of the model has a {@link #fingerprint() fingerprint}, so two virtual machines can agree on the numbers.</p>
+ * <p>The {@link PathWildcard wildcards} are expanded against the model graph once, see {@link #expand(PathWildcard)}.</p>
+ * <p>Indexes are cached per model in a {@link ClassValue}, see {@link #forModel(Class)}.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class ModelPathIndex
+{
+    /** The indexes, one for each model. */
+    private static final ClassValue<ModelPathIndex> indexes = new ClassValue<ModelPathIndex>()
+    {
+        @Override
+        protected ModelPathIndex computeValue(Class<?> type)
+        {
+            return new ModelPathIndex(ModelDescriptorCache.getDescriptor(type));
+        }
+    };
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final Class<?> model;
+    /** The property names, in open addressing hash table layout. */
+    private final String [] names;
+    /** The property types, aligned with {@link #names}. */
+    private final Class<?> [] types;
+    /** If the property is a model (non simple property), aligned with {@link #names}. */
+    private final boolean [] nested;
+    /** The lazily resolved indexes of each property type, aligned with {@link #names}. */
+    private final ModelPathIndex [] children;
+    /** The mask to apply to hashes to get the slot. */
+    private final int mask;
+    /** The property names, in natural order. The position is the property ordinal. */
+    private final String [] sortedNames;
+    /** The fingerprint, calculated lazily, 0 if not calculated yet. */
+    private volatile long fingerprint;
+    /** The expansion of each wildcard, calculated lazily. */
+    private final ConcurrentMap<PathWildcard, String []> expansions = new ConcurrentHashMap<PathWildcard, String []>();
+    
+    /**
+     * Constructor from the model descriptor.
+     * @param descriptor The descriptor
+     */
+    private ModelPathIndex(ModelDescriptor descriptor)
+    {
+        Map<String, PropertyDescriptor> props;
+        int size;
+        int slot;
+        
+        model = descriptor.getModel();
+        props = descriptor.getProperties();
+        // Keep load factor below 0.5
+        size = Integer.highestOneBit(Math.max(props.size(), 1) * 2) << 1;
+        names = new String[size];
+        types = new Class<?>[size];
+        nested = new boolean[size];
+        children = new ModelPathIndex[size];
+        mask = size - 1;
+        // The properties map is sorted by name
+        sortedNames = props.keySet().toArray(new String[props.size()]);
+        for(PropertyDescriptor pd : props.values())
+        {
+            slot = spread(pd.getName().hashCode()) & mask;
+            while(names[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = pd.getName();
+            types[slot] = pd.getPropertyType();
+            nested[slot] = (pd.getPropertyType() != null && !BeanUtils.isSimpleProperty(pd.getPropertyType()));
+        }
+    }
+    /**
+     * Gets the index for the indicated model.
+     * @param model The model, required
+     * @return The index
+     * @throws IllegalArgumentException If model is null
+     */
+    public static ModelPathIndex forModel(Class<?> model)
+    {
+        Assert.notNull(model, "The model is required");
+        return indexes.get(model);
+    }
+    /**
+     * The indexed model.
+     * @return The model
+     */
+    public Class<?> getModel()
+    {
+        return model;
+    }
+    /**
+     * Check the indicated path against the model of this index.
+     * @param propertyPath The property path, required
+     * @return The status of the path
+     */
+    public PropertyPathStatus check(String propertyPath)
+    {
+        return walk(propertyPath, this, 0, null);
+    }
+    /**
+     * Check a batch of paths against the model of this index.
+     * <p>The paths are checked in order and the resolved chain of nested models of each path is kept, so a path that
+     * shares whole segments with the previous one starts the check after the shared prefix. Sorted input gets the most
+     * of this, as paths with the same prefix are consecutive.</p>
+     * @param propertyPaths The property paths, required. Null elements are reported as {@link PropertyPathStatus#MALFORMED}
+     * @return The status of each path, aligned with {@code propertyPaths}
+     * @throws IllegalArgumentException If propertyPaths is null
+     */
+    public PropertyPathStatus [] checkAll(String [] propertyPaths)
+    {
+        PropertyPathStatus [] status;
+        Chain chain;
+        String previous;
+        String path;
+        int common;
+        int shared;
+        
+        Assert.notNull(propertyPaths, "The property paths are required");
+        status = new PropertyPathStatus[propertyPaths.length];
+        chain = new Chain(this);
+        previous = null;
+        for(int n = 0; n < propertyPaths.length; n++)
+        {
+            if((path = propertyPaths[n]) == null)
+            {
+                status[n] = PropertyPathStatus.MALFORMED;
+                continue;
+            }
+            shared = 0;
+            if(previous != null)
+            {
+                common = commonPrefixLength(previous, path);
+                // The segments of the chain whose dot is in the common prefix are the same
+                for(shared = chain.depth; shared > 0 && chain.dots[shared] >= common; shared--)
+                {
+                    // Search
+                }
+            }
+            chain.depth = shared;
+            status[n] = walk(path, chain.nodes[shared], (shared == 0 ? 0 : chain.dots[shared] + 1), chain);
+            previous = path;
+        }
+        return status;
+    }
+    /**
+     * Check a path from the indicated position and model.
+     * @param propertyPath The property path
+     * @param from The model index of the segment at {@code position}
+     * @param position The start of a segment on {@code propertyPath}
+     * @param chain The chain to record the resolved segments, or null if not needed
+     * @return The status of the path
+     */
+    private static PropertyPathStatus walk(String propertyPath, ModelPathIndex from, int position, Chain chain)
+    {
+        ModelPathIndex node;
+        int len;
+        int start;
+        int hash;
+        int slot;
+        int i;
+        int cp;
+        
+        len = propertyPath.length();
+        node = from;
+        start = position;
+        hash = 0;
+        slot = -1;
+        i = position;
+        while(i < len)
+        {
+            cp = propertyPath.codePointAt(i);
+            if(cp == '.')
+            {
+                if(i == start)
+                {
+                    return PropertyPathStatus.MALFORMED;
+                }
+                slot = node.find(propertyPath, start, i, hash);
+                if(slot < 0 || node.types[slot] == null)
+                {
+                    return checkSyntax(propertyPath, i + 1);
+                }
+                node = node.child(slot);
+                if(chain != null)
+                {
+                    chain.push(node, i);
+                }
+                start = i + 1;
+                hash = 0;
+                i++;
+            }
+            else
+            {
+                if(i == start ? !Character.isJavaIdentifierStart(cp) : !Character.isJavaIdentifierPart(cp))
+                {
+                    return PropertyPathStatus.MALFORMED;
+                }
+                hash = 31 * hash + propertyPath.charAt(i);
+                if(Character.isSupplementaryCodePoint(cp))
+                {
+                    hash = 31 * hash + propertyPath.charAt(i + 1);
+                    i += 2;
+                }
+                else
+                {
+                    i++;
+                }
+            }
+        }
+        if(start == len)
+        {
+            // Empty string or ended with dot
+            return PropertyPathStatus.MALFORMED;
+        }
+        slot = node.find(propertyPath, start, len, hash);
+        if(slot < 0)
+        {
+            return PropertyPathStatus.INVALID;
+        }
+        return (node.nested[slot] ? PropertyPathStatus.VALID_PREFIX : PropertyPathStatus.VALID);
+    }
+    /**
+     * Resolve the type of the property denoted by the indicated path.
+     * @param propertyPath The property path, required
+     * @return The type of the property or null if the path is not valid for the model
+     */
+    public Class<?> typeOf(String propertyPath)
+    {
+        ModelPathIndex node;
+        int start;
+        int end;
+        int slot;
+        
+        node = this;
+        start = 0;
+        while(true)
+        {
+            if((end = propertyPath.indexOf('.', start)) < 0)
+            {
+                end = propertyPath.length();
+            }
+            slot = (end > start ? node.find(propertyPath, start, end, hash(propertyPath, start, end)) : -1);
+            if(slot < 0 || node.types[slot] == null)
+            {
+                return null;
+            }
+            if(end == propertyPath.length())
+            {
+                return node.types[slot];
+            }
+            node = node.child(slot);
+            start = end + 1;
+        }
+    }
+    /**
+     * Number of properties of the model.
+     * @return The number of properties
+     */
+    public int propertyCount()
+    {
+        return sortedNames.length;
+    }
+    /**
+     * Gets the ordinal of a property, its position in natural order of the property names of the model.
+     * The ordinals are stable for the same model definition, see {@link #fingerprint()}.
+     * @param propertyName The property name
+     * @return The ordinal or a negative number if the model doesn't have such property
+     */
+    public int propertyOrdinal(String propertyName)
+    {
+        return Arrays.binarySearch(sortedNames, propertyName);
+    }
+    /**
+     * Gets the name of the property with the indicated ordinal.
+     * @param ordinal The ordinal
+     * @return The property name
+     * @throws IndexOutOfBoundsException If ordinal is out of range
+     */
+    public String propertyName(int ordinal)
+    {
+        return sortedNames[ordinal];
+    }
+    /**
+     * Gets the index of the type of a property.
+     * @param propertyName The property name
+     * @return The index or null if the model doesn't have such property
+     */
+    public ModelPathIndex nestedIndex(String propertyName)
+    {
+        int slot;
+        
+        slot = find(propertyName, 0, propertyName.length(), propertyName.hashCode());
+        return (slot < 0 || types[slot] == null ? null : child(slot));
+    }
+    /**
+     * Gets the property paths denoted by the indicated wildcard on the model of this index.
+     * <p>The expansion is calculated once for each wildcard and the paths are the canonical instances of the
+     * {@link ModelPathOrdinals ordinals} of the model, so they are shared with the {@link SetFrozenImpl frozen sets}.</p>
+     * @param wildcard The wildcard, required
+     * @return The property paths, sorted. The array is shared and <b>should not be modified</b>
+     * @throws IllegalArgumentException If wildcard is null or its {@link PathWildcard#getPrefix() prefix} doesn't denote a model of this index
+     */
+    public String [] expand(PathWildcard wildcard)
+    {
+        String [] paths;
+        String [] previous;
+        
+        Assert.notNull(wildcard, "The wildcard is required");
+        if((paths = expansions.get(wildcard)) != null)
+        {
+            return paths;
+        }
+        paths = computeExpansion(wildcard);
+        previous = expansions.putIfAbsent(wildcard, paths);
+        return (previous == null ? paths : previous);
+    }
+    /**
+     * Calculate the expansion of a wildcard.
+     * @param wildcard The wildcard
+     * @return The property paths, sorted and canonical
+     */
+    private String [] computeExpansion(PathWildcard wildcard)
+    {
+        ModelPathIndex node;
+        List<String> collected;
+        String [] paths;
+        ModelPathOrdinals ordinals;
+        String prefix;
+        int start;
+        int end;
+        
+        prefix = wildcard.getPrefix();
+        if(!wildcard.isValidFor(this))
+        {
+            throw new IllegalArgumentException("The wildcard '" + wildcard + "' doesn't denote a model of '" + model.getName() + "'");
+        }
+        node = this;
+        start = 0;
+        while(start < prefix.length())
+        {
+            if((end = prefix.indexOf('.', start)) < 0)
+            {
+                end = prefix.length();
+            }
+            node = node.nestedIndex(prefix.substring(start, end));
+            start = end + 1;
+        }
+        collected = new ArrayList<String>();
+        node.collect(prefix, wildcard.getDepth(), wildcard.isSimpleOnly(), collected);
+        paths = collected.toArray(new String[collected.size()]);
+        Arrays.sort(paths);
+        ordinals = ModelPathOrdinals.forModel(model);
+        for(int n = 0; n < paths.length; n++)
+        {
+            paths[n] = ordinals.pathOf(ordinals.assign(paths[n]));
+        }
+        return paths;
+    }
+    /**
+     * Collect the paths of the properties of this model, and of the nested models up to the indicated depth.
+     * The {@code class} property is skipped.
+     * @param base The path of this model, empty for root
+     * @param depth The number of segments to collect, at least one
+     * @param simpleOnly If only the properties of simple type are collected
+     * @param collected The list to add the paths
+     */
+    private void collect(String base, int depth, boolean simpleOnly, List<String> collected)
+    {
+        String path;
+        int slot;
+        
+        for(String name : sortedNames)
+        {
+            if(name.equals(PathWildcard.CLASS_PROPERTY))
+            {
+                continue;
+            }
+            slot = find(name, 0, name.length(), name.hashCode());
+            path = (base.isEmpty() ? name : base.concat(".").concat(name));
+            if(!simpleOnly || !nested[slot])
+            {
+                collected.add(path);
+            }
+            if(depth > 1 && nested[slot])
+            {
+                child(slot).collect(path, depth - 1, simpleOnly, collected);
+            }
+        }
+    }
+    /**
+     * Gets the fingerprint of the model graph.
+     * <p>A 64 bit hash of the names and types of the properties of the model and all the nested models reachable from it,
+     * in a deterministic order, so the fingerprint is the same between virtual machines if and only if (barring collisions)
+     * the property ordinals of all the paths of the model are the same.</p>
+     * @return The fingerprint, never 0
+     */
+    public long fingerprint()
+    {
+        List<ModelPathIndex> queue;
+        Map<Class<?>, Integer> visited;
+        ModelPathIndex node;
+        Integer id;
+        long h;
+        int slot;
+        
+        if(fingerprint != 0L)
+        {
+            return fingerprint;
+        }
+        // Breadth first walk of the graph, the nested models already visited are identified by its visit order
+        queue = new ArrayList<ModelPathIndex>();
+        visited = new IdentityHashMap<Class<?>, Integer>();
+        queue.add(this);
+        visited.put(model, 0);
+        h = FNV_OFFSET;
+        for(int q = 0; q < queue.size(); q++)
+        {
+            node = queue.get(q);
+            h = fnv(h, node.model.getName());
+            h = fnv(h, node.sortedNames.length);
+            for(String name : node.sortedNames)
+            {
+                slot = node.find(name, 0, name.length(), name.hashCode());
+                h = fnv(h, name);
+                h = fnv(h, (node.types[slot] == null ? "" : node.types[slot].getName()));
+                if(node.nested[slot])
+                {
+                    if((id = visited.get(node.types[slot])) == null)
+                    {
+                        id = queue.size();
+                        visited.put(node.types[slot], id);
+                        queue.add(node.child(slot));
+                    }
+                    h = fnv(h, id);
+                }
+            }
+        }
+        // Benign race: all threads calculate the same value
+        fingerprint = (h == 0L ? 1L : h);
+        return fingerprint;
+    }
+    /**
+     * Mix the characters of a string on a FNV-1a hash.
+     * @param h The hash
+     * @param s The string
+     * @return The new hash
+     */
+    private static long fnv(long h, String s)
+    {
+        for(int n = 0; n < s.length(); n++)
+        {
+            h = (h ^ s.charAt(n)) * FNV_PRIME;
+        }
+        return fnv(h, s.length());
+    }
+    /**
+     * Mix an int on a FNV-1a hash.
+     * @param h The hash
+     * @param v The value
+     * @return The new hash
+     */
+    private static long fnv(long h, int v)
+    {
+        for(int n = 0; n < 4; n++)
+        {
+            h = (h ^ ((v >>> (n * 8)) & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+    /**
+     * Length of the common prefix of two strings.
+     * @param a A string
+     * @param b Other string
+     * @return The number of leading characters that are equal
+     */
+    private static int commonPrefixLength(String a, String b)
+    {
+        int n;
+        int max;
+        
+        max = Math.min(a.length(), b.length());
+        for(n = 0; n < max && a.charAt(n) == b.charAt(n); n++)
+        {
+            // Search
+        }
+        return n;
+    }
+    /**
+     * Check the syntax of the rest of a path, from the {@code from} position, once the path is known as invalid.
+     * @param propertyPath The property path
+     * @param from The start position of a segment
+     * @return {@link PropertyPathStatus#INVALID} if the rest is well formed or {@link PropertyPathStatus#MALFORMED} if not
+     */
+    private static PropertyPathStatus checkSyntax(String propertyPath, int from)
+    {
+        int start;
+        int i;
+        int cp;
+        
+        start = from;
+        i = from;
+        while(i < propertyPath.length())
+        {
+            cp = propertyPath.codePointAt(i);
+            if(cp == '.')
+            {
+                if(i == start)
+                {
+                    return PropertyPathStatus.MALFORMED;
+                }
+                start = i + 1;
+            }
+            else if(i == start ? !Character.isJavaIdentifierStart(cp) : !Character.isJavaIdentifierPart(cp))
+            {
+                return PropertyPathStatus.MALFORMED;
+            }
+            i += Character.charCount(cp);
+        }
+        return (start == propertyPath.length() ? PropertyPathStatus.MALFORMED : PropertyPathStatus.INVALID);
+    }
+    /**
+     * Find the slot of the property named as the region {@code start} to {@code end} of {@code path}.
+     * @param path The path
+     * @param start The start of the property name, inclusive
+     * @param end The end of the property name, exclusive
+     * @param hash The {@link String#hashCode() hash} of the property name
+     * @return The slot or -1 if this model doesn't have such property
+     */
+    private int find(String path, int start, int end, int hash)
+    {
+        int slot;
+        String name;
+        
+        slot = spread(hash) & mask;
+        while((name = names[slot]) != null)
+        {
+            if(name.hashCode() == hash && name.length() == end - start && name.regionMatches(0, path, start, end - start))
+            {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    /**
+     * Gets the index of the type of the property at {@code slot}, resolving it if needed.
+     * @param slot The slot
+     * @return The index
+     */
+    private ModelPathIndex child(int slot)
+    {
+        ModelPathIndex c;
+        
+        // Benign race: all threads resolve the same cached instance
+        if((c = children[slot]) == null)
+        {
+            c = forModel(types[slot]);
+            children[slot] = c;
+        }
+        return c;
+    }
+    /**
+     * Calculate the {@link String#hashCode() hash} of a region of a string.
+     * @param s The string
+     * @param start The start of the region, inclusive
+     * @param end The end of the region, exclusive
+     * @return The hash
+     */
+    private static int hash(String s, int start, int end)
+    {
+        int h;
+        
+        h = 0;
+        for(int n = start; n < end; n++)
+        {
+            h = 31 * h + s.charAt(n);
+        }
+        return h;
+    }
+    /**
+     * Spread the hash bits to reduce collisions on small tables.
+     * @param hash The hash
+     * @return The spread hash
+     */
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+    /**
+     * The resolved chain of nested models of the last checked path, for {@link ModelPathIndex#checkAll(String[])}.
+     */
+    private static final class Chain
+    {
+        /** The index after each resolved segment, {@code nodes[0]} is the root. */
+        ModelPathIndex [] nodes;
+        /** The position of the dot that ends each resolved segment, aligned with {@link #nodes}. */
+        int [] dots;
+        /** The number of resolved segments. */
+        int depth;
+        
+        /**
+         * Constructor.
+         * @param root The root index
+         */
+        Chain(ModelPathIndex root)
+        {
+            nodes = new ModelPathIndex[8];
+            dots = new int[8];
+            nodes[0] = root;
+            depth = 0;
+        }
+        /**
+         * Record a resolved segment.
+         * @param node The index of the segment type
+         * @param dot The position of the dot that ends the segment
+         */
+        void push(ModelPathIndex node, int dot)
+        {
+            if(++depth == nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                dots = Arrays.copyOf(dots, depth * 2);
+            }
+            nodes[depth] = node;
+            dots[depth] = dot;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * Ordinal numbering of the property paths of a root model.
+ * <p>Each valid path of a model receives an ordinal the first time is {@link #assign(String) assigned} and keeps it while
+ * the model class is alive, so sets of the same model can be represented as bit vectors indexed by ordinal (see
+ * {@link SetBitSetImpl}). Ordinals are dense and assigned on demand because the paths of a model graph with cycles
+ * are unlimited; only the {@link SetBitSetImpl bit vector sets} and the {@link ModelPathIndex#expand(PathWildcard) expansion
+ * of wildcards} assign ordinals, the other sets only reuse the canonical path instances of the already assigned ones.</p>
+ * <p>Instances are cached per model in a {@link ClassValue}, see {@link #forModel(Class)}, and are thread safe: lookups
+ * never block and assignments are serialized.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class ModelPathOrdinals
+{
+    /** Initial capacity of the path table. */
+    private static final int INITIAL_CAPACITY = 32;
+    /** The ordinals, one for each model. */
+    private static final ClassValue<ModelPathOrdinals> ordinals = new ClassValue<ModelPathOrdinals>()
+    {
+        @Override
+        protected ModelPathOrdinals computeValue(Class<?> type)
+        {
+            return new ModelPathOrdinals(type);
+        }
+    };
+    private final Class<?> model;
+    private final ModelPathIndex index;
+    /** The ordinal of each assigned path. */
+    private final ConcurrentHashMap<String, Integer> byPath;
+    /** The path of each ordinal; only positions below {@link #size} are meaningful. */
+    private volatile String [] paths;
+    /** The {@link SetFingerprint#term(String) fingerprint term} of each ordinal; only positions below {@link #size} are meaningful. */
+    private volatile long [] terms;
+    /** Number of assigned ordinals. */
+    private volatile int size;
+    /** The last ranking calculated. */
+    private volatile Ranking ranking;
+    /** The masks of descendants of prefixes, calculated on demand. */
+    private final ConcurrentHashMap<String, PrefixMask> prefixMasks;
+    
+    /**
+     * Constructor for a model.
+     * @param model The model
+     */
+    private ModelPathOrdinals(Class<?> model)
+    {
+        this.model = model;
+        index = ModelPathIndex.forModel(model);
+        byPath = new ConcurrentHashMap<String, Integer>();
+        prefixMasks = new ConcurrentHashMap<String, PrefixMask>();
+        paths = new String[INITIAL_CAPACITY];
+        terms = new long[INITIAL_CAPACITY];
+        size = 0;
+    }
+    /**
+     * Gets the ordinals for the indicated root model.
+     * @param model The model, required
+     * @return The ordinals
+     * @throws IllegalArgumentException If model is null
+     */
+    public static ModelPathOrdinals forModel(Class<?> model)
+    {
+        Assert.notNull(model, "The model is required");
+        return ordinals.get(model);
+    }
+    /**
+     * The root model.
+     * @return The model
+     */
+    public Class<?> getModel()
+    {
+        return model;
+    }
+    /**
+     * Gets the ordinal of the indicated path, if was assigned.
+     * @param propertyPath The property path
+     * @return The ordinal or -1 if the path haven't an ordinal
+     */
+    public int ordinalOf(String propertyPath)
+    {
+        Integer o;
+        
+        o = byPath.get(propertyPath);
+        return (o == null ? -1 : o.intValue());
+    }
+    /**
+     * Gets the ordinal of the indicated path, assigning a new one if the path haven't any.
+     * @param propertyPath The property path, required
+     * @return The ordinal
+     * @throws IllegalArgumentException If the path is null or is not a valid path of the model
+     */
+    public int assign(String propertyPath)
+    {
+        Integer o;
+        String [] p;
+        long [] t;
+        int n;
+        
+        Assert.notNull(propertyPath, "The property path is required");
+        if((o = byPath.get(propertyPath)) != null)
+        {
+            return o.intValue();
+        }
+        if(!index.check(propertyPath).isValid())
+        {
+            throw new IllegalArgumentException("The property path '".concat(propertyPath)
+                    .concat("' doesn't exists at model '")
+                    .concat(model.getName())
+                    .concat("'"));
+        }
+        synchronized(this)
+        {
+            if((o = byPath.get(propertyPath)) != null)
+            {
+                return o.intValue();
+            }
+            n = size;
+            p = paths;
+            t = terms;
+            if(n == p.length)
+            {
+                p = Arrays.copyOf(p, n * 2);
+                t = Arrays.copyOf(t, n * 2);
+            }
+            p[n] = propertyPath;
+            t[n] = SetFingerprint.term(propertyPath);
+            paths = p;
+            terms = t;
+            size = n + 1;
+            byPath.put(propertyPath, n);
+            return n;
+        }
+    }
+    /**
+     * Gets the path of the indicated ordinal.
+     * @param ordinal The ordinal
+     * @return The path
+     * @throws IndexOutOfBoundsException If the ordinal was not assigned
+     */
+    public String pathOf(int ordinal)
+    {
+        if(ordinal < 0 || ordinal >= size)
+        {
+            throw new IndexOutOfBoundsException("The ordinal " + ordinal + " is not assigned at model '" + model.getName() + "'");
+        }
+        return paths[ordinal];
+    }
+    /**
+     * Gets the {@link SetFingerprint#term(String) fingerprint term} of the path of the indicated ordinal, calculated on assignation.
+     * @param ordinal The ordinal
+     * @return The term
+     * @throws IndexOutOfBoundsException If the ordinal was not assigned
+     */
+    public long termOf(int ordinal)
+    {
+        if(ordinal < 0 || ordinal >= size)
+        {
+            throw new IndexOutOfBoundsException("The ordinal " + ordinal + " is not assigned at model '" + model.getName() + "'");
+        }
+        return terms[ordinal];
+    }
+    /**
+     * Number of assigned ordinals.
+     * @return The number of ordinals
+     */
+    public int size()
+    {
+        return size;
+    }
+    /**
+     * Gets the ranking, in natural order of paths, of all the assigned ordinals.
+     * @return The ranking
+     */
+    Ranking ranking()
+    {
+        Ranking r;
+        
+        r = ranking;
+        if(r == null || r.size != size)
+        {
+            synchronized(this)
+            {
+                r = ranking;
+                if(r == null || r.size != size)
+                {
+                    r = new Ranking(r, paths, size);
+                    ranking = r;
+                }
+            }
+        }
+        return r;
+    }
+    /**
+     * Gets the bit mask of the ordinals of the paths under the indicated path, that is, the paths that starts with
+     * {@code propertyPath} followed by a dot.
+     * The masks are calculated once for each prefix and updated with the ordinals assigned later.
+     * @param propertyPath The property path
+     * @return The words of the mask, can be shorter than the words needed for {@link #size()} ordinals; the caller should not modify them
+     */
+    long [] descendantsMask(String propertyPath)
+    {
+        PrefixMask pm;
+        int n;
+        
+        pm = prefixMasks.get(propertyPath);
+        n = size;
+        if(pm == null || pm.size != n)
+        {
+            if(pm == null && !index.check(propertyPath).isValid())
+            {
+                // Don't hold masks for unknown paths, none of the ordinals can be under them
+                return new long[0];
+            }
+            pm = new PrefixMask(propertyPath, pm, paths, n);
+            prefixMasks.put(propertyPath, pm);
+        }
+        return pm.words;
+    }
+    /**
+     * The mask of the descendants of a prefix, for a number of ordinals.
+     */
+    static final class PrefixMask
+    {
+        /** Number of ordinals checked. */
+        final int size;
+        /** The mask. */
+        final long [] words;
+        
+        /**
+         * Constructor.
+         * Calculate the mask from a previous one, checking only the new ordinals.
+         * @param prefix The prefix
+         * @param previous The previous mask, or null if none
+         * @param paths The paths of ordinals
+         * @param size The number of ordinals to check
+         */
+        PrefixMask(String prefix, PrefixMask previous, String [] paths, int size)
+        {
+            int from;
+            String p;
+            
+            this.size = size;
+            words = (previous == null ? new long[(size + 63) >> 6] : Arrays.copyOf(previous.words, (size + 63) >> 6));
+            from = (previous == null ? 0 : previous.size);
+            for(int o = from; o < size; o++)
+            {
+                p = paths[o];
+                if(p.length() > prefix.length() && p.charAt(prefix.length()) == '.' && p.startsWith(prefix))
+                {
+                    words[o >> 6] |= (1L << o);
+                }
+            }
+        }
+    }
+    /**
+     * The order, in natural order of paths, of a number of ordinals.
+     * Used to iterate sets in the same order as sorted sets of strings.
+     */
+    static final class Ranking
+    {
+        /** Number of ordinals ranked. */
+        final int size;
+        /** The rank of each ordinal. */
+        final int [] rankOf;
+        /** The ordinal at each rank. */
+        final int [] ordinalAt;
+        
+        /**
+         * Constructor.
+         * Calculate the ranking from a previous one, sorting only the new ordinals and merging them with the ranked ones.
+         * @param previous The previous ranking, or null if none
+         * @param paths The paths of ordinals
+         * @param size The number of ordinals to rank
+         */
+        Ranking(Ranking previous, String [] paths, int size)
+        {
+            Integer [] added;
+            int from;
+            int i;
+            int j;
+            
+            from = (previous == null ? 0 : previous.size);
+            added = new Integer[size - from];
+            for(int o = from; o < size; o++)
+            {
+                added[o - from] = o;
+            }
+            Arrays.sort(added, new ByPath(paths));
+            this.size = size;
+            rankOf = new int[size];
+            ordinalAt = new int[size];
+            i = 0;
+            j = 0;
+            for(int n = 0; n < size; n++)
+            {
+                if(j == added.length || (i < from && paths[previous.ordinalAt[i]].compareTo(paths[added[j]]) < 0))
+                {
+                    ordinalAt[n] = previous.ordinalAt[i++];
+                }
+                else
+                {
+                    ordinalAt[n] = added[j++];
+                }
+                rankOf[ordinalAt[n]] = n;
+            }
+        }
+    }
+    /**
+     * Compare ordinals by his path.
+     */
+    private static final class ByPath implements Comparator<Integer>
+    {
+        private final String [] paths;
+        
+        /**
+         * Constructor.
+         * @param paths The paths of ordinals
+         */
+        ByPath(String [] paths)
+        {
+            this.paths = paths;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(Integer o1, Integer o2)
+        {
+            return paths[o1].compareTo(paths[o2]);
+        }
+    }
+}
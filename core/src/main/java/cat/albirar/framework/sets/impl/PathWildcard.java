@@ -0,0 +1,251 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.PropertyPathStatus;
+
+/**
+ * A wildcard over the property paths of a model, that denotes many paths with a single expression.
+ * <p>Two forms are accepted:</p>
+ * <ul>
+ * <li>{@code path.*}: all the properties of simple type of the model denoted by {@code path}, that is, one level and without models.</li>
+ * <li>{@code path.**{n}}: all the properties, models included, denoted by {@code path} followed by one to {@code n} segments.</li>
+ * </ul>
+ * <p>The {@code path} and the dot can be omitted to refer to the root model, so {@code *} are all the simple properties of the model
+ * and {@code **{2}} are all the paths of one or two segments. The depth is required, as the graph of the model can have cycles.
+ * The {@code class} property, from {@link Object#getClass()}, is never denoted.</p>
+ * <p>A wildcard can {@link #matches(ModelPathIndex, String) match} a path without expand it, and the expansion is cached on the
+ * {@link ModelPathIndex#expand(PathWildcard) index} of the model. The instances are immutable.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class PathWildcard
+{
+    /** The last segment of the {@code *} form. */
+    private static final String SIMPLE_FORM = "*";
+    /** The start of the last segment of the {@code **{n}} form. */
+    private static final String DEPTH_FORM_START = "**{";
+    /** The property of {@link Object#getClass()}, not denoted by wildcards. */
+    static final String CLASS_PROPERTY = "class";
+    /** The path of the model, empty for the root model. */
+    private final String prefix;
+    /** The maximum number of segments after the prefix. */
+    private final int depth;
+    /** If only the properties of simple type are denoted. */
+    private final boolean simpleOnly;
+    /** The canonical text. */
+    private final String text;
+    
+    /**
+     * Constructor.
+     * @param prefix The path of the model, empty for the root model
+     * @param depth The maximum number of segments after the prefix
+     * @param simpleOnly If only the properties of simple type are denoted
+     */
+    private PathWildcard(String prefix, int depth, boolean simpleOnly)
+    {
+        String last;
+        
+        this.prefix = prefix;
+        this.depth = depth;
+        this.simpleOnly = simpleOnly;
+        last = (simpleOnly ? SIMPLE_FORM : DEPTH_FORM_START + depth + "}");
+        this.text = (prefix.isEmpty() ? last : prefix.concat(".").concat(last));
+    }
+    /**
+     * Check if the text is written as a wildcard, that is, contains any {@code *}.
+     * @param propertyPath The text, can be null
+     * @return true if {@code propertyPath} should be {@link #parse(String) parsed} as a wildcard and false if it's a plain property path
+     */
+    public static boolean isWildcard(String propertyPath)
+    {
+        return (propertyPath != null && propertyPath.indexOf('*') >= 0);
+    }
+    /**
+     * Parse a wildcard.
+     * The prefix is not checked against any model, see {@link #isValidFor(ModelPathIndex)}.
+     * @param wildcard The text of the wildcard, required
+     * @return The wildcard
+     * @throws IllegalArgumentException If {@code wildcard} is null or is not in any of the accepted forms
+     */
+    public static PathWildcard parse(String wildcard)
+    {
+        String prefix;
+        String last;
+        int dot;
+        int depth;
+        
+        Assert.notNull(wildcard, "The wildcard is required");
+        dot = wildcard.lastIndexOf('.');
+        prefix = (dot < 0 ? "" : wildcard.substring(0, dot));
+        last = wildcard.substring(dot + 1);
+        if(dot == 0 || isWildcard(prefix))
+        {
+            throw malformed(wildcard);
+        }
+        if(last.equals(SIMPLE_FORM))
+        {
+            return new PathWildcard(prefix, 1, true);
+        }
+        if(!last.startsWith(DEPTH_FORM_START) || !last.endsWith("}") || last.length() == DEPTH_FORM_START.length() + 1)
+        {
+            throw malformed(wildcard);
+        }
+        depth = 0;
+        for(int n = DEPTH_FORM_START.length(); n < last.length() - 1; n++)
+        {
+            if(!Character.isDigit(last.charAt(n)) || depth > (Integer.MAX_VALUE / 10))
+            {
+                throw malformed(wildcard);
+            }
+            depth = depth * 10 + Character.digit(last.charAt(n), 10);
+        }
+        if(depth < 1)
+        {
+            throw malformed(wildcard);
+        }
+        return new PathWildcard(prefix, depth, false);
+    }
+    /**
+     * The path of the model whose properties are denoted.
+     * @return The path, empty for the root model
+     */
+    public String getPrefix()
+    {
+        return prefix;
+    }
+    /**
+     * The maximum number of segments after the {@link #getPrefix() prefix} of the denoted paths.
+     * @return The depth, 1 for the {@code *} form
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+    /**
+     * If only the properties of simple type are denoted, that is, the {@code *} form.
+     * @return true for {@code *} and false for {@code **{n}}
+     */
+    public boolean isSimpleOnly()
+    {
+        return simpleOnly;
+    }
+    /**
+     * Check if the {@link #getPrefix() prefix} denotes a model on the indicated model index.
+     * @param index The index, required
+     * @return true if the wildcard can be applied to the model of {@code index}
+     */
+    public boolean isValidFor(ModelPathIndex index)
+    {
+        return (prefix.isEmpty() || index.check(prefix) == PropertyPathStatus.VALID_PREFIX);
+    }
+    /**
+     * The same wildcard, applied from the indicated path.
+     * @param basePath The path to put before the {@link #getPrefix() prefix}, can be empty
+     * @return The wildcard
+     */
+    public PathWildcard under(String basePath)
+    {
+        if(basePath.isEmpty())
+        {
+            return this;
+        }
+        return new PathWildcard((prefix.isEmpty() ? basePath : basePath.concat(".").concat(prefix)), depth, simpleOnly);
+    }
+    /**
+     * Check if the indicated path is denoted by this wildcard on the indicated model, without expand the wildcard.
+     * The segments after the prefix are counted and then the path is checked on the index, so no object is created.
+     * @param index The index of the model, required
+     * @param propertyPath The property path, required
+     * @return true if the wildcard denotes the path and false if not
+     */
+    public boolean matches(ModelPathIndex index, String propertyPath)
+    {
+        PropertyPathStatus status;
+        int start;
+        int segments;
+        int last;
+        
+        start = prefix.length();
+        if(start > 0)
+        {
+            if(propertyPath.length() <= start + 1 || propertyPath.charAt(start) != '.' || !propertyPath.startsWith(prefix))
+            {
+                return false;
+            }
+            start++;
+        }
+        segments = 1;
+        last = start;
+        for(int n = start; n < propertyPath.length(); n++)
+        {
+            if(propertyPath.charAt(n) == '.')
+            {
+                if(++segments > depth)
+                {
+                    return false;
+                }
+                last = n + 1;
+            }
+        }
+        if(propertyPath.length() - last == CLASS_PROPERTY.length() && propertyPath.startsWith(CLASS_PROPERTY, last))
+        {
+            return false;
+        }
+        status = index.check(propertyPath);
+        return (simpleOnly ? status == PropertyPathStatus.VALID : status.isValid());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        return (o == this || (o instanceof PathWildcard && ((PathWildcard)o).text.equals(text)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return text.hashCode();
+    }
+    /**
+     * The canonical text of the wildcard.
+     * @return The text, that can be {@link #parse(String) parsed} again
+     */
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+    /**
+     * The exception for malformed wildcards.
+     * @param wildcard The wildcard
+     * @return The exception
+     */
+    private static IllegalArgumentException malformed(String wildcard)
+    {
+        return new IllegalArgumentException(String.format("The wildcard '%s' is incorrect! Should to be 'path.*' or 'path.**{n}'", wildcard));
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.impl;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.IPropertyAccessor;
+import cat.albirar.framework.sets.PropertyPath;
+
+/**
+ * Default {@link IPropertyAccessor} implementation, based on {@link MethodHandle method handles}.
+ * <p>The getters of the path are chained in a single method handle, guarded with null checks between each getter, so
+ * reading the property is only a call to the handle. For writing, the getters chain resolve the owner of the last property
+ * and then the setter is called.</p>
+ * <p>Accessors are cached per model (in a {@link ClassValue}) and property path, see {@link #forPath(Class, String)}.</p>
+ * <p>The paths are only known at runtime, so the chains are held in instance fields and not in {@code static final} fields,
+ * the only ones the JIT takes as constants: each read is a non inlined invocation of the chain. Reading a path of three
+ * levels over a thousand of models measured about four times the time of the hand-written getters; the accessor avoids the
+ * reflection and the parse of the path on each read, but for the hottest loops over a known model the hand-written getters
+ * are still the fastest.</p>
+ * @param <T> The model type
+ * @param <V> The property type
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class PropertyAccessorDefaultImpl<T, V> implements IPropertyAccessor<T, V>
+{
+    /** The accessors, per model and path. */
+    private static final ClassValue<ConcurrentMap<String, PropertyAccessorDefaultImpl<?, ?>>> accessors = new ClassValue<ConcurrentMap<String, PropertyAccessorDefaultImpl<?, ?>>>()
+    {
+        @Override
+        protected ConcurrentMap<String, PropertyAccessorDefaultImpl<?, ?>> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<String, PropertyAccessorDefaultImpl<?, ?>>();
+        }
+    };
+    /** The type of getters chain: (Object)Object. */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    /** The type of setters: (Object, Object)void. */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    /** The null check: (Object)boolean. */
+    private static final MethodHandle IS_NULL;
+    /** Returns always null: (Object)Object. */
+    private static final MethodHandle NULL_RESULT;
+    
+    static
+    {
+        try
+        {
+            IS_NULL = MethodHandles.lookup().findStatic(PropertyAccessorDefaultImpl.class, "isNull"
+                    , MethodType.methodType(boolean.class, Object.class));
+        }
+        catch(NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+        NULL_RESULT = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object.class);
+    }
+    
+    private final Class<T> modelRoot;
+    private final PropertyPath propertyPath;
+    private final Class<?> propertyType;
+    /** The null safe chain of getters until the property, null if the property cannot be read. */
+    private final MethodHandle getter;
+    /** The null safe chain of getters until the owner of the property. */
+    private final MethodHandle ownerGetter;
+    /** The setter of the property, null if the property cannot be written. */
+    private final MethodHandle setter;
+    
+    /**
+     * Compile the accessor.
+     * @param modelRoot The model
+     * @param propertyPath The property path, already checked against the model
+     * @throws IllegalArgumentException If any intermediate property cannot be read
+     */
+    private PropertyAccessorDefaultImpl(Class<T> modelRoot, PropertyPath propertyPath)
+    {
+        MethodHandle [] steps;
+        PropertyDescriptor pd;
+        Class<?> type;
+        int last;
+        
+        this.modelRoot = modelRoot;
+        this.propertyPath = propertyPath;
+        last = propertyPath.depth() - 1;
+        steps = new MethodHandle[last + 1];
+        type = modelRoot;
+        pd = null;
+        for(int i = 0; i <= last; i++)
+        {
+            pd = ModelDescriptorCache.getDescriptor(type).getProperty(propertyPath.segment(i));
+            if(pd.getReadMethod() != null)
+            {
+                steps[i] = PropertyPathTree.unreflect(pd.getReadMethod()).asType(GETTER_TYPE);
+            }
+            else if(i < last)
+            {
+                throw new IllegalArgumentException("The property '".concat(propertyPath.segment(i))
+                        .concat("' of path '").concat(propertyPath.toString())
+                        .concat("' cannot be read at model '").concat(modelRoot.getName()).concat("'"));
+            }
+            type = pd.getPropertyType();
+        }
+        this.propertyType = type;
+        this.ownerGetter = chain(steps, last);
+        this.getter = (steps[last] == null ? null : chain(steps, last + 1));
+        this.setter = (pd.getWriteMethod() == null ? null : PropertyPathTree.unreflect(pd.getWriteMethod()).asType(SETTER_TYPE));
+    }
+    /**
+     * Gets the accessor for the path, compiling it the first time.
+     * @param modelRoot The model, required
+     * @param propertyPath The property path, required
+     * @return The accessor
+     * @throws IllegalArgumentException If the property path is not valid for the model or any intermediate property cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, V> PropertyAccessorDefaultImpl<T, V> forPath(Class<T> modelRoot, String propertyPath)
+    {
+        ConcurrentMap<String, PropertyAccessorDefaultImpl<?, ?>> cache;
+        PropertyAccessorDefaultImpl<?, ?> accessor;
+        PropertyAccessorDefaultImpl<?, ?> previous;
+        
+        Assert.notNull(modelRoot, "The model is required");
+        Assert.hasText(propertyPath, "The property path is required and cannot be empty or only whitespace");
+        cache = accessors.get(modelRoot);
+        if((accessor = cache.get(propertyPath)) == null)
+        {
+            if(!ModelPathIndex.forModel(modelRoot).check(propertyPath).isValid())
+            {
+                throw new IllegalArgumentException("The property path '".concat(propertyPath)
+                        .concat("' doesn't exists at model '")
+                        .concat(modelRoot.getName())
+                        .concat("'"));
+            }
+            accessor = new PropertyAccessorDefaultImpl<T, V>(modelRoot, PropertyPath.of(propertyPath));
+            if((previous = cache.putIfAbsent(propertyPath, accessor)) != null)
+            {
+                accessor = previous;
+            }
+        }
+        return (PropertyAccessorDefaultImpl<T, V>) accessor;
+    }
+    /**
+     * Chain the first {@code length} getters of {@code steps}, returning null if the bean or any intermediate value is null.
+     * @param steps The getters, as (Object)Object
+     * @param length The number of getters to chain
+     * @return The chain, as (Object)Object
+     */
+    private static MethodHandle chain(MethodHandle [] steps, int length)
+    {
+        MethodHandle chain;
+        
+        chain = MethodHandles.identity(Object.class);
+        for(int i = length - 1; i >= 0; i--)
+        {
+            chain = MethodHandles.filterReturnValue(steps[i], chain);
+            chain = MethodHandles.guardWithTest(IS_NULL, NULL_RESULT, chain);
+        }
+        return chain;
+    }
+    /**
+     * The null check for the getters chain.
+     * @param value The value
+     * @return true if {@code value} is null
+     */
+    @SuppressWarnings("unused")
+    private static boolean isNull(Object value)
+    {
+        return value == null;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<T> getModelRoot()
+    {
+        return modelRoot;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PropertyPath getPropertyPath()
+    {
+        return propertyPath;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<?> getPropertyType()
+    {
+        return propertyType;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReadable()
+    {
+        return getter != null;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWritable()
+    {
+        return setter != null;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(T bean)
+    {
+        if(getter == null)
+        {
+            throw new UnsupportedOperationException("The property path '".concat(propertyPath.toString()).concat("' cannot be read"));
+        }
+        try
+        {
+            return (V) (Object) getter.invokeExact((Object) bean);
+        }
+        catch(RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new IllegalStateException("Error reading the property path '".concat(propertyPath.toString()).concat("'"), e);
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(T bean, V value)
+    {
+        Object owner;
+        
+        if(setter == null)
+        {
+            throw new UnsupportedOperationException("The property path '".concat(propertyPath.toString()).concat("' cannot be written"));
+        }
+        Assert.notNull(bean, "The bean is required");
+        if(value == null && propertyType.isPrimitive())
+        {
+            throw new IllegalArgumentException("The property path '".concat(propertyPath.toString())
+                    .concat("' is primitive and cannot be null"));
+        }
+        try
+        {
+            if((owner = (Object) ownerGetter.invokeExact((Object) bean)) == null)
+            {
+                throw new IllegalStateException("Some intermediate property of path '".concat(propertyPath.toString()).concat("' is null"));
+            }
+            setter.invokeExact(owner, (Object) value);
+        }
+        catch(RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new IllegalStateException("Error writing the property path '".concat(propertyPath.toString()).concat("'"), e);
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return modelRoot.getName().concat("#").concat(propertyPath.toString());
+    }
+}
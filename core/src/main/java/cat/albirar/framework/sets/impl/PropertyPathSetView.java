@@ -0,0 +1,115 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.PropertyPath;
+
+/**
+ * A view of a {@link ISet} as {@link PropertyPath property paths}, for {@link ISet#propertyPaths()}.
+ * The view is backed by the set and uses the dotted strings that the property paths hold.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+final class PropertyPathSetView extends AbstractSet<PropertyPath>
+{
+    private final ISet<?> set;
+    
+    /**
+     * Constructor.
+     * @param set The backing set
+     */
+    PropertyPathSetView(ISet<?> set)
+    {
+        this.set = set;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(PropertyPath e)
+    {
+        return set.add(e.toString());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o)
+    {
+        return (o instanceof PropertyPath && set.contains(o.toString()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        return (o instanceof PropertyPath && set.remove(o.toString()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        set.clear();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return set.size();
+    }
+    /**
+     * In the same order as the backing set.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<PropertyPath> iterator()
+    {
+        final Iterator<String> it;
+        
+        it = set.iterator();
+        return new Iterator<PropertyPath>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return it.hasNext();
+            }
+            @Override
+            public PropertyPath next()
+            {
+                return PropertyPath.of(it.next());
+            }
+            @Override
+            public void remove()
+            {
+                it.remove();
+            }
+        };
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.PropertyPath;
+
+/**
+ * The property paths of a set as a tree of property names, to compile the engines that follow the properties of a model,
+ * like the projections and the JSON writers.
+ * <p>Each node is a property name with his children in natural order, so the engines compile each property once, even if
+ * is the prefix of many property paths of the set. The root node is the model itself, without name.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class PropertyPathTree
+{
+    /** The property name, null for the root. */
+    private final String name;
+    /** The dotted property path of the node, empty for the root. */
+    private final String path;
+    private final TreeMap<String, PropertyPathTree> children;
+    
+    /**
+     * Constructor.
+     * @param name The property name, null for the root
+     * @param path The dotted property path
+     */
+    private PropertyPathTree(String name, String path)
+    {
+        this.name = name;
+        this.path = path;
+        this.children = new TreeMap<String, PropertyPathTree>();
+    }
+    /**
+     * Build the tree of the property paths of a set.
+     * @param set The set, required
+     * @return The root of the tree
+     * @throws IllegalArgumentException If set is null
+     */
+    public static PropertyPathTree of(ISet<?> set)
+    {
+        PropertyPathTree root;
+        PropertyPathTree node;
+        PropertyPath path;
+        
+        Assert.notNull(set, "The set is required");
+        root = new PropertyPathTree(null, "");
+        for(String p : set)
+        {
+            path = PropertyPath.of(p);
+            node = root;
+            for(int i = 0; i < path.depth(); i++)
+            {
+                node = node.child(path.segment(i));
+            }
+        }
+        return root;
+    }
+    /**
+     * Gets the child node, adding it if doesn't exists.
+     * @param childName The property name
+     * @return The child
+     */
+    private PropertyPathTree child(String childName)
+    {
+        PropertyPathTree c;
+        
+        if((c = children.get(childName)) == null)
+        {
+            c = new PropertyPathTree(childName, (path.isEmpty() ? childName : path.concat(".").concat(childName)));
+            children.put(childName, c);
+        }
+        return c;
+    }
+    /**
+     * The property name.
+     * @return The name, null for the root
+     */
+    public String getName()
+    {
+        return name;
+    }
+    /**
+     * The dotted property path of the node.
+     * @return The path, empty for the root
+     */
+    public String getPath()
+    {
+        return path;
+    }
+    /**
+     * If the node is a leaf, that is, a property path of the set without descendants on the set.
+     * @return true if haven't children
+     */
+    public boolean isLeaf()
+    {
+        return children.isEmpty();
+    }
+    /**
+     * The children, in natural order of property names.
+     * @return The children, unmodifiable
+     */
+    public Collection<PropertyPathTree> getChildren()
+    {
+        return Collections.unmodifiableCollection(children.values());
+    }
+    /**
+     * Gets the readable property of this node at the indicated type, the owner of the property.
+     * @param type The owner type
+     * @return The property, with a read method
+     * @throws IllegalArgumentException If the property doesn't exists at {@code type} or cannot be read
+     */
+    public PropertyDescriptor readableProperty(Class<?> type)
+    {
+        PropertyDescriptor pd;
+        
+        pd = ModelDescriptorCache.getDescriptor(type).getProperty(name);
+        if(pd == null || pd.getReadMethod() == null)
+        {
+            throw new IllegalArgumentException("The property path '".concat(path).concat("' cannot be read at '")
+                    .concat(type.getName()).concat("'"));
+        }
+        return pd;
+    }
+    /**
+     * Gets the method handle of an accessor method, made accessible if needed.
+     * @param method The method
+     * @return The handle
+     * @throws IllegalArgumentException If the method cannot be accessed
+     */
+    public static MethodHandle unreflect(Method method)
+    {
+        try
+        {
+            if(!method.isAccessible())
+            {
+                method.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(method);
+        }
+        catch(IllegalAccessException | SecurityException e)
+        {
+            throw new IllegalArgumentException("The method '".concat(method.toString()).concat("' cannot be accessed"), e);
+        }
+    }
+}
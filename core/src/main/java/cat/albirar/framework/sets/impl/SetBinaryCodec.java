@@ -0,0 +1,545 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.IncompatibleModelException;
+import cat.albirar.framework.sets.PropertyPath;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+
+/**
+ * Binary encoding of {@link ISet} and {@link INamedSet}.
+ * <p>The format is:
+ * <ul>
+ * <li>Version, one byte.</li>
+ * <li>Flags, one byte: portable form, named set and the kind of implementation ({@link SetDefaultImpl},
+ * {@link SetBitSetImpl}, {@link SetTrieImpl} or {@link SetFrozenImpl}), so the decoded set is of the same kind.</li>
+ * <li>The model root class name and, for named sets, the name.</li>
+ * <li>On ordinals form, the {@link ModelPathIndex#fingerprint() fingerprint} of the model. On portable form, the table
+ * of the distinct property names of the set.</li>
+ * <li>The number of paths and the paths, in natural order. Each path is encoded as the number of leading property names
+ * shared with the previous path, the number of new property names and the new property names, as
+ * {@link ModelPathIndex#propertyOrdinal(String) property ordinals} or as positions on the names table.</li>
+ * </ul>
+ * All the numbers are unsigned variable length integers, so the most of paths are encoded in two or three bytes.</p>
+ * <p>On decoding, the ordinals form is checked against the local fingerprint of the model and the portable form is
+ * checked against the model, as any other batch of paths. The paths must be in natural order and without duplicates, and
+ * the arrays grow as the elements are read, so corrupted data fails with a {@link StreamCorruptedException} or an
+ * {@link java.io.EOFException}, with arrays in proportion to the data read.</p>
+ * @see cat.albirar.framework.sets.SetCodec
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class SetBinaryCodec
+{
+    /** The current version of the format. */
+    public static final int VERSION = 1;
+    private static final int PORTABLE = 0x01;
+    private static final int NAMED = 0x02;
+    private static final int KIND_SHIFT = 4;
+    private static final int KIND_DEFAULT = 0;
+    private static final int KIND_BITSET = 1;
+    private static final int KIND_TRIE = 2;
+    private static final int KIND_FROZEN = 3;
+    /** The maximum length of the arrays allocated before read its elements, as the counts can be corrupted. */
+    private static final int INITIAL_CAPACITY = 64;
+    
+    /**
+     * Encode the set.
+     * @param set The set, required
+     * @param out The output, required
+     * @param portable If true, the property names are encoded as a names table; if false, as property ordinals
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null
+     */
+    public static void encode(ISet<?> set, DataOutput out, boolean portable) throws IOException
+    {
+        String [] paths;
+        ModelPathIndex root;
+        
+        Assert.notNull(set, "The set is required");
+        Assert.notNull(out, "The output is required");
+        paths = set.toArray(new String[set.size()]);
+        Arrays.sort(paths);
+        out.writeByte(VERSION);
+        out.writeByte((portable ? PORTABLE : 0) | (set instanceof INamedSet ? NAMED : 0) | (kindOf(set) << KIND_SHIFT));
+        out.writeUTF(set.getModelRoot().getName());
+        if(set instanceof INamedSet)
+        {
+            out.writeUTF(((INamedSet<?>) set).getName());
+        }
+        if(portable)
+        {
+            writeNames(paths, out);
+        }
+        else
+        {
+            root = ModelPathIndex.forModel(set.getModelRoot());
+            out.writeLong(root.fingerprint());
+            writeOrdinals(root, paths, out);
+        }
+    }
+    /**
+     * Decode a set.
+     * @param in The input, required
+     * @return The set, of the same kind of the encoded set
+     * @throws IOException If an I/O error occurs or the data is not a valid encoded set
+     * @throws IncompatibleModelException If the set was encoded as ordinals and the model fingerprint doesn't match
+     * @throws ClassNotFoundException If the model class is not found
+     * @throws cat.albirar.framework.sets.InvalidPropertyPathsException If the set was encoded in portable form and any path is not valid for the local model
+     */
+    public static ISet<?> decode(DataInput in) throws IOException, ClassNotFoundException
+    {
+        Class<?> model;
+        String name;
+        String [] paths;
+        ModelPathIndex root;
+        long fingerprint;
+        int flags;
+        int kind;
+        
+        Assert.notNull(in, "The input is required");
+        if(in.readUnsignedByte() != VERSION)
+        {
+            throw new StreamCorruptedException("Unknown version of encoded set");
+        }
+        flags = in.readUnsignedByte();
+        if((kind = flags >>> KIND_SHIFT) > KIND_FROZEN)
+        {
+            throw new StreamCorruptedException("Unknown kind of encoded set: " + kind);
+        }
+        model = Class.forName(in.readUTF(), false, ClassUtils.getDefaultClassLoader());
+        name = ((flags & NAMED) != 0 ? in.readUTF() : null);
+        if((flags & PORTABLE) != 0)
+        {
+            paths = SetUtils.checkPathsForModel(model, Arrays.asList(readNames(in)));
+        }
+        else
+        {
+            root = ModelPathIndex.forModel(model);
+            if((fingerprint = in.readLong()) != root.fingerprint())
+            {
+                throw new IncompatibleModelException(model, fingerprint, root.fingerprint());
+            }
+            paths = readOrdinals(root, in);
+        }
+        return build(model, paths, kind, name);
+    }
+    /**
+     * Encode only the paths of the set as property ordinals, without version, model nor fingerprint.
+     * For containers of many sets that write the model and its {@link ModelPathIndex#fingerprint() fingerprint} once.
+     * @param set The set, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null
+     */
+    public static void encodePaths(ISet<?> set, DataOutput out) throws IOException
+    {
+        String [] paths;
+        
+        Assert.notNull(set, "The set is required");
+        Assert.notNull(out, "The output is required");
+        paths = set.toArray(new String[set.size()]);
+        Arrays.sort(paths);
+        writeOrdinals(ModelPathIndex.forModel(set.getModelRoot()), paths, out);
+    }
+    /**
+     * Decode the paths encoded with {@link #encodePaths(ISet, DataOutput)} as a frozen set.
+     * The paths are valid by construction, so they are not checked against the model again, only its order, but the caller should check that the
+     * {@link ModelPathIndex#fingerprint() fingerprint} of the model is the same of the encoded set.
+     * @param model The model, required
+     * @param in The input, required
+     * @return The frozen set
+     * @throws IOException If an I/O error occurs or the data is not valid
+     * @throws IllegalArgumentException If {@code model} or {@code in} are null
+     */
+    public static <T> ISet<T> decodePaths(Class<T> model, DataInput in) throws IOException
+    {
+        Assert.notNull(model, "The model is required");
+        Assert.notNull(in, "The input is required");
+        return new SetFrozenImpl<T>(model, readOrdinals(ModelPathIndex.forModel(model), in));
+    }
+    /**
+     * Gets the kind of the set implementation.
+     * @param set The set
+     * @return The kind
+     */
+    private static int kindOf(ISet<?> set)
+    {
+        if(set instanceof SetFrozenImpl)
+        {
+            return KIND_FROZEN;
+        }
+        if(set instanceof SetBitSetImpl)
+        {
+            return KIND_BITSET;
+        }
+        if(set instanceof SetTrieImpl)
+        {
+            return KIND_TRIE;
+        }
+        return KIND_DEFAULT;
+    }
+    /**
+     * Build the decoded set.
+     * @param model The model
+     * @param paths The valid paths, in natural order
+     * @param kind The kind of set
+     * @param name The name or null if not a named set
+     * @return The set
+     */
+    private static <T> ISet<T> build(Class<T> model, String [] paths, int kind, String name)
+    {
+        SetFrozenImpl<T> frozen;
+        ISet<T> set;
+        
+        frozen = new SetFrozenImpl<T>(model, paths);
+        switch(kind)
+        {
+            case KIND_FROZEN:
+                return (name == null ? frozen : NamedSetUtils.immutableCopyOf(frozen, name));
+            case KIND_BITSET:
+                set = SetUtils.instantiateBitSetFor(model);
+                break;
+            case KIND_TRIE:
+                set = SetUtils.instantiateTrieSetFor(model);
+                break;
+            default:
+                set = SetUtils.instantiateSetFor(model);
+        }
+        set.addAll(frozen);
+        return (name == null ? set : NamedSetUtils.instantiateNamedSetFor(set, name));
+    }
+    /**
+     * Write the paths as property ordinals.
+     * @param root The index of the model
+     * @param paths The paths, valid and in natural order
+     * @param out The output
+     * @throws IOException If an I/O error occurs
+     */
+    private static void writeOrdinals(ModelPathIndex root, String [] paths, DataOutput out) throws IOException
+    {
+        ModelPathIndex [] nodes;
+        PropertyPath previous;
+        PropertyPath path;
+        int common;
+        int ordinal;
+        
+        writeVarint(paths.length, out);
+        nodes = new ModelPathIndex[8];
+        nodes[0] = root;
+        previous = null;
+        for(String p : paths)
+        {
+            path = PropertyPath.of(p);
+            common = commonSegments(previous, path);
+            writeVarint(common, out);
+            writeVarint(path.depth() - common, out);
+            if(path.depth() > nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, path.depth() * 2);
+            }
+            for(int i = common; i < path.depth(); i++)
+            {
+                // The index of the first new property name is resolved again, as the previous path can end before it
+                if(i > 0 && (nodes[i] = nodes[i - 1].nestedIndex(path.segment(i - 1))) == null
+                        || (ordinal = nodes[i].propertyOrdinal(path.segment(i))) < 0)
+                {
+                    throw new IllegalStateException("The property path '".concat(p).concat("' is not valid"));
+                }
+                writeVarint(ordinal, out);
+            }
+            previous = path;
+        }
+    }
+    /**
+     * Read the paths encoded as property ordinals.
+     * @param root The index of the model
+     * @param in The input
+     * @return The paths, valid and in natural order
+     * @throws IOException If an I/O error occurs or the data is not valid
+     */
+    private static String [] readOrdinals(ModelPathIndex root, DataInput in) throws IOException
+    {
+        String [] paths;
+        ModelPathIndex [] nodes;
+        PropertyPath [] chain;
+        int count;
+        int depth;
+        int common;
+        int ordinal;
+        
+        count = readVarint(in);
+        paths = new String[Math.min(count, INITIAL_CAPACITY)];
+        nodes = new ModelPathIndex[8];
+        chain = new PropertyPath[8];
+        nodes[0] = root;
+        depth = 0;
+        for(int n = 0; n < count; n++)
+        {
+            common = readVarint(in);
+            depth = readDepth(common, depth, in);
+            for(int i = common; i < depth; i++)
+            {
+                if(i == nodes.length)
+                {
+                    nodes = Arrays.copyOf(nodes, i * 2);
+                    chain = Arrays.copyOf(chain, i * 2);
+                }
+                if(i > 0 && (nodes[i] = nodes[i - 1].nestedIndex(chain[i - 1].getName())) == null)
+                {
+                    throw new StreamCorruptedException("Invalid encoded set");
+                }
+                if((ordinal = readVarint(in)) >= nodes[i].propertyCount())
+                {
+                    throw new StreamCorruptedException("Invalid encoded set");
+                }
+                chain[i] = (i == 0 ? PropertyPath.of(nodes[i].propertyName(ordinal)) : chain[i - 1].child(nodes[i].propertyName(ordinal)));
+            }
+            paths = add(paths, n, count, chain[depth - 1].toString());
+        }
+        return paths;
+    }
+    /**
+     * Write the paths as a table of property names and positions on the table.
+     * @param paths The paths, in natural order
+     * @param out The output
+     * @throws IOException If an I/O error occurs
+     */
+    private static void writeNames(String [] paths, DataOutput out) throws IOException
+    {
+        Map<String, Integer> ids;
+        List<String> names;
+        PropertyPath [] pps;
+        PropertyPath previous;
+        int common;
+        
+        ids = new HashMap<String, Integer>();
+        names = new ArrayList<String>();
+        pps = new PropertyPath[paths.length];
+        for(int n = 0; n < paths.length; n++)
+        {
+            pps[n] = PropertyPath.of(paths[n]);
+            for(int i = 0; i < pps[n].depth(); i++)
+            {
+                if(!ids.containsKey(pps[n].segment(i)))
+                {
+                    ids.put(pps[n].segment(i), names.size());
+                    names.add(pps[n].segment(i));
+                }
+            }
+        }
+        writeVarint(names.size(), out);
+        for(String name : names)
+        {
+            out.writeUTF(name);
+        }
+        writeVarint(pps.length, out);
+        previous = null;
+        for(PropertyPath path : pps)
+        {
+            common = commonSegments(previous, path);
+            writeVarint(common, out);
+            writeVarint(path.depth() - common, out);
+            for(int i = common; i < path.depth(); i++)
+            {
+                writeVarint(ids.get(path.segment(i)), out);
+            }
+            previous = path;
+        }
+    }
+    /**
+     * Read the paths encoded as a table of property names and positions on the table.
+     * @param in The input
+     * @return The paths, not checked against the model
+     * @throws IOException If an I/O error occurs or the data is not valid
+     */
+    private static String [] readNames(DataInput in) throws IOException
+    {
+        String [] names;
+        String [] paths;
+        PropertyPath [] chain;
+        int count;
+        int depth;
+        int common;
+        int id;
+        
+        count = readVarint(in);
+        names = new String[Math.min(count, INITIAL_CAPACITY)];
+        for(int n = 0; n < count; n++)
+        {
+            if(n == names.length)
+            {
+                names = Arrays.copyOf(names, Math.min(count, n * 2));
+            }
+            names[n] = in.readUTF();
+        }
+        count = readVarint(in);
+        paths = new String[Math.min(count, INITIAL_CAPACITY)];
+        chain = new PropertyPath[8];
+        depth = 0;
+        try
+        {
+            for(int n = 0; n < count; n++)
+            {
+                common = readVarint(in);
+                depth = readDepth(common, depth, in);
+                for(int i = common; i < depth; i++)
+                {
+                    if(i == chain.length)
+                    {
+                        chain = Arrays.copyOf(chain, i * 2);
+                    }
+                    if((id = readVarint(in)) >= names.length)
+                    {
+                        throw new StreamCorruptedException("Invalid encoded set");
+                    }
+                    chain[i] = (i == 0 ? PropertyPath.of(names[id]) : chain[i - 1].child(names[id]));
+                }
+                paths = add(paths, n, count, chain[depth - 1].toString());
+            }
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Malformed property name
+            throw new StreamCorruptedException("Invalid encoded set: " + e.getMessage());
+        }
+        return paths;
+    }
+    /**
+     * Read the number of new property names of a path and check it against the previous path.
+     * @param common The number of leading property names shared with the previous path, already read
+     * @param previous The depth of the previous path, 0 for the first path
+     * @param in The input
+     * @return The depth of the path
+     * @throws IOException If an I/O error occurs or the data is not valid
+     */
+    private static int readDepth(int common, int previous, DataInput in) throws IOException
+    {
+        int added;
+        
+        if(common > previous || (added = readVarint(in)) == 0 || added > Integer.MAX_VALUE - common)
+        {
+            throw new StreamCorruptedException("Invalid encoded set");
+        }
+        return common + added;
+    }
+    /**
+     * Add a decoded path, checking that the paths are in natural order and without duplicates.
+     * The array grows as the paths are read, up to the encoded count, so a corrupted count cannot allocate more than the
+     * paths that are really read.
+     * @param paths The paths
+     * @param n The number of paths already added
+     * @param count The encoded count of paths
+     * @param path The path to add
+     * @return The paths, the same array or a greater copy
+     * @throws StreamCorruptedException If the path is not greater than the previous path
+     */
+    private static String [] add(String [] paths, int n, int count, String path) throws StreamCorruptedException
+    {
+        String [] ps;
+        
+        if(n > 0 && paths[n - 1].compareTo(path) >= 0)
+        {
+            throw new StreamCorruptedException("Invalid encoded set: the paths are not in natural order or are repeated");
+        }
+        ps = (n == paths.length ? Arrays.copyOf(paths, Math.min(count, n * 2)) : paths);
+        ps[n] = path;
+        return ps;
+    }
+    /**
+     * Number of leading property names shared by two paths.
+     * @param a A path, can be null
+     * @param b Other path
+     * @return The number of shared property names
+     */
+    private static int commonSegments(PropertyPath a, PropertyPath b)
+    {
+        int n;
+        int max;
+        
+        if(a == null)
+        {
+            return 0;
+        }
+        max = Math.min(a.depth(), b.depth());
+        for(n = 0; n < max && a.segment(n) == b.segment(n); n++)
+        {
+            // The paths with the same prefix share the property name instances
+        }
+        return n;
+    }
+    /**
+     * Write an unsigned variable length integer, seven bits per byte.
+     * @param value The value, not negative
+     * @param out The output
+     * @throws IOException If an I/O error occurs
+     */
+    static void writeVarint(int value, DataOutput out) throws IOException
+    {
+        while((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    /**
+     * Read an unsigned variable length integer.
+     * @param in The input
+     * @return The value
+     * @throws IOException If an I/O error occurs or the value is not valid
+     */
+    static int readVarint(DataInput in) throws IOException
+    {
+        int value;
+        int b;
+        
+        value = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                if(value < 0)
+                {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Invalid variable length integer");
+    }
+}
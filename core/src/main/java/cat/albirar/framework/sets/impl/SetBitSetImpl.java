@@ -0,0 +1,801 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.PropertyPath;
+import cat.albirar.framework.sets.SetUtils;
+
+/**
+ * A bit vector implementation for {@link ISet}.
+ * <p>Each property path have an ordinal in the {@link ModelPathOrdinals} of the {@link #getModelRoot() model root} and
+ * the set is a bit vector indexed by this ordinal. So {@link #contains(Object)} is a hash lookup and a bit test, and
+ * {@link #containsAll(Collection)}, {@link #addAll(Collection)}, {@link #retainAll(Collection)} and
+ * {@link #removeAll(Collection)} between sets of this type with the same model root are word-wise operations.</p>
+ * <p>The set behaves as a set of {@link String}, iterated in natural order as a sorted set.
+ * Like {@link SetDefaultImpl}, this set is not thread safe.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetBitSetImpl<T> extends AbstractSet<String> implements ISet<T>
+{
+    private static final long serialVersionUID = -3377393536587215806L;
+    /** Bits per word. */
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    /** Empty words, for empty sets. */
+    private static final long [] EMPTY_WORDS = {};
+    private Class<? extends T> modelRoot;
+    private transient ModelPathOrdinals ordinals;
+    private transient long [] words;
+    private transient int size;
+    private transient int modCount;
+    /** The {@link #getFingerprint() fingerprint}, updated on each change. */
+    private transient long fingerprint;
+    /**
+     * Constructor for class.
+     * @param modelRoot The model root for this set, <em>required</em>
+     * @throws IllegalArgumentException if modelRoot is null
+     */
+    public SetBitSetImpl(Class<? extends T> modelRoot)
+    {
+        super();
+        Assert.notNull(modelRoot, "The model root is required");
+        this.modelRoot = modelRoot;
+        init();
+    }
+    /**
+     * Copy constructor.
+     * @param origin The origin, required
+     * @throws IllegalArgumentException If origin is null
+     */
+    public SetBitSetImpl(ISet<T> origin)
+    {
+        super();
+        Assert.notNull(origin, "The origin is required");
+        this.modelRoot = origin.getModelRoot();
+        init();
+        addAll(origin);
+    }
+    /**
+     * Initialize the transient state.
+     */
+    private void init()
+    {
+        ordinals = ModelPathOrdinals.forModel(modelRoot);
+        words = EMPTY_WORDS;
+        size = 0;
+        fingerprint = SetFingerprint.seed(modelRoot);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<? extends T> getModelRoot()
+    {
+        return modelRoot;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(String e)
+    {
+        int o;
+        
+        // Check for valid argument
+        Assert.hasText(e, "The property name is required");
+        if(PathWildcard.isWildcard(e))
+        {
+            return addAll(Collections.singleton(e));
+        }
+        if((o = ordinals.ordinalOf(e)) < 0)
+        {
+            // First check if property exists
+            if(!SetUtils.checkPathForModel(modelRoot, e))
+            {
+                throw new IllegalArgumentException("The property path '".concat(e)
+                        .concat("' doesn't exists at model '")
+                        .concat(modelRoot.getName())
+                        .concat("'"));
+            }
+            o = ordinals.assign(e);
+        }
+        return setBit(o);
+    }
+    /**
+     * The paths are checked as a batch, see {@link SetUtils#checkPathsForModel(Class, Collection)}, and nothing is added if any is incorrect.
+     * The paths of a {@link ISet} with the same {@link #getModelRoot() model root} are already checked.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(Collection<? extends String> c)
+    {
+        boolean ret;
+        
+        ret = false;
+        if(c != null && !c.isEmpty())
+        {
+            if(isCompatible(c))
+            {
+                return or(((SetBitSetImpl<?>)c).words);
+            }
+            for(String e: (isCheckedSet(c) ? c : Arrays.asList(SetUtils.checkPathsForModel(modelRoot, c))))
+            {
+                if(addValidated(e))
+                {
+                    ret = true;
+                }
+            }
+        }
+        return ret;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o)
+    {
+        return (o instanceof String && getBit(ordinals.ordinalOf((String)o)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsAll(Collection<?> c)
+    {
+        long [] w;
+        
+        if(isCompatible(c))
+        {
+            w = ((SetBitSetImpl<?>)c).words;
+            for(int n = 0; n < w.length; n++)
+            {
+                if((w[n] & ~word(n)) != 0L)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.containsAll(c);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        return (o instanceof String && clearBit(ordinals.ordinalOf((String)o)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        long [] w;
+        long nw;
+        boolean changed;
+        
+        if(isCompatible(c))
+        {
+            w = ((SetBitSetImpl<?>)c).words;
+            changed = false;
+            for(int n = 0; n < words.length; n++)
+            {
+                nw = words[n] & (n < w.length ? w[n] : 0L);
+                if(nw != words[n])
+                {
+                    size -= Long.bitCount(words[n] ^ nw);
+                    fingerprint -= terms(n, words[n] ^ nw);
+                    words[n] = nw;
+                    changed = true;
+                }
+            }
+            if(changed)
+            {
+                modCount++;
+            }
+            return changed;
+        }
+        return super.retainAll(c);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        long [] w;
+        long nw;
+        boolean changed;
+        
+        if(isCompatible(c))
+        {
+            w = ((SetBitSetImpl<?>)c).words;
+            changed = false;
+            for(int n = 0; n < words.length && n < w.length; n++)
+            {
+                nw = words[n] & ~w[n];
+                if(nw != words[n])
+                {
+                    size -= Long.bitCount(words[n] ^ nw);
+                    fingerprint -= terms(n, words[n] ^ nw);
+                    words[n] = nw;
+                    changed = true;
+                }
+            }
+            if(changed)
+            {
+                modCount++;
+            }
+            return changed;
+        }
+        return super.removeAll(c);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(words, 0L);
+        size = 0;
+        fingerprint = SetFingerprint.seed(modelRoot);
+        modCount++;
+    }
+    /**
+     * The fingerprint is updated on each change, word-wise operations add the terms of the changed bits only.
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFingerprint()
+    {
+        return fingerprint;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return (size == 0);
+    }
+    /**
+     * Iterates over the property paths in natural order, as a sorted set.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new SortedBitIterator();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        SetBitSetImpl<?> s;
+        
+        if(o == this)
+        {
+            return true;
+        }
+        if(isCompatible(o))
+        {
+            s = (SetBitSetImpl<?>)o;
+            if(s.size != size)
+            {
+                return false;
+            }
+            for(int n = 0; n < Math.max(words.length, s.words.length); n++)
+            {
+                if(word(n) != s.word(n))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+    /**
+     * Same as {@link java.util.Set#hashCode()}, the sum of the hash codes of the property paths.
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        int h;
+        
+        h = 0;
+        for(int o = nextSetBit(0); o >= 0; o = nextSetBit(o + 1))
+        {
+            h += ordinals.pathOf(o).hashCode();
+        }
+        return h;
+    }
+    /**
+     * The property paths are iterated already sorted and checked, so they are copied as is.
+     * {@inheritDoc}
+     */
+    @Override
+    public SetFrozenImpl<T> freeze()
+    {
+        return new SetFrozenImpl<T>(modelRoot, toArray(new String[size]));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<PropertyPath> propertyPaths()
+    {
+        return new PropertyPathSetView(this);
+    }
+    /**
+     * Check if the collection is a {@link ISet} of the same {@link #getModelRoot() model root}, so his paths are already checked.
+     * @param c The collection
+     * @return true if the paths of {@code c} are valid for the model root
+     */
+    private boolean isCheckedSet(Collection<?> c)
+    {
+        return (c instanceof ISet && modelRoot.equals(((ISet<?>)c).getModelRoot()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s [%s]", getClass().getSimpleName(), toStringProperties());
+    }
+    /**
+     * Create the {@link #toString()} text only for properties.
+     * The derived classes can use this method to get the body of property values.
+     * @return The body for properties, without the '[' and ']' at start and end respectivelly.
+     */
+    protected String toStringProperties()
+    {
+        StringBuilder stb;
+        Iterator<String> itr;
+        
+        stb = new StringBuilder("modelRoot=");
+        stb.append(modelRoot.getName()).append(", properties=[");
+
+        if(!isEmpty())
+        {
+            itr = iterator();
+            stb.append(itr.next());
+            while(itr.hasNext())
+            {
+                stb.append(", ").append(itr.next());
+            }
+        }
+        stb.append("]");
+        return stb.toString();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> union(Collection<? extends String> c)
+    {
+        SetBitSetImpl<T> s;
+        
+        s = copy(null);
+        s.addAll(c);
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> intersect(Collection<?> c)
+    {
+        SetBitSetImpl<T> s;
+        
+        if(c == null)
+        {
+            return new SetBitSetImpl<T>(modelRoot);
+        }
+        s = copy(null);
+        s.retainAll(c);
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> minus(Collection<?> c)
+    {
+        SetBitSetImpl<T> s;
+        
+        s = copy(null);
+        if(c != null)
+        {
+            s.removeAll(c);
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSubsetOf(Collection<?> c)
+    {
+        Assert.notNull(c, "The collection is required");
+        return (size <= c.size() && c.containsAll(this));
+    }
+    /**
+     * The descendants of the property path are a cached mask of ordinals, so the check is word-wise.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsPrefix(String propertyPath)
+    {
+        long [] mask;
+        int n;
+        
+        Assert.hasText(propertyPath, "The property path is required");
+        mask = ordinals.descendantsMask(propertyPath);
+        n = Math.min(mask.length, words.length);
+        for(int i = 0; i < n; i++)
+        {
+            if((words[i] & mask[i]) != 0L)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> subSetAt(String propertyPath)
+    {
+        Class<?> type;
+        SetBitSetImpl<?> s;
+        SetBitSetImpl<T> masked;
+        int l;
+        
+        type = SetUtils.resolvePathType(modelRoot, propertyPath);
+        s = new SetBitSetImpl<Object>(type);
+        masked = copy(ordinals.descendantsMask(propertyPath));
+        l = propertyPath.length() + 1;
+        for(int o = masked.nextSetBit(0); o >= 0; o = masked.nextSetBit(o + 1))
+        {
+            s.addValidated(ordinals.pathOf(o).substring(l));
+        }
+        return s;
+    }
+    /**
+     * Creates a copy of this set, optionally restricted to a mask.
+     * @param mask The mask of ordinals to copy, or null for copy all the ordinals
+     * @return The copy
+     */
+    private SetBitSetImpl<T> copy(long [] mask)
+    {
+        SetBitSetImpl<T> s;
+        int n;
+        
+        s = new SetBitSetImpl<T>(modelRoot);
+        if(mask == null)
+        {
+            s.words = words.clone();
+            s.size = size;
+            s.fingerprint = fingerprint;
+        }
+        else
+        {
+            n = Math.min(mask.length, words.length);
+            s.words = new long[n];
+            for(int i = 0; i < n; i++)
+            {
+                s.words[i] = words[i] & mask[i];
+                s.size += Long.bitCount(s.words[i]);
+                s.fingerprint += terms(i, s.words[i]);
+            }
+        }
+        return s;
+    }
+    /**
+     * Add a property path known as valid for the {@link #getModelRoot() model root}.
+     * Only the ordinal assignation checks the path, if not assigned yet.
+     * @param e The property path
+     * @return true if added and false if already present
+     */
+    private boolean addValidated(String e)
+    {
+        int o;
+        
+        if((o = ordinals.ordinalOf(e)) < 0)
+        {
+            o = ordinals.assign(e);
+        }
+        return setBit(o);
+    }
+    /**
+     * Check if the indicated object is a set of this type and with the same ordinals, so word-wise operations can be used.
+     * @param o The object
+     * @return true if compatible and false if not
+     */
+    private boolean isCompatible(Object o)
+    {
+        return (o instanceof SetBitSetImpl && ((SetBitSetImpl<?>)o).ordinals == ordinals);
+    }
+    /**
+     * Gets the word at the indicated position, zero if out of range.
+     * @param n The position
+     * @return The word
+     */
+    private long word(int n)
+    {
+        return (n < words.length ? words[n] : 0L);
+    }
+    /**
+     * Check the bit of the indicated ordinal.
+     * @param ordinal The ordinal, can be negative
+     * @return true if set and false if not set or ordinal is negative
+     */
+    private boolean getBit(int ordinal)
+    {
+        int w;
+        
+        if(ordinal < 0)
+        {
+            return false;
+        }
+        w = ordinal >> ADDRESS_BITS_PER_WORD;
+        return (w < words.length && (words[w] & (1L << ordinal)) != 0L);
+    }
+    /**
+     * Set the bit of the indicated ordinal.
+     * @param ordinal The ordinal
+     * @return true if the bit was not set and false if was set
+     */
+    private boolean setBit(int ordinal)
+    {
+        int w;
+        
+        w = ordinal >> ADDRESS_BITS_PER_WORD;
+        ensureCapacity(w + 1);
+        if((words[w] & (1L << ordinal)) != 0L)
+        {
+            return false;
+        }
+        words[w] |= (1L << ordinal);
+        size++;
+        fingerprint += ordinals.termOf(ordinal);
+        modCount++;
+        return true;
+    }
+    /**
+     * Clear the bit of the indicated ordinal.
+     * @param ordinal The ordinal, can be negative
+     * @return true if the bit was set and false if not
+     */
+    private boolean clearBit(int ordinal)
+    {
+        int w;
+        
+        if(!getBit(ordinal))
+        {
+            return false;
+        }
+        w = ordinal >> ADDRESS_BITS_PER_WORD;
+        words[w] &= ~(1L << ordinal);
+        size--;
+        fingerprint -= ordinals.termOf(ordinal);
+        modCount++;
+        return true;
+    }
+    /**
+     * Set all the bits of the indicated words.
+     * @param w The words
+     * @return true if any bit was changed and false if not
+     */
+    private boolean or(long [] w)
+    {
+        long nw;
+        boolean changed;
+        
+        ensureCapacity(w.length);
+        changed = false;
+        for(int n = 0; n < w.length; n++)
+        {
+            nw = words[n] | w[n];
+            if(nw != words[n])
+            {
+                size += Long.bitCount(nw ^ words[n]);
+                fingerprint += terms(n, nw ^ words[n]);
+                words[n] = nw;
+                changed = true;
+            }
+        }
+        if(changed)
+        {
+            modCount++;
+        }
+        return changed;
+    }
+    /**
+     * The sum of the {@link ModelPathOrdinals#termOf(int) fingerprint terms} of the bits of a word.
+     * @param n The position of the word
+     * @param word The bits
+     * @return The sum of terms
+     */
+    private long terms(int n, long word)
+    {
+        long t;
+        long w;
+        
+        t = 0L;
+        w = word;
+        while(w != 0L)
+        {
+            t += ordinals.termOf((n << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(w));
+            w &= (w - 1L);
+        }
+        return t;
+    }
+    /**
+     * Ensure that {@link #words} have the indicated length.
+     * @param length The minimum length
+     */
+    private void ensureCapacity(int length)
+    {
+        if(words.length < length)
+        {
+            words = Arrays.copyOf(words, Math.max(length, words.length * 2));
+        }
+    }
+    /**
+     * Gets the next set bit from the indicated position.
+     * @param from The position, inclusive
+     * @return The ordinal of the next set bit or -1 if no more bits are set
+     */
+    private int nextSetBit(int from)
+    {
+        int w;
+        long word;
+        
+        w = from >> ADDRESS_BITS_PER_WORD;
+        if(w >= words.length)
+        {
+            return -1;
+        }
+        word = words[w] & (-1L << from);
+        while(true)
+        {
+            if(word != 0L)
+            {
+                return (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+            }
+            if(++w == words.length)
+            {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+    /**
+     * Replace the set by his {@link SetSerializedForm serialized form}.
+     * @return The serialized form
+     * @throws ObjectStreamException Never
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        return new SetSerializedForm(this);
+    }
+    /**
+     * Iterator in natural order of the property paths.
+     * The ordinals of the set are sorted by its rank in the {@link ModelPathOrdinals.Ranking}.
+     */
+    private class SortedBitIterator implements Iterator<String>
+    {
+        private final ModelPathOrdinals.Ranking ranking;
+        private final int [] ranks;
+        private int next;
+        private int last;
+        private int expectedModCount;
+        
+        SortedBitIterator()
+        {
+            int n;
+            
+            ranking = ordinals.ranking();
+            ranks = new int[size];
+            n = 0;
+            for(int o = nextSetBit(0); o >= 0; o = nextSetBit(o + 1))
+            {
+                ranks[n++] = ranking.rankOf[o];
+            }
+            Arrays.sort(ranks);
+            next = 0;
+            last = -1;
+            expectedModCount = modCount;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext()
+        {
+            return (next < ranks.length);
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String next()
+        {
+            if(modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if(next >= ranks.length)
+            {
+                throw new NoSuchElementException();
+            }
+            last = ranking.ordinalAt[ranks[next++]];
+            return ordinals.pathOf(last);
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove()
+        {
+            if(last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            clearBit(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
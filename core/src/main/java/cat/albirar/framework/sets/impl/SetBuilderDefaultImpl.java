@@ -19,19 +19,22 @@
 
 package cat.albirar.framework.sets.impl;
 
-import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Stack;
-import java.util.StringTokenizer;
-import java.util.Vector;
 
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 import cat.albirar.framework.sets.ISet;
 import cat.albirar.framework.sets.ISetBuilder;
+import cat.albirar.framework.sets.PropertyPath;
 
 /**
  * Default implementation of {@link ISetBuilder}.
+ * <p>The property path stack and the recorded properties are plain arrays, not synchronized, as the builder is not thread safe.
+ * Once {@link #reset() reset}, the builder keeps the arrays for the next use; see {@link #pooledFor(Class)} for a builder
+ * reused on each thread.</p>
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
  */
@@ -39,9 +42,35 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
 {
     /** Text to use if current path is empty for messages. */
     private static final String TEXT_FOR_EMPTY_CURRENT_PATH = "root";
-    private Stack<ModelDescriptor> pathStack;
+    /** The builders of each thread for each model, see {@link #pooledFor(Class)}. */
+    private static final ClassValue<ThreadLocal<SetBuilderDefaultImpl<?>>> pool = new ClassValue<ThreadLocal<SetBuilderDefaultImpl<?>>>()
+    {
+        @Override
+        protected ThreadLocal<SetBuilderDefaultImpl<?>> computeValue(final Class<?> type)
+        {
+            return new ThreadLocal<SetBuilderDefaultImpl<?>>()
+            {
+                @Override
+                protected SetBuilderDefaultImpl<?> initialValue()
+                {
+                    return new SetBuilderDefaultImpl<Object>(type);
+                }
+            };
+        }
+    };
+    /** The property path stack, the root is always at bottom. */
+    private ModelDescriptor [] pathStack;
+    /** Number of descriptors on {@link #pathStack}. */
+    private int stackSize;
     private ModelDescriptor currentModelDescriptor;
-    private List<String> properties;
+    /** The recorded properties, resolved and checked. */
+    private String [] properties;
+    /** Number of properties on {@link #properties}. */
+    private int propertiesCount;
+    /** If {@link #properties} is owned by a set built with {@link #buildFrozen()} and should be copied before any change. */
+    private boolean propertiesShared;
+    /** The recorded wildcards, resolved and checked. */
+    private List<PathWildcard> wildcards;
     private Class<? extends T> rootModel;
     /**
      * Unique constructor.
@@ -52,11 +81,30 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     {
         Assert.notNull(rootModel, "The rootModel argument is required");
         this.rootModel = rootModel;
-        pathStack = new Stack<ModelDescriptor>();
-        properties = new Vector<String>();
-        currentModelDescriptor = new ModelDescriptor(rootModel);
+        pathStack = new ModelDescriptor[8];
+        properties = new String[16];
+        wildcards = new ArrayList<PathWildcard>();
+        currentModelDescriptor = ModelDescriptorCache.getDescriptor(rootModel);
         // The root always on bottom of stack
-        pathStack.push(currentModelDescriptor);
+        pathStack[0] = currentModelDescriptor;
+        stackSize = 1;
+    }
+    /**
+     * Gets the builder of the current thread for the indicated model, {@link #reset() reset}.
+     * The builder is reused on each call from the same thread, so it should not be retained nor used by nested operations.
+     * @param rootModel The root model, required
+     * @return The builder
+     * @throws IllegalArgumentException If the {@code rootModel} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SetBuilderDefaultImpl<T> pooledFor(Class<T> rootModel)
+    {
+        SetBuilderDefaultImpl<T> builder;
+        
+        Assert.notNull(rootModel, "The rootModel argument is required");
+        builder = (SetBuilderDefaultImpl<T>) pool.get(rootModel).get();
+        builder.reset();
+        return builder;
     }
     /**
      * {@inheritDocs}
@@ -64,6 +112,10 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     @Override
     public ISetBuilder<T> addProperty(String propertyPath)
     {
+        if(PathWildcard.isWildcard(propertyPath))
+        {
+            return addWildcard(propertyPath);
+        }
         if(!checkPath(propertyPath))
         {
             throw new IllegalArgumentException("The path denoted by '" + propertyPath + "' at '" 
@@ -71,7 +123,32 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
                     + "' doesn't exists. Cannot be added to set!");
         }
         
-        properties.add(resolvePath(propertyPath));
+        if(propertiesShared || propertiesCount == properties.length)
+        {
+            properties = Arrays.copyOf(properties, Math.max(properties.length * 2, 16));
+            propertiesShared = false;
+        }
+        properties[propertiesCount++] = resolvePath(propertyPath);
+        return this;
+    }
+    /**
+     * Add a wildcard, relative to the current path.
+     * @param wildcard The wildcard
+     * @return The builder itself
+     * @throws IllegalArgumentException If the wildcard is not correct or doesn't denote a model at the current path
+     */
+    private ISetBuilder<T> addWildcard(String wildcard)
+    {
+        PathWildcard w;
+        
+        w = PathWildcard.parse(wildcard);
+        if(!w.isValidFor(ModelPathIndex.forModel(currentModelDescriptor.getModel())))
+        {
+            throw new IllegalArgumentException("The wildcard '" + wildcard + "' at '" 
+                    + getCurrentPathOrRoot() + "' for model '" + rootModel.getName() 
+                    + "' doesn't denote a model. Cannot be added to set!");
+        }
+        wildcards.add(w.under(currentModelDescriptor.getRelativePath()));
         return this;
     }
 
@@ -81,27 +158,32 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     @Override
     public ISetBuilder<T> pushPropertyPath(String propertyPath)
     {
-        StringTokenizer stk;
-        String spath;
-        PropertyDescriptor pdesc;
+        PropertyPath path;
+        PropertyPath relative;
+        ModelPathIndex index;
         
         // Verify propertyPath
         Assert.hasText(propertyPath);
-        stk = new StringTokenizer(propertyPath, ".");
-        while(stk.hasMoreTokens())
+        index = ModelPathIndex.forModel(currentModelDescriptor.getModel());
+        if(!index.check(propertyPath).isValid())
         {
-            spath = stk.nextToken();
-            if( (pdesc = currentModelDescriptor.getProperties().get(spath)) != null)
-            {
-                currentModelDescriptor = new ModelDescriptor(resolvePath(spath), propertyPath ,pdesc.getPropertyType());
-            }
-            else
-            {
-                throw new IllegalArgumentException("The path denoted by '" + propertyPath + "' at '" 
-                        + getCurrentPathOrRoot() + "' for model '" + rootModel.getName() + "' doesn't exists. Cannot be pushed!");
-            }
+            throw new IllegalArgumentException("The path denoted by '" + propertyPath + "' at '" 
+                    + getCurrentPathOrRoot() + "' for model '" + rootModel.getName() + "' doesn't exists. Cannot be pushed!");
         }
-        pathStack.push(currentModelDescriptor);
+        // Follow the cached indexes of the nested models, only the pushed descriptor is created
+        path = PropertyPath.of(propertyPath);
+        relative = currentModelDescriptor.getPropertyPath();
+        for(int n = 0; n < path.depth(); n++)
+        {
+            index = index.nestedIndex(path.segment(n));
+            relative = (relative == null ? PropertyPath.of(path.segment(n)) : relative.child(path.segment(n)));
+        }
+        currentModelDescriptor = ModelDescriptorCache.getDescriptor(index.getModel()).withPropertyPath(relative, propertyPath);
+        if(stackSize == pathStack.length)
+        {
+            pathStack = Arrays.copyOf(pathStack, stackSize * 2);
+        }
+        pathStack[stackSize++] = currentModelDescriptor;
         return this;
     }
 
@@ -111,10 +193,10 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     @Override
     public ISetBuilder<T> popPropertyPath()
     {
-        if(pathStack.size() > 1)
+        if(stackSize > 1)
         {
-            pathStack.pop();
-            currentModelDescriptor = pathStack.peek();
+            pathStack[--stackSize] = null;
+            currentModelDescriptor = pathStack[stackSize - 1];
         }
         return this;
     }
@@ -124,9 +206,9 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     @Override
     public String peekPropertyPathStack()
     {
-        if(pathStack.size() > 1)
+        if(stackSize > 1)
         {
-            return pathStack.peek().getOriginalPath();
+            return pathStack[stackSize - 1].getOriginalPath();
         }
         return null;
     }
@@ -136,11 +218,30 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
     @Override
     public void resetPropertyPathStack()
     {
-        while(pathStack.size() > 1)
+        while(stackSize > 1)
+        {
+            pathStack[--stackSize] = null;
+        }
+        currentModelDescriptor = pathStack[0];
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        resetPropertyPathStack();
+        if(propertiesShared)
+        {
+            properties = new String[16];
+            propertiesShared = false;
+        }
+        else
         {
-            pathStack.pop();
+            Arrays.fill(properties, 0, propertiesCount, null);
         }
-        currentModelDescriptor = pathStack.peek();
+        propertiesCount = 0;
+        wildcards.clear();
     }
     
     /**
@@ -168,9 +269,28 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
         ISet<T> s;
         
         s = new SetDefaultImpl<T>(rootModel);
-        s.addAll(properties);
+        // A set of the same model, so the properties are not checked again
+        s.addAll(buildFrozen());
         return s;
     }
+    /**
+     * {@inheritDoc}
+     * <p>The recorded properties are sorted in place and handed to the set, they are copied only if the builder records more properties later.
+     * The recorded wildcards are kept as is in the set, without expand them.</p>
+     */
+    @Override
+    public ISet<T> buildFrozen()
+    {
+        String [] paths;
+        
+        Arrays.sort(properties, 0, propertiesCount);
+        // The recorded properties are already checked
+        paths = SetFrozenImpl.removeDuplicates(properties, propertiesCount);
+        properties = paths;
+        propertiesCount = paths.length;
+        propertiesShared = true;
+        return new SetFrozenImpl<T>(rootModel, paths, wildcards.toArray(new PathWildcard[wildcards.size()]));
+    }
     /**
      * Gets the current path or {@value #TEXT_FOR_EMPTY_CURRENT_PATH} if current path is root.
      * @return The current path or the text of constant {@link #TEXT_FOR_EMPTY_CURRENT_PATH}
@@ -184,36 +304,14 @@ public class SetBuilderDefaultImpl<T> implements ISetBuilder<T>
         return currentModelDescriptor.getRelativePath();
     }
     /**
-     * Check if path is correct for the root model.
+     * Check if path is correct for the current model.
      * @param propertyPath The property path
      * @return true if correct and false if not
      */
     private boolean checkPath(String propertyPath)
     {
-        StringTokenizer stk;
-        ModelDescriptor pathFollower;
-        PropertyDescriptor pdesc;
-        String ppath;
-        
-        stk = new StringTokenizer(propertyPath, ".");
-        pathFollower = currentModelDescriptor;
-        while(stk.hasMoreTokens())
-        {
-            ppath = stk.nextToken();
-            if( (pdesc = pathFollower.getProperties().get(ppath)) != null)
-            {
-                if(stk.hasMoreTokens())
-                {
-                    pathFollower = new ModelDescriptor(pdesc.getPropertyType());
-                }
-            }
-            else
-            {
-                // Error
-                return false;
-            }
-        }
-        return true;
+        return (StringUtils.hasText(propertyPath)
+                && ModelPathIndex.forModel(currentModelDescriptor.getModel()).check(propertyPath).isValid());
     }
     /**
      * Resolve path with {@link #currentPath}.
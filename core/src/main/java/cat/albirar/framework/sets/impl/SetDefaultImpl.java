@@ -19,13 +19,22 @@
 
 package cat.albirar.framework.sets.impl;
 
+import java.io.ObjectStreamException;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.springframework.util.Assert;
 
 import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.PropertyPath;
 import cat.albirar.framework.sets.SetUtils;
 
 /**
@@ -37,6 +46,10 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
 {
     private static final long serialVersionUID = 4450706681782137190L;
     private Class<? extends T> modelRoot;
+    /** The {@link #getFingerprint() fingerprint}, updated on each change. */
+    private long fingerprint;
+    /** If {@link #fingerprint} is outdated by a change made through the views, to calculate it again. */
+    private boolean fingerprintOutdated;
     /**
      * Constructor for class.
      * @param modelRoot The model root for this set, <em>required</em>
@@ -47,6 +60,7 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
         super();
         Assert.notNull(modelRoot, "The model root is required");
         this.modelRoot = modelRoot;
+        this.fingerprint = SetFingerprint.seed(modelRoot);
     }
     /**
      * Copy constructor.
@@ -58,6 +72,7 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
         super();
         Assert.notNull(origin, "The origin is required");
         this.modelRoot = origin.getModelRoot();
+        this.fingerprint = SetFingerprint.seed(modelRoot);
         addAll(origin);
     }
     /**
@@ -77,6 +92,10 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
     {
         // Check for valid argument
         Assert.hasText(e, "The property name is required");
+        if(PathWildcard.isWildcard(e))
+        {
+            return addAll(Collections.singleton(e));
+        }
         // First check if property exists
         if(!SetUtils.checkPathForModel(modelRoot, e))
         {
@@ -85,9 +104,11 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
                     .concat(modelRoot.getName())
                     .concat("'"));
         }
-        return super.add(e);
+        return addValidated(e);
     }
     /**
+     * The paths are checked as a batch, see {@link SetUtils#checkPathsForModel(Class, Collection)}, and nothing is added if any is incorrect.
+     * The paths of a {@link ISet} with the same {@link #getModelRoot() model root} are already checked.
      * {@inheritDoc}
      */
     @Override
@@ -96,11 +117,11 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
         boolean ret;
         
         ret = false;
-        if(c != null)
+        if(c != null && !c.isEmpty())
         {
-            for(String e: c)
+            for(String e: (isCheckedSet(c) ? c : Arrays.asList(SetUtils.checkPathsForModel(modelRoot, c))))
             {
-                if(add(e))
+                if(addValidated(e))
                 {
                     ret = true;
                 }
@@ -112,6 +133,325 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
      * {@inheritDoc}
      */
     @Override
+    public ISet<T> union(Collection<? extends String> c)
+    {
+        SetDefaultImpl<T> s;
+        
+        s = copy();
+        s.addAll(c);
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> intersect(Collection<?> c)
+    {
+        SetDefaultImpl<T> s;
+        
+        s = new SetDefaultImpl<T>(modelRoot);
+        if(c != null)
+        {
+            for(String e : this)
+            {
+                if(c.contains(e))
+                {
+                    s.addValidated(e);
+                }
+            }
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> minus(Collection<?> c)
+    {
+        SetDefaultImpl<T> s;
+        
+        s = copy();
+        if(c != null)
+        {
+            s.removeAll(c);
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSubsetOf(Collection<?> c)
+    {
+        Assert.notNull(c, "The collection is required");
+        return (size() <= c.size() && c.containsAll(this));
+    }
+    /**
+     * Locate the first property path after the prefix in the sorted set, logarithmic time.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsPrefix(String propertyPath)
+    {
+        String prefix;
+        String s;
+        
+        Assert.hasText(propertyPath, "The property path is required");
+        prefix = propertyPath.concat(".");
+        s = ceiling(prefix);
+        return (s != null && s.startsWith(prefix));
+    }
+    /**
+     * The property paths are located with a range view of the sorted set, in logarithmic time.
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> subSetAt(String propertyPath)
+    {
+        Class<?> type;
+        SetDefaultImpl<?> s;
+        
+        type = SetUtils.resolvePathType(modelRoot, propertyPath);
+        s = new SetDefaultImpl<Object>(type);
+        // All the paths that starts with 'propertyPath.', '/' is the next character to '.'
+        for(String e : subSet(propertyPath.concat("."), true, propertyPath.concat("/"), false))
+        {
+            s.addValidated(e.substring(propertyPath.length() + 1));
+        }
+        return s;
+    }
+    /**
+     * Creates a copy of this set, as a {@link SetDefaultImpl}, without validate again the property paths.
+     * @return The copy
+     */
+    private SetDefaultImpl<T> copy()
+    {
+        SetDefaultImpl<T> s;
+        
+        s = new SetDefaultImpl<T>(modelRoot);
+        for(String e : this)
+        {
+            s.addValidated(e);
+        }
+        return s;
+    }
+    /**
+     * Add a property path known as valid for the {@link #getModelRoot() model root}, without check it.
+     * @param e The property path
+     * @return true if added and false if already present
+     */
+    private boolean addValidated(String e)
+    {
+        if(super.add(e))
+        {
+            updateFingerprint(SetFingerprint.term(e));
+            return true;
+        }
+        return false;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        if(super.remove(o))
+        {
+            updateFingerprint(-SetFingerprint.term((String) o));
+            return true;
+        }
+        return false;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String pollFirst()
+    {
+        return removed(super.pollFirst());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String pollLast()
+    {
+        return removed(super.pollLast());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        super.clear();
+        fingerprint = SetFingerprint.seed(modelRoot);
+        fingerprintOutdated = false;
+    }
+    /**
+     * The iterator updates the {@link #getFingerprint() fingerprint} on removal.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<String> iterator()
+    {
+        final Iterator<String> itr;
+        
+        itr = super.iterator();
+        return new Iterator<String>()
+        {
+            private String last;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return itr.hasNext();
+            }
+            @Override
+            public String next()
+            {
+                last = itr.next();
+                return last;
+            }
+            @Override
+            public void remove()
+            {
+                itr.remove();
+                removed(last);
+            }
+        };
+    }
+    /**
+     * The views update the {@link #getFingerprint() fingerprint} on each change.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<String> descendingIterator()
+    {
+        return new ViewIterator(super.descendingIterator());
+    }
+    /**
+     * The views update the {@link #getFingerprint() fingerprint} on each change.
+     * {@inheritDoc}
+     */
+    @Override
+    public NavigableSet<String> descendingSet()
+    {
+        return new View(super.descendingSet());
+    }
+    /**
+     * The views update the {@link #getFingerprint() fingerprint} on each change.
+     * {@inheritDoc}
+     */
+    @Override
+    public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive)
+    {
+        return new View(super.subSet(fromElement, fromInclusive, toElement, toInclusive));
+    }
+    /**
+     * The views update the {@link #getFingerprint() fingerprint} on each change.
+     * {@inheritDoc}
+     */
+    @Override
+    public NavigableSet<String> headSet(String toElement, boolean inclusive)
+    {
+        return new View(super.headSet(toElement, inclusive));
+    }
+    /**
+     * The views update the {@link #getFingerprint() fingerprint} on each change.
+     * {@inheritDoc}
+     */
+    @Override
+    public NavigableSet<String> tailSet(String fromElement, boolean inclusive)
+    {
+        return new View(super.tailSet(fromElement, inclusive));
+    }
+    /**
+     * The fingerprint is updated on each change made through the set or his iterator.
+     * The changes made through the views, as {@link #subSet(String, boolean, String, boolean)}, mark it as outdated
+     * and it is calculated again on the next call.
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFingerprint()
+    {
+        if(fingerprintOutdated)
+        {
+            fingerprint = SetFingerprint.of(modelRoot, this);
+            fingerprintOutdated = false;
+        }
+        return fingerprint;
+    }
+    /**
+     * Update the {@link #fingerprint} with a removed property path.
+     * @param e The removed property path or null if nothing was removed
+     * @return {@code e}
+     */
+    private String removed(String e)
+    {
+        if(e != null)
+        {
+            updateFingerprint(-SetFingerprint.term(e));
+        }
+        return e;
+    }
+    /**
+     * Add the term of an added property path or subtract it for a removed one to the {@link #fingerprint}.
+     * If the {@link #fingerprint} is outdated by a change through the views, is left to {@link #getFingerprint()}.
+     * @param delta The term or the negated term
+     */
+    private void updateFingerprint(long delta)
+    {
+        if(!fingerprintOutdated)
+        {
+            fingerprint += delta;
+        }
+    }
+    /**
+     * Approximate heap size of the set, see {@link HeapSize}: an entry and a string for each property path.
+     * @return The size, in bytes
+     */
+    long approximateHeapSize()
+    {
+        long size;
+        
+        size = HeapSize.OBJECT_BYTES;
+        for(String path : this)
+        {
+            size += HeapSize.ENTRY_BYTES + HeapSize.of(path);
+        }
+        return size;
+    }
+    /**
+     * The property paths are iterated already sorted and checked, so they are copied as is.
+     * {@inheritDoc}
+     */
+    @Override
+    public SetFrozenImpl<T> freeze()
+    {
+        return new SetFrozenImpl<T>(modelRoot, toArray(new String[size()]));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<PropertyPath> propertyPaths()
+    {
+        return new PropertyPathSetView(this);
+    }
+    /**
+     * Check if the collection is a {@link ISet} of the same {@link #getModelRoot() model root}, so his paths are already checked.
+     * @param c The collection
+     * @return true if the paths of {@code c} are valid for the model root
+     */
+    private boolean isCheckedSet(Collection<?> c)
+    {
+        return (c instanceof ISet && modelRoot.equals(((ISet<?>)c).getModelRoot()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public String toString()
     {
         return String.format("%s [%s]", getClass().getSimpleName(), toStringProperties());
@@ -141,4 +481,199 @@ public class SetDefaultImpl<T> extends TreeSet<String> implements ISet<T>
         stb.append("]");
         return stb.toString();
     }
+    /**
+     * Replace the set by his {@link SetSerializedForm serialized form}.
+     * @return The serialized form
+     * @throws ObjectStreamException Never
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        return new SetSerializedForm(this);
+    }
+    /**
+     * A view of the set, as {@link #subSet(String, boolean, String, boolean)}, that marks the {@link #fingerprint} as outdated
+     * on each change made through it, and his views and iterators.
+     */
+    private final class View extends AbstractSet<String> implements NavigableSet<String>
+    {
+        private final NavigableSet<String> view;
+        
+        /**
+         * Constructor.
+         * @param view The view of the {@link TreeSet}
+         */
+        View(NavigableSet<String> view)
+        {
+            this.view = view;
+        }
+        @Override
+        public int size()
+        {
+            return view.size();
+        }
+        @Override
+        public boolean contains(Object o)
+        {
+            return view.contains(o);
+        }
+        @Override
+        public boolean add(String e)
+        {
+            return outdated(view.add(e));
+        }
+        @Override
+        public boolean remove(Object o)
+        {
+            return outdated(view.remove(o));
+        }
+        @Override
+        public void clear()
+        {
+            outdated(!view.isEmpty());
+            view.clear();
+        }
+        @Override
+        public Iterator<String> iterator()
+        {
+            return new ViewIterator(view.iterator());
+        }
+        @Override
+        public Iterator<String> descendingIterator()
+        {
+            return new ViewIterator(view.descendingIterator());
+        }
+        @Override
+        public Comparator<? super String> comparator()
+        {
+            return view.comparator();
+        }
+        @Override
+        public String first()
+        {
+            return view.first();
+        }
+        @Override
+        public String last()
+        {
+            return view.last();
+        }
+        @Override
+        public String lower(String e)
+        {
+            return view.lower(e);
+        }
+        @Override
+        public String floor(String e)
+        {
+            return view.floor(e);
+        }
+        @Override
+        public String ceiling(String e)
+        {
+            return view.ceiling(e);
+        }
+        @Override
+        public String higher(String e)
+        {
+            return view.higher(e);
+        }
+        @Override
+        public String pollFirst()
+        {
+            String e;
+            
+            e = view.pollFirst();
+            outdated(e != null);
+            return e;
+        }
+        @Override
+        public String pollLast()
+        {
+            String e;
+            
+            e = view.pollLast();
+            outdated(e != null);
+            return e;
+        }
+        @Override
+        public NavigableSet<String> descendingSet()
+        {
+            return new View(view.descendingSet());
+        }
+        @Override
+        public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive)
+        {
+            return new View(view.subSet(fromElement, fromInclusive, toElement, toInclusive));
+        }
+        @Override
+        public NavigableSet<String> headSet(String toElement, boolean inclusive)
+        {
+            return new View(view.headSet(toElement, inclusive));
+        }
+        @Override
+        public NavigableSet<String> tailSet(String fromElement, boolean inclusive)
+        {
+            return new View(view.tailSet(fromElement, inclusive));
+        }
+        @Override
+        public SortedSet<String> subSet(String fromElement, String toElement)
+        {
+            return subSet(fromElement, true, toElement, false);
+        }
+        @Override
+        public SortedSet<String> headSet(String toElement)
+        {
+            return headSet(toElement, false);
+        }
+        @Override
+        public SortedSet<String> tailSet(String fromElement)
+        {
+            return tailSet(fromElement, true);
+        }
+    }
+    /**
+     * An iterator of a view, that marks the {@link #fingerprint} as outdated on removal.
+     */
+    private final class ViewIterator implements Iterator<String>
+    {
+        private final Iterator<String> itr;
+        
+        /**
+         * Constructor.
+         * @param itr The iterator of the view
+         */
+        ViewIterator(Iterator<String> itr)
+        {
+            this.itr = itr;
+        }
+        @Override
+        public boolean hasNext()
+        {
+            return itr.hasNext();
+        }
+        @Override
+        public String next()
+        {
+            return itr.next();
+        }
+        @Override
+        public void remove()
+        {
+            itr.remove();
+            outdated(true);
+        }
+    }
+    /**
+     * Mark the {@link #fingerprint} as outdated, if the set was changed through a view.
+     * @param changed If the set was changed
+     * @return {@code changed}
+     */
+    private boolean outdated(boolean changed)
+    {
+        if(changed)
+        {
+            fingerprintOutdated = true;
+        }
+        return changed;
+    }
 }
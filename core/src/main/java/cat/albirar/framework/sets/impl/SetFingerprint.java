@@ -0,0 +1,101 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import cat.albirar.framework.sets.ISet;
+
+/**
+ * The 64 bit fingerprint of the {@link ISet sets}, see {@link ISet#getFingerprint()}.
+ * <p>The fingerprint of a set is the {@link #seed(Class) seed} of the model root plus the {@link #term(String) term} of each
+ * property path. As a sum, it doesn't depend on the order of the property paths and can be updated on each addition or removal
+ * by adding or subtracting the term of the path. The seed and the terms are hashes of the characters of the model name and of
+ * the property paths, so the fingerprint is the same on any JVM.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class SetFingerprint
+{
+    /**
+     * The fingerprint of an empty set of a model root.
+     * @param modelRoot The model root
+     * @return The seed
+     */
+    public static long seed(Class<?> modelRoot)
+    {
+        return hash64(modelRoot.getName());
+    }
+    /**
+     * The term of a property path, to add to the fingerprint of the sets that contains it.
+     * @param propertyPath The property path
+     * @return The term
+     */
+    public static long term(String propertyPath)
+    {
+        return mix64(hash64(propertyPath));
+    }
+    /**
+     * The fingerprint of a set.
+     * @param modelRoot The model root
+     * @param propertyPaths The property paths, without duplicates
+     * @return The fingerprint
+     */
+    public static long of(Class<?> modelRoot, Iterable<String> propertyPaths)
+    {
+        long h;
+        
+        h = seed(modelRoot);
+        for(String p : propertyPaths)
+        {
+            h += term(p);
+        }
+        return h;
+    }
+    /**
+     * A 64 bit FNV-1a hash of the characters of a string, the same on any JVM.
+     * @param s The string
+     * @return The hash
+     */
+    private static long hash64(String s)
+    {
+        long h;
+        
+        h = 0xcbf29ce484222325L;
+        for(int n = 0; n < s.length(); n++)
+        {
+            h ^= s.charAt(n);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+    /**
+     * Mix the bits of a 64 bit hash, so the sum of hashes keeps them well distributed.
+     * @param h The hash
+     * @return The mixed hash
+     */
+    private static long mix64(long h)
+    {
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -0,0 +1,916 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.InvalidPropertyPathsException;
+import cat.albirar.framework.sets.PropertyPath;
+import cat.albirar.framework.sets.SetUtils;
+
+/**
+ * An immutable implementation for {@link ISet}.
+ * <p>The property paths are hold in a sorted array with an open addressing hash table, so {@link #contains(Object)} is
+ * a hash lookup and the iteration is in natural order, as a sorted set. The hash code is calculated once and the
+ * property path strings that have an ordinal on the {@link ModelPathOrdinals} of the {@link #getModelRoot() model root}
+ * are replaced by the canonical instances, shared between all the frozen sets of the same model.</p>
+ * <p>The set can hold {@link PathWildcard wildcards} besides the property paths. The wildcards are kept as is, so
+ * {@link #contains(Object)} matches them without expand, and are expanded only the first time the set is iterated or
+ * compared, reusing the expansion cached on the {@link ModelPathIndex index} of the model.</p>
+ * <p>The content, the model root, the property paths and the wildcards without expand, is identified by a 64 bit
+ * {@link #getContentFingerprint() fingerprint}, so the sets with the same content can be detected cheaply and share the state,
+ * see {@link #hasSameContent(SetFrozenImpl)}.</p>
+ * <p>All the state is final, but the lazy expansion of wildcards that is published with a benign race, so the set can be read
+ * from any thread without synchronization. Any attempt of modification throws {@link UnsupportedOperationException}.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetFrozenImpl<T> extends AbstractSet<String> implements ISet<T>
+{
+    private static final long serialVersionUID = -6109347812540417369L;
+    private static final String [] EMPTY_PATHS = {};
+    private static final PathWildcard [] NO_WILDCARDS = {};
+    private final Class<? extends T> modelRoot;
+    /** The property paths, sorted and canonical if known, not including the paths denoted by {@link #wildcards}. */
+    private final String [] paths;
+    /** The hash table, the position on {@link #paths} plus one, or zero for empty slots. */
+    private final int [] table;
+    /** The wildcards, sorted by text. */
+    private final PathWildcard [] wildcards;
+    /** All the property paths, {@link #paths} and the expansion of {@link #wildcards}, calculated lazily. */
+    private volatile Expanded expanded;
+    /** The fingerprint of {@link #modelRoot}, {@link #paths} and {@link #wildcards}. */
+    private final long contentFingerprint;
+    /**
+     * Copy constructor.
+     * If the origin is frozen too, the state is shared.
+     * @param origin The origin, required
+     * @throws IllegalArgumentException If origin is null or if any of the property paths are unknown in the model root
+     */
+    public SetFrozenImpl(ISet<T> origin)
+    {
+        super();
+        SetFrozenImpl<T> f;
+        
+        Assert.notNull(origin, "The origin is required");
+        this.modelRoot = origin.getModelRoot();
+        Assert.notNull(modelRoot, "The model root is required");
+        if(origin instanceof SetFrozenImpl)
+        {
+            f = (SetFrozenImpl<T>)origin;
+            this.paths = f.paths;
+            this.table = f.table;
+            this.wildcards = f.wildcards;
+            this.expanded = f.expanded;
+            this.contentFingerprint = f.contentFingerprint;
+        }
+        else
+        {
+            this.paths = canonical(modelRoot, origin.toArray(new String[origin.size()]));
+            Arrays.sort(paths);
+            this.table = buildTable(paths);
+            this.wildcards = NO_WILDCARDS;
+            this.expanded = new Expanded(paths, 0L);
+            this.contentFingerprint = fingerprintOf(modelRoot, paths, wildcards);
+        }
+    }
+    /**
+     * Constructor for already checked property paths.
+     * @param modelRoot The model root
+     * @param sortedPaths The property paths, valid for the model, sorted and without duplicates. The array is owned by the set
+     */
+    SetFrozenImpl(Class<? extends T> modelRoot, String [] sortedPaths)
+    {
+        super();
+        this.modelRoot = modelRoot;
+        this.paths = canonical(modelRoot, sortedPaths);
+        this.table = buildTable(paths);
+        this.wildcards = NO_WILDCARDS;
+        this.expanded = new Expanded(paths, 0L);
+        this.contentFingerprint = fingerprintOf(modelRoot, paths, wildcards);
+    }
+    /**
+     * Constructor for already checked property paths and wildcards.
+     * The property paths denoted by any of the wildcards are not retained.
+     * @param modelRoot The model root
+     * @param sortedPaths The property paths, valid for the model, sorted and without duplicates. The array is owned by the set
+     * @param wildcards The wildcards, valid for the model. The array is owned by the set
+     */
+    SetFrozenImpl(Class<? extends T> modelRoot, String [] sortedPaths, PathWildcard [] wildcards)
+    {
+        super();
+        this.modelRoot = modelRoot;
+        this.wildcards = (wildcards.length == 0 ? NO_WILDCARDS : distinct(wildcards));
+        this.paths = canonical(modelRoot, notMatched(ModelPathIndex.forModel(modelRoot), sortedPaths, this.wildcards));
+        this.table = buildTable(paths);
+        this.expanded = (this.wildcards.length == 0 ? new Expanded(paths, 0L) : null);
+        this.contentFingerprint = fingerprintOf(modelRoot, paths, this.wildcards);
+    }
+    /**
+     * Creates a frozen set with the indicated property paths, that can include {@link PathWildcard wildcards}.
+     * The wildcards are kept without expand, see {@link SetFrozenImpl}.
+     * @param modelRoot The model root, required
+     * @param propertyPaths The property paths and wildcards, required
+     * @return The set
+     * @throws IllegalArgumentException If modelRoot or propertyPaths are null
+     * @throws InvalidPropertyPathsException If any of the property paths or wildcards is null or empty or only whitespace, or not correct format, or unknown in the model
+     */
+    public static <T> SetFrozenImpl<T> of(Class<? extends T> modelRoot, Collection<? extends String> propertyPaths)
+    {
+        ModelPathIndex index;
+        List<String> plain;
+        List<PathWildcard> found;
+        List<String> invalid;
+        PathWildcard w;
+        String [] checked;
+        
+        Assert.notNull(modelRoot, "The model root is required");
+        Assert.notNull(propertyPaths, "The property paths are required");
+        index = ModelPathIndex.forModel(modelRoot);
+        plain = new ArrayList<String>(propertyPaths.size());
+        found = new ArrayList<PathWildcard>();
+        invalid = new ArrayList<String>();
+        for(String p : propertyPaths)
+        {
+            if(PathWildcard.isWildcard(p))
+            {
+                try
+                {
+                    w = PathWildcard.parse(p);
+                    if(w.isValidFor(index))
+                    {
+                        found.add(w);
+                        continue;
+                    }
+                }
+                catch(IllegalArgumentException e)
+                {
+                    // Reported as invalid
+                }
+                invalid.add(p);
+            }
+            else
+            {
+                plain.add(p);
+            }
+        }
+        try
+        {
+            checked = SetUtils.checkPathsForModel(modelRoot, plain);
+        }
+        catch(InvalidPropertyPathsException e)
+        {
+            invalid.addAll(e.getInvalidPaths());
+            checked = null;
+        }
+        if(!invalid.isEmpty())
+        {
+            throw new InvalidPropertyPathsException(modelRoot, invalid);
+        }
+        return new SetFrozenImpl<T>(modelRoot, removeDuplicates(checked, checked.length), found.toArray(new PathWildcard[found.size()]));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<? extends T> getModelRoot()
+    {
+        return modelRoot;
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public boolean add(String propertyName)
+    {
+        throw unsupported();
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public boolean addAll(Collection<? extends String> c)
+    {
+        throw unsupported();
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        throw unsupported();
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        throw unsupported();
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        throw unsupported();
+    }
+    /**
+     * Unsupported, the set is immutable.
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void clear()
+    {
+        throw unsupported();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o)
+    {
+        return (o instanceof String && (indexOf((String)o) >= 0 || matchesWildcard((String)o)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return all().length;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return (size() == 0);
+    }
+    /**
+     * The wildcards of this set.
+     * @return A copy of the wildcards, empty if the set doesn't have any
+     */
+    public PathWildcard [] getWildcards()
+    {
+        return wildcards.clone();
+    }
+    /**
+     * The fingerprint of the content of this set: the model root, the property paths and the wildcards, without expand.
+     * The fingerprint is calculated once and is the same on any JVM for the same content.
+     * @return The fingerprint
+     */
+    public long getContentFingerprint()
+    {
+        return contentFingerprint;
+    }
+    /**
+     * The fingerprint of the expanded wildcards is calculated with the expansion, the first time.
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFingerprint()
+    {
+        return (wildcards.length == 0 ? contentFingerprint : expanded().fingerprint);
+    }
+    /**
+     * Check if this set have the same content as other: the same model root, property paths and wildcards, without expand.
+     * Unlike {@link #equals(Object)}, the model root is compared and the wildcards are not expanded.
+     * @param other The other set, can be null
+     * @return true if the content is the same and false if not
+     */
+    public boolean hasSameContent(SetFrozenImpl<?> other)
+    {
+        return (other != null && other.contentFingerprint == contentFingerprint && other.modelRoot == modelRoot
+                && (sharesContent(other) || (Arrays.equals(other.paths, paths) && Arrays.equals(other.wildcards, wildcards))));
+    }
+    /**
+     * Check if this set shares the state with other, that is, if one of them was copied from the other or from the same set.
+     * @param other The other set, can be null
+     * @return true if the state is shared and false if not
+     */
+    public boolean sharesContent(SetFrozenImpl<?> other)
+    {
+        return (other != null && other.modelRoot == modelRoot && other.paths == paths && other.wildcards == wildcards);
+    }
+    /**
+     * Iterates over the property paths in natural order, as a sorted set.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new Iterator<String>()
+        {
+            private final String [] paths = all();
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return (next < paths.length);
+            }
+            @Override
+            public String next()
+            {
+                if(next >= paths.length)
+                {
+                    throw new NoSuchElementException();
+                }
+                return paths[next++];
+            }
+            @Override
+            public void remove()
+            {
+                throw unsupported();
+            }
+        };
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object [] toArray()
+    {
+        String [] p;
+        
+        p = all();
+        return Arrays.copyOf(p, p.length, Object[].class);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        SetFrozenImpl<?> f;
+        
+        if(o == this)
+        {
+            return true;
+        }
+        if(o instanceof SetFrozenImpl)
+        {
+            f = (SetFrozenImpl<?>)o;
+            return (f.hashCode() == hashCode() && (f.all() == all() || Arrays.equals(f.all(), all())));
+        }
+        return super.equals(o);
+    }
+    /**
+     * Same as {@link java.util.Set#hashCode()}, the sum of the hash codes of the property paths, calculated once.
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return expanded().hash;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> union(Collection<? extends String> c)
+    {
+        Collection<? extends String> source;
+        String [] p;
+        boolean checked;
+        int n;
+        
+        if(c == null || c.isEmpty())
+        {
+            return this;
+        }
+        checked = (c instanceof ISet && modelRoot.equals(((ISet<?>)c).getModelRoot()));
+        source = (checked ? c : Arrays.asList(SetUtils.checkPathsForModel(modelRoot, c)));
+        p = Arrays.copyOf(paths, paths.length + source.size());
+        n = paths.length;
+        for(String e : source)
+        {
+            if(!contains(e))
+            {
+                p[n++] = e;
+            }
+        }
+        if(n == paths.length)
+        {
+            return this;
+        }
+        Arrays.sort(p, 0, n);
+        // The wildcards are kept
+        return new SetFrozenImpl<T>(modelRoot, removeDuplicates(p, n), wildcards);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> intersect(Collection<?> c)
+    {
+        String [] all;
+        String [] p;
+        int n;
+        
+        if(c == null)
+        {
+            return new SetFrozenImpl<T>(modelRoot, EMPTY_PATHS);
+        }
+        all = all();
+        p = new String[all.length];
+        n = 0;
+        for(String e : all)
+        {
+            if(c.contains(e))
+            {
+                p[n++] = e;
+            }
+        }
+        return (n == all.length ? this : new SetFrozenImpl<T>(modelRoot, Arrays.copyOf(p, n)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> minus(Collection<?> c)
+    {
+        String [] all;
+        String [] p;
+        int n;
+        
+        if(c == null || c.isEmpty())
+        {
+            return this;
+        }
+        all = all();
+        p = new String[all.length];
+        n = 0;
+        for(String e : all)
+        {
+            if(!c.contains(e))
+            {
+                p[n++] = e;
+            }
+        }
+        return (n == all.length ? this : new SetFrozenImpl<T>(modelRoot, Arrays.copyOf(p, n)));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSubsetOf(Collection<?> c)
+    {
+        Assert.notNull(c, "The collection is required");
+        return (size() <= c.size() && c.containsAll(this));
+    }
+    /**
+     * A binary search on the sorted property paths.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsPrefix(String propertyPath)
+    {
+        String [] all;
+        String prefix;
+        int n;
+        
+        Assert.hasText(propertyPath, "The property path is required");
+        all = all();
+        prefix = propertyPath.concat(".");
+        n = lowerBound(all, prefix);
+        return (n < all.length && all[n].startsWith(prefix));
+    }
+    /**
+     * A binary search on the sorted property paths, the re-based paths are sorted too.
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> subSetAt(String propertyPath)
+    {
+        Class<?> type;
+        String [] all;
+        String [] p;
+        int from;
+        int to;
+        
+        type = SetUtils.resolvePathType(modelRoot, propertyPath);
+        all = all();
+        // All the paths that starts with 'propertyPath.', '/' is the next character to '.'
+        from = lowerBound(all, propertyPath.concat("."));
+        to = lowerBound(all, propertyPath.concat("/"));
+        p = new String[to - from];
+        for(int n = from; n < to; n++)
+        {
+            p[n - from] = all[n].substring(propertyPath.length() + 1);
+        }
+        return new SetFrozenImpl<Object>(type, p);
+    }
+    /**
+     * The set is already frozen.
+     * @return This set
+     */
+    @Override
+    public SetFrozenImpl<T> freeze()
+    {
+        return this;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<PropertyPath> propertyPaths()
+    {
+        return new PropertyPathSetView(this);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s [%s]", getClass().getSimpleName(), toStringProperties());
+    }
+    /**
+     * Create the {@link #toString()} text only for properties.
+     * The derived classes can use this method to get the body of property values.
+     * @return The body for properties, without the '[' and ']' at start and end respectivelly.
+     */
+    protected String toStringProperties()
+    {
+        StringBuilder stb;
+        String [] all;
+        
+        stb = new StringBuilder("modelRoot=");
+        stb.append(modelRoot.getName()).append(", properties=[");
+        all = all();
+        for(int n = 0; n < all.length; n++)
+        {
+            if(n > 0)
+            {
+                stb.append(", ");
+            }
+            stb.append(all[n]);
+        }
+        stb.append("]");
+        return stb.toString();
+    }
+    /**
+     * Locate the property path on the hash table.
+     * @param path The property path
+     * @return The position on {@link #paths} or -1 if not found
+     */
+    private int indexOf(String path)
+    {
+        int mask;
+        int i;
+        int p;
+        
+        mask = table.length - 1;
+        i = spread(path.hashCode()) & mask;
+        while((p = table[i]) != 0)
+        {
+            if(paths[p - 1] == path || paths[p - 1].equals(path))
+            {
+                return p - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+    /**
+     * Check if any of the wildcards matches the property path.
+     * @param path The property path
+     * @return true if matched and false if not or if the set doesn't have wildcards
+     */
+    private boolean matchesWildcard(String path)
+    {
+        ModelPathIndex index;
+        
+        if(wildcards.length == 0)
+        {
+            return false;
+        }
+        index = ModelPathIndex.forModel(modelRoot);
+        for(PathWildcard w : wildcards)
+        {
+            if(w.matches(index, path))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * All the property paths, sorted, with the wildcards expanded.
+     * @return The property paths, {@link #paths} itself if the set doesn't have wildcards
+     */
+    private String [] all()
+    {
+        return expanded().paths;
+    }
+    /**
+     * The expanded state, calculated on the first call if the set have wildcards.
+     * @return The expanded state
+     */
+    private Expanded expanded()
+    {
+        Expanded e;
+        ModelPathIndex index;
+        String [] p;
+        int n;
+        
+        // Benign race: all threads calculate the same paths, from the expansions cached on the index
+        if((e = expanded) == null)
+        {
+            index = ModelPathIndex.forModel(modelRoot);
+            n = paths.length;
+            for(PathWildcard w : wildcards)
+            {
+                n += index.expand(w).length;
+            }
+            p = Arrays.copyOf(paths, n);
+            n = paths.length;
+            for(PathWildcard w : wildcards)
+            {
+                for(String s : index.expand(w))
+                {
+                    p[n++] = s;
+                }
+            }
+            Arrays.sort(p);
+            p = removeDuplicates(p, n);
+            e = new Expanded(p, SetFingerprint.of(modelRoot, Arrays.asList(p)));
+            expanded = e;
+        }
+        return e;
+    }
+    /**
+     * The position of the first property path equal or greater than the key.
+     * @param sortedPaths The sorted property paths
+     * @param key The key
+     * @return The position, the length of {@code sortedPaths} if all the property paths are lower than key
+     */
+    private static int lowerBound(String [] sortedPaths, String key)
+    {
+        int n;
+        
+        n = Arrays.binarySearch(sortedPaths, key);
+        return (n < 0 ? -(n + 1) : n);
+    }
+    /**
+     * Remove the duplicated wildcards and sort them by text.
+     * @param wildcards The wildcards
+     * @return The wildcards without duplicates
+     */
+    private static PathWildcard [] distinct(PathWildcard [] wildcards)
+    {
+        Map<String, PathWildcard> byText;
+        
+        byText = new TreeMap<String, PathWildcard>();
+        for(PathWildcard w : wildcards)
+        {
+            byText.put(w.toString(), w);
+        }
+        return byText.values().toArray(new PathWildcard[byText.size()]);
+    }
+    /**
+     * Remove the property paths denoted by any of the wildcards.
+     * @param index The index of the model
+     * @param sortedPaths The property paths
+     * @param wildcards The wildcards
+     * @return The property paths not denoted by any wildcard, {@code sortedPaths} itself if all of them
+     */
+    private static String [] notMatched(ModelPathIndex index, String [] sortedPaths, PathWildcard [] wildcards)
+    {
+        String [] p;
+        int n;
+        boolean matched;
+        
+        if(wildcards.length == 0)
+        {
+            return sortedPaths;
+        }
+        p = new String[sortedPaths.length];
+        n = 0;
+        for(String s : sortedPaths)
+        {
+            matched = false;
+            for(int i = 0; i < wildcards.length && !matched; i++)
+            {
+                matched = wildcards[i].matches(index, s);
+            }
+            if(!matched)
+            {
+                p[n++] = s;
+            }
+        }
+        return (n == sortedPaths.length ? sortedPaths : Arrays.copyOf(p, n));
+    }
+    /**
+     * The exception for modifications.
+     * @return The exception
+     */
+    private static UnsupportedOperationException unsupported()
+    {
+        return new UnsupportedOperationException("The set is frozen and cannot be modified");
+    }
+    /**
+     * Replace the property paths by the canonical instances of the model ordinals, if they have already an ordinal.
+     * No ordinal is assigned, so the frozen sets don't grow the ordinals of the model: the paths of models with cycles
+     * are unlimited. The paths without an ordinal are kept as are, once checked.
+     * @param modelRoot The model root
+     * @param paths The property paths, replaced in place
+     * @return The same array
+     * @throws IllegalArgumentException If any of the property paths are unknown in the model root
+     */
+    private static String [] canonical(Class<?> modelRoot, String [] paths)
+    {
+        ModelPathOrdinals ordinals;
+        ModelPathIndex index;
+        int o;
+        
+        if(paths.length == 0)
+        {
+            return EMPTY_PATHS;
+        }
+        ordinals = ModelPathOrdinals.forModel(modelRoot);
+        index = ModelPathIndex.forModel(modelRoot);
+        for(int n = 0; n < paths.length; n++)
+        {
+            if((o = ordinals.ordinalOf(paths[n])) >= 0)
+            {
+                paths[n] = ordinals.pathOf(o);
+            }
+            else if(!index.check(paths[n]).isValid())
+            {
+                throw new IllegalArgumentException("The property path '".concat(String.valueOf(paths[n]))
+                        .concat("' doesn't exists at model '")
+                        .concat(modelRoot.getName())
+                        .concat("'"));
+            }
+        }
+        return paths;
+    }
+    /**
+     * Remove the consecutive duplicates of a sorted array.
+     * @param paths The sorted array
+     * @param length The number of items to process
+     * @return The array without duplicates, {@code paths} itself if it's full and without duplicates
+     */
+    static String [] removeDuplicates(String [] paths, int length)
+    {
+        int n;
+        
+        n = 0;
+        for(int i = 0; i < length; i++)
+        {
+            if(n == 0 || !paths[i].equals(paths[n - 1]))
+            {
+                paths[n++] = paths[i];
+            }
+        }
+        return (n == paths.length ? paths : Arrays.copyOf(paths, n));
+    }
+    /**
+     * Build the hash table for the property paths, with a load factor of 0.5 at most.
+     * @param paths The property paths
+     * @return The table
+     */
+    private static int [] buildTable(String [] paths)
+    {
+        int [] t;
+        int capacity;
+        int mask;
+        int i;
+        
+        capacity = 2;
+        while(capacity < paths.length * 2)
+        {
+            capacity <<= 1;
+        }
+        t = new int[capacity];
+        mask = capacity - 1;
+        for(int n = 0; n < paths.length; n++)
+        {
+            i = spread(paths[n].hashCode()) & mask;
+            while(t[i] != 0)
+            {
+                i = (i + 1) & mask;
+            }
+            t[i] = n + 1;
+        }
+        return t;
+    }
+    /**
+     * The hash code of the set.
+     * @param paths The property paths
+     * @return The sum of the hash codes
+     */
+    private static int hashOf(String [] paths)
+    {
+        int h;
+        
+        h = 0;
+        for(String p : paths)
+        {
+            h += p.hashCode();
+        }
+        return h;
+    }
+    /**
+     * The fingerprint of a content, see {@link SetFingerprint}. The wildcards are added as property paths.
+     * @param modelRoot The model root
+     * @param paths The property paths
+     * @param wildcards The wildcards
+     * @return The fingerprint
+     */
+    private static long fingerprintOf(Class<?> modelRoot, String [] paths, PathWildcard [] wildcards)
+    {
+        long h;
+        
+        h = SetFingerprint.of(modelRoot, Arrays.asList(paths));
+        for(PathWildcard w : wildcards)
+        {
+            // The text of wildcards never is a property path
+            h += SetFingerprint.term(w.toString());
+        }
+        return h;
+    }
+    /**
+     * Spread the high bits of the hash to the low bits, used for the table slot.
+     * @param h The hash
+     * @return The spread hash
+     */
+    private static int spread(int h)
+    {
+        return h ^ (h >>> 16);
+    }
+    /**
+     * All the property paths and the hash code of a frozen set.
+     */
+    private static final class Expanded
+    {
+        /** The property paths, sorted and canonical. */
+        final String [] paths;
+        /** The sum of the hash codes of {@link #paths}. */
+        final int hash;
+        /** The fingerprint of {@link #paths}, only if expanded from wildcards; otherwise is the {@link SetFrozenImpl#contentFingerprint}. */
+        final long fingerprint;
+        
+        /**
+         * Constructor.
+         * @param paths The property paths
+         * @param fingerprint The fingerprint of paths, if expanded from wildcards
+         */
+        Expanded(String [] paths, long fingerprint)
+        {
+            this.paths = paths;
+            this.hash = hashOf(paths);
+            this.fingerprint = fingerprint;
+        }
+    }
+    /**
+     * Replace the set by his {@link SetSerializedForm serialized form}.
+     * @return The serialized form
+     * @throws ObjectStreamException Never
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        return new SetSerializedForm(this);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import cat.albirar.framework.sets.ISet;
+
+/**
+ * The serialized form of all the {@link ISet} implementations, named sets included.
+ * <p>Sets are replaced by this form on serialization, that writes them with the {@link SetBinaryCodec} in portable form,
+ * and the decoded set, of the same kind, replaces this form on deserialization.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class SetSerializedForm implements Externalizable
+{
+    private static final long serialVersionUID = 8530129475381940672L;
+    
+    private ISet<?> set;
+    
+    /**
+     * Constructor for deserialization.
+     */
+    public SetSerializedForm()
+    {
+        // For deserialization
+    }
+    /**
+     * Constructor for serialization.
+     * @param set The set
+     */
+    SetSerializedForm(ISet<?> set)
+    {
+        this.set = set;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException
+    {
+        SetBinaryCodec.encode(set, out, true);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException
+    {
+        set = SetBinaryCodec.decode(in);
+    }
+    /**
+     * Replace this form by the decoded set.
+     * @return The set
+     * @throws ObjectStreamException Never
+     */
+    private Object readResolve() throws ObjectStreamException
+    {
+        return set;
+    }
+}
@@ -0,0 +1,882 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.PropertyPath;
+import cat.albirar.framework.sets.SetUtils;
+
+/**
+ * A memory compact implementation for {@link ISet}, for sets with a lot of deep property paths.
+ * <p>The property paths are stored as a trie of property names: each node is a property name, {@link String#intern() interned}
+ * and shared, and the common prefixes of the property paths are stored only once. The property path strings are rebuilt
+ * lazily, only when they are returned by the iterator.</p>
+ * <p>The set is iterated in depth first order with the property names of each level in natural order. This is the natural
+ * order of property paths, as a sorted set, if the property names don't have characters lower than the dot, like '$'.
+ * Like {@link SetDefaultImpl}, this set is not thread safe.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetTrieImpl<T> extends AbstractSet<String> implements ISet<T>
+{
+    private static final long serialVersionUID = 2906130521657829437L;
+    private Class<? extends T> modelRoot;
+    private transient Node root;
+    private transient int size;
+    private transient int modCount;
+    /** The {@link #getFingerprint() fingerprint}, updated on each change. */
+    private transient long fingerprint;
+    /**
+     * Constructor for class.
+     * @param modelRoot The model root for this set, <em>required</em>
+     * @throws IllegalArgumentException if modelRoot is null
+     */
+    public SetTrieImpl(Class<? extends T> modelRoot)
+    {
+        super();
+        Assert.notNull(modelRoot, "The model root is required");
+        this.modelRoot = modelRoot;
+        init();
+    }
+    /**
+     * Copy constructor.
+     * @param origin The origin, required
+     * @throws IllegalArgumentException If origin is null
+     */
+    public SetTrieImpl(ISet<T> origin)
+    {
+        super();
+        Assert.notNull(origin, "The origin is required");
+        this.modelRoot = origin.getModelRoot();
+        init();
+        addAll(origin);
+    }
+    /**
+     * Initialize the transient state.
+     */
+    private void init()
+    {
+        root = new Node(null);
+        size = 0;
+        fingerprint = SetFingerprint.seed(modelRoot);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<? extends T> getModelRoot()
+    {
+        return modelRoot;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(String e)
+    {
+        // Check for valid argument
+        Assert.hasText(e, "The property name is required");
+        if(PathWildcard.isWildcard(e))
+        {
+            return addAll(Collections.singleton(e));
+        }
+        // First check if property exists
+        if(!SetUtils.checkPathForModel(modelRoot, e))
+        {
+            throw new IllegalArgumentException("The property path '".concat(e)
+                    .concat("' doesn't exists at model '")
+                    .concat(modelRoot.getName())
+                    .concat("'"));
+        }
+        return insert(e);
+    }
+    /**
+     * The paths are checked as a batch, see {@link SetUtils#checkPathsForModel(Class, Collection)}, and nothing is added if any is incorrect.
+     * The paths of a {@link ISet} with the same {@link #getModelRoot() model root} are already checked.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(Collection<? extends String> c)
+    {
+        boolean ret;
+        
+        ret = false;
+        if(c != null && !c.isEmpty())
+        {
+            for(String e: (isCheckedSet(c) ? c : Arrays.asList(SetUtils.checkPathsForModel(modelRoot, c))))
+            {
+                if(insert(e))
+                {
+                    ret = true;
+                }
+            }
+        }
+        return ret;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o)
+    {
+        Node node;
+        
+        return (o instanceof String && (node = lookup((String)o)) != null && node.member);
+    }
+    /**
+     * Remove the property path and the nodes that are no longer needed.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        Node [] nodes;
+        String path;
+        int depth;
+        int from;
+        int to;
+        int n;
+        
+        if(!(o instanceof String))
+        {
+            return false;
+        }
+        path = (String)o;
+        nodes = new Node[8];
+        nodes[0] = root;
+        depth = 1;
+        from = 0;
+        do
+        {
+            if((to = path.indexOf('.', from)) < 0)
+            {
+                to = path.length();
+            }
+            if((n = find(nodes[depth - 1], path, from, to)) < 0)
+            {
+                return false;
+            }
+            if(depth == nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+            }
+            nodes[depth] = nodes[depth - 1].children[n];
+            depth++;
+            from = to + 1;
+        }
+        while(to < path.length());
+        if(!nodes[depth - 1].member)
+        {
+            return false;
+        }
+        nodes[depth - 1].member = false;
+        size--;
+        fingerprint -= SetFingerprint.term(path);
+        modCount++;
+        // Prune the nodes without property paths
+        for(n = depth - 1; n > 0 && !nodes[n].member && nodes[n].children == null; n--)
+        {
+            nodes[n - 1].removeChild(nodes[n]);
+        }
+        return true;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        root = new Node(null);
+        size = 0;
+        fingerprint = SetFingerprint.seed(modelRoot);
+        modCount++;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getFingerprint()
+    {
+        return fingerprint;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+    /**
+     * Number of nodes of the trie, that is, the number of distinct prefixes of the property paths.
+     * Determines the footprint of the set, as the property names are shared.
+     * @return The number of nodes, without the root
+     */
+    int nodeCount()
+    {
+        return root.countNodes();
+    }
+    /**
+     * Approximate heap size of the set, see {@link HeapSize}. The property names are interned, so each distinct name is counted once.
+     * @return The size, in bytes
+     */
+    long approximateHeapSize()
+    {
+        return HeapSize.OBJECT_BYTES + root.heapSize(Collections.newSetFromMap(new IdentityHashMap<String, Boolean>()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return (size == 0);
+    }
+    /**
+     * Iterates over the property paths in depth first order, see the class description.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new TrieIterator();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> union(Collection<? extends String> c)
+    {
+        SetTrieImpl<T> s;
+        
+        s = copy();
+        s.addAll(c);
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> intersect(Collection<?> c)
+    {
+        SetTrieImpl<T> s;
+        
+        s = new SetTrieImpl<T>(modelRoot);
+        if(c != null)
+        {
+            for(String e : this)
+            {
+                if(c.contains(e))
+                {
+                    s.insert(e);
+                }
+            }
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<T> minus(Collection<?> c)
+    {
+        SetTrieImpl<T> s;
+        
+        s = copy();
+        if(c != null)
+        {
+            s.removeAll(c);
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSubsetOf(Collection<?> c)
+    {
+        Assert.notNull(c, "The collection is required");
+        return (size <= c.size() && c.containsAll(this));
+    }
+    /**
+     * The descendants of the property path are the descendants of his node.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsPrefix(String propertyPath)
+    {
+        Node node;
+        
+        Assert.hasText(propertyPath, "The property path is required");
+        node = lookup(propertyPath);
+        return (node != null && node.hasMembersBelow());
+    }
+    /**
+     * The descendants of the node of the property path are copied as is, the property paths are already re-based.
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> subSetAt(String propertyPath)
+    {
+        Class<?> type;
+        SetTrieImpl<?> s;
+        Node node;
+        
+        type = SetUtils.resolvePathType(modelRoot, propertyPath);
+        s = new SetTrieImpl<Object>(type);
+        node = lookup(propertyPath);
+        if(node != null && node.children != null)
+        {
+            s.root.children = node.copy().children;
+            s.size = s.root.countMembers();
+            s.fingerprint = SetFingerprint.of(type, s);
+        }
+        return s;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SetFrozenImpl<T> freeze()
+    {
+        String [] paths;
+        
+        paths = toArray(new String[size]);
+        Arrays.sort(paths);
+        return new SetFrozenImpl<T>(modelRoot, paths);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<PropertyPath> propertyPaths()
+    {
+        return new PropertyPathSetView(this);
+    }
+    /**
+     * Check if the collection is a {@link ISet} of the same {@link #getModelRoot() model root}, so his paths are already checked.
+     * @param c The collection
+     * @return true if the paths of {@code c} are valid for the model root
+     */
+    private boolean isCheckedSet(Collection<?> c)
+    {
+        return (c instanceof ISet && modelRoot.equals(((ISet<?>)c).getModelRoot()));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s [%s]", getClass().getSimpleName(), toStringProperties());
+    }
+    /**
+     * Create the {@link #toString()} text only for properties.
+     * The derived classes can use this method to get the body of property values.
+     * @return The body for properties, without the '[' and ']' at start and end respectivelly.
+     */
+    protected String toStringProperties()
+    {
+        StringBuilder stb;
+        Iterator<String> itr;
+        
+        stb = new StringBuilder("modelRoot=");
+        stb.append(modelRoot.getName()).append(", properties=[");
+
+        if(!isEmpty())
+        {
+            itr = iterator();
+            stb.append(itr.next());
+            while(itr.hasNext())
+            {
+                stb.append(", ").append(itr.next());
+            }
+        }
+        stb.append("]");
+        return stb.toString();
+    }
+    /**
+     * Add a property path known as valid for the {@link #getModelRoot() model root}, without check it.
+     * @param path The property path
+     * @return true if added and false if already present
+     */
+    private boolean insert(String path)
+    {
+        Node node;
+        Node child;
+        int from;
+        int to;
+        int n;
+        
+        node = root;
+        from = 0;
+        do
+        {
+            if((to = path.indexOf('.', from)) < 0)
+            {
+                to = path.length();
+            }
+            if((n = find(node, path, from, to)) < 0)
+            {
+                child = new Node(path.substring(from, to).intern());
+                node.insertChild(-(n + 1), child);
+            }
+            else
+            {
+                child = node.children[n];
+            }
+            node = child;
+            from = to + 1;
+        }
+        while(to < path.length());
+        if(node.member)
+        {
+            return false;
+        }
+        node.member = true;
+        size++;
+        fingerprint += SetFingerprint.term(path);
+        modCount++;
+        return true;
+    }
+    /**
+     * Locate the node of the indicated property path.
+     * @param path The property path
+     * @return The node or null if not found
+     */
+    private Node lookup(String path)
+    {
+        Node node;
+        int from;
+        int to;
+        int n;
+        
+        node = root;
+        from = 0;
+        do
+        {
+            if((to = path.indexOf('.', from)) < 0)
+            {
+                to = path.length();
+            }
+            if((n = find(node, path, from, to)) < 0)
+            {
+                return null;
+            }
+            node = node.children[n];
+            from = to + 1;
+        }
+        while(to < path.length());
+        return node;
+    }
+    /**
+     * Creates a copy of this set, without validate again the property paths.
+     * @return The copy
+     */
+    private SetTrieImpl<T> copy()
+    {
+        SetTrieImpl<T> s;
+        
+        s = new SetTrieImpl<T>(modelRoot);
+        s.root = root.copy();
+        s.size = size;
+        s.fingerprint = fingerprint;
+        return s;
+    }
+    /**
+     * Binary search of a property name on the children of a node, without create the property name string.
+     * @param node The node
+     * @param path The property path
+     * @param from The start of property name on path, inclusive
+     * @param to The end of property name on path, exclusive
+     * @return The position of the child, or (-(insertion point) - 1) if not found
+     */
+    private static int find(Node node, String path, int from, int to)
+    {
+        Node [] children;
+        int low;
+        int high;
+        int mid;
+        int c;
+        
+        if((children = node.children) == null)
+        {
+            return -1;
+        }
+        low = 0;
+        high = children.length - 1;
+        while(low <= high)
+        {
+            mid = (low + high) >>> 1;
+            c = compare(children[mid].segment, path, from, to);
+            if(c < 0)
+            {
+                low = mid + 1;
+            }
+            else if(c > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+    /**
+     * Compare a property name with a region of a property path, as {@link String#compareTo(String)}.
+     * @param segment The property name
+     * @param path The property path
+     * @param from The start of region, inclusive
+     * @param to The end of region, exclusive
+     * @return The comparison result
+     */
+    private static int compare(String segment, String path, int from, int to)
+    {
+        int n;
+        int c;
+        
+        n = Math.min(segment.length(), to - from);
+        for(int i = 0; i < n; i++)
+        {
+            if((c = segment.charAt(i) - path.charAt(from + i)) != 0)
+            {
+                return c;
+            }
+        }
+        return segment.length() - (to - from);
+    }
+    /**
+     * Replace the set by his {@link SetSerializedForm serialized form}.
+     * @return The serialized form
+     * @throws ObjectStreamException Never
+     */
+    protected Object writeReplace() throws ObjectStreamException
+    {
+        return new SetSerializedForm(this);
+    }
+    /**
+     * A node of the trie, a property name.
+     */
+    private static final class Node
+    {
+        /** The property name, interned. Null for the root node. */
+        final String segment;
+        /** The children, sorted by property name, or null if none. */
+        Node [] children;
+        /** If the property path up to this node is in the set. */
+        boolean member;
+        
+        /**
+         * Constructor.
+         * @param segment The property name
+         */
+        Node(String segment)
+        {
+            this.segment = segment;
+        }
+        /**
+         * Insert a child at the indicated position.
+         * @param n The position
+         * @param child The child
+         */
+        void insertChild(int n, Node child)
+        {
+            Node [] c;
+            
+            if(children == null)
+            {
+                children = new Node [] {child};
+                return;
+            }
+            c = new Node[children.length + 1];
+            System.arraycopy(children, 0, c, 0, n);
+            c[n] = child;
+            System.arraycopy(children, n, c, n + 1, children.length - n);
+            children = c;
+        }
+        /**
+         * Remove a child.
+         * @param child The child
+         */
+        void removeChild(Node child)
+        {
+            Node [] c;
+            int n;
+            
+            for(n = 0; children[n] != child; n++)
+            {
+                // Search
+            }
+            if(children.length == 1)
+            {
+                children = null;
+                return;
+            }
+            c = new Node[children.length - 1];
+            System.arraycopy(children, 0, c, 0, n);
+            System.arraycopy(children, n + 1, c, n, c.length - n);
+            children = c;
+        }
+        /**
+         * Check if any descendant of this node is a property path of the set.
+         * @return true if any descendant is in the set
+         */
+        boolean hasMembersBelow()
+        {
+            if(children != null)
+            {
+                for(Node c : children)
+                {
+                    if(c.member || c.hasMembersBelow())
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        /**
+         * Count the property paths of the set on descendants of this node.
+         * @return The number of property paths
+         */
+        int countMembers()
+        {
+            int n;
+            
+            n = (member ? 1 : 0);
+            if(children != null)
+            {
+                for(Node c : children)
+                {
+                    n += c.countMembers();
+                }
+            }
+            return n;
+        }
+        /**
+         * Count the descendants of this node.
+         * @return The number of nodes below this node
+         */
+        int countNodes()
+        {
+            int n;
+            
+            n = 0;
+            if(children != null)
+            {
+                for(Node c : children)
+                {
+                    n += 1 + c.countNodes();
+                }
+            }
+            return n;
+        }
+        /**
+         * Approximate heap size of this node and its descendants.
+         * @param names The property names already counted, to count each one once
+         * @return The size, in bytes
+         */
+        long heapSize(Set<String> names)
+        {
+            long size;
+            
+            size = HeapSize.OBJECT_BYTES;
+            if(segment != null && names.add(segment))
+            {
+                size += HeapSize.of(segment);
+            }
+            if(children != null)
+            {
+                size += HeapSize.ofArray(children.length);
+                for(Node c : children)
+                {
+                    size += c.heapSize(names);
+                }
+            }
+            return size;
+        }
+        /**
+         * Deep copy of this node, the property names are shared.
+         * @return The copy
+         */
+        Node copy()
+        {
+            Node n;
+            
+            n = new Node(segment);
+            n.member = member;
+            if(children != null)
+            {
+                n.children = new Node[children.length];
+                for(int i = 0; i < children.length; i++)
+                {
+                    n.children[i] = children[i].copy();
+                }
+            }
+            return n;
+        }
+    }
+    /**
+     * Depth first iterator, that builds the property path of each node of the set when it's returned.
+     */
+    private class TrieIterator implements Iterator<String>
+    {
+        /** The nodes from the root to the current one. */
+        private Node [] nodes;
+        /** The next child to visit for each node of {@link #nodes}. */
+        private int [] positions;
+        /** The length of {@link #path} before the property name of each node of {@link #nodes}. */
+        private int [] lengths;
+        private int depth;
+        private final StringBuilder path;
+        /** If the current node is the next to return. */
+        private boolean ready;
+        private Node last;
+        /** The property path of {@link #last}. */
+        private String lastPath;
+        private int expectedModCount;
+        
+        TrieIterator()
+        {
+            nodes = new Node[8];
+            positions = new int[8];
+            lengths = new int[8];
+            nodes[0] = root;
+            depth = 1;
+            path = new StringBuilder();
+            ready = false;
+            last = null;
+            expectedModCount = modCount;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if(!ready)
+            {
+                ready = advance();
+            }
+            return ready;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String next()
+        {
+            if(modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if(!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            last = nodes[depth - 1];
+            lastPath = path.toString();
+            return lastPath;
+        }
+        /**
+         * Remove the last property path, the nodes are kept until the end of iteration.
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove()
+        {
+            if(last == null)
+            {
+                throw new IllegalStateException();
+            }
+            if(modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            last.member = false;
+            last = null;
+            size--;
+            fingerprint -= SetFingerprint.term(lastPath);
+            modCount++;
+            expectedModCount = modCount;
+        }
+        /**
+         * Go to the next node of the set, in depth first order.
+         * @return true if found and false if no more nodes
+         */
+        private boolean advance()
+        {
+            Node node;
+            Node child;
+            int top;
+            
+            while(depth > 0)
+            {
+                top = depth - 1;
+                node = nodes[top];
+                if(node.children != null && positions[top] < node.children.length)
+                {
+                    child = node.children[positions[top]++];
+                    if(depth == nodes.length)
+                    {
+                        nodes = Arrays.copyOf(nodes, depth * 2);
+                        positions = Arrays.copyOf(positions, depth * 2);
+                        lengths = Arrays.copyOf(lengths, depth * 2);
+                    }
+                    lengths[depth] = path.length();
+                    if(top > 0)
+                    {
+                        path.append('.');
+                    }
+                    path.append(child.segment);
+                    nodes[depth] = child;
+                    positions[depth] = 0;
+                    depth++;
+                    if(child.member)
+                    {
+                        return true;
+                    }
+                }
+                else
+                {
+                    path.setLength(lengths[top]);
+                    depth--;
+                }
+            }
+            return false;
+        }
+    }
+}
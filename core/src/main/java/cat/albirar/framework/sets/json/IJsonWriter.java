@@ -0,0 +1,89 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import cat.albirar.framework.sets.ISet;
+
+/**
+ * A compiled JSON writer of the properties of a set.
+ * <p>Writes each object as a JSON object with the selected properties, sorted by name:
+ * <ul>
+ * <li>If the set contains descendants of the property, the property is written as a nested JSON object, with only the descendants.</li>
+ * <li>If not, the value is written as a JSON value: {@link CharSequence}, {@link Character} and {@link Enum} (his name) as strings,
+ * {@link Number numbers}, {@link Boolean booleans}, {@link java.util.Date dates} as milliseconds since epoch,
+ * {@link Iterable iterables} and arrays as JSON arrays, and any other value as the string of {@link Object#toString()}.</li>
+ * </ul>
+ * A null value or a null intermediate property is written as {@code null}.</p>
+ * <p>The writer is compiled once, so writing doesn't create intermediate maps nor strings for the property names,
+ * strings, integral numbers, booleans or dates. The output is buffered on a buffer reused by each thread.
+ * Instances are immutable and thread safe.</p>
+ * @param <T> The model type
+ * @see JsonWriterFactory
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public interface IJsonWriter<T>
+{
+    /**
+     * The model type of the writer.
+     * @return The model type
+     */
+    public Class<T> getModelType();
+    /**
+     * The set that defines the written properties.
+     * @return The set, immutable
+     */
+    public ISet<?> getSet();
+    /**
+     * Write the bean as a JSON object. The {@code out} is flushed but not closed.
+     * @param bean The bean, can be null
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code out} is null
+     */
+    public void write(T bean, Writer out) throws IOException;
+    /**
+     * Write the bean as a JSON object, encoded as UTF-8. The {@code out} is flushed but not closed.
+     * @param bean The bean, can be null
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code out} is null
+     */
+    public void write(T bean, OutputStream out) throws IOException;
+    /**
+     * Write the beans as a JSON array of objects. The {@code out} is flushed but not closed.
+     * @param beans The beans, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code beans} or {@code out} are null
+     */
+    public void writeAll(Iterable<? extends T> beans, Writer out) throws IOException;
+    /**
+     * Write the beans as a JSON array of objects, encoded as UTF-8. The {@code out} is flushed but not closed.
+     * @param beans The beans, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code beans} or {@code out} are null
+     */
+    public void writeAll(Iterable<? extends T> beans, OutputStream out) throws IOException;
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.json.impl.JsonWriterDefaultImpl;
+
+/**
+ * A factory of {@link IJsonWriter JSON writers}.
+ * <p>Writers are compiled once for each model type and set and cached, so the common use is:
+ * <pre>
+ * IJsonWriter&lt;Customer&gt; json;
+ * 
+ * json = JsonWriterFactory.compile(Customer.class, fields);
+ * json.writeAll(customers, response.getOutputStream());
+ * </pre>
+ * </p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class JsonWriterFactory
+{
+    /**
+     * Gets the JSON writer of the set for the model type.
+     * @param modelType The model type, required. Should to be the model root of {@code set} or a descendant
+     * @param set The set, required. Is copied as {@link ISet#freeze() immutable set}
+     * @return The writer
+     * @throws IllegalArgumentException If any argument is null, if {@code modelType} is not assignable to the model root of {@code set}
+     * or if any property of the set cannot be read
+     */
+    public static <T> IJsonWriter<T> compile(Class<T> modelType, ISet<?> set)
+    {
+        return JsonWriterDefaultImpl.forSet(modelType, set);
+    }
+    /**
+     * Write the properties of the set of the bean as a JSON object.
+     * The writer is compiled with the model root of the set as model type.
+     * @param bean The bean, can be null
+     * @param set The set, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null or if {@code bean} is not an instance of the model root of {@code set}
+     */
+    public static void write(Object bean, ISet<?> set, Writer out) throws IOException
+    {
+        writerFor(bean, set).write(bean, out);
+    }
+    /**
+     * Write the properties of the set of the bean as a JSON object, encoded as UTF-8.
+     * The writer is compiled with the model root of the set as model type.
+     * @param bean The bean, can be null
+     * @param set The set, required
+     * @param out The output, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If {@code set} or {@code out} are null or if {@code bean} is not an instance of the model root of {@code set}
+     */
+    public static void write(Object bean, ISet<?> set, OutputStream out) throws IOException
+    {
+        writerFor(bean, set).write(bean, out);
+    }
+    /**
+     * Gets the writer of the set for the bean.
+     * @param bean The bean, can be null
+     * @param set The set, required
+     * @return The writer, compiled with the model root of the set
+     */
+    @SuppressWarnings("unchecked")
+    private static IJsonWriter<Object> writerFor(Object bean, ISet<?> set)
+    {
+        Assert.notNull(set, "The set is required");
+        if(bean != null)
+        {
+            Assert.isInstanceOf(set.getModelRoot(), bean, "The bean is not an instance of the model of the set");
+        }
+        return (IJsonWriter<Object>) (IJsonWriter<?>) compile(set.getModelRoot(), set);
+    }
+}
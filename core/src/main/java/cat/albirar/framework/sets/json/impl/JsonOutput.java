@@ -0,0 +1,522 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Date;
+
+/**
+ * A buffered JSON tokens output, to a {@link Writer} or to an {@link OutputStream} as UTF-8.
+ * <p>Each thread have an output that is reused on each write, see {@link #acquire()} and {@link #release()}.
+ * The strings are escaped and the integral numbers are formatted directly on the buffer; the decimal numbers are formatted on
+ * a reused {@link StringBuilder} and copied to the buffer, so no string is created for any value.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+final class JsonOutput
+{
+    private static final int SIZE = 8192;
+    private static final char [] NULL = "null".toCharArray();
+    private static final char [] TRUE = "true".toCharArray();
+    private static final char [] FALSE = "false".toCharArray();
+    private static final char [] MIN_LONG = Long.toString(Long.MIN_VALUE).toCharArray();
+    private static final char [] HEX = "0123456789abcdef".toCharArray();
+    /** The output of each thread. */
+    private static final ThreadLocal<JsonOutput> outputs = new ThreadLocal<JsonOutput>()
+    {
+        @Override
+        protected JsonOutput initialValue()
+        {
+            return new JsonOutput();
+        }
+    };
+    
+    private final char [] chars;
+    /** The buffer to format decimal numbers. */
+    private final StringBuilder decimal;
+    /** The UTF-8 encoding buffer, only for streams. */
+    private byte [] bytes;
+    private int count;
+    private Writer writer;
+    private OutputStream stream;
+    private boolean inUse;
+    
+    /**
+     * Constructor.
+     */
+    private JsonOutput()
+    {
+        chars = new char[SIZE];
+        decimal = new StringBuilder(32);
+    }
+    /**
+     * Gets the output of the current thread, or a new one if is in use (on nested writes).
+     * @return The output, not opened
+     */
+    static JsonOutput acquire()
+    {
+        JsonOutput o;
+        
+        o = outputs.get();
+        if(o.inUse)
+        {
+            o = new JsonOutput();
+        }
+        o.inUse = true;
+        return o;
+    }
+    /**
+     * Release the output, discarding any pending content.
+     */
+    void release()
+    {
+        count = 0;
+        writer = null;
+        stream = null;
+        inUse = false;
+    }
+    /**
+     * Open the output to a writer.
+     * @param writer The writer
+     * @return This output
+     */
+    JsonOutput open(Writer writer)
+    {
+        this.writer = writer;
+        return this;
+    }
+    /**
+     * Open the output to a stream.
+     * @param stream The stream
+     * @return This output
+     */
+    JsonOutput open(OutputStream stream)
+    {
+        if(bytes == null)
+        {
+            bytes = new byte[SIZE * 3];
+        }
+        this.stream = stream;
+        return this;
+    }
+    /**
+     * Write the pending content and flush the writer or stream.
+     * @throws IOException If an I/O error occurs
+     */
+    void flush() throws IOException
+    {
+        drain(true);
+        if(writer != null)
+        {
+            writer.flush();
+        }
+        else
+        {
+            stream.flush();
+        }
+    }
+    /**
+     * Write a character.
+     * @param c The character, not escaped
+     * @throws IOException If an I/O error occurs
+     */
+    void raw(char c) throws IOException
+    {
+        if(count == SIZE)
+        {
+            drain(false);
+        }
+        chars[count++] = c;
+    }
+    /**
+     * Write characters.
+     * @param cs The characters, not escaped
+     * @throws IOException If an I/O error occurs
+     */
+    void raw(char [] cs) throws IOException
+    {
+        if(count + cs.length > SIZE)
+        {
+            drain(false);
+            if(cs.length > SIZE)
+            {
+                for(char c : cs)
+                {
+                    raw(c);
+                }
+                return;
+            }
+        }
+        System.arraycopy(cs, 0, chars, count, cs.length);
+        count += cs.length;
+    }
+    /**
+     * Write the null literal.
+     * @throws IOException If an I/O error occurs
+     */
+    void nullValue() throws IOException
+    {
+        raw(NULL);
+    }
+    /**
+     * Write a boolean literal.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void bool(boolean value) throws IOException
+    {
+        raw(value ? TRUE : FALSE);
+    }
+    /**
+     * Write an integral number.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void number(long value) throws IOException
+    {
+        int end;
+        int p;
+        
+        if(value == Long.MIN_VALUE)
+        {
+            raw(MIN_LONG);
+            return;
+        }
+        if(count + 20 > SIZE)
+        {
+            drain(false);
+        }
+        if(value < 0)
+        {
+            chars[count++] = '-';
+            value = -value;
+        }
+        end = count + digits(value);
+        p = end;
+        do
+        {
+            chars[--p] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        while(value != 0);
+        count = end;
+    }
+    /**
+     * Write a decimal number. Not finite numbers are written as null.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void number(double value) throws IOException
+    {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+        {
+            nullValue();
+        }
+        else if(value == (long) value && Math.abs(value) < 1e15)
+        {
+            number((long) value);
+        }
+        else
+        {
+            decimal.setLength(0);
+            decimal.append(value);
+            decimal();
+        }
+    }
+    /**
+     * Write a decimal number with the float precision, that is, with the shortest digits that identify the float value.
+     * Not finite numbers are written as null.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void number(float value) throws IOException
+    {
+        if(Float.isNaN(value) || Float.isInfinite(value))
+        {
+            nullValue();
+        }
+        else if(value == (long) value && Math.abs(value) < 1e15f)
+        {
+            number((long) value);
+        }
+        else
+        {
+            decimal.setLength(0);
+            decimal.append(value);
+            decimal();
+        }
+    }
+    /**
+     * Copy the formatted decimal number to the buffer.
+     * @throws IOException If an I/O error occurs
+     */
+    private void decimal() throws IOException
+    {
+        int n;
+        
+        n = decimal.length();
+        if(count + n > SIZE)
+        {
+            drain(false);
+        }
+        decimal.getChars(0, n, chars, count);
+        count += n;
+    }
+    /**
+     * Write a string, quoted and escaped.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void string(CharSequence value) throws IOException
+    {
+        int n;
+        
+        raw('"');
+        n = value.length();
+        for(int i = 0; i < n; i++)
+        {
+            escaped(value.charAt(i));
+        }
+        raw('"');
+    }
+    /**
+     * Write a single character string, quoted and escaped.
+     * @param value The value
+     * @throws IOException If an I/O error occurs
+     */
+    void string(char value) throws IOException
+    {
+        raw('"');
+        escaped(value);
+        raw('"');
+    }
+    /**
+     * Write any value, see {@link cat.albirar.framework.sets.json.IJsonWriter} for the mapping of types.
+     * @param value The value, can be null
+     * @throws IOException If an I/O error occurs
+     */
+    void value(Object value) throws IOException
+    {
+        int n;
+        boolean first;
+        
+        if(value == null)
+        {
+            nullValue();
+        }
+        else if(value instanceof CharSequence)
+        {
+            string((CharSequence) value);
+        }
+        else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+        {
+            number(((Number) value).longValue());
+        }
+        else if(value instanceof Double)
+        {
+            number(((Double) value).doubleValue());
+        }
+        else if(value instanceof Float)
+        {
+            number(((Float) value).floatValue());
+        }
+        else if(value instanceof Number)
+        {
+            raw(value.toString().toCharArray());
+        }
+        else if(value instanceof Boolean)
+        {
+            bool(((Boolean) value).booleanValue());
+        }
+        else if(value instanceof Character)
+        {
+            string(((Character) value).charValue());
+        }
+        else if(value instanceof Enum)
+        {
+            string(((Enum<?>) value).name());
+        }
+        else if(value instanceof Date)
+        {
+            number(((Date) value).getTime());
+        }
+        else if(value instanceof Iterable)
+        {
+            raw('[');
+            first = true;
+            for(Object o : (Iterable<?>) value)
+            {
+                if(!first)
+                {
+                    raw(',');
+                }
+                value(o);
+                first = false;
+            }
+            raw(']');
+        }
+        else if(value.getClass().isArray())
+        {
+            raw('[');
+            n = Array.getLength(value);
+            for(int i = 0; i < n; i++)
+            {
+                if(i > 0)
+                {
+                    raw(',');
+                }
+                value(Array.get(value, i));
+            }
+            raw(']');
+        }
+        else
+        {
+            string(value.toString());
+        }
+    }
+    /**
+     * Write a character of a string, escaped.
+     * @param c The character
+     * @throws IOException If an I/O error occurs
+     */
+    private void escaped(char c) throws IOException
+    {
+        if(count + 6 > SIZE)
+        {
+            drain(false);
+        }
+        if(c == '"' || c == '\\')
+        {
+            chars[count++] = '\\';
+            chars[count++] = c;
+        }
+        else if(c < 0x20)
+        {
+            chars[count++] = '\\';
+            switch(c)
+            {
+                case '\n':
+                    chars[count++] = 'n';
+                    break;
+                case '\r':
+                    chars[count++] = 'r';
+                    break;
+                case '\t':
+                    chars[count++] = 't';
+                    break;
+                case '\b':
+                    chars[count++] = 'b';
+                    break;
+                case '\f':
+                    chars[count++] = 'f';
+                    break;
+                default:
+                    chars[count++] = 'u';
+                    chars[count++] = '0';
+                    chars[count++] = '0';
+                    chars[count++] = HEX[c >> 4];
+                    chars[count++] = HEX[c & 0xF];
+            }
+        }
+        else
+        {
+            chars[count++] = c;
+        }
+    }
+    /**
+     * Number of decimal digits of a non negative value.
+     * @param value The value
+     * @return The number of digits
+     */
+    private static int digits(long value)
+    {
+        int d;
+        
+        d = 1;
+        while(value >= 10)
+        {
+            value /= 10;
+            d++;
+        }
+        return d;
+    }
+    /**
+     * Write the buffer to the writer or stream.
+     * @param all If all the buffer should to be written. If not, a trailing high surrogate is kept on the buffer to encode it with his pair
+     * @throws IOException If an I/O error occurs
+     */
+    private void drain(boolean all) throws IOException
+    {
+        int n;
+        int b;
+        int c;
+        int keep;
+        
+        if(writer != null)
+        {
+            writer.write(chars, 0, count);
+            count = 0;
+            return;
+        }
+        keep = (!all && count > 0 && Character.isHighSurrogate(chars[count - 1]) ? 1 : 0);
+        n = count - keep;
+        b = 0;
+        for(int i = 0; i < n; i++)
+        {
+            c = chars[i];
+            if(c < 0x80)
+            {
+                bytes[b++] = (byte) c;
+            }
+            else if(c < 0x800)
+            {
+                bytes[b++] = (byte) (0xC0 | (c >> 6));
+                bytes[b++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate((char) c) && i + 1 < n && Character.isLowSurrogate(chars[i + 1]))
+            {
+                c = Character.toCodePoint((char) c, chars[++i]);
+                bytes[b++] = (byte) (0xF0 | (c >> 18));
+                bytes[b++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                bytes[b++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[b++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isSurrogate((char) c))
+            {
+                // Unpaired surrogate
+                bytes[b++] = (byte) '?';
+            }
+            else
+            {
+                bytes[b++] = (byte) (0xE0 | (c >> 12));
+                bytes[b++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[b++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        stream.write(bytes, 0, b);
+        if(keep > 0)
+        {
+            chars[0] = chars[count - 1];
+        }
+        count = keep;
+    }
+}
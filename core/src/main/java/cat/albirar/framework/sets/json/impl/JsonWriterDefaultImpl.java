@@ -0,0 +1,370 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json.impl;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.BoundedCache;
+import cat.albirar.framework.sets.impl.PropertyPathTree;
+import cat.albirar.framework.sets.json.IJsonWriter;
+
+/**
+ * Default {@link IJsonWriter} implementation, based on {@link MethodHandle method handles}.
+ * <p>The paths of the set are compiled in a tree of nodes that follows the properties. Each node have his property name
+ * already quoted and escaped, and a getter with the exact type for primitive properties, so primitive values are not boxed.</p>
+ * <p>Writers are cached per model type (in a {@link ClassValue}) and set, see {@link #forSet(Class, ISet)}. The cache of each
+ * model type holds up to {@value #CACHE_CAPACITY} writers, as the sets can be built for each request.</p>
+ * @param <T> The model type
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class JsonWriterDefaultImpl<T> implements IJsonWriter<T>
+{
+    /** Maximum number of writers cached for each model type. */
+    public static final int CACHE_CAPACITY = 256;
+    /** The writers, per model type and set. */
+    private static final ClassValue<BoundedCache<ISet<?>, JsonWriterDefaultImpl<?>>> writers = new ClassValue<BoundedCache<ISet<?>, JsonWriterDefaultImpl<?>>>()
+    {
+        @Override
+        protected BoundedCache<ISet<?>, JsonWriterDefaultImpl<?>> computeValue(Class<?> type)
+        {
+            return new BoundedCache<ISet<?>, JsonWriterDefaultImpl<?>>(CACHE_CAPACITY);
+        }
+    };
+    /** Nested object, written with the children nodes. */
+    private static final int OBJECT = 0;
+    /** Integral primitive, getter as (Object)long. */
+    private static final int LONG = 1;
+    /** Double primitive, getter as (Object)double. */
+    private static final int DOUBLE = 2;
+    /** Float primitive, getter as (Object)float, to be written with the float precision. */
+    private static final int FLOAT = 3;
+    /** Boolean primitive, getter as (Object)boolean. */
+    private static final int BOOLEAN = 4;
+    /** Char primitive, getter as (Object)char. */
+    private static final int CHAR = 5;
+    /** Any other value, getter as (Object)Object. */
+    private static final int VALUE = 6;
+    
+    private final Class<T> modelType;
+    private final ISet<?> set;
+    /** The first level nodes. */
+    private final Node [] nodes;
+    
+    /**
+     * Compile the writer.
+     * @param modelType The model type
+     * @param set The set, immutable
+     * @throws IllegalArgumentException If any property of the set cannot be read
+     */
+    private JsonWriterDefaultImpl(Class<T> modelType, ISet<?> set)
+    {
+        this.modelType = modelType;
+        this.set = set;
+        this.nodes = compile(PropertyPathTree.of(set), modelType);
+    }
+    /**
+     * Gets the writer for the set, compiling it the first time.
+     * @param modelType The model type, required. Should to be the model root of {@code set} or a descendant
+     * @param set The set, required
+     * @return The writer
+     * @throws IllegalArgumentException If any argument is null, if {@code modelType} is not assignable to the model root of {@code set}
+     * or if any property of the set cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonWriterDefaultImpl<T> forSet(Class<T> modelType, ISet<?> set)
+    {
+        BoundedCache<ISet<?>, JsonWriterDefaultImpl<?>> cache;
+        JsonWriterDefaultImpl<?> writer;
+        ISet<?> frozen;
+        
+        Assert.notNull(modelType, "The model type is required");
+        Assert.notNull(set, "The set is required");
+        cache = writers.get(modelType);
+        if((writer = cache.get(set)) == null)
+        {
+            Assert.isTrue(set.getModelRoot().isAssignableFrom(modelType), "The model type '".concat(modelType.getName())
+                    .concat("' is not assignable to the model of set '").concat(set.getModelRoot().getName()).concat("'"));
+            frozen = set.freeze();
+            writer = cache.putIfAbsent(frozen, new JsonWriterDefaultImpl<T>(modelType, frozen));
+        }
+        return (JsonWriterDefaultImpl<T>) writer;
+    }
+    /**
+     * Compile the nodes of the children of a property tree node.
+     * @param branch The property tree node
+     * @param type The model type of the node
+     * @return The nodes
+     */
+    private static Node [] compile(PropertyPathTree branch, Class<?> type)
+    {
+        Node [] result;
+        PropertyDescriptor pd;
+        MethodHandle getter;
+        Class<?> pType;
+        String name;
+        int n;
+        
+        result = new Node[branch.getChildren().size()];
+        n = 0;
+        for(PropertyPathTree child : branch.getChildren())
+        {
+            name = child.getName();
+            pd = child.readableProperty(type);
+            getter = PropertyPathTree.unreflect(pd.getReadMethod());
+            pType = pd.getPropertyType();
+            if(!child.isLeaf())
+            {
+                result[n++] = new Node(name, OBJECT, getter.asType(MethodType.methodType(Object.class, Object.class))
+                        , compile(child, pType));
+            }
+            else if(pType == long.class || pType == int.class || pType == short.class || pType == byte.class)
+            {
+                result[n++] = new Node(name, LONG, getter.asType(MethodType.methodType(long.class, Object.class)), null);
+            }
+            else if(pType == double.class)
+            {
+                result[n++] = new Node(name, DOUBLE, getter.asType(MethodType.methodType(double.class, Object.class)), null);
+            }
+            else if(pType == float.class)
+            {
+                result[n++] = new Node(name, FLOAT, getter.asType(MethodType.methodType(float.class, Object.class)), null);
+            }
+            else if(pType == boolean.class)
+            {
+                result[n++] = new Node(name, BOOLEAN, getter.asType(MethodType.methodType(boolean.class, Object.class)), null);
+            }
+            else if(pType == char.class)
+            {
+                result[n++] = new Node(name, CHAR, getter.asType(MethodType.methodType(char.class, Object.class)), null);
+            }
+            else
+            {
+                result[n++] = new Node(name, VALUE, getter.asType(MethodType.methodType(Object.class, Object.class)), null);
+            }
+        }
+        return result;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<T> getModelType()
+    {
+        return modelType;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> getSet()
+    {
+        return set;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(T bean, Writer out) throws IOException
+    {
+        Assert.notNull(out, "The output is required");
+        write(bean, JsonOutput.acquire().open(out));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(T bean, OutputStream out) throws IOException
+    {
+        Assert.notNull(out, "The output is required");
+        write(bean, JsonOutput.acquire().open(out));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAll(Iterable<? extends T> beans, Writer out) throws IOException
+    {
+        Assert.notNull(beans, "The beans are required");
+        Assert.notNull(out, "The output is required");
+        writeAll(beans, JsonOutput.acquire().open(out));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAll(Iterable<? extends T> beans, OutputStream out) throws IOException
+    {
+        Assert.notNull(beans, "The beans are required");
+        Assert.notNull(out, "The output is required");
+        writeAll(beans, JsonOutput.acquire().open(out));
+    }
+    /**
+     * Write a bean and release the output.
+     * @param bean The bean
+     * @param out The output, acquired and opened
+     * @throws IOException If an I/O error occurs
+     */
+    private void write(T bean, JsonOutput out) throws IOException
+    {
+        try
+        {
+            writeObject(nodes, bean, out);
+            out.flush();
+        }
+        finally
+        {
+            out.release();
+        }
+    }
+    /**
+     * Write the beans as array and release the output.
+     * @param beans The beans
+     * @param out The output, acquired and opened
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeAll(Iterable<? extends T> beans, JsonOutput out) throws IOException
+    {
+        boolean first;
+        
+        try
+        {
+            out.raw('[');
+            first = true;
+            for(T bean : beans)
+            {
+                if(!first)
+                {
+                    out.raw(',');
+                }
+                writeObject(nodes, bean, out);
+                first = false;
+            }
+            out.raw(']');
+            out.flush();
+        }
+        finally
+        {
+            out.release();
+        }
+    }
+    /**
+     * Write the nodes of a bean as a JSON object.
+     * @param nodes The nodes
+     * @param bean The bean, can be null
+     * @param out The output
+     * @throws IOException If an I/O error occurs
+     */
+    private static void writeObject(Node [] nodes, Object bean, JsonOutput out) throws IOException
+    {
+        if(bean == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.raw('{');
+        try
+        {
+            for(int i = 0; i < nodes.length; i++)
+            {
+                if(i > 0)
+                {
+                    out.raw(',');
+                }
+                out.raw(nodes[i].key);
+                switch(nodes[i].kind)
+                {
+                    case OBJECT:
+                        writeObject(nodes[i].children, (Object) nodes[i].getter.invokeExact(bean), out);
+                        break;
+                    case LONG:
+                        out.number((long) nodes[i].getter.invokeExact(bean));
+                        break;
+                    case DOUBLE:
+                        out.number((double) nodes[i].getter.invokeExact(bean));
+                        break;
+                    case FLOAT:
+                        out.number((float) nodes[i].getter.invokeExact(bean));
+                        break;
+                    case BOOLEAN:
+                        out.bool((boolean) nodes[i].getter.invokeExact(bean));
+                        break;
+                    case CHAR:
+                        out.string((char) nodes[i].getter.invokeExact(bean));
+                        break;
+                    default:
+                        out.value((Object) nodes[i].getter.invokeExact(bean));
+                }
+            }
+        }
+        catch(IOException | RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new IllegalStateException("Error reading the bean of type '".concat(bean.getClass().getName()).concat("'"), e);
+        }
+        out.raw('}');
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return modelType.getName().concat(" ").concat(set.toString());
+    }
+    /**
+     * A compiled node of the writer.
+     */
+    private static final class Node
+    {
+        /** The property name, quoted and followed by colon. */
+        final char [] key;
+        final int kind;
+        /** The getter, with the type of {@link #kind}. */
+        final MethodHandle getter;
+        /** For {@link JsonWriterDefaultImpl#OBJECT} nodes, the children. */
+        final Node [] children;
+        
+        /**
+         * Constructor.
+         * @param name The property name, a java identifier, so doesn't need escape
+         * @param kind The kind
+         * @param getter The getter
+         * @param children The children
+         */
+        Node(String name, int kind, MethodHandle getter, Node [] children)
+        {
+            this.key = "\"".concat(name).concat("\":").toCharArray();
+            this.kind = kind;
+            this.getter = getter;
+            this.children = children;
+        }
+    }
+}
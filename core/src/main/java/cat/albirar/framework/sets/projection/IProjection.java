@@ -0,0 +1,72 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.projection;
+
+import cat.albirar.framework.sets.ISet;
+
+/**
+ * A compiled projection of a set, from a source type to a target type.
+ * <p>The projection copies each selected property path from the source object to the same property path of the target object:
+ * <ul>
+ * <li>If the set contains descendants of the path, the path is navigated: the target object of the property is created
+ * (or reused if already exists) and only the descendants are copied on it.</li>
+ * <li>If not, the value is copied as is, so the type of the target property should to be assignable from the source property.</li>
+ * </ul>
+ * If a source intermediate property is null, null is copied to the target property.</p>
+ * <p>The projection is compiled once, so projecting only creates the target objects. Instances are immutable and thread safe.</p>
+ * @param <S> The source type
+ * @param <D> The target type
+ * @see ProjectionFactory
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public interface IProjection<S, D>
+{
+    /**
+     * The source type of the projection.
+     * @return The source type
+     */
+    public Class<S> getSourceType();
+    /**
+     * The target type of the projection.
+     * @return The target type
+     */
+    public Class<D> getTargetType();
+    /**
+     * The set that defines the projection.
+     * @return The set, immutable
+     */
+    public ISet<?> getSet();
+    /**
+     * Project the source on a new instance of the target type.
+     * @param source The source, can be null
+     * @return The target instance, or null if {@code source} is null
+     * @throws IllegalStateException If the target type cannot be instantiated
+     */
+    public D project(S source);
+    /**
+     * Project the source on the indicated target.
+     * The existing target intermediate objects are reused.
+     * @param source The source, required
+     * @param target The target, required
+     * @return The {@code target}
+     * @throws IllegalArgumentException If {@code source} or {@code target} are null
+     */
+    public D project(S source, D target);
+}
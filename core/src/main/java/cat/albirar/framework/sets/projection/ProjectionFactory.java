@@ -0,0 +1,128 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.projection;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.projection.impl.ProjectionDefaultImpl;
+import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.SetNotFoundException;
+import cat.albirar.framework.sets.registry.SetRegistryFactory;
+
+/**
+ * A factory of {@link IProjection projections}.
+ * <p>Projections are compiled once for each source type, target type and set and cached, so the common use is:
+ * <pre>
+ * IProjection&lt;Customer, CustomerDto&gt; projection;
+ * 
+ * projection = ProjectionFactory.compile(Customer.class, CustomerDto.class, "customerSummary");
+ * for(Customer c : customers)
+ * {
+ *     response.add(projection.project(c));
+ * }
+ * </pre>
+ * </p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class ProjectionFactory
+{
+    /**
+     * Gets the projection of the set from the source type to the target type.
+     * @param sourceType The source type, required. Should to be the model root of {@code set} or a descendant
+     * @param targetType The target type, required
+     * @param set The set, required. Is copied as {@link ISet#freeze() immutable set}
+     * @return The projection
+     * @throws IllegalArgumentException If any argument is null, if {@code sourceType} is not assignable to the model root of {@code set}
+     * or if any property path of the set cannot be projected (unknown on source or target, or non assignable types)
+     */
+    public static <S, D> IProjection<S, D> compile(Class<S> sourceType, Class<D> targetType, ISet<?> set)
+    {
+        return ProjectionDefaultImpl.forSet(sourceType, targetType, set);
+    }
+    /**
+     * Gets the projection of the named set of the {@link SetRegistryFactory#getJVMRegistry() JVM registry} from the source type to the target type.
+     * @param sourceType The source type, required. Should to be the model root of the set or a descendant
+     * @param targetType The target type, required
+     * @param setName The set name, required
+     * @return The projection
+     * @throws IllegalArgumentException If any argument is null, if {@code sourceType} is not assignable to the model root of the set
+     * or if any property path of the set cannot be projected
+     * @throws SetNotFoundException If the set doesn't exists on the registry
+     */
+    public static <S, D> IProjection<S, D> compile(Class<S> sourceType, Class<D> targetType, String setName)
+    {
+        return compile(sourceType, targetType, SetRegistryFactory.getJVMRegistry(), setName);
+    }
+    /**
+     * Gets the projection of the named set of the registry from the source type to the target type.
+     * @param sourceType The source type, required. Should to be the model root of the set or a descendant
+     * @param targetType The target type, required
+     * @param registry The registry, required
+     * @param setName The set name, required
+     * @return The projection
+     * @throws IllegalArgumentException If any argument is null, if {@code sourceType} is not assignable to the model root of the set
+     * or if any property path of the set cannot be projected
+     * @throws SetNotFoundException If the set doesn't exists on the registry
+     */
+    public static <S, D> IProjection<S, D> compile(Class<S> sourceType, Class<D> targetType, ISetRegistry registry, String setName)
+    {
+        Assert.notNull(registry, "The registry is required");
+        return compile(sourceType, targetType, registry.getSet(setName));
+    }
+    /**
+     * Project the source on a new instance of the target type.
+     * The projection is compiled with the model root of the set as source type.
+     * @param source The source, can be null
+     * @param targetType The target type, required
+     * @param set The set, required
+     * @return The target instance, or null if {@code source} is null
+     * @throws IllegalArgumentException If {@code targetType} or {@code set} are null, if {@code source} is not an instance of the
+     * model root of {@code set} or if any property path of the set cannot be projected
+     */
+    @SuppressWarnings("unchecked")
+    public static <D> D project(Object source, Class<D> targetType, ISet<?> set)
+    {
+        IProjection<Object, D> projection;
+        
+        Assert.notNull(set, "The set is required");
+        projection = (IProjection<Object, D>) (IProjection<?, D>) compile(set.getModelRoot(), targetType, set);
+        if(source != null)
+        {
+            Assert.isInstanceOf(set.getModelRoot(), source, "The source is not an instance of the model of the set");
+        }
+        return projection.project(source);
+    }
+    /**
+     * Project the source on a new instance of the target type, with the named set of the {@link SetRegistryFactory#getJVMRegistry() JVM registry}.
+     * The projection is compiled with the model root of the set as source type.
+     * @param source The source, can be null
+     * @param targetType The target type, required
+     * @param setName The set name, required
+     * @return The target instance, or null if {@code source} is null
+     * @throws IllegalArgumentException If {@code targetType} or {@code setName} are null, if {@code source} is not an instance of the
+     * model root of the set or if any property path of the set cannot be projected
+     * @throws SetNotFoundException If the set doesn't exists on the registry
+     */
+    public static <D> D project(Object source, Class<D> targetType, String setName)
+    {
+        return project(source, targetType, SetRegistryFactory.getJVMRegistry().getSet(setName));
+    }
+}
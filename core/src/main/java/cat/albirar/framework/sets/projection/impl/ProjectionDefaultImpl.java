@@ -0,0 +1,491 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.projection.impl;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.BoundedCache;
+import cat.albirar.framework.sets.impl.ModelDescriptorCache;
+import cat.albirar.framework.sets.impl.PropertyPathTree;
+import cat.albirar.framework.sets.projection.IProjection;
+
+/**
+ * Default {@link IProjection} implementation, based on {@link MethodHandle method handles}.
+ * <p>The paths of the set are compiled in a tree of nodes that follows the properties. Each leaf node have a single
+ * method handle that reads the source property and writes the target property with the exact types, so primitive
+ * values are not boxed. Each navigated node have the source getter and the target getter, setter and constructor.</p>
+ * <p>Projections are cached per source type (in a {@link ClassValue}), target type and set, see {@link #forSet(Class, Class, ISet)}.
+ * The cache of each source type holds up to {@value #CACHE_CAPACITY} projections, as the sets can be built for each request; a
+ * cached projection holds the target type, so the callers that use a projection for long should hold it instead of compile it
+ * each time.</p>
+ * @param <S> The source type
+ * @param <D> The target type
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public final class ProjectionDefaultImpl<S, D> implements IProjection<S, D>
+{
+    /** Maximum number of projections cached for each source type. */
+    public static final int CACHE_CAPACITY = 256;
+    /** The projections, per source type, target type and set. */
+    private static final ClassValue<BoundedCache<Key, ProjectionDefaultImpl<?, ?>>> projections = new ClassValue<BoundedCache<Key, ProjectionDefaultImpl<?, ?>>>()
+    {
+        @Override
+        protected BoundedCache<Key, ProjectionDefaultImpl<?, ?>> computeValue(Class<?> type)
+        {
+            return new BoundedCache<Key, ProjectionDefaultImpl<?, ?>>(CACHE_CAPACITY);
+        }
+    };
+    /** The type of getters: (Object)Object. */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    /** The type of setters and copiers: (Object, Object)void. */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    /** The type of constructors: ()Object. */
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    /** The copier for nullable source values to primitive target properties, see {@link #copyUnlessNull(MethodHandle, MethodHandle, Object, Object)}. */
+    private static final MethodHandle COPY_UNLESS_NULL;
+    
+    static
+    {
+        try
+        {
+            COPY_UNLESS_NULL = MethodHandles.lookup().findStatic(ProjectionDefaultImpl.class, "copyUnlessNull"
+                    , MethodType.methodType(void.class, MethodHandle.class, MethodHandle.class, Object.class, Object.class));
+        }
+        catch(NoSuchMethodException | IllegalAccessException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private final Class<S> sourceType;
+    private final Class<D> targetType;
+    private final ISet<?> set;
+    /** The constructor of the target type, null if cannot be instantiated. */
+    private final MethodHandle constructor;
+    /** The first level nodes. */
+    private final Node [] nodes;
+    
+    /**
+     * Compile the projection.
+     * @param sourceType The source type
+     * @param targetType The target type
+     * @param set The set, immutable
+     * @throws IllegalArgumentException If any property path of the set cannot be projected
+     */
+    private ProjectionDefaultImpl(Class<S> sourceType, Class<D> targetType, ISet<?> set)
+    {
+        this.sourceType = sourceType;
+        this.targetType = targetType;
+        this.set = set;
+        this.constructor = (isInstantiable(targetType) ? constructor(targetType) : null);
+        this.nodes = compile(PropertyPathTree.of(set), sourceType, targetType);
+    }
+    /**
+     * Gets the projection for the set, compiling it the first time.
+     * @param sourceType The source type, required. Should to be the model root of {@code set} or a descendant
+     * @param targetType The target type, required
+     * @param set The set, required
+     * @return The projection
+     * @throws IllegalArgumentException If any argument is null, if {@code sourceType} is not assignable to the model root of {@code set}
+     * or if any property path of the set cannot be projected
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, D> ProjectionDefaultImpl<S, D> forSet(Class<S> sourceType, Class<D> targetType, ISet<?> set)
+    {
+        BoundedCache<Key, ProjectionDefaultImpl<?, ?>> cache;
+        ProjectionDefaultImpl<?, ?> projection;
+        ISet<?> frozen;
+        
+        Assert.notNull(sourceType, "The source type is required");
+        Assert.notNull(targetType, "The target type is required");
+        Assert.notNull(set, "The set is required");
+        cache = projections.get(sourceType);
+        if((projection = cache.get(new Key(targetType, set))) == null)
+        {
+            Assert.isTrue(set.getModelRoot().isAssignableFrom(sourceType), "The source type '".concat(sourceType.getName())
+                    .concat("' is not assignable to the model of set '").concat(set.getModelRoot().getName()).concat("'"));
+            frozen = set.freeze();
+            projection = cache.putIfAbsent(new Key(targetType, frozen), new ProjectionDefaultImpl<S, D>(sourceType, targetType, frozen));
+        }
+        return (ProjectionDefaultImpl<S, D>) projection;
+    }
+    /**
+     * Compile the nodes of the children of a property tree node.
+     * @param branch The property tree node
+     * @param source The source type of the node
+     * @param target The target type of the node
+     * @return The nodes
+     */
+    private static Node [] compile(PropertyPathTree branch, Class<?> source, Class<?> target)
+    {
+        Node [] result;
+        PropertyDescriptor spd;
+        PropertyDescriptor tpd;
+        String path;
+        int n;
+        
+        result = new Node[branch.getChildren().size()];
+        n = 0;
+        for(PropertyPathTree child : branch.getChildren())
+        {
+            path = child.getPath();
+            spd = child.readableProperty(source);
+            tpd = ModelDescriptorCache.getDescriptor(target).getProperty(child.getName());
+            if(tpd == null || tpd.getWriteMethod() == null)
+            {
+                throw new IllegalArgumentException("The property path '".concat(path).concat("' cannot be written at '")
+                        .concat(target.getName()).concat("'"));
+            }
+            if(child.isLeaf())
+            {
+                result[n++] = new Node(copier(spd, tpd, path));
+            }
+            else
+            {
+                if(!isInstantiable(tpd.getPropertyType()))
+                {
+                    throw new IllegalArgumentException("The property path '".concat(path).concat("' of type '")
+                            .concat(tpd.getPropertyType().getName()).concat("' cannot be instantiated at '")
+                            .concat(target.getName()).concat("'"));
+                }
+                result[n++] = new Node(PropertyPathTree.unreflect(spd.getReadMethod()).asType(GETTER_TYPE)
+                        , (tpd.getReadMethod() == null ? null : PropertyPathTree.unreflect(tpd.getReadMethod()).asType(GETTER_TYPE))
+                        , PropertyPathTree.unreflect(tpd.getWriteMethod()).asType(SETTER_TYPE)
+                        , constructor(tpd.getPropertyType())
+                        , compile(child, spd.getPropertyType(), tpd.getPropertyType()));
+            }
+        }
+        return result;
+    }
+    /**
+     * Build the copier of a leaf property.
+     * @param spd The source property
+     * @param tpd The target property
+     * @param path The property path, for messages
+     * @return The copier, as (Object, Object)void
+     */
+    private static MethodHandle copier(PropertyDescriptor spd, PropertyDescriptor tpd, String path)
+    {
+        MethodHandle getter;
+        MethodHandle setter;
+        Class<?> sType;
+        Class<?> tType;
+        
+        sType = spd.getPropertyType();
+        tType = tpd.getPropertyType();
+        if(!ClassUtils.isAssignable(tType, sType))
+        {
+            throw new IllegalArgumentException("The property path '".concat(path).concat("' of type '").concat(sType.getName())
+                    .concat("' cannot be assigned to type '").concat(tType.getName()).concat("'"));
+        }
+        getter = PropertyPathTree.unreflect(spd.getReadMethod());
+        setter = PropertyPathTree.unreflect(tpd.getWriteMethod());
+        if(tType.isPrimitive() && !sType.isPrimitive())
+        {
+            return MethodHandles.insertArguments(COPY_UNLESS_NULL, 0, getter.asType(GETTER_TYPE), setter.asType(SETTER_TYPE));
+        }
+        // setter(target, getter(source)), with the exact types
+        getter = getter.asType(getter.type().changeReturnType(tType));
+        setter = MethodHandles.filterArguments(setter, 1, getter);
+        setter = MethodHandles.permuteArguments(setter
+                , MethodType.methodType(void.class, getter.type().parameterType(0), setter.type().parameterType(0)), 1, 0);
+        return setter.asType(SETTER_TYPE);
+    }
+    /**
+     * Copy the value of the source to the target, unless is null. For primitive target properties of wrapper source properties.
+     * @param getter The source getter, as (Object)Object
+     * @param setter The target setter, as (Object, Object)void
+     * @param source The source object
+     * @param target The target object
+     * @throws Throwable If the getter or setter fails
+     */
+    @SuppressWarnings("unused")
+    private static void copyUnlessNull(MethodHandle getter, MethodHandle setter, Object source, Object target) throws Throwable
+    {
+        Object value;
+        
+        if((value = (Object) getter.invokeExact(source)) != null)
+        {
+            setter.invokeExact(target, value);
+        }
+    }
+    /**
+     * Check if the type can be instantiated with a no arguments constructor.
+     * @param type The type
+     * @return true if can be instantiated and false if not
+     */
+    private static boolean isInstantiable(Class<?> type)
+    {
+        if(type.isPrimitive() || type.isInterface() || type.isArray() || Modifier.isAbstract(type.getModifiers()))
+        {
+            return false;
+        }
+        try
+        {
+            type.getDeclaredConstructor();
+            return true;
+        }
+        catch(NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+    /**
+     * Gets the no arguments constructor of the type.
+     * @param type The type, instantiable
+     * @return The constructor, as ()Object
+     */
+    private static MethodHandle constructor(Class<?> type)
+    {
+        Constructor<?> c;
+        
+        try
+        {
+            c = type.getDeclaredConstructor();
+            if(!c.isAccessible())
+            {
+                c.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflectConstructor(c).asType(CONSTRUCTOR_TYPE);
+        }
+        catch(NoSuchMethodException | IllegalAccessException | SecurityException e)
+        {
+            throw new IllegalArgumentException("The type '".concat(type.getName()).concat("' cannot be instantiated"), e);
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<S> getSourceType()
+    {
+        return sourceType;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<D> getTargetType()
+    {
+        return targetType;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ISet<?> getSet()
+    {
+        return set;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public D project(S source)
+    {
+        Object target;
+        
+        if(source == null)
+        {
+            return null;
+        }
+        if(constructor == null)
+        {
+            throw new IllegalStateException("The target type '".concat(targetType.getName()).concat("' cannot be instantiated"));
+        }
+        try
+        {
+            target = (Object) constructor.invokeExact();
+            copy(nodes, source, target);
+        }
+        catch(RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new IllegalStateException("Error projecting to '".concat(targetType.getName()).concat("'"), e);
+        }
+        return (D) target;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public D project(S source, D target)
+    {
+        Assert.notNull(source, "The source is required");
+        Assert.notNull(target, "The target is required");
+        try
+        {
+            copy(nodes, source, target);
+        }
+        catch(RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new IllegalStateException("Error projecting to '".concat(targetType.getName()).concat("'"), e);
+        }
+        return target;
+    }
+    /**
+     * Copy the nodes from the source to the target.
+     * @param nodes The nodes
+     * @param source The source object, not null
+     * @param target The target object, not null
+     * @throws Throwable If any getter, setter or constructor fails
+     */
+    private static void copy(Node [] nodes, Object source, Object target) throws Throwable
+    {
+        Object value;
+        Object nested;
+        
+        for(Node node : nodes)
+        {
+            if(node.children == null)
+            {
+                node.copier.invokeExact(source, target);
+            }
+            else if((value = (Object) node.sourceGetter.invokeExact(source)) == null)
+            {
+                node.targetSetter.invokeExact(target, (Object) null);
+            }
+            else
+            {
+                nested = (node.targetGetter == null ? null : (Object) node.targetGetter.invokeExact(target));
+                if(nested == null)
+                {
+                    nested = (Object) node.constructor.invokeExact();
+                    node.targetSetter.invokeExact(target, nested);
+                }
+                copy(node.children, value, nested);
+            }
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return sourceType.getName().concat(" -> ").concat(targetType.getName()).concat(" ").concat(set.toString());
+    }
+    /**
+     * A compiled node of the projection.
+     */
+    private static final class Node
+    {
+        /** For leafs, copy the property: (Object source, Object target)void. */
+        final MethodHandle copier;
+        /** For navigated nodes, the source getter: (Object)Object. */
+        final MethodHandle sourceGetter;
+        /** For navigated nodes, the target getter: (Object)Object. Null if the target property cannot be read. */
+        final MethodHandle targetGetter;
+        /** For navigated nodes, the target setter: (Object, Object)void. */
+        final MethodHandle targetSetter;
+        /** For navigated nodes, the target property constructor: ()Object. */
+        final MethodHandle constructor;
+        /** For navigated nodes, the children. Null for leafs. */
+        final Node [] children;
+        
+        /**
+         * Leaf constructor.
+         * @param copier The copier
+         */
+        Node(MethodHandle copier)
+        {
+            this(copier, null, null, null, null, null);
+        }
+        /**
+         * Navigated node constructor.
+         */
+        Node(MethodHandle sourceGetter, MethodHandle targetGetter, MethodHandle targetSetter, MethodHandle constructor, Node [] children)
+        {
+            this(null, sourceGetter, targetGetter, targetSetter, constructor, children);
+        }
+        /**
+         * Full constructor.
+         */
+        private Node(MethodHandle copier, MethodHandle sourceGetter, MethodHandle targetGetter, MethodHandle targetSetter
+                , MethodHandle constructor, Node [] children)
+        {
+            this.copier = copier;
+            this.sourceGetter = sourceGetter;
+            this.targetGetter = targetGetter;
+            this.targetSetter = targetSetter;
+            this.constructor = constructor;
+            this.children = children;
+        }
+    }
+    /**
+     * The key of the cached projections of a source type.
+     */
+    private static final class Key
+    {
+        private final Class<?> targetType;
+        private final ISet<?> set;
+        
+        /**
+         * Constructor.
+         * @param targetType The target type
+         * @param set The set
+         */
+        Key(Class<?> targetType, ISet<?> set)
+        {
+            this.targetType = targetType;
+            this.set = set;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return targetType.hashCode() * 31 + set.hashCode();
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            Key k;
+            
+            if(!(obj instanceof Key))
+            {
+                return false;
+            }
+            k = (Key) obj;
+            return (k.targetType == targetType && k.set.equals(set));
+        }
+    }
+}
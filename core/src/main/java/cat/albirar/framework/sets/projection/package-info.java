@@ -0,0 +1,30 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+/**
+ * Projection of objects through sets.
+ * <p>A projection copies the properties selected by a {@link cat.albirar.framework.sets.ISet} from a source object to a
+ * target object, as a DTO, creating the intermediate target objects as needed.</p>
+ * <p>Use {@link cat.albirar.framework.sets.projection.ProjectionFactory#compile(Class, Class, cat.albirar.framework.sets.ISet)}
+ * in order to get a compiled {@link cat.albirar.framework.sets.projection.IProjection}, or the {@code project} methods of
+ * {@link cat.albirar.framework.sets.projection.ProjectionFactory} for a single use.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+package cat.albirar.framework.sets.projection;
@@ -33,4 +33,10 @@ public interface INamedSet<T> extends ISet<T>, Comparable<INamedSet<T>>
      * @return The name
      */
     public String getName();
+    /**
+     * Creates an immutable copy of this set, with the same {@link #getName() name}.
+     * {@inheritDoc}
+     */
+    @Override
+    public INamedSet<T> freeze();
 }
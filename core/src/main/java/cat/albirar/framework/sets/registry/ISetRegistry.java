@@ -18,8 +18,11 @@
  */
 package cat.albirar.framework.sets.registry;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.springframework.core.io.Resource;
 
@@ -35,6 +38,8 @@ public interface ISetRegistry extends Iterable<INamedSet<?>>
 {
     /**
      * Check if a set with the indicated name is registered.
+     * The sets {@link #loadFromPropertiesInBackground(Properties) loaded in background} are registered until validated, even if
+     * are incorrect and are removed once validated.
      * @param setName The set name, required and cannot be empty nor only whitespace
      * @return true if set exists with that name and false if not
      * @throws IllegalArgumentException If {@code setName} are null or empty or only whitespace
@@ -45,12 +50,57 @@ public interface ISetRegistry extends Iterable<INamedSet<?>>
      * @param setName The set name, required and cannot be empty nor only whitespace
      * @return The set
      * @throws IllegalArgumentException If {@code setName} are null or empty or only whitespace
-     * @throws SetNotFoundException If no sets with the name are found
+     * @throws SetNotFoundException If no sets with the name are found, or the set is loaded {@link #loadFromPropertiesInBackground(Properties) in background} and is incorrect
      */
     public INamedSet<?> getSet(String setName);
+    /**
+     * Gets a set with name {@code setName}, if exists.
+     * Unlike {@link #getSet(String)}, doesn't throw any exception if the set is not found, to probe optional sets cheaply.
+     * @param setName The set name, required and cannot be empty nor only whitespace
+     * @return The set or null if no sets with the name are found
+     * @throws IllegalArgumentException If {@code setName} are null or empty or only whitespace
+     */
+    public INamedSet<?> findSet(String setName);
+    /**
+     * Gets a handle to the set with name {@code setName}, that always resolves the current version of the set without search it by name
+     * while the registry is not modified.
+     * @param setName The set name, required and cannot be empty nor only whitespace. The set can be not registered yet
+     * @return The handle
+     * @throws IllegalArgumentException If {@code setName} are null or empty or only whitespace
+     */
+    public SetHandle getHandle(String setName);
+    /**
+     * Gets the version of this registry, a number that increases on each modification of the sets, including the modifications
+     * of the registries read through by this registry, if any.
+     * @return The version
+     */
+    public long getVersion();
+    /**
+     * Gets the metrics of this registry, disabled until {@link ISetRegistryMetrics#setEnabled(boolean) enabled}.
+     * The lookups of the registries read through by this registry are counted on their own metrics.
+     * @return The metrics
+     */
+    public ISetRegistryMetrics getMetrics();
+    /**
+     * Gets the sets applicable to a model, that are the sets with the model or any of its supertypes as {@link INamedSet#getModelRoot() model root}.
+     * @param model The model, required
+     * @return The sets, sorted by name. The list is unmodifiable and can be empty
+     * @throws IllegalArgumentException If {@code model} is null
+     */
+    public <T> List<INamedSet<? super T>> getSetsFor(Class<T> model);
+    /**
+     * Gets the set with name {@code setName} if is applicable to a model, that is, if has the model or any of its supertypes
+     * as {@link INamedSet#getModelRoot() model root}.
+     * @param model The model, required
+     * @param setName The set name, required and cannot be empty nor only whitespace
+     * @return The set or null if no sets with the name are found or the set is not applicable to the model
+     * @throws IllegalArgumentException If {@code model} is null or {@code setName} are null or empty or only whitespace
+     */
+    public <T> INamedSet<? super T> findSet(Class<T> model, String setName);
 
     /**
      * Put the {@code set} with name {@code setName}.
+     * The registry can store a {@link INamedSet#freeze() frozen} copy of the set.
      * @param setName The set name, required and cannot be empty nor only whitespace
      * @param set The set to registry, required
      * @return true if the set doesn't replace any other and false if replace a previously registered set
@@ -83,6 +133,21 @@ public interface ISetRegistry extends Iterable<INamedSet<?>>
      */
     public int loadFromProperties(Properties properties) throws ClassNotFoundException;
     
+    /**
+     * Load sets from a {@link Properties} collection in background.
+     * <p>The sets are registered at once, before be parsed nor validated, so {@link #containsSet(String)} and {@link #size()}
+     * count them from the return of this method, until validated. Only the correct ones are {@link #iterator() iterated} and
+     * {@link #getSetsFor(Class) applicable to a model}, as they are validated before. Each set is parsed and validated in parallel, in background, or on the first
+     * {@link #getSet(String)} of the set, whichever comes first. The sets with incorrect format or property paths are removed from
+     * the registry once validated and the correct ones are kept.</p>
+     * @param properties The properties to load from, required. The format is the same as {@link #loadFromProperties(Properties)}
+     * @return A future to await for all the sets validated, with the number of sets of the registry at that time. The future fails
+     * with an {@link IllegalArgumentException} if the format or any property are incorrect for the root model, or with a
+     * {@link ClassNotFoundException} if any of the root model classes cannot be found on {@link ClassLoader} of the registry
+     * @throws IllegalArgumentException If properties are null
+     */
+    public Future<Integer> loadFromPropertiesInBackground(Properties properties);
+    
     /**
      * Load sets from a {@link Resource} that should to have a property file format.
      * The format of property files should to be:
@@ -100,6 +165,20 @@ public interface ISetRegistry extends Iterable<INamedSet<?>>
      */
     public int loadFromResource(Resource resource) throws ClassNotFoundException;
     
+    /**
+     * Load sets from a binary snapshot, made from a {@link Resource} with property file format.
+     * <p>The snapshot holds the sets already validated, so the load doesn't parse nor validate the property file. If the
+     * snapshot doesn't exist, is made from other content of the resource or from other version of any of the models,
+     * the sets are loaded from the resource, as {@link #loadFromResource(Resource)}, and the snapshot is written again
+     * for the next load.</p>
+     * @param snapshot The snapshot file, required. Created if doesn't exist
+     * @param resource The {@link Resource} with the sets, required
+     * @return the number of sets loaded
+     * @throws IllegalArgumentException If any argument is null or the resource cannot be read or its format is incorrect or any property are incorrect for the root model.
+     * @throws ClassNotFoundException if any of the root model classes cannot be found on {@link ClassLoader} of the registry
+     */
+    public int loadFromSnapshot(Path snapshot, Resource resource) throws ClassNotFoundException;
+    
     /**
      * If this registry are empty or not.
      * @return true if empty and false if not.
@@ -108,6 +187,8 @@ public interface ISetRegistry extends Iterable<INamedSet<?>>
     
     /**
      * Gets the number of named sets in this registry.
+     * The sets {@link #loadFromPropertiesInBackground(Properties) loaded in background} are counted until validated, even if
+     * are incorrect and are removed once validated, so the size can decrease without any {@link #removeSet(String)}.
      * @return The size
      */
     public int size();
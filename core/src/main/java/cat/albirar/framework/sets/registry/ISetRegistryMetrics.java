@@ -0,0 +1,113 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link ISetRegistry}: lookups, misses, hits of each set, loads and validations, number of sets and approximate heap size.
+ * <p>The metrics are disabled by default and, while disabled, nothing is counted. The interface is suitable as MXBean,
+ * so the metrics can be exposed through JMX.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public interface ISetRegistryMetrics
+{
+    /**
+     * If the metrics are enabled.
+     * @return true if enabled and false if not
+     */
+    public boolean isEnabled();
+    /**
+     * Enable or disable the metrics. The counted values are kept.
+     * @param enabled true to enable and false to disable
+     */
+    public void setEnabled(boolean enabled);
+    /**
+     * Number of lookups of sets by name.
+     * @return The number of lookups
+     */
+    public long getLookupCount();
+    /**
+     * Number of lookups of sets by name that doesn't find the set.
+     * @return The number of misses
+     */
+    public long getMissCount();
+    /**
+     * The sets with more hits, at most {@link #getTopSetsSize()}, and the number of hits of each one.
+     * @return The number of hits by set name, from the most to the less hit
+     */
+    public Map<String, Long> getTopSets();
+    /**
+     * Maximum number of sets of {@link #getTopSets()}.
+     * @return The number of sets
+     */
+    public int getTopSetsSize();
+    /**
+     * Change the maximum number of sets of {@link #getTopSets()}.
+     * @param size The number of sets, positive
+     * @throws IllegalArgumentException If size is not positive
+     */
+    public void setTopSetsSize(int size);
+    /**
+     * Number of loads of sets, as from properties, resources or snapshots, and reloads.
+     * @return The number of loads
+     */
+    public long getLoadCount();
+    /**
+     * Number of loads that failed.
+     * @return The number of failed loads
+     */
+    public long getLoadErrorCount();
+    /**
+     * Duration of the last load, successful or not.
+     * @return The duration, in microseconds
+     */
+    public long getLastLoadMicros();
+    /**
+     * Duration of all the loads.
+     * @return The duration, in microseconds
+     */
+    public long getTotalLoadMicros();
+    /**
+     * Duration of the parse and validation of the sets of the last load.
+     * @return The duration, in microseconds
+     */
+    public long getLastValidationMicros();
+    /**
+     * Duration of the parse and validation of the sets of all the loads.
+     * @return The duration, in microseconds
+     */
+    public long getTotalValidationMicros();
+    /**
+     * Number of sets of the registry, available even if the metrics are disabled.
+     * @return The number of sets
+     */
+    public int getSetCount();
+    /**
+     * Approximate heap size of the sets of the registry. Is calculated on each call, even if the metrics are disabled.
+     * @return The size, in bytes
+     */
+    public long getApproximateHeapSize();
+    /**
+     * Reset all the counted values.
+     */
+    public void reset();
+}
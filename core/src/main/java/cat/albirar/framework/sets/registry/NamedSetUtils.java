@@ -19,8 +19,11 @@
 
 package cat.albirar.framework.sets.registry;
 
+import org.springframework.util.Assert;
+
 import cat.albirar.framework.sets.ISet;
 import cat.albirar.framework.sets.registry.impl.NamedSetDefaultImpl;
+import cat.albirar.framework.sets.registry.impl.NamedSetFrozenImpl;
 
 /**
  * Utils to instantiate {@link INamedSet}.
@@ -51,4 +54,28 @@ public abstract class NamedSetUtils
     {
         return new NamedSetDefaultImpl<T>(origin, setName);
     }
+    /**
+     * Creates an immutable {@link INamedSet} as a copy of the indicated set and for the indicated set name.
+     * @param origin The origin set, required
+     * @param setName The set name, required and not an empty string or whitespace string
+     * @return The immutable named set, that shares the property paths with {@code origin} if it's frozen
+     * @throws IllegalArgumentException If origin is null or name is null or empty or only whitespace string
+     * @see ISet#freeze()
+     */
+    public static <T> INamedSet<T> immutableCopyOf(ISet<T> origin, String setName)
+    {
+        return new NamedSetFrozenImpl<T>(origin, setName);
+    }
+    /**
+     * Creates an immutable copy of the indicated named set, with the same name.
+     * @param origin The origin set, required
+     * @return The immutable named set, {@code origin} itself if it's already frozen
+     * @throws IllegalArgumentException If origin is null
+     * @see INamedSet#freeze()
+     */
+    public static <T> INamedSet<T> immutableCopyOf(INamedSet<T> origin)
+    {
+        Assert.notNull(origin, "The origin is required");
+        return origin.freeze();
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry;
+
+import org.springframework.util.Assert;
+
+/**
+ * A handle to a named set of a registry, resolved once for each {@link ISetRegistry#getVersion() version} of the registry.
+ * <p>The handle always gets the current set with the name, after any {@link ISetRegistry#putSet(INamedSet) replacement}
+ * or reload, but only searches it by name when the registry was modified since the last resolution; otherwise {@link #get()}
+ * only reads the version of the registry. The handles are thread safe and are intended to be resolved once and kept in
+ * the hot paths.</p>
+ * @see ISetRegistry#getHandle(String)
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetHandle
+{
+    private final ISetRegistry registry;
+    private final String setName;
+    /** The last resolution. */
+    private volatile Resolution resolution;
+    
+    /**
+     * Constructor.
+     * @param registry The registry, required
+     * @param setName The set name, required and cannot be empty nor only whitespace
+     * @throws IllegalArgumentException If {@code registry} is null or {@code setName} are null or empty or only whitespace
+     */
+    public SetHandle(ISetRegistry registry, String setName)
+    {
+        Assert.notNull(registry, "The registry is required");
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        this.registry = registry;
+        this.setName = setName;
+    }
+    /**
+     * Gets the current set.
+     * @return The set
+     * @throws SetNotFoundException If the set is not registered
+     */
+    public INamedSet<?> get()
+    {
+        INamedSet<?> s;
+        
+        if((s = find()) == null)
+        {
+            throw new SetNotFoundException("The named set '" + setName + "' doesn't exists in the registry", setName);
+        }
+        return s;
+    }
+    /**
+     * Gets the current set, if registered.
+     * @return The set or null if the set is not registered
+     */
+    public INamedSet<?> find()
+    {
+        Resolution r;
+        long version;
+        
+        r = resolution;
+        version = registry.getVersion();
+        if(r == null || r.version != version)
+        {
+            // Any modification after the version is read resolves again on the next call
+            r = new Resolution(version, registry.findSet(setName));
+            resolution = r;
+        }
+        return r.set;
+    }
+    /**
+     * The set name.
+     * @return The name
+     */
+    public String getSetName()
+    {
+        return setName;
+    }
+    /**
+     * The registry of the set.
+     * @return The registry
+     */
+    public ISetRegistry getRegistry()
+    {
+        return registry;
+    }
+    /**
+     * The set resolved for a version of the registry.
+     */
+    private static final class Resolution
+    {
+        final long version;
+        final INamedSet<?> set;
+        
+        /**
+         * Constructor.
+         * @param version The version
+         * @param set The set or null if not registered
+         */
+        Resolution(long version, INamedSet<?> set)
+        {
+            this.version = version;
+            this.set = set;
+        }
+    }
+}
@@ -29,14 +29,17 @@ public class SetNotFoundException extends RuntimeException
 
     private String setName;
     /**
-     * @param message
+     * Constructor with a default message.
+     * @param setName The unfounded name of the set
      */
     public SetNotFoundException(String setName)
     {
-        this(null, setName);
+        this("The named set '" + setName + "' doesn't exists", setName);
     }
     /**
-     * @param message
+     * Constructor.
+     * @param message The message
+     * @param setName The unfounded name of the set
      */
     public SetNotFoundException(String message, String setName)
     {
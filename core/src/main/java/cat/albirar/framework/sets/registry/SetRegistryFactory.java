@@ -20,44 +20,59 @@
 package cat.albirar.framework.sets.registry;
 
 import cat.albirar.framework.sets.registry.impl.SetRegistryDefaultImpl;
+import cat.albirar.framework.sets.registry.impl.SetRegistryOverlayImpl;
 
 /**
  * A factory to access to the JVM registry or the thread registry.
+ * <p>The thread registry and the {@link #createScopeRegistry() scope registries} hold only their own sets and read through to
+ * the JVM registry for the rest, see {@link SetRegistryOverlayImpl}, so the sets of the JVM registry are loaded once and shared by all the threads.</p>
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
  */
 public abstract class SetRegistryFactory
 {
-    /** The JVM global registry. */
-    private static ISetRegistry jvmRegistry;
     /** The thread local registry. */
     private static final ThreadLocal<ISetRegistry> registry = new ThreadLocal<ISetRegistry>()
     {
         @Override
         public ISetRegistry initialValue()
         {
-            return new SetRegistryDefaultImpl();
+            return createScopeRegistry();
         }
 
     };
+    /**
+     * Holder of the JVM global registry, created and safely published on first use by the class initialization.
+     */
+    private static final class JvmRegistryHolder
+    {
+        /** The JVM global registry. */
+        static final ISetRegistry REGISTRY = new SetRegistryDefaultImpl();
+    }
     /**
      * Gets the global JVM registry.
      * @return The registry for all threads on JVM.
      */
     public static final ISetRegistry getJVMRegistry()
     {
-        if(jvmRegistry == null)
-        {
-            jvmRegistry = new SetRegistryDefaultImpl();
-        }
-        return jvmRegistry;
+        return JvmRegistryHolder.REGISTRY;
     }
     /**
      * Gets the registry for current thread.
+     * The registry holds the sets of the thread and reads through to the {@link #getJVMRegistry() JVM registry}.
      * @return the registry
      */
     public static final ISetRegistry getThreadRegistry()
     {
         return registry.get();
     }
+    /**
+     * Creates a new registry for a scope, as a request, that holds the sets of the scope and reads through to the {@link #getJVMRegistry() JVM registry}.
+     * The registry is cheap to create, without sets.
+     * @return The registry
+     */
+    public static final ISetRegistry createScopeRegistry()
+    {
+        return new SetRegistryOverlayImpl(getJVMRegistry());
+    }
 }
@@ -68,6 +68,15 @@ public class NamedSetDefaultImpl<T> extends SetDefaultImpl<T> implements INamedS
         return name;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamedSetFrozenImpl<T> freeze()
+    {
+        return new NamedSetFrozenImpl<T>(super.freeze(), name);
+    }
+
     /**
      * Add the {@link #getName()} on equals algorithm.
      * 
@@ -0,0 +1,122 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.SetFrozenImpl;
+import cat.albirar.framework.sets.registry.INamedSet;
+
+/**
+ * Immutable implementation of a {@link INamedSet}.
+ * @see SetFrozenImpl
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class NamedSetFrozenImpl<T> extends SetFrozenImpl<T> implements INamedSet<T>
+{
+    private static final long serialVersionUID = -2786309745522474103L;
+    private final String name;
+
+    /**
+     * Copy constructor.
+     * If the origin is frozen, the property paths are shared.
+     * @param origin The origin, required
+     * @param name The name for this set
+     * @throws IllegalArgumentException If origin is null or name is null or empty or only whitespace string
+     */
+    public NamedSetFrozenImpl(ISet<T> origin, String name)
+    {
+        super(origin);
+        Assert.hasText(name, "The name is a required argument, cannot be null, nor empty nor whitespace!");
+        this.name = name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * The set is already frozen.
+     * @return This set
+     */
+    @Override
+    public NamedSetFrozenImpl<T> freeze()
+    {
+        return this;
+    }
+
+    /**
+     * Add the {@link #getName()} on equals algorithm.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(o == this)
+        {
+            return true;
+        }
+        if(o == null)
+        {
+            return false;
+        }
+        
+        if(INamedSet.class.isAssignableFrom(o.getClass()))
+        {
+            return (ObjectUtils.nullSafeEquals(name, ((INamedSet<?>)o).getName())
+                    && super.equals(o));
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link SetFrozenImpl#hashCode()}, the name is not included to be consistent with {@link NamedSetDefaultImpl}.
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return super.hashCode();
+    }
+
+    @Override
+    protected String toStringProperties()
+    {
+        return ("name=" + name + ", " + super.toStringProperties());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(INamedSet<T> o)
+    {
+        return (getName().compareTo(o.getName()));
+    }
+}
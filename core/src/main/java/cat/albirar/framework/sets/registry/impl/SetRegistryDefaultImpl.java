@@ -19,13 +19,33 @@
 
 package cat.albirar.framework.sets.registry.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,12 +55,34 @@ import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import cat.albirar.framework.sets.InvalidPropertyPathsException;
+import cat.albirar.framework.sets.impl.PathWildcard;
+import cat.albirar.framework.sets.impl.SetFrozenImpl;
 import cat.albirar.framework.sets.registry.INamedSet;
 import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.SetHandle;
 import cat.albirar.framework.sets.registry.SetNotFoundException;
 
 /**
  * A default implementation for {@link ISetRegistry}.
+ * <p>By default, the registry stores {@link INamedSet#freeze() frozen} copies of the sets, that can be read from any thread
+ * without synchronization.</p>
+ * <p>The registry is an immutable snapshot, a hash map by name and the sets sorted by name, that is replaced atomically on each
+ * modification (copy on write). So the reads never block nor take any monitor, the {@link #iterator() iterator} is over a stable
+ * snapshot that is never affected by concurrent modifications, and a batch, as {@link #addAll(Set)} or {@link #loadFromProperties(Properties)},
+ * is published at once: the readers see all the sets of the batch or none of them. The modifications are a compare and set
+ * of the snapshot, so concurrent writers retry instead of block; the registry is optimised for frequent reads and infrequent writes.</p>
+ * <p>The frozen sets with the same content, model root and property paths, as aliases with other name, are stored sharing the
+ * state of the first one, so only the name is held for each alias. The sets with the same content are detected by its
+ * {@link SetFrozenImpl#getContentFingerprint() fingerprint}, against the sets of the snapshot and the other sets of the same batch.</p>
+ * <p>Each snapshot have a {@link #getVersion() version}, incremented on each modification, so the {@link SetHandle handles} resolve
+ * the sets only once for each version.</p>
+ * <p>Each snapshot also indexes the sets by {@link INamedSet#getModelRoot() model root}, for {@link #getSetsFor(Class)}; as the
+ * snapshot, the index is never modified once published, so is always consistent with the sets by name.</p>
+ * <p>The sets {@link #loadFromPropertiesInBackground(Properties) loaded in background} are published as pending sets, parsed and
+ * validated on a {@link ForkJoinPool} shared by all the registries, and published again as regular sets once all of them are validated.</p>
+ * <p>The lookups by name and the loads are counted on the {@link #getMetrics() metrics}, if enabled. The lookups of a
+ * {@link SetHandle handle} are counted once for each version, when the handle resolves the set.</p>
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
  */
@@ -48,22 +90,56 @@ public class SetRegistryDefaultImpl implements ISetRegistry
 {
     private static final Logger logger = LoggerFactory.getLogger(SetRegistryDefaultImpl.class);
     
-    private Map<String, INamedSet<?>> registry = Collections.synchronizedMap(new TreeMap<String, INamedSet<?>>());
+    /** The current snapshot. */
+    private final AtomicReference<Snapshot> registry = new AtomicReference<Snapshot>(Snapshot.EMPTY);
 
     /**
      * REGEX format of properties.
+     * <p>The property paths can be wildcards, {@code path.*} or {@code path.**{n}}, see {@link PathWildcard}. When the sets are
+     * stored frozen, the wildcards are kept as is, without expand them.</p>
      */
     public static final String REGEX_FORMAT = "([^:]+):([^,]+)([ ]*,[ ]*([^,]+))*";
     
-    /** To process property and resources. */
-    private Pattern pattern = Pattern.compile(REGEX_FORMAT);
+    /** Approximate heap size of an object with a few fields, for {@link #approximateHeapSize()}. */
+    private static final long OBJECT_BYTES = 32L;
+    /** Approximate heap size of a map entry, for {@link #approximateHeapSize()}. */
+    private static final long ENTRY_BYTES = 40L;
+    /** Approximate heap size of a reference, for {@link #approximateHeapSize()}. */
+    private static final long REFERENCE_BYTES = 8L;
+    
+    /** To process property and resources, shared by all the registries to keep them cheap to create. */
+    private static final Pattern pattern = Pattern.compile(REGEX_FORMAT);
+    
+    /** If the sets are stored frozen. */
+    private final boolean freezeSets;
+    /** The metrics. */
+    private final SetRegistryMetricsImpl metrics;
+    
+    /**
+     * Constructor for a registry that stores {@link INamedSet#freeze() frozen} sets.
+     */
+    public SetRegistryDefaultImpl()
+    {
+        this(true);
+    }
     /**
+     * Constructor.
+     * @param freezeSets If true, the registry stores {@link INamedSet#freeze() frozen} copies of the sets, if false the sets are stored as is
+     */
+    public SetRegistryDefaultImpl(boolean freezeSets)
+    {
+        this.freezeSets = freezeSets;
+        this.metrics = new SetRegistryMetricsImpl(this);
+    }
+    /**
+     * The pending sets of a {@link #loadFromPropertiesInBackground(Properties) background load} are validated before, and
+     * the incorrect ones are not iterated.
      * {@inheritDoc}
      */
     @Override
     public Iterator<INamedSet<?>> iterator()
     {
-        return registry.values().iterator();
+        return registry.get().validated().iterator();
     }
 
     /**
@@ -73,7 +149,7 @@ public class SetRegistryDefaultImpl implements ISetRegistry
     public boolean containsSet(String setName)
     {
         Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
-        return registry.containsKey(setName);
+        return registry.get().contains(setName);
     }
 
     /**
@@ -85,10 +161,147 @@ public class SetRegistryDefaultImpl implements ISetRegistry
         INamedSet<?> s;
         
         Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
-        s = registry.get(setName);
+        s = counted(setName, lookup(setName, true));
         if(s == null)
         {
-            throw new SetNotFoundException("The named set '" + setName + "' doesn't exists in this registry");
+            throw new SetNotFoundException("The named set '" + setName + "' doesn't exists in this registry", setName);
+        }
+        return s;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public INamedSet<?> findSet(String setName)
+    {
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        return counted(setName, lookup(setName, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SetHandle getHandle(String setName)
+    {
+        return new SetHandle(this, setName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion()
+    {
+        return registry.get().version;
+    }
+    /**
+     * The lists are calculated once for each model and snapshot.
+     * {@inheritDoc}
+     */
+    @SuppressWarnings({
+            "rawtypes", "unchecked"
+    })
+    @Override
+    public <T> List<INamedSet<? super T>> getSetsFor(Class<T> model)
+    {
+        Snapshot current;
+        List sets;
+        
+        Assert.notNull(model, "The model argument are required");
+        current = registry.get();
+        if(current.pending.isEmpty())
+        {
+            return (List) current.setsFor(model);
+        }
+        // The model of pending sets are unknown until validated
+        sets = new ArrayList<INamedSet<?>>();
+        for(INamedSet<?> s : current.validated())
+        {
+            if(s.getModelRoot().isAssignableFrom(model))
+            {
+                sets.add(s);
+            }
+        }
+        return Collections.unmodifiableList(sets);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> INamedSet<? super T> findSet(Class<T> model, String setName)
+    {
+        INamedSet<?> s;
+        
+        Assert.notNull(model, "The model argument are required");
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        s = counted(setName, lookup(setName, false));
+        return (isApplicable(s, model) ? (INamedSet<? super T>) s : null);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SetRegistryMetricsImpl getMetrics()
+    {
+        return metrics;
+    }
+    /**
+     * Count a lookup on the {@link #getMetrics() metrics}.
+     * @param setName The name of the set
+     * @param set The set found or null if not found
+     * @return {@code set}
+     */
+    protected final INamedSet<?> counted(String setName, INamedSet<?> set)
+    {
+        metrics.lookup(setName, set != null);
+        return set;
+    }
+    /**
+     * Check if a set is applicable to a model.
+     * @param set The set, can be null
+     * @param model The model
+     * @return true if the set is not null and its model root is the model or any of its supertypes
+     */
+    protected static boolean isApplicable(INamedSet<?> set, Class<?> model)
+    {
+        return (set != null && set.getModelRoot().isAssignableFrom(model));
+    }
+    /**
+     * Gets the set with the indicated name of this registry, validating it if is pending.
+     * @param setName The set name
+     * @param reportIncorrect If the pending sets that are incorrect should be reported with an exception or ignored
+     * @return The set or null if this registry doesn't have a set with this name, or the set is pending and is incorrect and {@code reportIncorrect} is false
+     * @throws SetNotFoundException If the set is pending and is incorrect and {@code reportIncorrect} is true
+     */
+    protected INamedSet<?> lookup(String setName, boolean reportIncorrect)
+    {
+        Snapshot current;
+        INamedSet<?> s;
+        PendingSet p;
+        SetNotFoundException e;
+        
+        current = registry.get();
+        s = current.byName.get(setName);
+        if(s == null && (p = current.pending.get(setName)) != null)
+        {
+            try
+            {
+                s = p.resolve();
+            }
+            catch(ExecutionException ex)
+            {
+                if(!reportIncorrect)
+                {
+                    return null;
+                }
+                e = new SetNotFoundException("The named set '" + setName + "' of this registry is incorrect: " + ex.getCause().getMessage(), setName);
+                e.initCause(ex.getCause());
+                throw e;
+            }
         }
         return s;
     }
@@ -99,9 +312,12 @@ public class SetRegistryDefaultImpl implements ISetRegistry
     @Override
     public boolean putSet(INamedSet<?> set)
     {
+        Snapshot current;
+        
         Assert.notNull(set, "The 'set' argument are required'");
         Assert.hasText(set.getName(), "The setName are required and cannot be empty or only whitespace!");
-        return (registry.put(set.getName(), set) == null);
+        current = publish(Collections.<INamedSet<?>>singletonList(store(set)), null, false);
+        return !current.contains(set.getName());
     }
 
     /**
@@ -111,80 +327,193 @@ public class SetRegistryDefaultImpl implements ISetRegistry
     public boolean removeSet(String setName)
     {
         Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
-        return (registry.remove(setName) != null);
+        return publish(Collections.<INamedSet<?>>emptyList(), setName, false).contains(setName);
     }
 
     /**
+     * The property paths of each set are checked as a batch and all the incorrect property paths of all the sets are
+     * reported in one exception. The sets are registered only if all of them are correct, and are published at once.
      * {@inheritDoc}
      */
-    @SuppressWarnings({
-            "rawtypes", "unchecked"
-    })
     @Override
     public int loadFromProperties(Properties properties) throws ClassNotFoundException
     {
-        Iterator<String> it;
-        String nom;
-        String valor;
-        Matcher matcher;
-        INamedSet<?> namedSet;
-        String className;
-        Class<?> modelClass;
         int n;
+        long t;
+        List<INamedSet<?>> sets;
+        long validation;
         
         Assert.notNull(properties, "The properties argument are required!");
+        t = System.nanoTime();
+        try
+        {
+            sets = parseProperties(properties);
+        }
+        catch(ClassNotFoundException | RuntimeException e)
+        {
+            t = System.nanoTime() - t;
+            metrics.load(t, t, false);
+            throw e;
+        }
+        validation = System.nanoTime() - t;
+        publish(sets, null, false);
+        metrics.load(System.nanoTime() - t, validation, true);
+        n = registry.get().size();
+        if(logger.isTraceEnabled())
+        {
+            logger.trace(String.format("Property file processed. %d sets in the registry!", n));
+        }
+        return n;
+    }
+    /**
+     * The sets are published as pending sets at once, and each one is parsed and validated by a {@link ForkJoinPool} shared
+     * by all the registries. The {@link #getSet(String)} of a pending set validates it on the calling thread, if is not validated yet.
+     * Once all the sets are validated, the correct ones are published at once as regular sets and the incorrect ones are removed.
+     * The pending sets replaced or removed meanwhile are not published again.
+     * {@inheritDoc}
+     */
+    @Override
+    public Future<Integer> loadFromPropertiesInBackground(Properties properties)
+    {
+        Set<String> names;
+        PendingSet [] pending;
+        int n;
+        FutureTask<Integer> ready;
+        long t;
+        
+        Assert.notNull(properties, "The properties argument are required!");
+        t = System.nanoTime();
+        names = properties.stringPropertyNames();
+        pending = new PendingSet[names.size()];
+        n = 0;
+        for(String nom : names)
+        {
+            pending[n++] = new PendingSet(nom.trim(), properties.getProperty(nom));
+        }
+        publishPending(pending, false);
+        ready = new FutureTask<Integer>(new BackgroundLoad(pending, t));
+        LoaderPool.POOL.execute(ready);
+        return ready;
+    }
+    /**
+     * Parse and validate the sets of a {@link Properties} collection, without register them.
+     * @param properties The properties
+     * @return The sets, as they should be stored
+     * @throws IllegalArgumentException If properties format is incorrect or any property are incorrect for the root model.
+     * @throws ClassNotFoundException if any of the root model classes cannot be found on {@link ClassLoader} of the registry
+     */
+    private List<INamedSet<?>> parseProperties(Properties properties) throws ClassNotFoundException
+    {
+        Iterator<String> it;
+        String nom;
+        List<INamedSet<?>> loaded;
+        List<String> errors;
+        
         if(logger.isTraceEnabled())
         {
             logger.trace("Processing set registry from property file!");
         }
+        loaded = new ArrayList<INamedSet<?>>();
+        errors = new ArrayList<String>();
         it = properties.stringPropertyNames().iterator();
         while(it.hasNext())
         {
             nom = it.next().trim();
-            valor = properties.getProperty(nom).trim();
-            if(StringUtils.hasText(valor))
+            try
             {
-                matcher = pattern.matcher(valor);
-                if(matcher.matches())
-                {
-                    className = matcher.group(1);
-                    // Check if available
-                    modelClass = getClass().getClassLoader().loadClass(className);
-                    namedSet = new NamedSetDefaultImpl(modelClass, nom);
-                    // Process properties
-                    for(n = 2; n < matcher.groupCount(); n++)
-                    {
-                        valor = matcher.group(n).trim();
-                        if(valor.startsWith(","))
-                        {
-                            valor = valor.substring(1).trim();
-                        }
-                        namedSet.add(valor);
-                    }
-                    putSet(namedSet);
-                }
-                else
-                {
-                    logger.error("Error on load from property file. Property '" + nom + "' have incorrect format: '" + valor + "'");
-                    throw new IllegalArgumentException("When load from property file. The property '"
-                            + nom + "' is not in the expected format (" + valor + "). The format should to be compatible with "
-                                    + REGEX_FORMAT);
-                }
+                loaded.add(parseSet(nom, properties.getProperty(nom)));
+            }
+            catch(InvalidPropertyPathsException e)
+            {
+                errors.add(nom + "=" + e.getInvalidPaths());
+            }
+        }
+        if(!errors.isEmpty())
+        {
+            throw new IllegalArgumentException("When load from property file. The properties have incorrect or unknown property paths: "
+                    + errors);
+        }
+        return loaded;
+    }
+    /**
+     * Parse and validate a set of a {@link Properties} collection, without register it.
+     * @param nom The name of the set
+     * @param value The value of the property, the model and the property paths
+     * @return The set, as it should be stored
+     * @throws IllegalArgumentException If the value format is incorrect
+     * @throws InvalidPropertyPathsException If any property are incorrect for the root model
+     * @throws ClassNotFoundException if the root model class cannot be found on {@link ClassLoader} of the registry
+     */
+    @SuppressWarnings({
+            "rawtypes", "unchecked"
+    })
+    private INamedSet<?> parseSet(String nom, String value) throws ClassNotFoundException
+    {
+        String valor;
+        Matcher matcher;
+        INamedSet<?> namedSet;
+        String className;
+        Class<?> modelClass;
+        List<String> paths;
+        
+        valor = value.trim();
+        if(!StringUtils.hasText(valor))
+        {
+            logger.error("Error on load from property file. Property '" + nom + "' have no value");
+            throw new IllegalArgumentException("When load from property file. The property '"
+                    + nom + "' have no value. The format should to be compatible with "
+                            + REGEX_FORMAT);
+        }
+        matcher = pattern.matcher(valor);
+        if(!matcher.matches())
+        {
+            logger.error("Error on load from property file. Property '" + nom + "' have incorrect format: '" + valor + "'");
+            throw new IllegalArgumentException("When load from property file. The property '"
+                    + nom + "' is not in the expected format (" + valor + "). The format should to be compatible with "
+                            + REGEX_FORMAT);
+        }
+        className = matcher.group(1).trim();
+        // Check if available
+        modelClass = getClass().getClassLoader().loadClass(className);
+        // Process properties, all of them after the model
+        try
+        {
+            paths = splitPropertyPaths(valor.substring(matcher.end(1) + 1));
+            if(freezeSets)
+            {
+                // The wildcards are not expanded
+                namedSet = new NamedSetFrozenImpl(SetFrozenImpl.of(modelClass, paths), nom);
             }
             else
             {
-                logger.error("Error on load from property file. Property '" + nom + "' have no value");
-                throw new IllegalArgumentException("When load from property file. The property '"
-                        + nom + "' have no value. The format should to be compatible with "
-                                + REGEX_FORMAT);
+                namedSet = new NamedSetDefaultImpl(modelClass, nom);
+                namedSet.addAll(paths);
             }
+            return store(namedSet);
         }
-
-        if(logger.isTraceEnabled())
+        catch(InvalidPropertyPathsException e)
         {
-            logger.trace(String.format("Property file processed. %d sets added!", registry.size()));
+            logger.error("Error on load from property file. Property '" + nom + "' have incorrect property paths: " + e.getInvalidPaths());
+            throw e;
         }
-        return registry.size();
+    }
+    /**
+     * Split the comma separated property paths.
+     * @param value The comma separated list
+     * @return The trimmed property paths
+     */
+    private List<String> splitPropertyPaths(String value)
+    {
+        String [] items;
+        List<String> paths;
+        
+        items = value.split(",");
+        paths = new ArrayList<String>(items.length);
+        for(String item : items)
+        {
+            paths.add(item.trim());
+        }
+        return paths;
     }
 
     /**
@@ -224,13 +553,140 @@ public class SetRegistryDefaultImpl implements ISetRegistry
         }
     }
 
+    /**
+     * The snapshot is identified by the {@link CRC32} checksum of the resource content, so any change of the resource discards the snapshot.
+     * If the snapshot cannot be written, the error is logged and the sets are loaded anyway.
+     * {@inheritDoc}
+     * @see SetRegistrySnapshot
+     */
+    @Override
+    public int loadFromSnapshot(Path snapshot, Resource resource) throws ClassNotFoundException
+    {
+        byte [] content;
+        CRC32 crc;
+        List<INamedSet<?>> sets;
+        Properties prop;
+        long t;
+        long validation;
+        
+        Assert.notNull(snapshot, "The snapshot argument are required!");
+        Assert.notNull(resource, "The resource argument are required!");
+        t = System.nanoTime();
+        validation = 0L;
+        content = readContent(resource);
+        crc = new CRC32();
+        crc.update(content);
+        try
+        {
+            sets = SetRegistrySnapshot.read(snapshot, crc.getValue());
+            if(!freezeSets)
+            {
+                sets = mutableCopies(sets);
+            }
+            if(logger.isTraceEnabled())
+            {
+                logger.trace(String.format("Snapshot '%s' of resource '%s' loaded, %d sets", snapshot, resource.getDescription(), sets.size()));
+            }
+        }
+        catch(NoSuchFileException e)
+        {
+            sets = null;
+        }
+        catch(IOException | ClassNotFoundException e)
+        {
+            logger.warn("The snapshot '" + snapshot + "' cannot be used, the sets are loaded from resource '" + resource.getDescription() + "': " + e.getMessage());
+            sets = null;
+        }
+        if(sets == null)
+        {
+            prop = new Properties();
+            try
+            {
+                prop.load(new ByteArrayInputStream(content));
+            }
+            catch(IOException e)
+            {
+                throw new IllegalArgumentException("Cannot load from the resource '" + resource.getDescription() + "'", e);
+            }
+            validation = System.nanoTime();
+            try
+            {
+                sets = parseProperties(prop);
+            }
+            catch(ClassNotFoundException | RuntimeException e)
+            {
+                metrics.load(System.nanoTime() - t, System.nanoTime() - validation, false);
+                throw e;
+            }
+            validation = System.nanoTime() - validation;
+            try
+            {
+                SetRegistrySnapshot.write(sets, crc.getValue(), snapshot);
+            }
+            catch(IOException e)
+            {
+                logger.error("Cannot write the snapshot '" + snapshot + "' of resource '" + resource.getDescription() + "'", e);
+            }
+        }
+        publish(sets, null, false);
+        metrics.load(System.nanoTime() - t, validation, true);
+        return registry.get().size();
+    }
+    /**
+     * Read all the content of a resource.
+     * @param resource The resource
+     * @return The content
+     * @throws IllegalArgumentException If the resource cannot be read
+     */
+    private static byte [] readContent(Resource resource)
+    {
+        ByteArrayOutputStream content;
+        byte [] buffer;
+        int n;
+        
+        content = new ByteArrayOutputStream();
+        buffer = new byte[8192];
+        try(InputStream in = resource.getInputStream())
+        {
+            while((n = in.read(buffer)) >= 0)
+            {
+                content.write(buffer, 0, n);
+            }
+        }
+        catch(IOException e)
+        {
+            logger.error("Cannot load from resource '" + resource.getDescription() + "'", e);
+            throw new IllegalArgumentException("Cannot load from the resource '" + resource.getDescription() + "'", e);
+        }
+        return content.toByteArray();
+    }
+    /**
+     * Creates mutable copies of the sets.
+     * @param sets The sets
+     * @return The mutable copies
+     */
+    @SuppressWarnings({
+            "rawtypes", "unchecked"
+    })
+    private static List<INamedSet<?>> mutableCopies(List<INamedSet<?>> sets)
+    {
+        List<INamedSet<?>> copies;
+        
+        copies = new ArrayList<INamedSet<?>>(sets.size());
+        for(INamedSet ns : sets)
+        {
+            copies.add(new NamedSetDefaultImpl(ns, ns.getName()));
+        }
+        return copies;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean isEmpty()
     {
-        return registry.isEmpty();
+        return (registry.get().size() == 0);
     }
 
     /**
@@ -239,20 +695,29 @@ public class SetRegistryDefaultImpl implements ISetRegistry
     @Override
     public int size()
     {
-        return registry.size();
+        return registry.get().size();
     }
 
     /**
+     * The sets are published at once, so the readers see all of them or none.
      * {@inheritDoc}
      */
     @Override
     public void addAll(Set<INamedSet<?>> sets)
     {
+        List<INamedSet<?>> stored;
         
         Assert.notNull(sets, "The sets collection argument are required");
+        stored = new ArrayList<INamedSet<?>>(sets.size());
         for(INamedSet<?> ns : sets)
         {
-            putSet(ns);
+            Assert.notNull(ns, "The sets collection cannot contain nulls");
+            Assert.hasText(ns.getName(), "The setName are required and cannot be empty or only whitespace!");
+            stored.add(store(ns));
+        }
+        if(!stored.isEmpty())
+        {
+            publish(stored, null, false);
         }
     }
 
@@ -262,7 +727,668 @@ public class SetRegistryDefaultImpl implements ISetRegistry
     @Override
     public void clear()
     {
-        registry.clear();
+        publish(Collections.<INamedSet<?>>emptyList(), null, true);
+    }
+    /**
+     * Replace all the sets of this registry by the indicated sets, at once.
+     * The readers see the previous sets or the new ones, but never a mix of them nor an empty registry.
+     * @param sets The new sets, required
+     * @throws IllegalArgumentException If sets is null or contains null sets or sets without name
+     */
+    protected void replaceAll(Iterable<INamedSet<?>> sets)
+    {
+        List<INamedSet<?>> stored;
+        
+        Assert.notNull(sets, "The sets collection argument are required");
+        stored = new ArrayList<INamedSet<?>>();
+        for(INamedSet<?> ns : sets)
+        {
+            Assert.notNull(ns, "The sets collection cannot contain nulls");
+            Assert.hasText(ns.getName(), "The setName are required and cannot be empty or only whitespace!");
+            stored.add(store(ns));
+        }
+        publish(stored, null, true);
+    }
+    /**
+     * The set to store on the registry.
+     * @param set The set
+     * @return The {@link INamedSet#freeze() frozen} set or the set itself, depending on {@link #freezeSets}
+     */
+    private INamedSet<?> store(INamedSet<?> set)
+    {
+        return (freezeSets ? set.freeze() : set);
+    }
+    /**
+     * Approximate heap size of the sets of this registry, without the pending sets. The state shared by the frozen sets with the same
+     * content is counted once, and the property paths are counted on each content, although they can be shared.
+     * @return The size, in bytes
+     */
+    long approximateHeapSize()
+    {
+        Snapshot current;
+        long size;
+        
+        current = registry.get();
+        size = 0L;
+        for(INamedSet<?> s : current.sorted)
+        {
+            // The set, its name and its entry on the snapshot
+            size += OBJECT_BYTES + stringBytes(s.getName()) + ENTRY_BYTES + REFERENCE_BYTES;
+            if(!(s instanceof SetFrozenImpl))
+            {
+                size += contentBytes(s, ENTRY_BYTES);
+            }
+        }
+        for(INamedSet<?> s : current.byContent().values())
+        {
+            size += contentBytes(s, REFERENCE_BYTES);
+        }
+        return size;
+    }
+    /**
+     * Approximate heap size of the property paths of a set.
+     * @param set The set
+     * @param entryBytes The size that the set uses for each property path, without the property path
+     * @return The size, in bytes
+     */
+    private static long contentBytes(INamedSet<?> set, long entryBytes)
+    {
+        long size;
+        
+        size = OBJECT_BYTES;
+        for(String path : set)
+        {
+            size += entryBytes + stringBytes(path);
+        }
+        return size;
+    }
+    /**
+     * Approximate heap size of a string.
+     * @param s The string
+     * @return The size, in bytes
+     */
+    private static long stringBytes(String s)
+    {
+        return OBJECT_BYTES + 16L + 2L * s.length();
+    }
+    /**
+     * Replace the snapshot atomically, retrying if any other thread replaced it meanwhile.
+     * The pending sets with the same name of any of the sets to put or remove are discarded.
+     * @param put The sets to put
+     * @param removed The name of the set to remove, or null
+     * @param clear If the sets of the current snapshot, pending sets included, should be discarded
+     * @return The snapshot replaced
+     */
+    private Snapshot publish(List<INamedSet<?>> put, String removed, boolean clear)
+    {
+        Snapshot current;
+        Map<String, INamedSet<?>> map;
+        Map<String, PendingSet> pending;
+        
+        put = intern(put);
+        do
+        {
+            current = registry.get();
+            if((removed != null && !current.contains(removed)) || (clear && put.isEmpty() && current.size() == 0))
+            {
+                // Nothing to remove
+                return current;
+            }
+            map = (clear ? new HashMap<String, INamedSet<?>>() : new HashMap<String, INamedSet<?>>(current.byName));
+            pending = (clear ? new HashMap<String, PendingSet>() : new HashMap<String, PendingSet>(current.pending));
+            for(INamedSet<?> ns : put)
+            {
+                map.put(ns.getName(), ns);
+                pending.remove(ns.getName());
+            }
+            if(removed != null)
+            {
+                map.remove(removed);
+                pending.remove(removed);
+            }
+        }
+        while(!registry.compareAndSet(current, Snapshot.of(map, pending, current.version + 1L)));
+        return current;
+    }
+    /**
+     * Replace the frozen sets by copies that share the state of the sets with the same content, of the current snapshot or of the same batch.
+     * @param sets The sets to put
+     * @return The sets to put, interned
+     */
+    @SuppressWarnings({
+            "rawtypes", "unchecked"
+    })
+    private List<INamedSet<?>> intern(List<INamedSet<?>> sets)
+    {
+        Map<ContentKey, INamedSet<?>> byContent;
+        Map<ContentKey, INamedSet<?>> batch;
+        List<INamedSet<?>> interned;
+        ContentKey key;
+        INamedSet<?> canonical;
+        
+        if(!freezeSets || sets.isEmpty())
+        {
+            return sets;
+        }
+        byContent = registry.get().byContent();
+        batch = new HashMap<ContentKey, INamedSet<?>>();
+        interned = new ArrayList<INamedSet<?>>(sets.size());
+        for(INamedSet<?> ns : sets)
+        {
+            if(ns instanceof SetFrozenImpl)
+            {
+                key = new ContentKey((SetFrozenImpl<?>) ns);
+                if((canonical = byContent.get(key)) == null && (canonical = batch.get(key)) == null)
+                {
+                    batch.put(key, ns);
+                }
+                else if(!((SetFrozenImpl<?>) canonical).sharesContent(key.set))
+                {
+                    ns = new NamedSetFrozenImpl((SetFrozenImpl) canonical, ns.getName());
+                }
+            }
+            interned.add(ns);
+        }
+        return interned;
+    }
+    /**
+     * Publish the pending sets of a {@link #loadFromPropertiesInBackground(Properties) background load}, retrying if any other thread
+     * replaced the snapshot meanwhile.
+     * @param sets The pending sets
+     * @param validated If false, the sets are published as pending, replacing the sets with the same name. If true, all the sets
+     * are validated and the correct ones are published as regular sets, if are still pending; the incorrect ones are discarded.
+     */
+    private void publishPending(PendingSet [] sets, boolean validated)
+    {
+        Snapshot current;
+        Map<String, INamedSet<?>> map;
+        Map<String, PendingSet> pending;
+        INamedSet<?> s;
+        Map<String, INamedSet<?>> interned;
+        
+        interned = null;
+        if(validated)
+        {
+            interned = new HashMap<String, INamedSet<?>>();
+            for(PendingSet p : sets)
+            {
+                // Wait for the sets that other thread is still validating
+                try
+                {
+                    interned.put(p.name, p.resolve());
+                }
+                catch(ExecutionException e)
+                {
+                    // Incorrect, already logged
+                }
+            }
+            for(INamedSet<?> ns : intern(new ArrayList<INamedSet<?>>(interned.values())))
+            {
+                interned.put(ns.getName(), ns);
+            }
+        }
+        do
+        {
+            current = registry.get();
+            map = new HashMap<String, INamedSet<?>>(current.byName);
+            pending = new HashMap<String, PendingSet>(current.pending);
+            for(PendingSet p : sets)
+            {
+                if(!validated)
+                {
+                    map.remove(p.name);
+                    pending.put(p.name, p);
+                }
+                else if(pending.get(p.name) == p)
+                {
+                    // Still pending, not replaced nor removed
+                    pending.remove(p.name);
+                    if((s = interned.get(p.name)) != null)
+                    {
+                        map.put(p.name, s);
+                    }
+                }
+            }
+        }
+        while(!registry.compareAndSet(current, Snapshot.of(map, pending, current.version + 1L)));
+    }
+    /**
+     * Holder of the pool to parse and validate the sets loaded in background, created on first use.
+     */
+    private static final class LoaderPool
+    {
+        /** The pool, with daemon threads as much as available processors. */
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+    /**
+     * A set loaded in background, not validated yet.
+     * The set is parsed and validated once, by the first thread that {@link #run() runs} it; the other threads wait for the result.
+     */
+    private final class PendingSet extends FutureTask<INamedSet<?>>
+    {
+        /** The name of the set. */
+        final String name;
+        /** The set, once validated and correct. */
+        private volatile INamedSet<?> set;
+        
+        /**
+         * Constructor.
+         * @param name The name of the set
+         * @param value The value of the property, the model and the property paths
+         */
+        PendingSet(final String name, final String value)
+        {
+            super(new Callable<INamedSet<?>>()
+            {
+                @Override
+                public INamedSet<?> call() throws ClassNotFoundException
+                {
+                    return parseSet(name, value);
+                }
+            });
+            this.name = name;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void set(INamedSet<?> v)
+        {
+            set = v;
+            super.set(v);
+        }
+        /**
+         * Validate the set on the current thread, if not validated yet, or wait for the thread that is validating it.
+         * The wait is not interrupted, the interrupted status is restored once validated.
+         * @return The set
+         * @throws ExecutionException If the set is incorrect, the cause is the error
+         */
+        INamedSet<?> resolve() throws ExecutionException
+        {
+            boolean interrupted;
+            
+            if(set != null)
+            {
+                return set;
+            }
+            run();
+            interrupted = false;
+            try
+            {
+                while(true)
+                {
+                    try
+                    {
+                        return get();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+            finally
+            {
+                if(interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    /**
+     * The validation, in parallel, of a range of pending sets.
+     */
+    private static final class ValidateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 8469302411571029254L;
+        /** Number of sets to validate without split the range. */
+        private static final int THRESHOLD = 8;
+        private final PendingSet [] sets;
+        private final int from;
+        private final int to;
+        
+        /**
+         * Constructor.
+         * @param sets The pending sets
+         * @param from The first set of the range, inclusive
+         * @param to The last set of the range, exclusive
+         */
+        ValidateTask(PendingSet [] sets, int from, int to)
+        {
+            this.sets = sets;
+            this.from = from;
+            this.to = to;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void compute()
+        {
+            int middle;
+            
+            if(to - from <= THRESHOLD)
+            {
+                for(int n = from; n < to; n++)
+                {
+                    // Nothing if other thread already validated it
+                    sets[n].run();
+                }
+            }
+            else
+            {
+                middle = (from + to) >>> 1;
+                invokeAll(new ValidateTask(sets, from, middle), new ValidateTask(sets, middle, to));
+            }
+        }
+    }
+    /**
+     * A background load, run on the {@link LoaderPool}.
+     * Validate all the pending sets, publish them and report the errors as {@link #loadFromProperties(Properties)}.
+     */
+    private final class BackgroundLoad implements Callable<Integer>
+    {
+        private final PendingSet [] sets;
+        /** The start of the load, as {@link System#nanoTime()}. */
+        private final long start;
+        
+        /**
+         * Constructor.
+         * @param sets The pending sets
+         * @param start The start of the load, as {@link System#nanoTime()}
+         */
+        BackgroundLoad(PendingSet [] sets, long start)
+        {
+            this.sets = sets;
+            this.start = start;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Integer call() throws ClassNotFoundException
+        {
+            List<String> errors;
+            ClassNotFoundException notFound;
+            RuntimeException incorrect;
+            Throwable cause;
+            int n;
+            long validation;
+            
+            validation = System.nanoTime();
+            new ValidateTask(sets, 0, sets.length).invoke();
+            validation = System.nanoTime() - validation;
+            publishPending(sets, true);
+            errors = new ArrayList<String>();
+            notFound = null;
+            incorrect = null;
+            for(PendingSet p : sets)
+            {
+                try
+                {
+                    p.resolve();
+                }
+                catch(ExecutionException e)
+                {
+                    cause = e.getCause();
+                    if(cause instanceof InvalidPropertyPathsException)
+                    {
+                        errors.add(p.name + "=" + ((InvalidPropertyPathsException) cause).getInvalidPaths());
+                    }
+                    else if(cause instanceof ClassNotFoundException)
+                    {
+                        notFound = (notFound == null ? (ClassNotFoundException) cause : notFound);
+                    }
+                    else if(cause instanceof RuntimeException)
+                    {
+                        incorrect = (incorrect == null ? (RuntimeException) cause : incorrect);
+                    }
+                    else
+                    {
+                        throw (Error) cause;
+                    }
+                }
+            }
+            metrics.load(System.nanoTime() - start, validation, notFound == null && incorrect == null && errors.isEmpty());
+            if(notFound != null)
+            {
+                throw notFound;
+            }
+            if(incorrect != null)
+            {
+                throw incorrect;
+            }
+            if(!errors.isEmpty())
+            {
+                throw new IllegalArgumentException("When load from property file. The properties have incorrect or unknown property paths: "
+                        + errors);
+            }
+            n = registry.get().size();
+            if(logger.isTraceEnabled())
+            {
+                logger.trace(String.format("Property file processed in background. %d sets in the registry!", n));
+            }
+            return n;
+        }
+    }
+    /**
+     * The content of a frozen set, its model root, property paths and wildcards, as key.
+     */
+    private static final class ContentKey
+    {
+        /** The set. */
+        final SetFrozenImpl<?> set;
+        
+        /**
+         * Constructor.
+         * @param set The set
+         */
+        ContentKey(SetFrozenImpl<?> set)
+        {
+            this.set = set;
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            long f;
+            
+            f = set.getContentFingerprint();
+            return (int) (f ^ (f >>> 32));
+        }
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o)
+        {
+            return (o instanceof ContentKey && set.hasSameContent(((ContentKey) o).set));
+        }
+    }
+    /**
+     * An immutable state of the registry.
+     */
+    private static final class Snapshot
+    {
+        /** The empty registry. */
+        static final Snapshot EMPTY = new Snapshot(new HashMap<String, INamedSet<?>>(), Collections.<String, PendingSet>emptyMap(), 0L);
+        /** Order of the sets, by name. */
+        static final Comparator<INamedSet<?>> BY_NAME = new Comparator<INamedSet<?>>()
+        {
+            @Override
+            public int compare(INamedSet<?> o1, INamedSet<?> o2)
+            {
+                return o1.getName().compareTo(o2.getName());
+            }
+        };
+        /** The sets by name, never modified once published. */
+        final Map<String, INamedSet<?>> byName;
+        /** The sets sorted by name, for iteration. */
+        final INamedSet<?> [] sorted;
+        /** The pending sets of background loads by name, never modified once published. */
+        final Map<String, PendingSet> pending;
+        /** The sets by model root, sorted by name. */
+        private final Map<Class<?>, List<INamedSet<?>>> byModel;
+        /** The sets applicable to each model, calculated on demand from {@link #byModel}. */
+        private final ConcurrentMap<Class<?>, List<INamedSet<?>>> applicable;
+        /** The frozen sets by content, calculated on demand for the next modification. */
+        private volatile Map<ContentKey, INamedSet<?>> byContent;
+        /** The version, incremented on each modification. */
+        final long version;
+        
+        /**
+         * Constructor.
+         * @param byName The sets by name, owned by the snapshot
+         * @param pending The pending sets by name, owned by the snapshot
+         * @param version The version
+         */
+        private Snapshot(Map<String, INamedSet<?>> byName, Map<String, PendingSet> pending, long version)
+        {
+            this.byName = byName;
+            this.pending = pending;
+            this.version = version;
+            sorted = byName.values().toArray(new INamedSet<?>[byName.size()]);
+            Arrays.sort(sorted, BY_NAME);
+            byModel = new HashMap<Class<?>, List<INamedSet<?>>>();
+            for(INamedSet<?> s : sorted)
+            {
+                if(!byModel.containsKey(s.getModelRoot()))
+                {
+                    byModel.put(s.getModelRoot(), new ArrayList<INamedSet<?>>());
+                }
+                byModel.get(s.getModelRoot()).add(s);
+            }
+            applicable = new ConcurrentHashMap<Class<?>, List<INamedSet<?>>>();
+        }
+        /**
+         * Creates the snapshot of the indicated sets.
+         * @param byName The sets by name, owned by the snapshot
+         * @param pending The pending sets by name, owned by the snapshot
+         * @param version The version
+         * @return The snapshot
+         */
+        static Snapshot of(Map<String, INamedSet<?>> byName, Map<String, PendingSet> pending, long version)
+        {
+            return new Snapshot(byName, (pending.isEmpty() ? Collections.<String, PendingSet>emptyMap() : pending), version);
+        }
+        /**
+         * Gets the frozen sets, not pending, by content. For each content, the first set by name.
+         * @return The sets by content, not to be modified
+         */
+        Map<ContentKey, INamedSet<?>> byContent()
+        {
+            Map<ContentKey, INamedSet<?>> m;
+            ContentKey key;
+            
+            // Benign race: all threads calculate the same map
+            if((m = byContent) == null)
+            {
+                m = new HashMap<ContentKey, INamedSet<?>>();
+                for(INamedSet<?> s : sorted)
+                {
+                    if(s instanceof SetFrozenImpl && !m.containsKey(key = new ContentKey((SetFrozenImpl<?>) s)))
+                    {
+                        m.put(key, s);
+                    }
+                }
+                byContent = m;
+            }
+            return m;
+        }
+        /**
+         * Gets the sets, not pending, with the model or any of its supertypes as model root.
+         * @param model The model
+         * @return The unmodifiable list of sets, sorted by name
+         */
+        List<INamedSet<?>> setsFor(Class<?> model)
+        {
+            List<INamedSet<?>> sets;
+            Set<Class<?>> types;
+            List<INamedSet<?>> l;
+            
+            sets = applicable.get(model);
+            if(sets == null)
+            {
+                sets = new ArrayList<INamedSet<?>>();
+                types = new LinkedHashSet<Class<?>>();
+                addTypes(model, types);
+                for(Class<?> type : types)
+                {
+                    if((l = byModel.get(type)) != null)
+                    {
+                        sets.addAll(l);
+                    }
+                }
+                Collections.sort(sets, BY_NAME);
+                sets = Collections.unmodifiableList(sets);
+                applicable.putIfAbsent(model, sets);
+            }
+            return sets;
+        }
+        /**
+         * Adds the type and all its supertypes, classes and interfaces.
+         * @param type The type, can be null
+         * @param types The types
+         */
+        private static void addTypes(Class<?> type, Set<Class<?>> types)
+        {
+            if(type != null && types.add(type))
+            {
+                addTypes(type.getSuperclass(), types);
+                for(Class<?> i : type.getInterfaces())
+                {
+                    addTypes(i, types);
+                }
+            }
+        }
+        /**
+         * If a set or a pending set with the name exists.
+         * @param name The name
+         * @return true if exists and false if not
+         */
+        boolean contains(String name)
+        {
+            return (byName.containsKey(name) || pending.containsKey(name));
+        }
+        /**
+         * Number of sets, pending sets included.
+         * @return The number of sets
+         */
+        int size()
+        {
+            return (sorted.length + pending.size());
+        }
+        /**
+         * Gets the sets of this snapshot, validating the pending sets, if any, and discarding the incorrect ones.
+         * @return The correct sets, sorted by name. The list is unmodifiable
+         */
+        List<INamedSet<?>> validated()
+        {
+            List<INamedSet<?>> sets;
+            
+            if(pending.isEmpty())
+            {
+                return Collections.unmodifiableList(Arrays.asList(sorted));
+            }
+            sets = new ArrayList<INamedSet<?>>(size());
+            sets.addAll(Arrays.asList(sorted));
+            for(PendingSet p : pending.values())
+            {
+                try
+                {
+                    sets.add(p.resolve());
+                }
+                catch(ExecutionException e)
+                {
+                    // Incorrect, already logged
+                }
+            }
+            Collections.sort(sets, BY_NAME);
+            return Collections.unmodifiableList(sets);
+        }
     }
     
 }
@@ -0,0 +1,356 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.ISetRegistryMetrics;
+
+/**
+ * The default implementation of {@link ISetRegistryMetrics}, for {@link SetRegistryDefaultImpl}.
+ * <p>The counters are {@link StripedCounter striped}, so the threads that read the registry don't contend to count.
+ * While disabled, the registry only reads the {@link #isEnabled() enabled} flag on each lookup.</p>
+ * <p>The metrics can be exposed through JMX with {@link #registerMBean(ISetRegistryMetrics, String)}.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryMetricsImpl implements ISetRegistryMetrics
+{
+    /** The domain of the JMX object names. */
+    public static final String JMX_DOMAIN = "cat.albirar.framework.sets";
+    /** Default maximum number of sets of {@link #getTopSets()}. */
+    public static final int DEFAULT_TOP_SETS_SIZE = 10;
+    /** Order of the hits, from the most to the less hit. */
+    private static final Comparator<Map.Entry<String, Long>> BY_HITS = new Comparator<Map.Entry<String, Long>>()
+    {
+        @Override
+        public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2)
+        {
+            return o2.getValue().compareTo(o1.getValue());
+        }
+    };
+    /** The registry. */
+    private final SetRegistryDefaultImpl registry;
+    private volatile boolean enabled;
+    private volatile int topSetsSize;
+    private final StripedCounter lookups;
+    private final StripedCounter misses;
+    /** The hits of each set, created on the first hit. */
+    private volatile ConcurrentMap<String, StripedCounter> hits;
+    private final StripedCounter loads;
+    private final StripedCounter loadErrors;
+    private volatile long lastLoad;
+    private final StripedCounter totalLoad;
+    private volatile long lastValidation;
+    private final StripedCounter totalValidation;
+    
+    /**
+     * Constructor, disabled.
+     * @param registry The registry, required
+     * @throws IllegalArgumentException If registry is null
+     */
+    public SetRegistryMetricsImpl(SetRegistryDefaultImpl registry)
+    {
+        Assert.notNull(registry, "The registry is required");
+        this.registry = registry;
+        topSetsSize = DEFAULT_TOP_SETS_SIZE;
+        lookups = new StripedCounter();
+        misses = new StripedCounter();
+        loads = new StripedCounter();
+        loadErrors = new StripedCounter();
+        totalLoad = new StripedCounter();
+        totalValidation = new StripedCounter();
+    }
+    /**
+     * Register the metrics as MXBean on the platform MBean server, with the name {@code cat.albirar.framework.sets:type=SetRegistry,name=<name>}.
+     * @param metrics The metrics, as {@link ISetRegistry#getMetrics()}, required
+     * @param name The name of the registry, required
+     * @return The object name of the MXBean
+     * @throws IllegalArgumentException If metrics is null or name is null or empty
+     * @throws IllegalStateException If the MXBean cannot be registered, as if the name is already registered
+     */
+    public static ObjectName registerMBean(ISetRegistryMetrics metrics, String name)
+    {
+        ObjectName objectName;
+        
+        Assert.notNull(metrics, "The metrics are required");
+        Assert.hasText(name, "The name is required");
+        try
+        {
+            objectName = new ObjectName(JMX_DOMAIN + ":type=SetRegistry,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(metrics, ISetRegistryMetrics.class, true), objectName);
+            return objectName;
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Cannot register the metrics of the set registry '" + name + "'", e);
+        }
+    }
+    /**
+     * Unregister a MXBean {@link #registerMBean(ISetRegistryMetrics, String) registered} before.
+     * @param objectName The object name of the MXBean, required
+     * @throws IllegalArgumentException If objectName is null
+     * @throws IllegalStateException If the MXBean cannot be unregistered, as if is not registered
+     */
+    public static void unregisterMBean(ObjectName objectName)
+    {
+        Assert.notNull(objectName, "The objectName is required");
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Cannot unregister the metrics '" + objectName + "'", e);
+        }
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLookupCount()
+    {
+        return lookups.sum();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getTopSets()
+    {
+        ConcurrentMap<String, StripedCounter> h;
+        List<Map.Entry<String, Long>> all;
+        Map<String, Long> top;
+        
+        if((h = hits) == null)
+        {
+            return Collections.emptyMap();
+        }
+        all = new ArrayList<Map.Entry<String, Long>>(h.size());
+        for(Map.Entry<String, StripedCounter> e : h.entrySet())
+        {
+            all.add(new AbstractMap.SimpleImmutableEntry<String, Long>(e.getKey(), e.getValue().sum()));
+        }
+        Collections.sort(all, BY_HITS);
+        top = new LinkedHashMap<String, Long>();
+        for(int n = 0; n < all.size() && n < topSetsSize; n++)
+        {
+            top.put(all.get(n).getKey(), all.get(n).getValue());
+        }
+        return Collections.unmodifiableMap(top);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTopSetsSize()
+    {
+        return topSetsSize;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setTopSetsSize(int size)
+    {
+        Assert.isTrue(size > 0, "The size should be positive");
+        topSetsSize = size;
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLoadCount()
+    {
+        return loads.sum();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLoadErrorCount()
+    {
+        return loadErrors.sum();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLastLoadMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(lastLoad);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTotalLoadMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(totalLoad.sum());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLastValidationMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(lastValidation);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTotalValidationMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(totalValidation.sum());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getSetCount()
+    {
+        return registry.size();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getApproximateHeapSize()
+    {
+        return registry.approximateHeapSize();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        lookups.reset();
+        misses.reset();
+        hits = null;
+        loads.reset();
+        loadErrors.reset();
+        lastLoad = 0L;
+        totalLoad.reset();
+        lastValidation = 0L;
+        totalValidation.reset();
+    }
+    /**
+     * Count a lookup of a set by name, if enabled.
+     * @param setName The name of the set
+     * @param found If the set was found
+     */
+    void lookup(String setName, boolean found)
+    {
+        ConcurrentMap<String, StripedCounter> h;
+        StripedCounter c;
+        StripedCounter prev;
+        
+        if(!enabled)
+        {
+            return;
+        }
+        lookups.increment();
+        if(!found)
+        {
+            misses.increment();
+            return;
+        }
+        if((h = hits) == null)
+        {
+            synchronized(this)
+            {
+                if((h = hits) == null)
+                {
+                    hits = h = new ConcurrentHashMap<String, StripedCounter>();
+                }
+            }
+        }
+        if((c = h.get(setName)) == null && (prev = h.putIfAbsent(setName, c = new StripedCounter())) != null)
+        {
+            c = prev;
+        }
+        c.increment();
+    }
+    /**
+     * Count a load, if enabled.
+     * @param loadNanos The duration of the load, in nanoseconds
+     * @param validationNanos The duration of the parse and validation of the sets, in nanoseconds
+     * @param successful If the load was successful
+     */
+    void load(long loadNanos, long validationNanos, boolean successful)
+    {
+        if(!enabled)
+        {
+            return;
+        }
+        loads.increment();
+        if(!successful)
+        {
+            loadErrors.increment();
+        }
+        lastLoad = loadNanos;
+        totalLoad.add(loadNanos);
+        lastValidation = validationNanos;
+        totalValidation.add(validationNanos);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.SetNotFoundException;
+
+/**
+ * A {@link ISetRegistry} that holds only local sets, over a parent registry that is read through.
+ * <p>The local sets override the sets of the parent with the same name. The reads look at the local sets first and then at the parent,
+ * so the sets of the parent are never copied and the changes on the parent are seen at once. The modifications, as {@link #putSet(INamedSet)},
+ * {@link #removeSet(String)}, {@link #clear()} or the loads, are applied on the local sets only; the parent is never modified, and
+ * once a local set is removed, the set of the parent with the same name, if any, is seen again.</p>
+ * <p>The registry is cheap to create, with no sets, and is suitable for a thread or for a scope, as a request, over the
+ * {@link cat.albirar.framework.sets.registry.SetRegistryFactory#getJVMRegistry() JVM registry}.</p>
+ * @see cat.albirar.framework.sets.registry.SetRegistryFactory#getThreadRegistry()
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryOverlayImpl extends SetRegistryDefaultImpl
+{
+    /** Order of the sets, by name. */
+    private static final Comparator<INamedSet<?>> BY_NAME = new Comparator<INamedSet<?>>()
+    {
+        @Override
+        public int compare(INamedSet<?> o1, INamedSet<?> o2)
+        {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+    /** The parent registry. */
+    private final ISetRegistry parent;
+    
+    /**
+     * Constructor for a registry that stores {@link INamedSet#freeze() frozen} sets.
+     * @param parent The parent registry, required
+     * @throws IllegalArgumentException If parent is null
+     */
+    public SetRegistryOverlayImpl(ISetRegistry parent)
+    {
+        this(parent, true);
+    }
+    /**
+     * Constructor.
+     * @param parent The parent registry, required
+     * @param freezeSets If true, the registry stores {@link INamedSet#freeze() frozen} copies of the local sets, if false the sets are stored as is
+     * @throws IllegalArgumentException If parent is null
+     */
+    public SetRegistryOverlayImpl(ISetRegistry parent, boolean freezeSets)
+    {
+        super(freezeSets);
+        Assert.notNull(parent, "The parent registry is required");
+        this.parent = parent;
+    }
+    /**
+     * The parent registry.
+     * @return The parent
+     */
+    public ISetRegistry getParent()
+    {
+        return parent;
+    }
+    /**
+     * Iterate the local sets and the sets of the parent not overridden, by name.
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<INamedSet<?>> iterator()
+    {
+        List<INamedSet<?>> sets;
+        
+        if(super.isEmpty())
+        {
+            return parent.iterator();
+        }
+        sets = new ArrayList<INamedSet<?>>();
+        for(INamedSet<?> s : parent)
+        {
+            if(!super.containsSet(s.getName()))
+            {
+                sets.add(s);
+            }
+        }
+        for(Iterator<INamedSet<?>> it = super.iterator(); it.hasNext(); )
+        {
+            sets.add(it.next());
+        }
+        Collections.sort(sets, BY_NAME);
+        return Collections.unmodifiableList(sets).iterator();
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsSet(String setName)
+    {
+        return (super.containsSet(setName) || parent.containsSet(setName));
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public INamedSet<?> getSet(String setName)
+    {
+        INamedSet<?> s;
+        
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        s = lookup(setName, true);
+        if(s == null)
+        {
+            try
+            {
+                s = parent.getSet(setName);
+            }
+            catch(SetNotFoundException e)
+            {
+                counted(setName, null);
+                throw e;
+            }
+        }
+        return counted(setName, s);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public INamedSet<?> findSet(String setName)
+    {
+        INamedSet<?> s;
+        
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        s = lookup(setName, false);
+        return counted(setName, (s != null ? s : parent.findSet(setName)));
+    }
+    /**
+     * The sum of the versions of the local sets and of the parent, so it increases on any modification of any of them.
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion()
+    {
+        return (super.getVersion() + parent.getVersion());
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<INamedSet<? super T>> getSetsFor(Class<T> model)
+    {
+        List<INamedSet<? super T>> sets;
+        
+        Assert.notNull(model, "The model argument are required");
+        if(super.isEmpty())
+        {
+            return parent.getSetsFor(model);
+        }
+        sets = new ArrayList<INamedSet<? super T>>(super.getSetsFor(model));
+        for(INamedSet<? super T> s : parent.getSetsFor(model))
+        {
+            if(!super.containsSet(s.getName()))
+            {
+                sets.add(s);
+            }
+        }
+        Collections.sort(sets, BY_NAME);
+        return Collections.unmodifiableList(sets);
+    }
+    /**
+     * A local set with the name overrides the set of the parent, even if the local set is not applicable to the model.
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> INamedSet<? super T> findSet(Class<T> model, String setName)
+    {
+        INamedSet<?> s;
+        
+        Assert.notNull(model, "The model argument are required");
+        Assert.hasText(setName, "The setName are required and cannot be empty or only whitespace!");
+        s = lookup(setName, false);
+        if(s == null)
+        {
+            s = parent.findSet(setName);
+        }
+        counted(setName, s);
+        return (isApplicable(s, model) ? (INamedSet<? super T>) s : null);
+    }
+    /**
+     * The set is put on the local sets, overriding the set of the parent with the same name, if any.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean putSet(INamedSet<?> set)
+    {
+        boolean overridden;
+        
+        Assert.notNull(set, "The 'set' argument are required'");
+        Assert.hasText(set.getName(), "The setName are required and cannot be empty or only whitespace!");
+        overridden = parent.containsSet(set.getName());
+        return (super.putSet(set) && !overridden);
+    }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return (super.isEmpty() && parent.isEmpty());
+    }
+    /**
+     * The sets of the parent are iterated if there are local sets, to count the sets not overridden.
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        int n;
+        
+        if(super.isEmpty())
+        {
+            return parent.size();
+        }
+        n = super.size();
+        for(INamedSet<?> s : parent)
+        {
+            if(!super.containsSet(s.getName()))
+            {
+                n++;
+            }
+        }
+        return n;
+    }
+}
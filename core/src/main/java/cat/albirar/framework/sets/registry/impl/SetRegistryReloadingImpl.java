@@ -0,0 +1,355 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.ISetRegistry;
+
+/**
+ * A {@link ISetRegistry} loaded from a property file, see {@link ISetRegistry#loadFromProperties(Properties)}, that is reloaded when the file changes.
+ * <p>The file is watched with a {@link WatchService} from a daemon thread, started with {@link #start()} and stopped with {@link #close()}.
+ * On each change, the file is parsed and validated into a fresh registry, out of the threads that read the registry, and then
+ * all the sets are replaced at once (see {@link SetRegistryDefaultImpl}), so the readers never see a half loaded registry.
+ * If the file cannot be read or is incorrect, the previous sets are kept and the error is logged and available on {@link #getLastError()}.</p>
+ * <p>Each successful load increments the {@link #getGeneration() generation}. The loads, successful or not, are counted on the
+ * {@link #getMetrics() metrics}, if enabled. The sets put directly on the registry are discarded on the next reload.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryReloadingImpl extends SetRegistryDefaultImpl implements Closeable
+{
+    private static final Logger logger = LoggerFactory.getLogger(SetRegistryReloadingImpl.class);
+    /** Time to wait for more events after a change, to reload only once for a burst of events. */
+    private static final long SETTLE_MILLIS = 50L;
+    /** The watched file. */
+    private final Path file;
+    /** If the sets are stored frozen. */
+    private final boolean freezeSets;
+    /** The generation, the number of successful loads. */
+    private volatile long generation;
+    /** Duration of the last load, successful or not, in nanoseconds. */
+    private volatile long lastDuration;
+    /** The error of the last load, or null if successful. */
+    private volatile Exception lastError;
+    /** The watch service, null if not started. */
+    private WatchService watchService;
+    /** The thread that watches the file. */
+    private Thread watcher;
+    
+    /**
+     * Constructor for a registry that stores {@link INamedSet#freeze() frozen} sets.
+     * @param file The property file, required
+     * @throws IllegalArgumentException If file is null
+     */
+    public SetRegistryReloadingImpl(Path file)
+    {
+        this(file, true);
+    }
+    /**
+     * Constructor.
+     * @param file The property file, required
+     * @param freezeSets If true, the registry stores {@link INamedSet#freeze() frozen} copies of the sets, if false the sets are stored as is
+     * @throws IllegalArgumentException If file is null
+     */
+    public SetRegistryReloadingImpl(Path file, boolean freezeSets)
+    {
+        super(freezeSets);
+        Assert.notNull(file, "The file is required");
+        this.file = file.toAbsolutePath();
+        this.freezeSets = freezeSets;
+    }
+    /**
+     * Start to watch the file and load it.
+     * The file is watched before the load, so a change made meanwhile is not lost. If the load fails, the watch is cancelled
+     * and {@link #start()} can be called again.
+     * @throws IOException If the file cannot be read or the watch service cannot be created
+     * @throws IllegalArgumentException If the file format is incorrect or any property path is incorrect for the root model
+     * @throws ClassNotFoundException If any of the root model classes cannot be found
+     * @throws IllegalStateException If already started
+     */
+    public synchronized void start() throws IOException, ClassNotFoundException
+    {
+        long t;
+        ISetRegistry fresh;
+        long validation;
+        WatchService ws;
+        
+        Assert.state(watchService == null, "The registry is already started");
+        ws = file.getFileSystem().newWatchService();
+        try
+        {
+            file.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            t = System.nanoTime();
+            try
+            {
+                fresh = load();
+            }
+            catch(IOException | ClassNotFoundException | RuntimeException e)
+            {
+                lastDuration = System.nanoTime() - t;
+                getMetrics().load(lastDuration, lastDuration, false);
+                throw e;
+            }
+            validation = System.nanoTime() - t;
+            replaceAll(fresh);
+            generation++;
+            lastDuration = System.nanoTime() - t;
+            getMetrics().load(lastDuration, validation, true);
+        }
+        catch(IOException | ClassNotFoundException | RuntimeException | Error e)
+        {
+            try
+            {
+                ws.close();
+            }
+            catch(IOException ce)
+            {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+        watchService = ws;
+        watcher = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                watch();
+            }
+        }, "set-registry-watcher-" + file.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+        if(logger.isDebugEnabled())
+        {
+            logger.debug("Watching '" + file + "' for set registry changes");
+        }
+    }
+    /**
+     * Stop to watch the file. The sets are kept.
+     * @throws IOException If the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(watchService != null)
+        {
+            watchService.close();
+            watcher.interrupt();
+            watchService = null;
+            watcher = null;
+        }
+    }
+    /**
+     * Reload the file now.
+     * If the file cannot be read or is incorrect, the sets are kept and the error is available on {@link #getLastError()};
+     * a {@link LinkageError} of any model class is reported as the cause of an {@link IllegalStateException}.
+     * The reloads are serialized, but the readers are never blocked.
+     * @return true if reloaded and false if the file cannot be read or is incorrect
+     */
+    public synchronized boolean reload()
+    {
+        long t;
+        ISetRegistry fresh;
+        long validation;
+        boolean successful;
+        
+        t = System.nanoTime();
+        validation = 0L;
+        successful = false;
+        try
+        {
+            fresh = load();
+            validation = System.nanoTime() - t;
+            replaceAll(fresh);
+            generation++;
+            successful = true;
+            lastError = null;
+            if(logger.isDebugEnabled())
+            {
+                logger.debug(String.format("Set registry reloaded from '%s', generation %d, %d sets", file, generation, size()));
+            }
+            return true;
+        }
+        catch(IOException | ClassNotFoundException | RuntimeException e)
+        {
+            lastError = e;
+            logger.error("Cannot reload the set registry from '" + file + "', the previous sets are kept", e);
+            return false;
+        }
+        catch(LinkageError e)
+        {
+            // A model class that cannot be linked or initialized
+            lastError = new IllegalStateException("Cannot link the models of the set registry", e);
+            logger.error("Cannot reload the set registry from '" + file + "', the previous sets are kept", e);
+            return false;
+        }
+        finally
+        {
+            lastDuration = System.nanoTime() - t;
+            getMetrics().load(lastDuration, (successful ? validation : lastDuration), successful);
+        }
+    }
+    /**
+     * The watched file.
+     * @return The file, absolute
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+    /**
+     * The generation, the number of successful loads, including the first one.
+     * @return The generation, 0 if never loaded
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+    /**
+     * The duration of the last load, successful or not.
+     * @param unit The unit of the result, required
+     * @return The duration
+     */
+    public long getLastReloadDuration(TimeUnit unit)
+    {
+        return unit.convert(lastDuration, TimeUnit.NANOSECONDS);
+    }
+    /**
+     * The error of the last load.
+     * @return The error or null if the last load was successful
+     */
+    public Exception getLastError()
+    {
+        return lastError;
+    }
+    /**
+     * Parse and validate the file into a fresh registry.
+     * @return The fresh registry
+     * @throws IOException If the file cannot be read
+     * @throws ClassNotFoundException If any of the root model classes cannot be found
+     * @throws IllegalArgumentException If the file format is incorrect or any property path is incorrect for the root model
+     */
+    private ISetRegistry load() throws IOException, ClassNotFoundException
+    {
+        Properties prop;
+        SetRegistryDefaultImpl fresh;
+        
+        prop = new Properties();
+        try(InputStream in = Files.newInputStream(file))
+        {
+            prop.load(in);
+        }
+        fresh = new SetRegistryDefaultImpl(freezeSets);
+        fresh.loadFromProperties(prop);
+        return fresh;
+    }
+    /**
+     * The loop of the watcher thread, until the watch service is closed.
+     */
+    private void watch()
+    {
+        WatchService ws;
+        WatchKey key;
+        boolean changed;
+        
+        synchronized(this)
+        {
+            ws = watchService;
+        }
+        try
+        {
+            while(true)
+            {
+                key = ws.take();
+                changed = false;
+                // Collect the burst of events of a single save
+                do
+                {
+                    changed |= isFileEvent(key);
+                    key.reset();
+                }
+                while((key = ws.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                if(changed)
+                {
+                    reloadFromWatcher();
+                }
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException e)
+        {
+            // Closed
+        }
+        catch(Error e)
+        {
+            logger.error("The watcher of the set registry file '" + file + "' stops, the file will not be reloaded", e);
+            throw e;
+        }
+    }
+    /**
+     * Reload the file from the watcher thread, logging any unexpected exception to keep the thread alive.
+     */
+    private void reloadFromWatcher()
+    {
+        try
+        {
+            reload();
+        }
+        catch(RuntimeException e)
+        {
+            logger.error("Unexpected error reloading the set registry from '" + file + "'", e);
+        }
+    }
+    /**
+     * Check if any of the events of the key refers to the watched file.
+     * @param key The key
+     * @return true if the file changed
+     */
+    private boolean isFileEvent(WatchKey key)
+    {
+        boolean changed;
+        
+        changed = false;
+        for(WatchEvent<?> event : key.pollEvents())
+        {
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context()))
+            {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
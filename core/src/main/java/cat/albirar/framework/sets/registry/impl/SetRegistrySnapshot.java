@@ -0,0 +1,364 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.IncompatibleModelException;
+import cat.albirar.framework.sets.impl.ModelPathIndex;
+import cat.albirar.framework.sets.impl.SetBinaryCodec;
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+
+/**
+ * Binary snapshot of the sets of a registry, already validated, to load a registry without parse and validate a property file.
+ * <p>The format is:
+ * <ul>
+ * <li>The {@link #MAGIC magic number} and the {@link #VERSION version}.</li>
+ * <li>The checksum of the source of the sets, usually the property file, so a snapshot of an old source is not used.</li>
+ * <li>The string table, with the model class names and the set names.</li>
+ * <li>The models, as the position of its class name on the string table and its {@link ModelPathIndex#fingerprint() fingerprint}.</li>
+ * <li>The sets, as the position of its name on the string table, the position of its model and its paths as
+ * {@link SetBinaryCodec#encodePaths(ISet, java.io.DataOutput) property ordinals}.</li>
+ * </ul>
+ * All the counts and positions are unsigned variable length integers.</p>
+ * <p>The snapshot is read from a memory mapped file. The counts are checked against the bytes remaining on the file before
+ * allocate the elements, so a corrupted file is rejected with a {@link StreamCorruptedException}. The fingerprints of all the
+ * models are checked before decode any set, so a snapshot of other version of the models is rejected with
+ * {@link IncompatibleModelException} and nothing is loaded.</p>
+ * @see ISetRegistry#loadFromSnapshot(Path, org.springframework.core.io.Resource)
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public abstract class SetRegistrySnapshot
+{
+    /** The magic number of the snapshot files. */
+    public static final int MAGIC = 0x53455453;
+    /** The current version of the format. */
+    public static final int VERSION = 1;
+    /** The minimum size of a string of the table: the length of the modified UTF-8 form. */
+    private static final int MIN_STRING_BYTES = 2;
+    /** The minimum size of a model: the position of the class name and the fingerprint. */
+    private static final int MIN_MODEL_BYTES = 9;
+    /** The minimum size of a set: the position of the name and of the model and the count of paths. */
+    private static final int MIN_SET_BYTES = 3;
+    
+    /**
+     * Write the snapshot of the indicated sets.
+     * The snapshot is written on a temporary file that replaces the file at the end, so a reader never sees a partial snapshot.
+     * @param sets The sets, required
+     * @param sourceChecksum The checksum of the source of the sets
+     * @param file The file, required
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If sets or file are null
+     */
+    public static void write(Iterable<INamedSet<?>> sets, long sourceChecksum, Path file) throws IOException
+    {
+        Map<String, Integer> strings;
+        List<String> table;
+        Map<Class<?>, Integer> models;
+        List<Class<?>> modelList;
+        List<INamedSet<?>> list;
+        Path tmp;
+        
+        Assert.notNull(sets, "The sets are required");
+        Assert.notNull(file, "The file is required");
+        strings = new HashMap<String, Integer>();
+        table = new ArrayList<String>();
+        models = new HashMap<Class<?>, Integer>();
+        modelList = new ArrayList<Class<?>>();
+        list = new ArrayList<INamedSet<?>>();
+        for(INamedSet<?> ns : sets)
+        {
+            list.add(ns);
+            intern(ns.getName(), strings, table);
+            if(!models.containsKey(ns.getModelRoot()))
+            {
+                models.put(ns.getModelRoot(), modelList.size());
+                modelList.add(ns.getModelRoot());
+                intern(ns.getModelRoot().getName(), strings, table);
+            }
+        }
+        tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try
+        {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(sourceChecksum);
+                writeVarint(table.size(), out);
+                for(String s : table)
+                {
+                    out.writeUTF(s);
+                }
+                writeVarint(modelList.size(), out);
+                for(Class<?> model : modelList)
+                {
+                    writeVarint(strings.get(model.getName()), out);
+                    out.writeLong(ModelPathIndex.forModel(model).fingerprint());
+                }
+                writeVarint(list.size(), out);
+                for(INamedSet<?> ns : list)
+                {
+                    writeVarint(strings.get(ns.getName()), out);
+                    writeVarint(models.get(ns.getModelRoot()), out);
+                    SetBinaryCodec.encodePaths(ns, out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp);
+        }
+    }
+    /**
+     * Read the sets of a snapshot.
+     * @param file The file, required
+     * @param sourceChecksum The checksum of the current source of the sets
+     * @return The sets, {@link INamedSet#freeze() frozen}
+     * @throws IOException If an I/O error occurs, the file is not a valid snapshot or the snapshot was made from other source
+     * @throws IncompatibleModelException If the fingerprint of any model is not the same of the snapshot
+     * @throws ClassNotFoundException If any of the model classes cannot be found
+     * @throws IllegalArgumentException If file is null
+     */
+    public static List<INamedSet<?>> read(Path file, long sourceChecksum) throws IOException, ClassNotFoundException
+    {
+        ByteBuffer buffer;
+        DataInputStream in;
+        String [] table;
+        Class<?> [] models;
+        List<INamedSet<?>> sets;
+        ModelPathIndex index;
+        long fingerprint;
+        int count;
+        
+        Assert.notNull(file, "The file is required");
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+        in = new DataInputStream(new ByteBufferInputStream(buffer));
+        if(in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+        {
+            throw new StreamCorruptedException("The file '" + file + "' is not a set registry snapshot of version " + VERSION);
+        }
+        if(in.readLong() != sourceChecksum)
+        {
+            throw new IOException("The snapshot '" + file + "' was made from other source");
+        }
+        table = new String[readCount(in, buffer, MIN_STRING_BYTES)];
+        for(int n = 0; n < table.length; n++)
+        {
+            table[n] = in.readUTF();
+        }
+        models = new Class<?>[readCount(in, buffer, MIN_MODEL_BYTES)];
+        for(int n = 0; n < models.length; n++)
+        {
+            models[n] = Class.forName(string(table, readVarint(in)), false, ClassUtils.getDefaultClassLoader());
+            index = ModelPathIndex.forModel(models[n]);
+            if((fingerprint = in.readLong()) != index.fingerprint())
+            {
+                throw new IncompatibleModelException(models[n], fingerprint, index.fingerprint());
+            }
+        }
+        count = readCount(in, buffer, MIN_SET_BYTES);
+        sets = new ArrayList<INamedSet<?>>(count);
+        for(int n = 0; n < count; n++)
+        {
+            sets.add(decodeSet(string(table, readVarint(in)), models, in));
+        }
+        return sets;
+    }
+    /**
+     * Decode a set.
+     * @param name The set name
+     * @param models The models
+     * @param in The input
+     * @return The set
+     * @throws IOException If an I/O error occurs or the data is not valid
+     */
+    private static INamedSet<?> decodeSet(String name, Class<?> [] models, DataInputStream in) throws IOException
+    {
+        int model;
+        
+        if((model = readVarint(in)) >= models.length)
+        {
+            throw new StreamCorruptedException("Invalid set registry snapshot");
+        }
+        return NamedSetUtils.immutableCopyOf(SetBinaryCodec.decodePaths(models[model], in), name);
+    }
+    /**
+     * Read a count of elements, checked against the bytes remaining on the file.
+     * @param in The input
+     * @param buffer The buffer of the file, read by {@code in}
+     * @param size The minimum size of each element, in bytes
+     * @return The count
+     * @throws IOException If an I/O error occurs or the count is greater than the elements that the file can have
+     */
+    private static int readCount(DataInput in, ByteBuffer buffer, int size) throws IOException
+    {
+        int count;
+        
+        if((count = readVarint(in)) > buffer.remaining() / size)
+        {
+            throw new StreamCorruptedException("Invalid set registry snapshot");
+        }
+        return count;
+    }
+    /**
+     * Gets a string of the table.
+     * @param table The table
+     * @param position The position
+     * @return The string
+     * @throws StreamCorruptedException If the position is out of the table
+     */
+    private static String string(String [] table, int position) throws StreamCorruptedException
+    {
+        if(position >= table.length)
+        {
+            throw new StreamCorruptedException("Invalid set registry snapshot");
+        }
+        return table[position];
+    }
+    /**
+     * Add the string to the table, if not already added.
+     * @param s The string
+     * @param strings The position of each string of the table
+     * @param table The table
+     */
+    private static void intern(String s, Map<String, Integer> strings, List<String> table)
+    {
+        if(!strings.containsKey(s))
+        {
+            strings.put(s, table.size());
+            table.add(s);
+        }
+    }
+    /**
+     * Write an unsigned variable length integer, seven bits per byte, as the {@link SetBinaryCodec}.
+     * @param value The value, not negative
+     * @param out The output
+     * @throws IOException If an I/O error occurs
+     */
+    private static void writeVarint(int value, DataOutput out) throws IOException
+    {
+        while((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    /**
+     * Read an unsigned variable length integer.
+     * @param in The input
+     * @return The value
+     * @throws IOException If an I/O error occurs or the value is not valid
+     */
+    private static int readVarint(DataInput in) throws IOException
+    {
+        int value;
+        int b;
+        
+        value = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                if(value < 0)
+                {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Invalid set registry snapshot");
+    }
+    /**
+     * An {@link InputStream} that reads a {@link ByteBuffer}, without copy it.
+     */
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+        
+        /**
+         * Constructor.
+         * @param buffer The buffer
+         */
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+        @Override
+        public int read()
+        {
+            return (buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1);
+        }
+        @Override
+        public int read(byte [] b, int off, int len)
+        {
+            int n;
+            
+            if(len == 0)
+            {
+                return 0;
+            }
+            if(!buffer.hasRemaining())
+            {
+                return -1;
+            }
+            n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A counter to be incremented from many threads, for the {@link SetRegistryMetricsImpl metrics}.
+ * <p>The counter is a single value while the threads doesn't contend; on the first contention, the counter is split in
+ * stripes, each one on its own cache line, and each thread adds to the stripe of its thread id. So the increments never
+ * take a monitor and the threads rarely update the same cache line. The {@link #sum() sum} is not atomic with the increments.</p>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+final class StripedCounter
+{
+    /** Number of longs of a cache line, the distance between stripes. */
+    private static final int PADDING = 8;
+    /** Number of stripes, a power of two. */
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1;
+    private static final AtomicLongFieldUpdater<StripedCounter> BASE = AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "base");
+    private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> CELLS
+            = AtomicReferenceFieldUpdater.newUpdater(StripedCounter.class, AtomicLongArray.class, "cells");
+    /** The value, while the threads doesn't contend. */
+    private volatile long base;
+    /** The stripes, null until the first contention. */
+    private volatile AtomicLongArray cells;
+    
+    /**
+     * Add one.
+     */
+    void increment()
+    {
+        add(1L);
+    }
+    /**
+     * Add a value.
+     * @param x The value
+     */
+    void add(long x)
+    {
+        AtomicLongArray c;
+        long b;
+        
+        if((c = cells) == null)
+        {
+            b = base;
+            if(BASE.compareAndSet(this, b, b + x))
+            {
+                return;
+            }
+            // Contended, split in stripes
+            CELLS.compareAndSet(this, null, new AtomicLongArray(STRIPES * PADDING));
+            c = cells;
+        }
+        c.getAndAdd(stripe(), x);
+    }
+    /**
+     * The sum of the value and the stripes.
+     * @return The sum
+     */
+    long sum()
+    {
+        AtomicLongArray c;
+        long s;
+        
+        s = base;
+        if((c = cells) != null)
+        {
+            for(int n = 0; n < c.length(); n += PADDING)
+            {
+                s += c.get(n);
+            }
+        }
+        return s;
+    }
+    /**
+     * Reset to zero. The increments concurrent with the reset can be lost.
+     */
+    void reset()
+    {
+        AtomicLongArray c;
+        
+        base = 0L;
+        if((c = cells) != null)
+        {
+            for(int n = 0; n < c.length(); n += PADDING)
+            {
+                c.set(n, 0L);
+            }
+        }
+    }
+    /**
+     * The position of the stripe of the current thread.
+     * @return The position
+     */
+    private static int stripe()
+    {
+        long h;
+        
+        h = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+        return ((int) (h >>> 32) & (STRIPES - 1)) * PADDING;
+    }
+}
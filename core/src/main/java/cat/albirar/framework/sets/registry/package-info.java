@@ -33,7 +33,11 @@
  * <li>JVM registry: {@link cat.albirar.framework.sets.registry.SetRegistryFactory#getJVMRegistry()}</li>
  * <li>Thread local registry: {@link cat.albirar.framework.sets.registry.SetRegistryFactory#getThreadRegistry()}</li>
  * </ul>
+ * The thread local register holds only the sets of the thread and reads through to the JVM global register for the rest.
+ * A register for any other scope can be created with {@link cat.albirar.framework.sets.registry.SetRegistryFactory#createScopeRegistry()}.
  * </p>
+ * <p>Each registry counts its lookups and loads on its {@link cat.albirar.framework.sets.registry.ISetRegistry#getMetrics() metrics},
+ * disabled by default, that can be exposed through JMX with {@link cat.albirar.framework.sets.registry.impl.SetRegistryMetricsImpl#registerMBean(cat.albirar.framework.sets.registry.ISetRegistryMetrics, String)}.</p>
  * <p>Named sets also can be defined by property file and loaded on setup application time with two methods of {@link cat.albirar.framework.sets.registry.ISetRegistry}:
  * <ul>
  * <li>From a {@link java.util.Properties} with {@link cat.albirar.framework.sets.registry.ISetRegistry#loadFromProperties(java.util.Properties)}</li>
@@ -21,6 +21,15 @@ package cat.albirar.framework.sets.tsb.impl;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.beans.BeanUtils;
 
@@ -28,27 +37,54 @@ import cat.albirar.framework.proxy.IProxyHandler;
 import cat.albirar.framework.proxy.ProxyFactory;
 import cat.albirar.framework.sets.ISet;
 import cat.albirar.framework.sets.ISetBuilder;
+import cat.albirar.framework.sets.PropertyPath;
 import cat.albirar.framework.sets.impl.SetBuilderDefaultImpl;
 import cat.albirar.framework.sets.tsb.ITypeSafeBuilder;
 
 /**
  * A default implementation of {@link ITypeSafeBuilder}.
+ * <p>Each builder have its own recording proxies, created once for each model type on first use, that always record the calls
+ * on the builder, whatever the thread or the other builders created meanwhile. The property name and the placeholder returned
+ * by each getter are calculated once for each method and kept with the declaring type of the method, and the recorded property
+ * paths are {@link PropertyPath interned}. The proxy classes are also created once for each model type, see
+ * {@link cat.albirar.framework.proxy.ProxyFactory}; so, once the models are known, building a set creates the builder with its
+ * handler and table of proxies, an instance of the proxy class for each model type visited, and the set.</p>
+ * <p>The immutable placeholders, as the primitive values, the strings and the enumerations, are shared by all the builders.
+ * The mutable ones, as the dates and the arrays, are created on each call.</p>
  * @author Octavi Fornés ofornes@albirar.cat
  * @since 2.1.0
  */
 public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
 {
+    /** The recording of the getters of each type, by method. Kept with the type, so doesn't hold the types nor their class loaders. */
+    private static final ClassValue<ConcurrentMap<Method, PropertyRecording>> recordings = new ClassValue<ConcurrentMap<Method, PropertyRecording>>()
+    {
+        @Override
+        protected ConcurrentMap<Method, PropertyRecording> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<Method, PropertyRecording>();
+        }
+    };
     private ISetBuilder<M> setBuilder;
-    private BuilderAssistant builderAssistant;
     private M model;
+    /** The handler of the recording proxies of this builder. */
+    private final RecordingHandler handler;
+    /** The recording proxies of this builder, by type. */
+    private final Map<Class<?>, Object> proxies;
+    /** The property path recorded since the last added property, or null. */
+    private PropertyPath recorded;
     
     /**
      * The unique constructor.
+     * @param rootModel The root model, required
+     * @throws IllegalArgumentException If the root model is null or cannot be proxied, as an abstract class
      */
     public TypeSafeBuilderDefaultImpl(Class<M> rootModel)
     {
         setBuilder = new SetBuilderDefaultImpl<M>(rootModel);
-        builderAssistant = newAssistant();
+        handler = new RecordingHandler();
+        proxies = new HashMap<Class<?>, Object>();
+        model = rootModel.cast(proxy(rootModel));
     }
     
     /**
@@ -235,10 +271,16 @@ public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
      */
     private ITypeSafeBuilder<M> endPath()
     {
-        builderAssistant.endPath();
+        if(recorded != null)
+        {
+            // The interned path holds its dotted string
+            setBuilder.addProperty(recorded.toString());
+            recorded = null;
+        }
         return this;
     }
     /**
+     * The model is a recording proxy of this builder, that records on this builder even if is kept out of it.
      * {@inheritDoc}
      */
     @Override
@@ -256,179 +298,188 @@ public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
         return setBuilder.build();
     }
     /**
-     * Create a new proxy builder assistant.
-     * @return The new builder assistant
-     */
-    BuilderAssistant newAssistant()
-    {
-        BuilderAssistant ba;
-        
-        ba = new BuilderAssistant(setBuilder);
-        model = (M) ProxyFactory.instanceProxy().newProxy(ba, setBuilder.getModelRoot());
-        return ba;
-    }
-    /**
-     * Create a new proxy builder assistant.
-     * @return The new builder assistant
+     * Record the call to a getter.
+     * @param propertyName The property name of the getter
      */
-    Object newChildAssistant(BuilderAssistant bParent, Class<?> type)
+    private void record(String propertyName)
     {
-        return ProxyFactory.instanceProxy().newProxy(new BuilderAssistant(bParent), type);
+        recorded = (recorded == null ? PropertyPath.of(propertyName) : recorded.child(propertyName));
     }
     /**
-     * The data to help assistant to constructs the property path.
-     * @author Octavi Fornés ofornes@albirar.cat
-     * @since 2.1.0
+     * Gets the recording proxy of this builder for a type, created on first use.
+     * @param type The type
+     * @return The proxy
+     * @throws IllegalArgumentException If the type cannot be proxied, as an abstract class
      */
-    class BuilderAssistantData
+    private Object proxy(Class<?> type)
     {
-        ISetBuilder<M> builder;
-        String lastProp;
+        Object p;
+        
+        if((p = proxies.get(type)) == null)
+        {
+            p = ProxyFactory.instanceProxy().newProxy(handler, type);
+            proxies.put(type, p);
+        }
+        return p;
     }
     /**
-     * The assistant for type-safe builder operations.
+     * The recording of a getter: its property name and the value to return.
      * @author Octavi Fornés ofornes@albirar.cat
      * @since 2.1.0
      */
-    class BuilderAssistant implements IProxyHandler
+    static final class PropertyRecording
     {
-        BuilderAssistantData data;
+        /** The simple types with immutable instances, whose placeholders can be shared. */
+        private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(Boolean.class, Character.class
+                , Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, String.class, BigInteger.class, BigDecimal.class));
+        final String propertyName;
+        /** The returned type or, if the getter returns an array, its component type. */
+        private final Class<?> type;
+        /** If the getter returns an array. */
+        private final boolean isArray;
+        /** If the returned type is not simple, so the getter returns a recording proxy. */
+        private final boolean proxied;
+        /** The shared placeholder, if is immutable, or null. */
+        private final Object placeholder;
         
-        BuilderAssistant(BuilderAssistant parent)
-        {
-            this.data = parent.data;
-        }
-        
-        BuilderAssistant(ISetBuilder<M> builder)
+        /**
+         * Constructor.
+         * @param method The method, a getter
+         * @throws IllegalArgumentException If the method is not a getter or the returned type cannot be instantiated
+         */
+        PropertyRecording(Method method)
         {
-            this.data = new BuilderAssistantData();
-            this.data.builder = builder;
+            Object aValue;
+            
+            if(!isPropertyMethod(method))
+            {
+                // Not a 'get/is' method, error
+                throw new IllegalArgumentException("The method '" + method.getName() + "' is not a get/is method. Not a java bean property method convention!");
+            }
+            propertyName = propertyNameFromMethod(method);
+            isArray = method.getReturnType().isArray();
+            type = (isArray ? method.getReturnType().getComponentType() : method.getReturnType());
+            proxied = !BeanUtils.isSimpleProperty(type);
+            aValue = null;
+            if(!proxied)
+            {
+                try
+                {
+                    aValue = placeholder(type);
+                }
+                catch(ReflectiveOperationException | RuntimeException e)
+                {
+                    throw new IllegalArgumentException("The type '" + type.getName() + "' of property method '" + method.getName() + "' cannot be instantiated", e);
+                }
+            }
+            placeholder = (aValue instanceof Enum || (aValue != null && IMMUTABLE_TYPES.contains(aValue.getClass())) ? aValue : null);
         }
-        
-        void endPath()
+        /**
+         * Gets the recording of a getter, calculated once for each method.
+         * @param method The method
+         * @return The recording
+         * @throws IllegalArgumentException If the method is not a getter or the returned type cannot be instantiated
+         */
+        static PropertyRecording of(Method method)
         {
-            if(data.lastProp != null)
+            ConcurrentMap<Method, PropertyRecording> m;
+            PropertyRecording r;
+            PropertyRecording prev;
+            
+            m = recordings.get(method.getDeclaringClass());
+            if((r = m.get(method)) == null && (prev = m.putIfAbsent(method, r = new PropertyRecording(method))) != null)
             {
-                data.builder.addProperty(data.lastProp);
-                data.builder.resetPropertyPathStack();
-                data.lastProp = null;
+                r = prev;
             }
+            return r;
         }
-        
         /**
-         * {@inheritDoc}
+         * The value to return by the getter.
+         * @param builder The builder that records the call
+         * @return The placeholder or the recording proxy of the builder, as a single element array if the getter returns an array
          */
-        @Override
-        public Object invokeMethod(Object target, Method method, Object[] arguments)
+        Object value(TypeSafeBuilderDefaultImpl<?> builder)
         {
-            Class<?> clazz;
-            boolean isArray;
             Object aValue;
-            /*
-             * Check if property get/is method
-             * if simple type, add property
-             * if object, create another assistant and push current path
-             */
-            if(isPropertyMethod(method))
+            Object array;
+            
+            if(placeholder != null && !isArray)
+            {
+                return placeholder;
+            }
+            if(proxied)
+            {
+                aValue = builder.proxy(type);
+            }
+            else if((aValue = placeholder) == null)
             {
-                // add current property path
-                if(data.lastProp != null)
-                {
-                    data.builder.pushPropertyPath(data.lastProp);
-                }
-                data.lastProp = propertyNameFromMethod(method);
-                isArray = method.getReturnType().isArray();
-                if(isArray)
-                {
-                    clazz = method.getReturnType().getComponentType();
-                }
-                else
-                {
-                    clazz = method.getReturnType();
-                }
-                if(!BeanUtils.isSimpleProperty(clazz))
-                {
-                    if(isArray)
-                    {
-                        aValue = Array.newInstance(clazz, 1);
-                        Array.set(aValue, 0, newChildAssistant(this, clazz));
-                    }
-                    else
-                    {
-                        aValue = newChildAssistant(this, clazz);
-                    }
-                    return aValue;
-                }
-                
-                if(byte.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new byte []{(byte)0} : (byte)0);
-                }
-                if(boolean.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new boolean [] { false} : false);
-                }
-                if(char.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new char [] { ' '} : ' ');
-                }
-                if(short.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new short [] { (short)0} : (short)0);
-                }
-                if(int.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new int [] { 0} : 0);
-                }
-                if(long.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new long [] { 0L} : 0L);
-                }
-                if(float.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new float [] { 0F} : 0F);
-                }
-                if(double.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new double [] { 0D} : 0D);
-                }
-                if(String.class.isAssignableFrom(clazz))
-                {
-                    return (isArray ? new String [] { ""} : "");
-                }
-                if(clazz.isEnum())
-                {
-                    if(isArray)
-                    {
-                        aValue = Array.newInstance(clazz, 1);
-                        Array.set(aValue, 0, clazz.getEnumConstants()[0]);
-                    }
-                    else
-                    {
-                        aValue = clazz.getEnumConstants()[0];
-                    }
-                    return aValue;
-                }
                 try
                 {
-                    if(isArray)
-                    {
-                        aValue = Array.newInstance(clazz, 1);
-                        Array.set(aValue, 0, clazz.newInstance());
-                    }
-                    else
-                    {
-                        aValue = clazz.newInstance();
-                    }
-                    return aValue;
+                    aValue = placeholder(type);
                 }
-                catch(Exception e)
+                catch(ReflectiveOperationException e)
                 {
-                    throw new IllegalArgumentException("The type '" + clazz.getName() + "' of property method '" + method.getName() + "' cannot be instantiated", e);
+                    // Already instantiated once
+                    throw new IllegalStateException("The type '" + type.getName() + "' cannot be instantiated", e);
                 }
             }
-            // Not a 'get/is' method, error
-            throw new IllegalArgumentException("The method '" + method.getName() + "' is not a get/is method. Not a java bean property method convention!");
+            if(!isArray)
+            {
+                return aValue;
+            }
+            array = Array.newInstance(type, 1);
+            Array.set(array, 0, aValue);
+            return array;
+        }
+        /**
+         * The placeholder to return for a simple type.
+         * @param clazz The type
+         * @return The placeholder
+         * @throws ReflectiveOperationException If the type cannot be instantiated
+         */
+        private static Object placeholder(Class<?> clazz) throws ReflectiveOperationException
+        {
+            if(byte.class.isAssignableFrom(clazz))
+            {
+                return (byte)0;
+            }
+            if(boolean.class.isAssignableFrom(clazz))
+            {
+                return false;
+            }
+            if(char.class.isAssignableFrom(clazz))
+            {
+                return ' ';
+            }
+            if(short.class.isAssignableFrom(clazz))
+            {
+                return (short)0;
+            }
+            if(int.class.isAssignableFrom(clazz))
+            {
+                return 0;
+            }
+            if(long.class.isAssignableFrom(clazz))
+            {
+                return 0L;
+            }
+            if(float.class.isAssignableFrom(clazz))
+            {
+                return 0F;
+            }
+            if(double.class.isAssignableFrom(clazz))
+            {
+                return 0D;
+            }
+            if(String.class.isAssignableFrom(clazz))
+            {
+                return "";
+            }
+            if(clazz.isEnum())
+            {
+                return clazz.getEnumConstants()[0];
+            }
+            return clazz.newInstance();
         }
         /**
          * Check if a method is a getter property method.
@@ -458,7 +509,7 @@ public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
          * @param method
          * @return
          */
-        private boolean isPropertyMethod(Method method)
+        private static boolean isPropertyMethod(Method method)
         {
             return ( method.getParameterTypes().length == 0
                     && ( (method.getName().startsWith("get")
@@ -473,7 +524,7 @@ public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
          * @param method The method
          * @return The propertyName.
          */
-        private String propertyNameFromMethod(Method method)
+        private static String propertyNameFromMethod(Method method)
         {
             if(method.getName().startsWith("get"))
             {
@@ -482,4 +533,24 @@ public class TypeSafeBuilderDefaultImpl<M> implements ITypeSafeBuilder<M>
             return method.getName().substring(2, 3).toLowerCase().concat(method.getName().substring(3));
         }
     }
+    /**
+     * The handler of the recording proxies of a builder, that records the getters on the builder.
+     * @author Octavi Fornés ofornes@albirar.cat
+     * @since 2.1.0
+     */
+    private final class RecordingHandler implements IProxyHandler
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object invokeMethod(Object target, Method method, Object[] arguments)
+        {
+            PropertyRecording r;
+            
+            r = PropertyRecording.of(method);
+            record(r.propertyName);
+            return r.value(TypeSafeBuilderDefaultImpl.this);
+        }
+    }
 }
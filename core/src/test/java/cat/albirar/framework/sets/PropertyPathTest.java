@@ -0,0 +1,177 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link PropertyPath}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class PropertyPathTest
+{
+    /**
+     * Test {@link PropertyPath#of(String)} interning and splitting.
+     */
+    @Test public void testOf()
+    {
+        PropertyPath p;
+        
+        p = PropertyPath.of("order.lines.product");
+        Assert.assertSame(p, PropertyPath.of(new String("order.lines.product")));
+        Assert.assertEquals("order.lines.product", p.toString());
+        Assert.assertEquals("order.lines.product".hashCode(), p.hashCode());
+        Assert.assertEquals(3, p.depth());
+        Assert.assertEquals("order", p.segment(0));
+        Assert.assertEquals("lines", p.segment(1));
+        Assert.assertEquals("product", p.segment(2));
+        Assert.assertEquals("product", p.getName());
+        Assert.assertSame(p.getName(), p.child("id").segment(2));
+    }
+    /**
+     * Test {@link PropertyPath#parent()}, {@link PropertyPath#child(String)} and {@link PropertyPath#resolve(String)}.
+     */
+    @Test public void testNavigation()
+    {
+        PropertyPath p;
+        
+        p = PropertyPath.of("order.lines");
+        Assert.assertSame(PropertyPath.of("order"), p.parent());
+        Assert.assertNull(p.parent().parent());
+        Assert.assertSame(PropertyPath.of("order.lines.product"), p.child("product"));
+        Assert.assertSame(PropertyPath.of("order.lines.product.supplier"), p.resolve("product.supplier"));
+        Assert.assertSame(p, p.child("product").parent());
+    }
+    /**
+     * Test {@link PropertyPath#startsWith(PropertyPath)}.
+     */
+    @Test public void testStartsWith()
+    {
+        PropertyPath p;
+        
+        p = PropertyPath.of("order.lines.product");
+        Assert.assertTrue(p.startsWith(p));
+        Assert.assertTrue(p.startsWith(PropertyPath.of("order")));
+        Assert.assertTrue(p.startsWith(PropertyPath.of("order.lines")));
+        Assert.assertFalse(p.startsWith(PropertyPath.of("order.line")));
+        Assert.assertFalse(p.startsWith(PropertyPath.of("lines")));
+        Assert.assertFalse(PropertyPath.of("order").startsWith(p));
+    }
+    /**
+     * Test the natural order is the order of the dotted strings.
+     */
+    @Test public void testCompare()
+    {
+        Assert.assertTrue(PropertyPath.of("a.b").compareTo(PropertyPath.of("a2")) < 0);
+        Assert.assertTrue(PropertyPath.of("b").compareTo(PropertyPath.of("a.b")) > 0);
+        Assert.assertEquals(0, PropertyPath.of("a.b").compareTo(PropertyPath.of("a.b")));
+    }
+    /**
+     * Test {@link PropertyPath#segment(int)} out of range.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSegmentOutOfRange()
+    {
+        PropertyPath.of("order.lines").segment(2);
+    }
+    /**
+     * Test {@link PropertyPath#of(String)} with malformed paths.
+     */
+    @Test public void testMalformed()
+    {
+        for(String s : new String [] {"a..b", ".a", "a.", "3a", "a.b%", "a b"})
+        {
+            try
+            {
+                PropertyPath.of(s);
+                Assert.fail("Malformed path accepted: " + s);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+    /**
+     * Test {@link PropertyPath#of(String)} with empty path.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty()
+    {
+        PropertyPath.of("  ");
+    }
+    /**
+     * Test {@link PropertyPath#child(String)} with a dotted name.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testChildDotted()
+    {
+        PropertyPath.of("order").child("lines.product");
+    }
+    /**
+     * Test the deserialized instances are the interned ones.
+     */
+    @Test public void testSerialization() throws Exception
+    {
+        PropertyPath p;
+        ByteArrayOutputStream bos;
+        ObjectOutputStream oos;
+        
+        p = PropertyPath.of("order.lines.product");
+        bos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(bos);
+        oos.writeObject(p);
+        oos.close();
+        Assert.assertSame(p, new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject());
+    }
+    /**
+     * Test the property paths not referenced are released, so any string can be interned, and the referenced ones are kept.
+     */
+    @Test public void testReleased() throws Exception
+    {
+        PropertyPath kept;
+        WeakReference<PropertyPath> unused;
+        
+        kept = PropertyPath.of("released.kept");
+        unused = new WeakReference<PropertyPath>(PropertyPath.of("released.unused.path"));
+        for(int n = 0; n < 1000; n++)
+        {
+            PropertyPath.of("released.p" + n + ".child");
+        }
+        for(int n = 0; n < 20 && unused.get() != null; n++)
+        {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(unused.get());
+        // Created again, and the released ones are removed from their parents meanwhile
+        Assert.assertEquals("released.unused.path", PropertyPath.of("released.unused.path").toString());
+        Assert.assertSame(kept, PropertyPath.of("released.kept"));
+        Assert.assertSame(kept.parent(), PropertyPath.of("released"));
+    }
+}
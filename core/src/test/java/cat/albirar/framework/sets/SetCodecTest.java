@@ -0,0 +1,295 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.SetBinaryCodec;
+import cat.albirar.framework.sets.impl.models.ITestModelWide;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+
+/**
+ * Test for {@link SetCodec}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetCodecTest
+{
+    private static final String [] PATHS = {"intProperty", "secondLevelModelProperty", "secondLevelModelProperty.int2Property"
+            , "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property", "thirdLevelModelProperty.int3Property"};
+    
+    /**
+     * Fill a set with {@link #PATHS}.
+     * @param set The set
+     * @return The set
+     */
+    private <T extends ISet<TestModelRoot>> T fill(T set)
+    {
+        for(String p : PATHS)
+        {
+            set.add(p);
+        }
+        return set;
+    }
+    /**
+     * All the kinds of sets, filled with {@link #PATHS}.
+     * @return The sets
+     */
+    private List<ISet<TestModelRoot>> allKinds()
+    {
+        List<ISet<TestModelRoot>> sets;
+        INamedSet<TestModelRoot> named;
+        
+        sets = new ArrayList<ISet<TestModelRoot>>();
+        sets.add(fill(SetUtils.instantiateSetFor(TestModelRoot.class)));
+        sets.add(fill(SetUtils.instantiateBitSetFor(TestModelRoot.class)));
+        sets.add(fill(SetUtils.instantiateTrieSetFor(TestModelRoot.class)));
+        sets.add(fill(SetUtils.instantiateSetFor(TestModelRoot.class)).freeze());
+        named = fill(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, "codecTest"));
+        sets.add(named);
+        sets.add(named.freeze());
+        sets.add(SetUtils.instantiateSetFor(TestModelRoot.class));
+        return sets;
+    }
+    /**
+     * Test round trip in ordinals form, the decoded set is equal and of the same kind.
+     */
+    @Test public void testRoundTrip() throws Exception
+    {
+        ISet<?> decoded;
+        
+        for(ISet<TestModelRoot> set : allKinds())
+        {
+            decoded = SetCodec.decode(SetCodec.encode(set));
+            Assert.assertEquals(set, decoded);
+            Assert.assertSame(set.getClass(), decoded.getClass());
+            Assert.assertSame(TestModelRoot.class, decoded.getModelRoot());
+        }
+    }
+    /**
+     * Test round trip in portable form, the decoded set is equal and of the same kind.
+     */
+    @Test public void testRoundTripPortable() throws Exception
+    {
+        ISet<?> decoded;
+        
+        for(ISet<TestModelRoot> set : allKinds())
+        {
+            decoded = SetCodec.decode(SetCodec.encodePortable(set));
+            Assert.assertEquals(set, decoded);
+            Assert.assertSame(set.getClass(), decoded.getClass());
+        }
+    }
+    /**
+     * Test Java serialization of all kinds of sets.
+     */
+    @Test public void testSerialization() throws Exception
+    {
+        Object decoded;
+        
+        for(ISet<TestModelRoot> set : allKinds())
+        {
+            decoded = new ObjectInputStream(new ByteArrayInputStream(serialize(set))).readObject();
+            Assert.assertEquals(set, decoded);
+            Assert.assertSame(set.getClass(), decoded.getClass());
+        }
+    }
+    /**
+     * Test the encoded sizes against the Java serialization of the property paths as {@link TreeSet} and the model class,
+     * the previous serialized form.
+     */
+    @Test public void testSize() throws Exception
+    {
+        ISet<ITestModelWide> set;
+        TreeSet<String> paths;
+        StringBuilder path;
+        byte [] ordinals;
+        byte [] portable;
+        byte [] serialized;
+        byte [] previous;
+        
+        set = SetUtils.instantiateSetFor(ITestModelWide.class);
+        for(int n = 0; n < 1000; n++)
+        {
+            path = new StringBuilder();
+            for(int d = 0, v = n; d < 3; d++, v /= 10)
+            {
+                path.append("childNode").append(v % 10).append('.');
+            }
+            set.add(path.append("leafValue").append(n % 10).toString());
+        }
+        paths = new TreeSet<String>(set);
+        previous = serialize(new Object [] {ITestModelWide.class, paths});
+        ordinals = SetCodec.encode(set);
+        portable = SetCodec.encodePortable(set);
+        serialized = serialize(set);
+        Assert.assertTrue(ordinals.length * 10 < previous.length);
+        Assert.assertTrue(portable.length * 5 < previous.length);
+        Assert.assertTrue(serialized.length * 5 < previous.length);
+        Assert.assertEquals(set, SetCodec.decode(ordinals));
+    }
+    /**
+     * Test the ordinals form with a different model fingerprint.
+     */
+    @Test public void testIncompatibleModel() throws Exception
+    {
+        byte [] data;
+        int pos;
+        
+        data = SetCodec.encode(fill(SetUtils.instantiateSetFor(TestModelRoot.class)));
+        // version, flags, class name and fingerprint
+        pos = 2 + 2 + TestModelRoot.class.getName().length();
+        data[pos] ^= 0x55;
+        try
+        {
+            SetCodec.decode(data);
+            Assert.fail("Incompatible model not detected");
+        }
+        catch(IncompatibleModelException e)
+        {
+            Assert.assertSame(TestModelRoot.class, e.getModel());
+            Assert.assertEquals(SetUtils.modelFingerprint(TestModelRoot.class), e.getActualFingerprint());
+            Assert.assertTrue(e.getExpectedFingerprint() != e.getActualFingerprint());
+        }
+    }
+    /**
+     * Test an unknown version.
+     */
+    @Test(expected = StreamCorruptedException.class) public void testCorrupted() throws Exception
+    {
+        byte [] data;
+        
+        data = SetCodec.encode(fill(SetUtils.instantiateSetFor(TestModelRoot.class)));
+        data[0] = 99;
+        SetCodec.decode(data);
+    }
+    /**
+     * Write the header of an encoded set of {@link TestModelRoot}, until the paths.
+     * @param out The output
+     * @param portable The form
+     */
+    private void header(DataOutputStream out, boolean portable) throws IOException
+    {
+        out.writeByte(SetBinaryCodec.VERSION);
+        out.writeByte(portable ? 1 : 0);
+        out.writeUTF(TestModelRoot.class.getName());
+        if(!portable)
+        {
+            out.writeLong(SetUtils.modelFingerprint(TestModelRoot.class));
+        }
+    }
+    /**
+     * Test that a corrupted count of paths or names fails on read the missing elements, without allocate them first.
+     */
+    @Test public void testCorruptedCount() throws Exception
+    {
+        ByteArrayOutputStream bos;
+        DataOutputStream out;
+        
+        for(boolean portable : new boolean [] {false, true})
+        {
+            bos = new ByteArrayOutputStream();
+            out = new DataOutputStream(bos);
+            header(out, portable);
+            // Integer.MAX_VALUE, as unsigned variable length integer
+            out.write(new byte [] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+            out.writeByte(0);
+            try
+            {
+                SetCodec.decode(bos.toByteArray());
+                Assert.fail("Corrupted count not detected");
+            }
+            catch(EOFException e)
+            {
+                // Expected
+            }
+        }
+    }
+    /**
+     * Test that the decoded paths must be in natural order and without duplicates.
+     */
+    @Test public void testCorruptedOrder() throws Exception
+    {
+        ByteArrayOutputStream bos;
+        DataOutputStream out;
+        
+        // Ordinals form, the same path twice
+        bos = new ByteArrayOutputStream();
+        out = new DataOutputStream(bos);
+        header(out, false);
+        out.write(new byte [] {2, 0, 1, 0, 0, 1, 0});
+        try
+        {
+            SetCodec.decode(bos.toByteArray());
+            Assert.fail("Repeated path not detected");
+        }
+        catch(StreamCorruptedException e)
+        {
+            // Expected
+        }
+        // Portable form, not in natural order
+        bos = new ByteArrayOutputStream();
+        out = new DataOutputStream(bos);
+        header(out, true);
+        out.writeByte(2);
+        out.writeUTF("intProperty");
+        out.writeUTF("dateProperty");
+        out.write(new byte [] {2, 0, 1, 0, 0, 1, 1});
+        try
+        {
+            SetCodec.decode(bos.toByteArray());
+            Assert.fail("Paths out of order not detected");
+        }
+        catch(StreamCorruptedException e)
+        {
+            // Expected
+        }
+    }
+    /**
+     * Serialize an object.
+     * @param o The object
+     * @return The bytes
+     */
+    private byte [] serialize(Object o) throws IOException
+    {
+        ByteArrayOutputStream bos;
+        ObjectOutputStream oos;
+        
+        bos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(bos);
+        oos.writeObject(o);
+        oos.close();
+        return bos.toByteArray();
+    }
+}
@@ -19,6 +19,8 @@
 
 package cat.albirar.framework.sets;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -133,4 +135,49 @@ public class SetUtilsTest
     {
         Assert.assertTrue(SetUtils.checkPathForModel(TestModelRoot.class, "secondLevelModelProperty.string2Property"));
     }
+    /**
+     * Test for {@link SetUtils#checkPathStatusForModel(Class, String)} with all the status.
+     */
+    @Test public void testPathStatusForModel()
+    {
+        Assert.assertEquals(PropertyPathStatus.VALID, SetUtils.checkPathStatusForModel(TestModelRoot.class, "intProperty"));
+        Assert.assertEquals(PropertyPathStatus.VALID_PREFIX, SetUtils.checkPathStatusForModel(TestModelRoot.class, "secondLevelModelProperty"));
+        Assert.assertEquals(PropertyPathStatus.INVALID, SetUtils.checkPathStatusForModel(TestModelRoot.class, "secondLevelModelProperty.prop"));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, SetUtils.checkPathStatusForModel(TestModelRoot.class, "x(F"));
+    }
+    /**
+     * Test for {@link SetUtils#checkPathStatusForModel(Class, String)} with whitespace path.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testPathStatusForModelWhitespace()
+    {
+        SetUtils.checkPathStatusForModel(TestModelRoot.class, "  ");
+    }
+    /**
+     * Test for {@link SetUtils#checkPathsForModel(Class, java.util.Collection)} with correct paths.
+     */
+    @Test public void testPathsForModel()
+    {
+        String [] paths;
+        
+        paths = SetUtils.checkPathsForModel(TestModelRoot.class, Arrays.asList("stringProperty", "secondLevelModelProperty.int2Property", "intProperty"));
+        Assert.assertArrayEquals(new String [] {"intProperty", "secondLevelModelProperty.int2Property", "stringProperty"}, paths);
+    }
+    /**
+     * Test for {@link SetUtils#checkPathsForModel(Class, java.util.Collection)} reports all the incorrect paths.
+     */
+    @Test public void testPathsForModelInvalid()
+    {
+        try
+        {
+            SetUtils.checkPathsForModel(TestModelRoot.class, Arrays.asList("stringProperty", "unknown", null, "secondLevelModelProperty.%", "  "));
+            Assert.fail("Incorrect paths accepted");
+        }
+        catch(InvalidPropertyPathsException e)
+        {
+            Assert.assertEquals(TestModelRoot.class, e.getModel());
+            Assert.assertEquals(4, e.getInvalidPaths().size());
+            Assert.assertTrue(e.getInvalidPaths().containsAll(Arrays.asList("unknown", null, "secondLevelModelProperty.%", "  ")));
+        }
+    }
 }
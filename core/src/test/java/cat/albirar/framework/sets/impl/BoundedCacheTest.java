@@ -0,0 +1,93 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link BoundedCache}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class BoundedCacheTest
+{
+    /**
+     * Test get and put of values.
+     */
+    @Test public void testPutIfAbsent()
+    {
+        BoundedCache<String, Integer> cache;
+        
+        cache = new BoundedCache<String, Integer>(4);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 1));
+        Assert.assertEquals(Integer.valueOf(1), cache.putIfAbsent("a", 2));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(1, cache.size());
+        cache.clear();
+        Assert.assertNull(cache.get("a"));
+    }
+    /**
+     * Test that the capacity is never exceeded and the added entry is kept.
+     */
+    @Test public void testCapacity()
+    {
+        BoundedCache<Integer, Integer> cache;
+        
+        cache = new BoundedCache<Integer, Integer>(8);
+        for(int n = 0; n < 1000; n++)
+        {
+            cache.putIfAbsent(n, n);
+            Assert.assertEquals(Integer.valueOf(n), cache.get(n));
+            Assert.assertTrue(cache.size() <= cache.getCapacity());
+        }
+        Assert.assertEquals(8, cache.size());
+    }
+    /**
+     * Test that the entries used since the last eviction survive the entries not used.
+     */
+    @Test public void testEviction()
+    {
+        BoundedCache<String, String> cache;
+        String kept;
+        
+        cache = new BoundedCache<String, String>(2);
+        cache.putIfAbsent("a", "a");
+        cache.putIfAbsent("b", "b");
+        // Clears the marks of "a" and "b" and removes one of them
+        cache.putIfAbsent("c", "c");
+        kept = (cache.get("a") != null ? "a" : "b");
+        Assert.assertNotNull(cache.get(kept));
+        // "c" is not used since the eviction
+        cache.putIfAbsent("d", "d");
+        Assert.assertEquals(kept, cache.get(kept));
+        Assert.assertEquals("d", cache.get("d"));
+        Assert.assertNull(cache.get("c"));
+    }
+    /**
+     * Test that the capacity should to be positive.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityNotPositive()
+    {
+        new BoundedCache<String, String>(0);
+    }
+}
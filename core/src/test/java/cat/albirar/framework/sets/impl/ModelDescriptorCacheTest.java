@@ -0,0 +1,150 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.beans.PropertyDescriptor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+
+/**
+ * Test for {@link ModelDescriptorCache}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class ModelDescriptorCacheTest
+{
+    /**
+     * Test for {@link ModelDescriptorCache#getDescriptor(Class)} with null argument.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testGetDescriptorNull()
+    {
+        ModelDescriptorCache.getDescriptor(null);
+    }
+    /**
+     * Test that the same descriptor is returned for the same model.
+     */
+    @Test public void testSameDescriptor()
+    {
+        ModelDescriptor md;
+        
+        md = ModelDescriptorCache.getDescriptor(TestModelRoot.class);
+        Assert.assertSame(md, ModelDescriptorCache.getDescriptor(TestModelRoot.class));
+        Assert.assertEquals(TestModelRoot.class, md.getModel());
+        Assert.assertEquals("", md.getRelativePath());
+        Assert.assertNotNull(md.getProperty("intProperty"));
+    }
+    /**
+     * Test that the descriptor properties cannot be modified.
+     */
+    @Test(expected=UnsupportedOperationException.class)
+    public void testImmutableProperties()
+    {
+        ModelDescriptorCache.getDescriptor(TestModelRoot.class).getProperties().put("x", (PropertyDescriptor)null);
+    }
+    /**
+     * Test that relative descriptors shares the properties with the cached one.
+     */
+    @Test public void testRelativeDescriptor()
+    {
+        ModelDescriptor md, rmd;
+        
+        md = ModelDescriptorCache.getDescriptor(TestModelSecondLevel.class);
+        rmd = md.withRelativePath("secondLevelModelProperty", "secondLevelModelProperty");
+        Assert.assertNotSame(md, rmd);
+        Assert.assertSame(md.getProperties(), rmd.getProperties());
+        Assert.assertEquals("secondLevelModelProperty.int2Property", rmd.resolvePath("int2Property"));
+        Assert.assertEquals("", md.getRelativePath());
+        Assert.assertSame(md.getProperties(), new ModelDescriptor(TestModelSecondLevel.class).getProperties());
+    }
+    /**
+     * Test hit and miss counters with a builder.
+     */
+    @Test public void testStatistics()
+    {
+        long misses, hits;
+        
+        SetUtils.instantiateBuilderFor(TestModelRoot.class).pushPropertyPath("secondLevelModelProperty.thirdLevel2ModelProperty");
+        ModelDescriptorCache.resetStatistics();
+        SetUtils.instantiateBuilderFor(TestModelRoot.class).pushPropertyPath("secondLevelModelProperty.thirdLevel2ModelProperty");
+        misses = ModelDescriptorCache.getMissCount();
+        hits = ModelDescriptorCache.getHitCount();
+        Assert.assertEquals(0L, misses);
+        // The root and the pushed model, the intermediate models are followed through the path indexes
+        Assert.assertTrue(hits >= 2L);
+        ModelDescriptorCache.evict(TestModelRoot.class);
+        hits = ModelDescriptorCache.getHitCount();
+        ModelDescriptorCache.getDescriptor(TestModelRoot.class);
+        Assert.assertEquals(misses + 1, ModelDescriptorCache.getMissCount());
+        // A miss is not a hit
+        Assert.assertEquals(hits, ModelDescriptorCache.getHitCount());
+        ModelDescriptorCache.getDescriptor(TestModelRoot.class);
+        Assert.assertEquals(hits + 1, ModelDescriptorCache.getHitCount());
+    }
+    /**
+     * Test that the counters are never negative when reset meanwhile other threads lookup.
+     */
+    @Test public void testStatisticsResetConcurrent() throws InterruptedException
+    {
+        Thread [] threads;
+        final AtomicBoolean stop;
+        
+        stop = new AtomicBoolean();
+        threads = new Thread[4];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    while(!stop.get())
+                    {
+                        ModelDescriptorCache.getDescriptor(TestModelSecondLevel.class);
+                    }
+                }
+            };
+            threads[n].start();
+        }
+        try
+        {
+            for(int n = 0; n < 10000; n++)
+            {
+                ModelDescriptorCache.resetStatistics();
+                Assert.assertTrue(ModelDescriptorCache.getHitCount() >= 0L);
+                Assert.assertTrue(ModelDescriptorCache.getMissCount() >= 0L);
+            }
+        }
+        finally
+        {
+            stop.set(true);
+            for(Thread t : threads)
+            {
+                t.join();
+            }
+        }
+    }
+}
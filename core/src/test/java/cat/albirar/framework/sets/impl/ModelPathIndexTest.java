@@ -0,0 +1,176 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.PropertyPathStatus;
+import cat.albirar.framework.sets.impl.models.ITestModelRootMixInterfaceClass;
+import cat.albirar.framework.sets.impl.models.ITestModelWide;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+
+/**
+ * Test for {@link ModelPathIndex}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class ModelPathIndexTest
+{
+    /**
+     * Test for {@link ModelPathIndex#forModel(Class)} with null argument.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testForModelNull()
+    {
+        ModelPathIndex.forModel(null);
+    }
+    /**
+     * Test that the index is cached.
+     */
+    @Test public void testForModelCached()
+    {
+        Assert.assertSame(ModelPathIndex.forModel(TestModelRoot.class), ModelPathIndex.forModel(TestModelRoot.class));
+        Assert.assertEquals(TestModelRoot.class, ModelPathIndex.forModel(TestModelRoot.class).getModel());
+    }
+    /**
+     * Test for valid paths, simple and prefix.
+     */
+    @Test public void testValid()
+    {
+        ModelPathIndex idx;
+        
+        idx = ModelPathIndex.forModel(TestModelRoot.class);
+        Assert.assertEquals(PropertyPathStatus.VALID, idx.check("intProperty"));
+        Assert.assertEquals(PropertyPathStatus.VALID, idx.check("secondLevelModelProperty.thirdLevel2ModelProperty.string3Property"));
+        Assert.assertEquals(PropertyPathStatus.VALID_PREFIX, idx.check("secondLevelModelProperty"));
+        Assert.assertEquals(PropertyPathStatus.VALID_PREFIX, idx.check("secondLevelModelProperty.thirdLevel2ModelProperty"));
+    }
+    /**
+     * Test for well formed but unknown paths.
+     */
+    @Test public void testInvalid()
+    {
+        ModelPathIndex idx;
+        
+        idx = ModelPathIndex.forModel(TestModelRoot.class);
+        Assert.assertEquals(PropertyPathStatus.INVALID, idx.check("unknown"));
+        Assert.assertEquals(PropertyPathStatus.INVALID, idx.check("intPropert"));
+        Assert.assertEquals(PropertyPathStatus.INVALID, idx.check("intProperty.x"));
+        Assert.assertEquals(PropertyPathStatus.INVALID, idx.check("unknown.secondLevelModelProperty"));
+        Assert.assertEquals(PropertyPathStatus.INVALID, idx.check("secondLevelModelProperty.thirdLevel2ModelProperty.unknown"));
+    }
+    /**
+     * Test for malformed paths.
+     */
+    @Test public void testMalformed()
+    {
+        ModelPathIndex idx;
+        
+        idx = ModelPathIndex.forModel(TestModelRoot.class);
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check(""));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("."));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check(".intProperty"));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("secondLevelModelProperty."));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("secondLevelModelProperty..int2Property"));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("3Df%"));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("unknown.3Df%"));
+        Assert.assertEquals(PropertyPathStatus.MALFORMED, idx.check("secondLevelModelProperty. "));
+    }
+    /**
+     * Test for paths on a model graph with cycles.
+     */
+    @Test public void testCycles()
+    {
+        ModelPathIndex idx;
+        
+        idx = ModelPathIndex.forModel(ITestModelRootMixInterfaceClass.class);
+        Assert.assertEquals(PropertyPathStatus.VALID, idx.check("thirdLevelModelProperty.testModelSecondLevel3Property"
+                + ".thirdLevel2ModelProperty.testModelSecondLevel3Property.int2Property"));
+    }
+    /**
+     * Test {@link ModelPathIndex#checkAll(String[])} gives the same status than {@link ModelPathIndex#check(String)}.
+     */
+    @Test public void testCheckAll()
+    {
+        ModelPathIndex idx;
+        String [] paths;
+        PropertyPathStatus [] status;
+        
+        idx = ModelPathIndex.forModel(TestModelRoot.class);
+        paths = new String [] {
+                "intProperty"
+                , "secondLevelModelProperty"
+                , "secondLevelModelProperty.int2Property"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.unknown"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.%"
+                , "secondLevelModelProperty.thirdLevel2ModelPropertyX.int3Property"
+                , "secondLevelModelProperty.thirdLevel2ModelPropertyX"
+                , null
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty."
+                , "secondLevelModelProperty..int2Property"
+                , "thirdLevelModelProperty.int3Property"
+                , "thirdLevelModelProperty"
+        };
+        status = idx.checkAll(paths);
+        Assert.assertEquals(paths.length, status.length);
+        for(int n = 0; n < paths.length; n++)
+        {
+            Assert.assertEquals(paths[n], (paths[n] == null ? PropertyPathStatus.MALFORMED : idx.check(paths[n])), status[n]);
+        }
+    }
+    /**
+     * Test the property ordinals, in natural order of names.
+     */
+    @Test public void testPropertyOrdinals()
+    {
+        ModelPathIndex idx;
+        
+        idx = ModelPathIndex.forModel(TestModelRoot.class);
+        for(int n = 0; n < idx.propertyCount(); n++)
+        {
+            Assert.assertEquals(n, idx.propertyOrdinal(idx.propertyName(n)));
+            if(n > 0)
+            {
+                Assert.assertTrue(idx.propertyName(n - 1).compareTo(idx.propertyName(n)) < 0);
+            }
+        }
+        Assert.assertTrue(idx.propertyOrdinal("unknownProperty") < 0);
+        Assert.assertSame(ModelPathIndex.forModel(TestModelSecondLevel.class), idx.nestedIndex("secondLevelModelProperty"));
+        Assert.assertNull(idx.nestedIndex("unknownProperty"));
+    }
+    /**
+     * Test the fingerprint of models, with cycles too.
+     */
+    @Test public void testFingerprint()
+    {
+        long f;
+        
+        f = ModelPathIndex.forModel(TestModelRoot.class).fingerprint();
+        Assert.assertEquals(f, ModelPathIndex.forModel(TestModelRoot.class).fingerprint());
+        Assert.assertTrue(f != ModelPathIndex.forModel(TestModelSecondLevel.class).fingerprint());
+        Assert.assertTrue(ModelPathIndex.forModel(ITestModelRootMixInterfaceClass.class).fingerprint() != 0L);
+        Assert.assertTrue(ModelPathIndex.forModel(ITestModelWide.class).fingerprint() != 0L);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link ModelPathOrdinals}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class ModelPathOrdinalsTest
+{
+    /**
+     * Test that assigned ordinals are kept and resolved in both directions.
+     */
+    @Test public void testAssign()
+    {
+        ModelPathOrdinals ord;
+        int o;
+        
+        ord = ModelPathOrdinals.forModel(TestModelRoot.class);
+        Assert.assertSame(ord, ModelPathOrdinals.forModel(TestModelRoot.class));
+        o = ord.assign("secondLevelModelProperty.int2Property");
+        Assert.assertEquals(o, ord.assign("secondLevelModelProperty.int2Property"));
+        Assert.assertEquals(o, ord.ordinalOf("secondLevelModelProperty.int2Property"));
+        Assert.assertEquals("secondLevelModelProperty.int2Property", ord.pathOf(o));
+        Assert.assertTrue(ord.size() > o);
+    }
+    /**
+     * Test that the ranking follows the natural order of paths as new ordinals are assigned.
+     */
+    @Test public void testRanking()
+    {
+        ModelPathOrdinals ord;
+        String [] paths;
+        
+        ord = ModelPathOrdinals.forModel(TestModelRoot.class);
+        paths = new String[] {"thirdLevelModelProperty", "secondLevelModelProperty.int2Property", "intProperty"
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property", "secondLevelModelProperty"
+                , "stringProperty", "secondLevelModelProperty.string2Property"};
+        for(int n = 0; n < paths.length; n++)
+        {
+            ord.assign(paths[n]);
+            assertRanking(ord, ord.ranking());
+        }
+        Assert.assertSame(ord.ranking(), ord.ranking());
+    }
+    /**
+     * Assert that a ranking ranks all the ordinals in natural order of paths.
+     * @param ord The ordinals
+     * @param ranking The ranking
+     */
+    private void assertRanking(ModelPathOrdinals ord, ModelPathOrdinals.Ranking ranking)
+    {
+        Assert.assertEquals(ord.size(), ranking.size);
+        for(int n = 0; n < ranking.size; n++)
+        {
+            Assert.assertEquals(n, ranking.rankOf[ranking.ordinalAt[n]]);
+            if(n > 0)
+            {
+                Assert.assertTrue(ord.pathOf(ranking.ordinalAt[n - 1]).compareTo(ord.pathOf(ranking.ordinalAt[n])) < 0);
+            }
+        }
+    }
+    /**
+     * Test that paths without ordinal are reported as -1.
+     */
+    @Test public void testNotAssigned()
+    {
+        Assert.assertEquals(-1, ModelPathOrdinals.forModel(TestModelRoot.class).ordinalOf("unknown"));
+    }
+    /**
+     * Test that invalid paths cannot be assigned.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testAssignInvalid()
+    {
+        ModelPathOrdinals.forModel(TestModelRoot.class).assign("secondLevelModelProperty.unknown");
+    }
+    /**
+     * Test that ordinals not assigned cannot be resolved.
+     */
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testPathOfNotAssigned()
+    {
+        ModelPathOrdinals.forModel(TestModelRoot.class).pathOf(Integer.MAX_VALUE);
+    }
+}
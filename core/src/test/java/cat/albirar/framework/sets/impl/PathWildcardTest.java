@@ -0,0 +1,138 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link PathWildcard} and {@link ModelPathIndex#expand(PathWildcard)}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class PathWildcardTest
+{
+    /**
+     * Test {@link PathWildcard#parse(String)} with the accepted forms.
+     */
+    @Test public void testParse()
+    {
+        PathWildcard w;
+        
+        Assert.assertFalse(PathWildcard.isWildcard("secondLevelModelProperty.int2Property"));
+        Assert.assertFalse(PathWildcard.isWildcard(null));
+        Assert.assertTrue(PathWildcard.isWildcard("secondLevelModelProperty.*"));
+        w = PathWildcard.parse("secondLevelModelProperty.*");
+        Assert.assertEquals("secondLevelModelProperty", w.getPrefix());
+        Assert.assertEquals(1, w.getDepth());
+        Assert.assertTrue(w.isSimpleOnly());
+        Assert.assertEquals("secondLevelModelProperty.*", w.toString());
+        w = PathWildcard.parse("**{2}");
+        Assert.assertEquals("", w.getPrefix());
+        Assert.assertEquals(2, w.getDepth());
+        Assert.assertFalse(w.isSimpleOnly());
+        Assert.assertEquals(w, PathWildcard.parse("**{02}"));
+        Assert.assertEquals(w.hashCode(), PathWildcard.parse("**{02}").hashCode());
+        Assert.assertEquals("secondLevelModelProperty.**{2}", w.under("secondLevelModelProperty").toString());
+        Assert.assertSame(w, w.under(""));
+    }
+    /**
+     * Test {@link PathWildcard#parse(String)} with malformed wildcards.
+     */
+    @Test public void testParseMalformed()
+    {
+        for(String s : new String [] {"**", "**{0}", "**{}", "**{a}", "a.**{2", "a*", "a.*.b", "*.*", ".*", "a.***{2}"})
+        {
+            try
+            {
+                PathWildcard.parse(s);
+                Assert.fail("Should be malformed: " + s);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+    /**
+     * Test {@link PathWildcard#isValidFor(ModelPathIndex)}.
+     */
+    @Test public void testIsValidFor()
+    {
+        ModelPathIndex index;
+        
+        index = ModelPathIndex.forModel(TestModelRoot.class);
+        Assert.assertTrue(PathWildcard.parse("*").isValidFor(index));
+        Assert.assertTrue(PathWildcard.parse("secondLevelModelProperty.thirdLevel2ModelProperty.*").isValidFor(index));
+        // Simple property
+        Assert.assertFalse(PathWildcard.parse("intProperty.*").isValidFor(index));
+        // Unknown
+        Assert.assertFalse(PathWildcard.parse("xxx.**{3}").isValidFor(index));
+    }
+    /**
+     * Test {@link ModelPathIndex#expand(PathWildcard)} and {@link PathWildcard#matches(ModelPathIndex, String)} agree.
+     */
+    @Test public void testExpandAndMatches()
+    {
+        ModelPathIndex index;
+        PathWildcard simple;
+        PathWildcard deep;
+        String [] expanded;
+        
+        index = ModelPathIndex.forModel(TestModelRoot.class);
+        simple = PathWildcard.parse("secondLevelModelProperty.*");
+        expanded = index.expand(simple);
+        Assert.assertEquals(Arrays.asList("secondLevelModelProperty.int2Property", "secondLevelModelProperty.string2Property"), Arrays.asList(expanded));
+        // Cached
+        Assert.assertSame(expanded, index.expand(PathWildcard.parse("secondLevelModelProperty.*")));
+        // Canonical instances
+        Assert.assertSame(ModelPathOrdinals.forModel(TestModelRoot.class).pathOf(ModelPathOrdinals.forModel(TestModelRoot.class).ordinalOf(expanded[0])), expanded[0]);
+        Assert.assertTrue(simple.matches(index, "secondLevelModelProperty.int2Property"));
+        Assert.assertFalse(simple.matches(index, "secondLevelModelProperty.thirdLevel2ModelProperty"));
+        Assert.assertFalse(simple.matches(index, "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"));
+        Assert.assertFalse(simple.matches(index, "secondLevelModelPropertyX.int2Property"));
+        Assert.assertFalse(simple.matches(index, "intProperty"));
+        
+        deep = PathWildcard.parse("**{2}");
+        expanded = index.expand(deep);
+        Assert.assertEquals(Arrays.asList("dateProperty", "intProperty"
+                , "secondLevelModelProperty", "secondLevelModelProperty.int2Property", "secondLevelModelProperty.string2Property", "secondLevelModelProperty.thirdLevel2ModelProperty"
+                , "stringProperty"
+                , "thirdLevelModelProperty", "thirdLevelModelProperty.int3Property", "thirdLevelModelProperty.string3Property"), Arrays.asList(expanded));
+        for(String p : expanded)
+        {
+            Assert.assertTrue(p, deep.matches(index, p));
+        }
+        Assert.assertFalse(deep.matches(index, "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"));
+        Assert.assertFalse(deep.matches(index, "secondLevelModelProperty.xxx"));
+    }
+    /**
+     * Test {@link ModelPathIndex#expand(PathWildcard)} with a wildcard that doesn't denote a model.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpandInvalid()
+    {
+        ModelPathIndex.forModel(TestModelRoot.class).expand(PathWildcard.parse("intProperty.*"));
+    }
+}
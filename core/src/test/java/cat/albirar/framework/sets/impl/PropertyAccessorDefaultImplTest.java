@@ -0,0 +1,193 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.IPropertyAccessor;
+import cat.albirar.framework.sets.PropertyPath;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
+
+/**
+ * Test for {@link PropertyAccessorDefaultImpl}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class PropertyAccessorDefaultImplTest
+{
+    private static final String DEEP_PATH = "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property";
+    
+    /**
+     * Build a model with all levels.
+     * @return The model
+     */
+    private TestModelRoot model()
+    {
+        TestModelRoot root;
+        TestModelSecondLevel second;
+        TestModelThirdLevel third;
+        
+        third = new TestModelThirdLevel();
+        third.setString3Property("city");
+        third.setInt3Property(3);
+        second = new TestModelSecondLevel();
+        second.setThirdLevel2ModelProperty(third);
+        second.setInt2Property(2);
+        root = new TestModelRoot();
+        root.setSecondLevelModelProperty(second);
+        root.setIntProperty(1);
+        return root;
+    }
+    /**
+     * Test the read of simple and nested properties.
+     */
+    @Test public void testGet()
+    {
+        TestModelRoot root;
+        IPropertyAccessor<TestModelRoot, Integer> intAccessor;
+        IPropertyAccessor<TestModelRoot, String> deepAccessor;
+        
+        root = model();
+        intAccessor = SetUtils.compileAccessor(TestModelRoot.class, "intProperty");
+        deepAccessor = SetUtils.compileAccessor(TestModelRoot.class, DEEP_PATH);
+        Assert.assertEquals(Integer.valueOf(1), intAccessor.get(root));
+        Assert.assertEquals("city", deepAccessor.get(root));
+        Assert.assertEquals(Integer.valueOf(3), SetUtils.compileAccessor(TestModelRoot.class
+                , "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property").get(root));
+        Assert.assertSame(TestModelRoot.class, deepAccessor.getModelRoot());
+        Assert.assertSame(PropertyPath.of(DEEP_PATH), deepAccessor.getPropertyPath());
+        Assert.assertSame(String.class, deepAccessor.getPropertyType());
+        Assert.assertSame(int.class, intAccessor.getPropertyType());
+        Assert.assertTrue(deepAccessor.isReadable());
+        Assert.assertTrue(deepAccessor.isWritable());
+    }
+    /**
+     * Test the null safe navigation.
+     */
+    @Test public void testGetNullSafe()
+    {
+        TestModelRoot root;
+        IPropertyAccessor<TestModelRoot, String> deepAccessor;
+        
+        deepAccessor = SetUtils.compileAccessor(TestModelRoot.class, DEEP_PATH);
+        Assert.assertNull(deepAccessor.get(null));
+        root = new TestModelRoot();
+        Assert.assertNull(deepAccessor.get(root));
+        root.setSecondLevelModelProperty(new TestModelSecondLevel());
+        Assert.assertNull(deepAccessor.get(root));
+    }
+    /**
+     * Test the write of simple and nested properties.
+     */
+    @Test public void testSet()
+    {
+        TestModelRoot root;
+        IPropertyAccessor<TestModelRoot, String> deepAccessor;
+        IPropertyAccessor<TestModelRoot, Integer> intAccessor;
+        
+        root = model();
+        deepAccessor = SetUtils.compileAccessor(TestModelRoot.class, DEEP_PATH);
+        deepAccessor.set(root, "town");
+        Assert.assertEquals("town", root.getSecondLevelModelProperty().getThirdLevel2ModelProperty().getString3Property());
+        deepAccessor.set(root, null);
+        Assert.assertNull(root.getSecondLevelModelProperty().getThirdLevel2ModelProperty().getString3Property());
+        intAccessor = SetUtils.compileAccessor(TestModelRoot.class, "secondLevelModelProperty.int2Property");
+        intAccessor.set(root, 22);
+        Assert.assertEquals(22, root.getSecondLevelModelProperty().getInt2Property());
+    }
+    /**
+     * Test write with null intermediate property.
+     */
+    @Test(expected = IllegalStateException.class) public void testSetNullIntermediate()
+    {
+        SetUtils.<TestModelRoot, String>compileAccessor(TestModelRoot.class, DEEP_PATH).set(new TestModelRoot(), "town");
+    }
+    /**
+     * Test write of null on primitive property.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testSetNullPrimitive()
+    {
+        SetUtils.<TestModelRoot, Integer>compileAccessor(TestModelRoot.class, "intProperty").set(model(), null);
+    }
+    /**
+     * Test write on null bean.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testSetNullBean()
+    {
+        SetUtils.<TestModelRoot, String>compileAccessor(TestModelRoot.class, "stringProperty").set(null, "x");
+    }
+    /**
+     * Test the accessors cache.
+     */
+    @Test public void testCache()
+    {
+        Assert.assertSame(SetUtils.compileAccessor(TestModelRoot.class, DEEP_PATH)
+                , SetUtils.compileAccessor(TestModelRoot.class, new String(DEEP_PATH)));
+        Assert.assertNotSame(SetUtils.compileAccessor(TestModelRoot.class, "intProperty")
+                , SetUtils.compileAccessor(TestModelRoot.class, "stringProperty"));
+    }
+    /**
+     * Test unknown path.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testUnknownPath()
+    {
+        SetUtils.compileAccessor(TestModelRoot.class, "secondLevelModelProperty.unknown");
+    }
+    /**
+     * Test malformed path.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testMalformedPath()
+    {
+        SetUtils.compileAccessor(TestModelRoot.class, "secondLevelModelProperty..int2Property");
+    }
+    /**
+     * Test that the accessor reads the same values as the direct getters, with and without null intermediate properties.
+     */
+    @Test public void testReadRows()
+    {
+        TestModelRoot [] rows;
+        IPropertyAccessor<TestModelRoot, String> deepAccessor;
+        String direct;
+        
+        rows = new TestModelRoot[100];
+        for(int i = 0; i < rows.length; i++)
+        {
+            rows[i] = model();
+            if(i % 3 == 0)
+            {
+                rows[i].setSecondLevelModelProperty(null);
+            }
+            else if(i % 3 == 1)
+            {
+                rows[i].getSecondLevelModelProperty().getThirdLevel2ModelProperty().setString3Property("v" + i);
+            }
+        }
+        deepAccessor = SetUtils.compileAccessor(TestModelRoot.class, DEEP_PATH);
+        for(int i = 0; i < rows.length; i++)
+        {
+            direct = (rows[i].getSecondLevelModelProperty() == null ? null
+                    : rows[i].getSecondLevelModelProperty().getThirdLevel2ModelProperty().getString3Property());
+            Assert.assertEquals(direct, deepAccessor.get(rows[i]));
+        }
+    }
+}
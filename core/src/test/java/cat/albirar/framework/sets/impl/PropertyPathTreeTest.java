@@ -0,0 +1,90 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link PropertyPathTree}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class PropertyPathTreeTest
+{
+    /**
+     * Test that the common prefixes are a single node and the children are in natural order.
+     */
+    @Test public void testOf()
+    {
+        ISet<TestModelRoot> set;
+        PropertyPathTree root;
+        PropertyPathTree second;
+        Iterator<PropertyPathTree> it;
+        
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.addAll(Arrays.asList("stringProperty", "secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"
+                , "secondLevelModelProperty.int2Property"));
+        root = PropertyPathTree.of(set);
+        Assert.assertNull(root.getName());
+        Assert.assertEquals("", root.getPath());
+        Assert.assertEquals(2, root.getChildren().size());
+        it = root.getChildren().iterator();
+        second = it.next();
+        Assert.assertEquals("secondLevelModelProperty", second.getName());
+        Assert.assertFalse(second.isLeaf());
+        Assert.assertEquals("stringProperty", it.next().getName());
+        it = second.getChildren().iterator();
+        Assert.assertEquals("secondLevelModelProperty.int2Property", it.next().getPath());
+        Assert.assertEquals("secondLevelModelProperty.thirdLevel2ModelProperty", it.next().getPath());
+        Assert.assertTrue(second.getChildren().iterator().next().isLeaf());
+    }
+    /**
+     * Test {@link PropertyPathTree#readableProperty(Class)}.
+     */
+    @Test public void testReadableProperty()
+    {
+        ISet<TestModelRoot> set;
+        PropertyPathTree node;
+        
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.add("intProperty");
+        node = PropertyPathTree.of(set).getChildren().iterator().next();
+        Assert.assertEquals(int.class, node.readableProperty(TestModelRoot.class).getPropertyType());
+    }
+    /**
+     * Test {@link PropertyPathTree#readableProperty(Class)} with a type without the property.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadablePropertyUnknown()
+    {
+        ISet<TestModelRoot> set;
+        
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.add("intProperty");
+        PropertyPathTree.of(set).getChildren().iterator().next().readableProperty(String.class);
+    }
+}
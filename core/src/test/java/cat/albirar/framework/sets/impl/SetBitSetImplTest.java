@@ -0,0 +1,147 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link SetBitSetImpl}.
+ * Runs all the {@link SetDefaultImplTest} tests, plus the word-wise operations.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetBitSetImplTest extends SetDefaultImplTest
+{
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T, S extends ISet<T>> S instance(Class<T> rootModel, Object... args)
+    {
+        return (S) new SetBitSetImpl<T>(rootModel);
+    }
+    /**
+     * Create a bit set with the indicated properties.
+     * @param props The properties
+     * @return The set
+     */
+    private SetBitSetImpl<TestModelRoot> bitSet(String ... props)
+    {
+        SetBitSetImpl<TestModelRoot> s;
+        
+        s = new SetBitSetImpl<TestModelRoot>(TestModelRoot.class);
+        s.addAll(Arrays.asList(props));
+        return s;
+    }
+    /**
+     * Test union, intersection and difference between bit sets.
+     */
+    @Test public void testSetAlgebra()
+    {
+        SetBitSetImpl<TestModelRoot> s1, s2;
+        
+        s1 = bitSet(KNOWN_1L_PROPERTY, KNOWN_2L_PROPERTY);
+        s2 = bitSet(KNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY);
+        Assert.assertTrue(s1.addAll(s2));
+        Assert.assertEquals(3, s1.size());
+        Assert.assertFalse(s1.addAll(s2));
+        Assert.assertTrue(s1.containsAll(s2));
+        Assert.assertFalse(s2.containsAll(s1));
+        Assert.assertTrue(s1.retainAll(s2));
+        Assert.assertEquals(s2, s1);
+        Assert.assertTrue(s1.removeAll(bitSet(KNOWN_3L_PROPERTY)));
+        Assert.assertEquals(1, s1.size());
+        Assert.assertTrue(s1.contains(KNOWN_2L_PROPERTY));
+        Assert.assertFalse(s1.contains(KNOWN_3L_PROPERTY));
+    }
+    /**
+     * Test equality with other set implementations.
+     */
+    @Test public void testEqualsOtherSets()
+    {
+        SetBitSetImpl<TestModelRoot> s1;
+        SetDefaultImpl<TestModelRoot> s2;
+        TreeSet<String> s3;
+        
+        s1 = bitSet(KNOWN_1L_PROPERTY, KNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY);
+        s2 = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        s2.addAll(Arrays.asList(KNOWN_3L_PROPERTY, KNOWN_2L_PROPERTY, KNOWN_1L_PROPERTY));
+        s3 = new TreeSet<String>(s2);
+        Assert.assertEquals(s2, s1);
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s3.hashCode(), s1.hashCode());
+        Assert.assertTrue(s1.containsAll(s2));
+        Assert.assertFalse(s1.contains(KNOWN2_1L_PROPERTY));
+        Assert.assertFalse(s1.contains(UNKNOWN_1L_PROPERTY));
+        Assert.assertFalse(s1.contains(null));
+    }
+    /**
+     * Test removal while iterating.
+     */
+    @Test public void testIteratorRemove()
+    {
+        SetBitSetImpl<TestModelRoot> s;
+        Iterator<String> it;
+        
+        s = bitSet(KNOWN_1L_PROPERTY, KNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY);
+        it = s.iterator();
+        while(it.hasNext())
+        {
+            if(it.next().equals(KNOWN_2L_PROPERTY))
+            {
+                it.remove();
+            }
+        }
+        Assert.assertEquals(2, s.size());
+        Assert.assertFalse(s.contains(KNOWN_2L_PROPERTY));
+    }
+    /**
+     * Test serialization round trip.
+     */
+    @SuppressWarnings("unchecked")
+    @Test public void testSerialization() throws Exception
+    {
+        SetBitSetImpl<TestModelRoot> s, s1;
+        ByteArrayOutputStream bos;
+        ObjectOutputStream oos;
+        
+        s = bitSet(KNOWN_1L_PROPERTY, KNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY);
+        bos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(bos);
+        oos.writeObject(s);
+        oos.close();
+        s1 = (SetBitSetImpl<TestModelRoot>)new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+        Assert.assertEquals(s, s1);
+        Assert.assertEquals(TestModelRoot.class, s1.getModelRoot());
+    }
+}
@@ -315,4 +315,96 @@ public class SetBuilderDefaultImplTest
         props = set.toArray(new String []{});
         Assert.assertEquals(NAME_INT_PROPERTY, props[0]);
     }
+    /**
+     * Test {@link ISetBuilder#reset()}, the builder can be reused and the built sets are not affected.
+     */
+    @Test public void testReset()
+    {
+        ISetBuilder<TestModelRoot> builder;
+        ISet<TestModelRoot> set;
+        
+        builder = SetUtils.instantiateBuilderFor(TestModelRoot.class);
+        builder.pushPropertyPath(NAME_2L_MODEL).addProperty(NAME_INT_2_PROPERTY);
+        set = builder.build();
+        builder.reset();
+        Assert.assertEquals("", builder.getCurrentPropertyPath());
+        Assert.assertNull(builder.peekPropertyPathStack());
+        Assert.assertTrue(builder.build().isEmpty());
+        builder.addProperty(NAME_INT_PROPERTY);
+        Assert.assertEquals(1, builder.build().size());
+        Assert.assertTrue(builder.build().contains(NAME_INT_PROPERTY));
+        Assert.assertEquals(1, set.size());
+        Assert.assertTrue(set.contains(NAME_2LEVEL_MODEL_INT2_PROPERTY));
+    }
+    /**
+     * Test {@link ISetBuilder#buildFrozen()}.
+     */
+    @Test public void testBuildFrozen()
+    {
+        ISetBuilder<TestModelRoot> builder;
+        ISet<TestModelRoot> frozen;
+        
+        builder = SetUtils.instantiateBuilderFor(TestModelRoot.class);
+        builder.addProperty(NAME_STRING_PROPERTY)
+            .addProperty(NAME_INT_PROPERTY)
+            .pushPropertyPath(NAME_2L_MODEL)
+            .addProperty(NAME_3L2_MODEL_INT3_PROPERTY)
+            .popPropertyPath()
+            .addProperty(NAME_INT_PROPERTY);
+        frozen = builder.buildFrozen();
+        Assert.assertTrue(frozen instanceof SetFrozenImpl);
+        Assert.assertEquals(builder.build(), frozen);
+        Assert.assertEquals(3, frozen.size());
+        Assert.assertArrayEquals(new String [] {NAME_INT_PROPERTY, NAME_2L_MODEL_3LEVEL_MODEL_INT3_PROPERTY, NAME_STRING_PROPERTY}
+            , frozen.toArray(new String[3]));
+        // The builder continues without affect the frozen set
+        builder.addProperty(NAME_3L_MODEL_INT3_PROPERTY);
+        Assert.assertEquals(3, frozen.size());
+        Assert.assertEquals(4, builder.buildFrozen().size());
+        builder.reset();
+        Assert.assertEquals(3, frozen.size());
+        Assert.assertTrue(builder.buildFrozen().isEmpty());
+    }
+    /**
+     * Test {@link ISetBuilder#addProperty(String)} with wildcards, relative to the pushed path.
+     */
+    @Test public void testWildcards()
+    {
+        ISetBuilder<TestModelRoot> builder;
+        ISet<TestModelRoot> frozen;
+        
+        builder = SetUtils.instantiateBuilderFor(TestModelRoot.class);
+        builder.addProperty(NAME_INT_PROPERTY)
+            .pushPropertyPath(NAME_2L_MODEL)
+            .addProperty("thirdLevel2ModelProperty.*")
+            .popPropertyPath();
+        frozen = builder.buildFrozen();
+        Assert.assertEquals(1, ((SetFrozenImpl<TestModelRoot>)frozen).getWildcards().length);
+        Assert.assertTrue(frozen.contains(NAME_2L_MODEL_3LEVEL_MODEL_INT3_PROPERTY));
+        Assert.assertEquals(3, frozen.size());
+        Assert.assertEquals(frozen, builder.build());
+        builder.reset();
+        Assert.assertTrue(builder.buildFrozen().isEmpty());
+    }
+    /**
+     * Test {@link ISetBuilder#addProperty(String)} with a wildcard on a simple property.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWildcardsInvalid()
+    {
+        SetUtils.instantiateBuilderFor(TestModelRoot.class).addProperty(NAME_INT_PROPERTY + ".*");
+    }
+    /**
+     * Test {@link SetUtils#pooledBuilderFor(Class)}.
+     */
+    @Test public void testPooledBuilder()
+    {
+        ISetBuilder<TestModelRoot> builder;
+        
+        builder = SetUtils.pooledBuilderFor(TestModelRoot.class);
+        builder.pushPropertyPath(NAME_2L_MODEL).addProperty(NAME_INT_2_PROPERTY);
+        Assert.assertSame(builder, SetUtils.pooledBuilderFor(TestModelRoot.class));
+        Assert.assertTrue(builder.build().isEmpty());
+        Assert.assertEquals("", builder.getCurrentPropertyPath());
+    }
 }
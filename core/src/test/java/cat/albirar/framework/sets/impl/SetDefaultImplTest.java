@@ -22,6 +22,7 @@ package cat.albirar.framework.sets.impl;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
 
@@ -29,7 +30,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.InvalidPropertyPathsException;
+import cat.albirar.framework.sets.PropertyPath;
 import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
 
 /**
  * Test for {@link SetDefaultImpl}.
@@ -683,4 +688,287 @@ public class SetDefaultImplTest
         Assert.assertTrue(s.endsWith(TestModelRoot.class.getName() + ", properties=["
                 + KNOWN2_1L_PROPERTY + ", " + KNOWN_1L_PROPERTY + "]]"));
     }
+    /**
+     * Test {@link ISet#union(Collection)}, {@link ISet#intersect(Collection)} and {@link ISet#minus(Collection)} don't modify the sets.
+     */
+    @Test public void testSetAlgebra()
+    {
+        ISet<TestModelRoot> a;
+        ISet<TestModelRoot> b;
+        ISet<TestModelRoot> r;
+        
+        a = instance(TestModelRoot.class);
+        b = instance(TestModelRoot.class);
+        a.add(KNOWN_1L_PROPERTY);
+        a.add(KNOWN_2L_PROPERTY);
+        b.add(KNOWN_2L_PROPERTY);
+        b.add(KNOWN_3L_PROPERTY);
+        
+        r = a.union(b);
+        Assert.assertEquals(3, r.size());
+        Assert.assertEquals(TestModelRoot.class, r.getModelRoot());
+        Assert.assertTrue(r.containsAll(a) && r.containsAll(b));
+        
+        r = a.intersect(b);
+        Assert.assertEquals(1, r.size());
+        Assert.assertTrue(r.contains(KNOWN_2L_PROPERTY));
+        
+        r = a.minus(b);
+        Assert.assertEquals(1, r.size());
+        Assert.assertTrue(r.contains(KNOWN_1L_PROPERTY));
+        
+        Assert.assertEquals(2, a.size());
+        Assert.assertEquals(2, b.size());
+        
+        r = a.union(null);
+        Assert.assertTrue(r.size() == a.size() && r.containsAll(a));
+        Assert.assertTrue(a.intersect(null).isEmpty());
+        r = a.minus(null);
+        Assert.assertTrue(r.size() == a.size() && r.containsAll(a));
+    }
+    /**
+     * Test {@link ISet#union(Collection)} with a collection that isn't a set, the paths should be checked.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnionUnknown()
+    {
+        ISet<TestModelRoot> a;
+        
+        a = instance(TestModelRoot.class);
+        a.add(KNOWN_1L_PROPERTY);
+        a.union(fromArray(UNKNOWN_L2_COLLECTION));
+    }
+    /**
+     * Test {@link ISet#isSubsetOf(Collection)}.
+     */
+    @Test public void testIsSubsetOf()
+    {
+        ISet<TestModelRoot> a;
+        ISet<TestModelRoot> b;
+        
+        a = instance(TestModelRoot.class);
+        b = instance(TestModelRoot.class);
+        Assert.assertTrue(a.isSubsetOf(b));
+        a.add(KNOWN_2L_PROPERTY);
+        Assert.assertFalse(a.isSubsetOf(b));
+        b.add(KNOWN_1L_PROPERTY);
+        b.add(KNOWN_2L_PROPERTY);
+        Assert.assertTrue(a.isSubsetOf(b));
+        Assert.assertFalse(b.isSubsetOf(a));
+        Assert.assertTrue(a.isSubsetOf(fromArray(new String [] {KNOWN_2L_PROPERTY})));
+    }
+    /**
+     * Test {@link ISet#containsPrefix(String)}.
+     */
+    @Test public void testContainsPrefix()
+    {
+        ISet<TestModelRoot> set;
+        
+        set = instance(TestModelRoot.class);
+        Assert.assertFalse(set.containsPrefix("secondLevelModelProperty"));
+        set.add(KNOWN_3L_PROPERTY);
+        set.add("thirdLevelModelProperty");
+        Assert.assertTrue(set.containsPrefix("secondLevelModelProperty"));
+        Assert.assertTrue(set.containsPrefix("secondLevelModelProperty.thirdLevel2ModelProperty"));
+        Assert.assertFalse(set.containsPrefix(KNOWN_3L_PROPERTY));
+        // Only descendants, not the path itself
+        Assert.assertFalse(set.containsPrefix("thirdLevelModelProperty"));
+        Assert.assertFalse(set.containsPrefix("second"));
+        Assert.assertFalse(set.containsPrefix(UNKNOWN_1L_PROPERTY));
+    }
+    /**
+     * Test {@link ISet#containsPrefix(String)} with an empty path.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testContainsPrefixEmpty()
+    {
+        instance(TestModelRoot.class).containsPrefix(" ");
+    }
+    /**
+     * Test {@link ISet#subSetAt(String)}.
+     */
+    @Test public void testSubSetAt()
+    {
+        ISet<TestModelRoot> set;
+        ISet<?> sub;
+        
+        set = instance(TestModelRoot.class);
+        set.add(KNOWN_1L_PROPERTY);
+        set.add(KNOWN_2L_PROPERTY);
+        set.add(KNOWN_3L_PROPERTY);
+        set.add("secondLevelModelProperty.thirdLevel2ModelProperty");
+        
+        sub = set.subSetAt("secondLevelModelProperty");
+        Assert.assertEquals(TestModelSecondLevel.class, sub.getModelRoot());
+        Assert.assertEquals(2, sub.size());
+        Assert.assertTrue(sub.contains("thirdLevel2ModelProperty"));
+        Assert.assertTrue(sub.contains("thirdLevel2ModelProperty.string3Property"));
+        
+        sub = set.subSetAt("secondLevelModelProperty.thirdLevel2ModelProperty");
+        Assert.assertEquals(TestModelThirdLevel.class, sub.getModelRoot());
+        Assert.assertEquals(1, sub.size());
+        Assert.assertTrue(sub.contains("string3Property"));
+        
+        sub = set.subSetAt("thirdLevelModelProperty");
+        Assert.assertEquals(1, sub.size());
+        Assert.assertTrue(sub.contains("int3Property"));
+        
+        sub = set.subSetAt("dateProperty");
+        Assert.assertTrue(sub.isEmpty());
+        Assert.assertEquals(4, set.size());
+    }
+    /**
+     * Test {@link ISet#subSetAt(String)} with an unknown path.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubSetAtUnknown()
+    {
+        instance(TestModelRoot.class).subSetAt(UNKNOWN_2L_PROPERTY);
+    }
+    /**
+     * Test {@link ISet#propertyPaths()} view.
+     */
+    @Test public void testPropertyPaths()
+    {
+        ISet<TestModelRoot> set;
+        Set<PropertyPath> paths;
+        Iterator<PropertyPath> it;
+        
+        set = instance(TestModelRoot.class);
+        set.add(KNOWN_1L_PROPERTY);
+        paths = set.propertyPaths();
+        Assert.assertTrue(paths.add(PropertyPath.of(KNOWN_3L_PROPERTY)));
+        Assert.assertTrue(set.contains(KNOWN_3L_PROPERTY));
+        Assert.assertEquals(2, paths.size());
+        Assert.assertTrue(paths.contains(PropertyPath.of(KNOWN_1L_PROPERTY)));
+        Assert.assertFalse(paths.contains(PropertyPath.of(KNOWN_2L_PROPERTY)));
+        Assert.assertFalse(paths.contains(KNOWN_1L_PROPERTY));
+        it = paths.iterator();
+        for(String s : set)
+        {
+            Assert.assertSame(PropertyPath.of(s), it.next());
+        }
+        Assert.assertTrue(paths.remove(PropertyPath.of(KNOWN_1L_PROPERTY)));
+        Assert.assertEquals(1, set.size());
+    }
+    /**
+     * Test {@link ISet#propertyPaths()} view with an unknown property path.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPropertyPathsUnknown()
+    {
+        instance(TestModelRoot.class).propertyPaths().add(PropertyPath.of(UNKNOWN_2L_PROPERTY));
+    }
+    /**
+     * Test {@link ISet#addAll(Collection)} reports all the incorrect paths and doesn't add any of them.
+     */
+    @Test public void testAddCollectionReportsAll()
+    {
+        ISet<TestModelRoot> set;
+        
+        set = instance(TestModelRoot.class);
+        try
+        {
+            set.addAll(fromArray(new String [] {KNOWN_1L_PROPERTY, UNKNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY, INCORRECT_3L_PROPERTY}));
+            Assert.fail("Incorrect paths accepted");
+        }
+        catch(InvalidPropertyPathsException e)
+        {
+            Assert.assertEquals(2, e.getInvalidPaths().size());
+            Assert.assertTrue(e.getInvalidPaths().contains(UNKNOWN_2L_PROPERTY));
+            Assert.assertTrue(e.getInvalidPaths().contains(INCORRECT_3L_PROPERTY));
+        }
+        Assert.assertTrue(set.isEmpty());
+    }
+    /**
+     * Test {@link ISet#getFingerprint()} is updated on each change and doesn't depend on the order nor the implementation.
+     */
+    @Test public void testFingerprint()
+    {
+        ISet<TestModelRoot> set;
+        ISet<TestModelRoot> other;
+        ISet<?> sub;
+        Iterator<String> it;
+        
+        set = instance(TestModelRoot.class);
+        Assert.assertEquals(SetFingerprint.seed(TestModelRoot.class), set.getFingerprint());
+        set.addAll(fromArray(CORRECT_MIXED_COLLECTION));
+        set.add(KNOWN2_1L_PROPERTY);
+        other = instance(TestModelRoot.class);
+        other.add(KNOWN2_1L_PROPERTY);
+        other.add(KNOWN_3L_PROPERTY);
+        other.add(KNOWN_2L_PROPERTY);
+        other.add(KNOWN_1L_PROPERTY);
+        Assert.assertEquals(set.getFingerprint(), other.getFingerprint());
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        Assert.assertEquals(set.getFingerprint(), set.freeze().getFingerprint());
+        Assert.assertEquals(set.getFingerprint(), new SetDefaultImpl<TestModelRoot>(set).getFingerprint());
+        Assert.assertEquals(set.getFingerprint(), new SetBitSetImpl<TestModelRoot>(set).getFingerprint());
+        Assert.assertEquals(set.getFingerprint(), new SetTrieImpl<TestModelRoot>(set).getFingerprint());
+        // Adding again doesn't change it
+        Assert.assertFalse(set.add(KNOWN_1L_PROPERTY));
+        Assert.assertEquals(other.getFingerprint(), set.getFingerprint());
+        // Removal
+        Assert.assertTrue(set.remove(KNOWN_2L_PROPERTY));
+        Assert.assertNotEquals(other.getFingerprint(), set.getFingerprint());
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        set.add(KNOWN_2L_PROPERTY);
+        Assert.assertEquals(other.getFingerprint(), set.getFingerprint());
+        it = set.iterator();
+        it.next();
+        it.remove();
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        // Bulk operations
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), other.intersect(set).getFingerprint());
+        Assert.assertEquals(other.getFingerprint(), set.union(other).getFingerprint());
+        Assert.assertEquals(SetFingerprint.seed(TestModelRoot.class), set.minus(other).getFingerprint());
+        other.retainAll(set);
+        Assert.assertEquals(set.getFingerprint(), other.getFingerprint());
+        other.removeAll(set);
+        Assert.assertEquals(SetFingerprint.seed(TestModelRoot.class), other.getFingerprint());
+        sub = set.subSetAt("secondLevelModelProperty");
+        Assert.assertEquals(SetFingerprint.of(sub.getModelRoot(), sub), sub.getFingerprint());
+        set.clear();
+        Assert.assertEquals(SetFingerprint.seed(TestModelRoot.class), set.getFingerprint());
+    }
+    /**
+     * Test {@link SetDefaultImpl#getFingerprint()} is updated on the changes made through the views and his iterators,
+     * even if the size is the same after another change.
+     */
+    @Test public void testFingerprintViews()
+    {
+        SetDefaultImpl<TestModelRoot> set;
+        Iterator<String> it;
+        
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.addAll(fromArray(CORRECT_MIXED_COLLECTION));
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        // Remove through a view and add through the set
+        Assert.assertTrue(set.headSet(KNOWN_2L_PROPERTY).remove(KNOWN_1L_PROPERTY));
+        set.add(KNOWN2_1L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        Assert.assertEquals(KNOWN_2L_PROPERTY, set.descendingSet().pollFirst());
+        set.add(KNOWN_2L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        it = set.tailSet(KNOWN_3L_PROPERTY).iterator();
+        Assert.assertEquals(KNOWN_3L_PROPERTY, it.next());
+        it.remove();
+        set.add(KNOWN_1L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        it = set.descendingIterator();
+        Assert.assertEquals(KNOWN_2L_PROPERTY, it.next());
+        it.remove();
+        set.add(KNOWN_3L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        // Views of views
+        set.subSet(KNOWN2_1L_PROPERTY, true, KNOWN_1L_PROPERTY, false).descendingSet().clear();
+        Assert.assertEquals(1, set.size());
+        set.add(KNOWN2_1L_PROPERTY);
+        Assert.assertTrue(set.tailSet(KNOWN_1L_PROPERTY, false).add(KNOWN_2L_PROPERTY));
+        set.remove(KNOWN_1L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+        // Updated on each change again, once calculated
+        set.add(KNOWN_3L_PROPERTY);
+        Assert.assertEquals(SetFingerprint.of(TestModelRoot.class, set), set.getFingerprint());
+    }
 }
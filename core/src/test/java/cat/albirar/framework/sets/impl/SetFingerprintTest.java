@@ -0,0 +1,62 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelRootExtended;
+
+/**
+ * Test for {@link SetFingerprint}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetFingerprintTest
+{
+    /** The seed of {@link TestModelRoot}, the same on any JVM. */
+    private static final long SEED = 0x3bddc909bd6e590eL;
+    /** The fingerprint of {@code intProperty} and {@code stringProperty} of {@link TestModelRoot}, the same on any JVM. */
+    private static final long FINGERPRINT = 0x5a8919780a3a226eL;
+    
+    /**
+     * Test the values are stable, they don't depend on the JVM nor on the order of the property paths.
+     */
+    @Test public void testStable()
+    {
+        Assert.assertEquals(SEED, SetFingerprint.seed(TestModelRoot.class));
+        Assert.assertEquals(FINGERPRINT, SetFingerprint.of(TestModelRoot.class, Arrays.asList("intProperty", "stringProperty")));
+        Assert.assertEquals(FINGERPRINT, SetFingerprint.of(TestModelRoot.class, Arrays.asList("stringProperty", "intProperty")));
+        Assert.assertEquals(FINGERPRINT, SEED + SetFingerprint.term("intProperty") + SetFingerprint.term("stringProperty"));
+    }
+    /**
+     * Test the model root and the property paths are distinguished.
+     */
+    @Test public void testDistinct()
+    {
+        Assert.assertNotEquals(SEED, SetFingerprint.seed(TestModelRootExtended.class));
+        Assert.assertNotEquals(SetFingerprint.term("intProperty"), SetFingerprint.term("stringProperty"));
+        Assert.assertNotEquals(FINGERPRINT, SetFingerprint.of(TestModelRootExtended.class, Arrays.asList("intProperty", "stringProperty")));
+        Assert.assertNotEquals(FINGERPRINT, SetFingerprint.of(TestModelRoot.class, Arrays.asList("intProperty")));
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.InvalidPropertyPathsException;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelRootExtended;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
+
+/**
+ * Test for {@link SetFrozenImpl}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetFrozenImplTest
+{
+    private static final String [] PATHS = {"thirdLevelModelProperty.int3Property", "stringProperty"
+            , "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property", "intProperty"};
+
+    /**
+     * Creates a mutable set with the {@link #PATHS}.
+     * @return The set
+     */
+    private ISet<TestModelRoot> mutable()
+    {
+        ISet<TestModelRoot> set;
+        
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.addAll(Arrays.asList(PATHS));
+        return set;
+    }
+    /**
+     * Test {@link ISet#freeze()} keeps the content, the order and the hash code.
+     */
+    @Test public void testFreeze()
+    {
+        ISet<TestModelRoot> set;
+        ISet<TestModelRoot> frozen;
+        Iterator<String> it;
+        
+        set = mutable();
+        frozen = set.freeze();
+        Assert.assertTrue(frozen instanceof SetFrozenImpl);
+        Assert.assertEquals(TestModelRoot.class, frozen.getModelRoot());
+        Assert.assertEquals(set, frozen);
+        Assert.assertEquals(frozen, set);
+        Assert.assertEquals(set.hashCode(), frozen.hashCode());
+        Assert.assertEquals(set.toString().replace(set.getClass().getSimpleName(), ""), frozen.toString().replace(frozen.getClass().getSimpleName(), ""));
+        it = set.iterator();
+        for(String p : frozen)
+        {
+            Assert.assertEquals(it.next(), p);
+            Assert.assertTrue(frozen.contains(p));
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertFalse(frozen.contains("dateProperty"));
+        Assert.assertFalse(frozen.contains(null));
+        Assert.assertSame(frozen, frozen.freeze());
+        Assert.assertEquals(frozen, new SetBitSetImpl<TestModelRoot>(set).freeze());
+        // The original is still mutable
+        set.add("dateProperty");
+        Assert.assertEquals(PATHS.length, frozen.size());
+    }
+    /**
+     * Test the property path strings with an ordinal are shared between frozen sets.
+     */
+    @Test public void testCanonicalPaths()
+    {
+        ISet<TestModelRoot> set;
+        ISet<TestModelRoot> frozen1;
+        ISet<TestModelRoot> frozen2;
+        Iterator<String> it;
+        
+        for(String p : PATHS)
+        {
+            ModelPathOrdinals.forModel(TestModelRoot.class).assign(p);
+        }
+        frozen1 = mutable().freeze();
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        for(String p : PATHS)
+        {
+            set.add(new String(p));
+        }
+        frozen2 = set.freeze();
+        it = frozen2.iterator();
+        for(String p : frozen1)
+        {
+            Assert.assertSame(p, it.next());
+        }
+    }
+    /**
+     * Test that frozen sets don't assign ordinals to his property paths.
+     */
+    @Test public void testCanonicalPathsNotAssigned()
+    {
+        ModelPathOrdinals ordinals;
+        int size;
+        
+        ordinals = ModelPathOrdinals.forModel(TestModelRootExtended.class);
+        size = ordinals.size();
+        Assert.assertEquals(PATHS.length, SetFrozenImpl.of(TestModelRootExtended.class, Arrays.asList(PATHS)).size());
+        Assert.assertEquals(size, ordinals.size());
+    }
+    /**
+     * Test {@link SetFrozenImpl#SetFrozenImpl(ISet)} with a frozen origin.
+     */
+    @Test public void testCopyFrozen()
+    {
+        ISet<TestModelRoot> frozen;
+        
+        frozen = mutable().freeze();
+        Assert.assertEquals(frozen, new SetFrozenImpl<TestModelRoot>(frozen));
+    }
+    /**
+     * Test {@link ISet#union(java.util.Collection)} with unknown paths.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnionUnknown()
+    {
+        mutable().freeze().union(Arrays.asList("unknown"));
+    }
+    /**
+     * Test {@link ISet#add(String)} is unsupported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAdd()
+    {
+        mutable().freeze().add("dateProperty");
+    }
+    /**
+     * Test {@link ISet#remove(Object)} is unsupported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemove()
+    {
+        mutable().freeze().remove("intProperty");
+    }
+    /**
+     * Test {@link ISet#clear()} is unsupported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testClear()
+    {
+        mutable().freeze().clear();
+    }
+    /**
+     * Test {@link Iterator#remove()} is unsupported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove()
+    {
+        Iterator<String> it;
+        
+        it = mutable().freeze().iterator();
+        it.next();
+        it.remove();
+    }
+    /**
+     * Test the set algebra and prefix queries on frozen sets.
+     */
+    @Test public void testAlgebra()
+    {
+        ISet<TestModelRoot> set;
+        ISet<TestModelRoot> frozen;
+        ISet<?> sub;
+        
+        set = mutable();
+        frozen = set.freeze();
+        Assert.assertEquals(set.union(Arrays.asList("dateProperty", "dateProperty")), frozen.union(Arrays.asList("dateProperty", "dateProperty")));
+        Assert.assertEquals(PATHS.length + 1, frozen.union(Arrays.asList("dateProperty", "dateProperty")).size());
+        Assert.assertSame(frozen, frozen.union(set));
+        Assert.assertEquals(set.intersect(Arrays.asList("intProperty")), frozen.intersect(Arrays.asList("intProperty")));
+        Assert.assertEquals(set.minus(Arrays.asList("intProperty")), frozen.minus(Arrays.asList("intProperty")));
+        Assert.assertTrue(frozen.isSubsetOf(set));
+        Assert.assertTrue(frozen.containsPrefix("secondLevelModelProperty"));
+        Assert.assertFalse(frozen.containsPrefix("intProperty"));
+        sub = frozen.subSetAt("secondLevelModelProperty.thirdLevel2ModelProperty");
+        Assert.assertEquals(TestModelThirdLevel.class, sub.getModelRoot());
+        Assert.assertEquals(1, sub.size());
+        Assert.assertTrue(sub.contains("string3Property"));
+        Assert.assertTrue(sub instanceof SetFrozenImpl);
+    }
+    /**
+     * Test {@link SetFrozenImpl#of(Class, java.util.Collection)} keeps the wildcards and is equal to the expanded set.
+     */
+    @Test public void testWildcards()
+    {
+        SetFrozenImpl<TestModelRoot> frozen;
+        ISet<TestModelRoot> set;
+        
+        frozen = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList("intProperty", "secondLevelModelProperty.*"
+                , "thirdLevelModelProperty.**{1}", "thirdLevelModelProperty.int3Property"));
+        // The path denoted by a wildcard is not retained
+        Assert.assertEquals(2, frozen.getWildcards().length);
+        Assert.assertTrue(frozen.contains("secondLevelModelProperty.int2Property"));
+        Assert.assertTrue(frozen.contains("thirdLevelModelProperty.int3Property"));
+        Assert.assertTrue(frozen.contains("intProperty"));
+        Assert.assertFalse(frozen.contains("secondLevelModelProperty.thirdLevel2ModelProperty"));
+        Assert.assertFalse(frozen.contains("stringProperty"));
+        // The mutable sets expand the wildcards
+        set = new SetDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        set.add("secondLevelModelProperty.*");
+        set.addAll(Arrays.asList("intProperty", "thirdLevelModelProperty.**{1}"));
+        Assert.assertEquals(5, set.size());
+        Assert.assertEquals(set, frozen);
+        Assert.assertEquals(frozen, set);
+        Assert.assertEquals(set.hashCode(), frozen.hashCode());
+        Assert.assertArrayEquals(set.toArray(), frozen.toArray());
+        Assert.assertTrue(frozen.containsPrefix("thirdLevelModelProperty"));
+        Assert.assertEquals(2, frozen.subSetAt("secondLevelModelProperty").size());
+        // Union keeps the wildcards
+        Assert.assertEquals(2, ((SetFrozenImpl<TestModelRoot>)frozen.union(Arrays.asList("stringProperty"))).getWildcards().length);
+        Assert.assertEquals(6, frozen.union(Arrays.asList("stringProperty")).size());
+        Assert.assertEquals(4, frozen.minus(Arrays.asList("intProperty")).size());
+        Assert.assertEquals(frozen, new SetFrozenImpl<TestModelRoot>(frozen));
+    }
+    /**
+     * Test {@link SetFrozenImpl#of(Class, java.util.Collection)} reports the incorrect paths and wildcards together.
+     */
+    @Test public void testWildcardsInvalid()
+    {
+        try
+        {
+            SetFrozenImpl.of(TestModelRoot.class, Arrays.asList("intProperty", "intProperty.*", "xxx", "**"));
+            Assert.fail("Should be invalid");
+        }
+        catch(InvalidPropertyPathsException e)
+        {
+            Assert.assertEquals(3, e.getInvalidPaths().size());
+            Assert.assertTrue(e.getInvalidPaths().containsAll(Arrays.asList("intProperty.*", "xxx", "**")));
+        }
+    }
+    /**
+     * Test {@link SetFrozenImpl#getContentFingerprint()} and {@link SetFrozenImpl#hasSameContent(SetFrozenImpl)}.
+     */
+    @Test public void testContentFingerprint()
+    {
+        SetFrozenImpl<TestModelRoot> set;
+        SetFrozenImpl<TestModelRoot> same;
+        SetFrozenImpl<TestModelRoot> copy;
+        SetFrozenImpl<TestModelRoot> other;
+        SetFrozenImpl<TestModelRoot> extended;
+        SetFrozenImpl<TestModelRoot> wildcard;
+        
+        set = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList(PATHS));
+        same = new SetFrozenImpl<TestModelRoot>(mutable());
+        Assert.assertEquals(set.getContentFingerprint(), same.getContentFingerprint());
+        Assert.assertTrue(set.hasSameContent(same));
+        Assert.assertFalse(set.sharesContent(same));
+        copy = new SetFrozenImpl<TestModelRoot>(set);
+        Assert.assertTrue(set.sharesContent(copy));
+        Assert.assertTrue(set.hasSameContent(copy));
+        other = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList(PATHS[0], PATHS[1]));
+        Assert.assertNotEquals(set.getContentFingerprint(), other.getContentFingerprint());
+        Assert.assertFalse(set.hasSameContent(other));
+        // Same paths, other model
+        extended = SetFrozenImpl.<TestModelRoot>of(TestModelRootExtended.class, Arrays.asList(PATHS));
+        Assert.assertEquals(set, extended);
+        Assert.assertNotEquals(set.getContentFingerprint(), extended.getContentFingerprint());
+        Assert.assertFalse(set.hasSameContent(extended));
+        // The wildcards are not expanded
+        wildcard = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList("thirdLevelModelProperty.*"));
+        Assert.assertEquals(wildcard, SetFrozenImpl.of(TestModelRoot.class, wildcard));
+        Assert.assertFalse(wildcard.hasSameContent(SetFrozenImpl.of(TestModelRoot.class, wildcard)));
+        Assert.assertFalse(set.hasSameContent(null));
+    }
+    /**
+     * Test {@link SetFrozenImpl#getFingerprint()} is the fingerprint of the expanded wildcards.
+     */
+    @Test public void testFingerprint()
+    {
+        SetFrozenImpl<TestModelRoot> frozen;
+        SetFrozenImpl<TestModelRoot> wildcard;
+        
+        frozen = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList(PATHS));
+        Assert.assertEquals(frozen.getContentFingerprint(), frozen.getFingerprint());
+        Assert.assertEquals(mutable().getFingerprint(), frozen.getFingerprint());
+        wildcard = SetFrozenImpl.of(TestModelRoot.class, Arrays.asList("intProperty", "secondLevelModelProperty.*"));
+        Assert.assertNotEquals(wildcard.getContentFingerprint(), wildcard.getFingerprint());
+        Assert.assertEquals(new SetDefaultImpl<TestModelRoot>(wildcard).getFingerprint(), wildcard.getFingerprint());
+        Assert.assertEquals(SetFrozenImpl.of(TestModelRoot.class, wildcard).getFingerprint(), wildcard.getFingerprint());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.models.ITestModelWide;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link SetTrieImpl}.
+ * Runs all the {@link SetDefaultImplTest} tests, plus the trie specific ones.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetTrieImplTest extends SetDefaultImplTest
+{
+    /** Number of property paths for footprint comparison. */
+    private static final int FOOTPRINT_PATHS = 10000;
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T, S extends ISet<T>> S instance(Class<T> rootModel, Object... args)
+    {
+        return (S) new SetTrieImpl<T>(rootModel);
+    }
+    /**
+     * Create a trie set with the indicated properties.
+     * @param props The properties
+     * @return The set
+     */
+    private SetTrieImpl<TestModelRoot> trieSet(String ... props)
+    {
+        SetTrieImpl<TestModelRoot> s;
+        
+        s = new SetTrieImpl<TestModelRoot>(TestModelRoot.class);
+        s.addAll(Arrays.asList(props));
+        return s;
+    }
+    /**
+     * Test the iteration order and equality with other set implementations.
+     */
+    @Test public void testEqualsOtherSets()
+    {
+        SetTrieImpl<TestModelRoot> s1;
+        TreeSet<String> s2;
+        
+        s1 = trieSet(KNOWN_3L_PROPERTY, "secondLevelModelProperty", KNOWN_2L_PROPERTY, KNOWN_1L_PROPERTY
+                , "secondLevelModelProperty.thirdLevel2ModelProperty", KNOWN2_1L_PROPERTY);
+        s2 = new TreeSet<String>(s1);
+        Assert.assertEquals(s2, s1);
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s2.hashCode(), s1.hashCode());
+        Assert.assertArrayEquals(s2.toArray(), s1.toArray());
+        Assert.assertFalse(s1.contains("secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"));
+        Assert.assertFalse(s1.contains("thirdLevelModelProperty"));
+        Assert.assertFalse(s1.contains(""));
+        Assert.assertFalse(s1.contains(null));
+    }
+    /**
+     * Test removal of property paths, the intermediate nodes are kept while other property paths need them.
+     */
+    @Test public void testRemove()
+    {
+        SetTrieImpl<TestModelRoot> s;
+        Iterator<String> it;
+        
+        s = trieSet(KNOWN_3L_PROPERTY, "secondLevelModelProperty", KNOWN_2L_PROPERTY);
+        Assert.assertFalse(s.remove("secondLevelModelProperty.thirdLevel2ModelProperty"));
+        Assert.assertTrue(s.remove("secondLevelModelProperty"));
+        Assert.assertTrue(s.contains(KNOWN_3L_PROPERTY));
+        Assert.assertTrue(s.containsPrefix("secondLevelModelProperty"));
+        Assert.assertTrue(s.remove(KNOWN_3L_PROPERTY));
+        Assert.assertFalse(s.containsPrefix("secondLevelModelProperty"));
+        Assert.assertEquals(1, s.size());
+        it = s.iterator();
+        Assert.assertEquals(KNOWN_2L_PROPERTY, it.next());
+        it.remove();
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(s.isEmpty());
+        Assert.assertFalse(s.containsPrefix("thirdLevelModelProperty"));
+    }
+    /**
+     * Test serialization round trip.
+     */
+    @SuppressWarnings("unchecked")
+    @Test public void testSerialization() throws Exception
+    {
+        SetTrieImpl<TestModelRoot> s, s1;
+        ByteArrayOutputStream bos;
+        ObjectOutputStream oos;
+        
+        s = trieSet(KNOWN_1L_PROPERTY, KNOWN_2L_PROPERTY, KNOWN_3L_PROPERTY);
+        bos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(bos);
+        oos.writeObject(s);
+        oos.close();
+        s1 = (SetTrieImpl<TestModelRoot>)new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+        Assert.assertEquals(s, s1);
+        Assert.assertEquals(TestModelRoot.class, s1.getModelRoot());
+    }
+    /**
+     * Test that the common prefixes of {@value #FOOTPRINT_PATHS} deep property paths are stored once, so the trie takes much less
+     * heap than the same property paths on a {@link SetDefaultImpl}.
+     */
+    @Test public void testFootprint()
+    {
+        SetTrieImpl<ITestModelWide> set;
+        SetDefaultImpl<ITestModelWide> tree;
+        
+        set = (SetTrieImpl<ITestModelWide>) fill(new SetTrieImpl<ITestModelWide>(ITestModelWide.class));
+        tree = (SetDefaultImpl<ITestModelWide>) fill(new SetDefaultImpl<ITestModelWide>(ITestModelWide.class));
+        Assert.assertEquals(FOOTPRINT_PATHS, set.size());
+        Assert.assertEquals(tree, set);
+        // One node for each distinct prefix, instead of four property names for each path
+        Assert.assertEquals(10 + 100 + 1000 + 10000, set.nodeCount());
+        Assert.assertTrue(set.approximateHeapSize() * 3L < tree.approximateHeapSize());
+    }
+    /**
+     * Fill the set with {@value #FOOTPRINT_PATHS} property paths of four levels, as 'childNode1.childNode2.childNode3.leafValue4'.
+     * @param set The set
+     * @return The set
+     */
+    private ISet<ITestModelWide> fill(ISet<ITestModelWide> set)
+    {
+        for(int n = 0; n < FOOTPRINT_PATHS; n++)
+        {
+            set.add(String.format("childNode%d.childNode%d.childNode%d.leafValue%d", n / 1000, (n / 100) % 10, (n / 10) % 10, n % 10));
+        }
+        return set;
+    }
+}
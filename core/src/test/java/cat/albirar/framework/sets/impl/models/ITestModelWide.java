@@ -0,0 +1,50 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.impl.models;
+
+/**
+ * A recursive model with ten children and ten leaf properties on each level, for big sets of deep property paths.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public interface ITestModelWide
+{
+    ITestModelWide getChildNode0();
+    ITestModelWide getChildNode1();
+    ITestModelWide getChildNode2();
+    ITestModelWide getChildNode3();
+    ITestModelWide getChildNode4();
+    ITestModelWide getChildNode5();
+    ITestModelWide getChildNode6();
+    ITestModelWide getChildNode7();
+    ITestModelWide getChildNode8();
+    ITestModelWide getChildNode9();
+
+    String getLeafValue0();
+    String getLeafValue1();
+    String getLeafValue2();
+    String getLeafValue3();
+    String getLeafValue4();
+    String getLeafValue5();
+    String getLeafValue6();
+    String getLeafValue7();
+    String getLeafValue8();
+    String getLeafValue9();
+}
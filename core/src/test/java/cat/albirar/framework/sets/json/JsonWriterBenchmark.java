@@ -0,0 +1,240 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cat.albirar.framework.sets.IPropertyAccessor;
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
+
+/**
+ * Compare the time of the {@link IJsonWriter JSON writer} with building a map with the properties of each bean and then
+ * serialize the maps.
+ * <p>Not a test, is not run by the build; run it with the test classpath:</p>
+ * <pre>java cat.albirar.framework.sets.json.JsonWriterBenchmark [beans] [rounds]</pre>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class JsonWriterBenchmark
+{
+    private static final String [] PATHS = {"intProperty", "stringProperty", "dateProperty"
+            , "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property", "secondLevelModelProperty.int2Property"};
+    
+    /**
+     * Run the benchmark.
+     * @param args The number of beans (1000 by default) and the number of timed rounds (20 by default)
+     * @throws IOException Never, the output is a {@link StringWriter}
+     */
+    public static void main(String [] args) throws IOException
+    {
+        List<TestModelRoot> beans;
+        ISet<TestModelRoot> set;
+        IJsonWriter<TestModelRoot> writer;
+        List<IPropertyAccessor<TestModelRoot, Object>> accessors;
+        int count;
+        int rounds;
+        long direct;
+        long mapped;
+        
+        count = (args.length > 0 ? Integer.parseInt(args[0]) : 1000);
+        rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 20);
+        beans = new ArrayList<TestModelRoot>(count);
+        for(int i = 0; i < count; i++)
+        {
+            beans.add(model(i));
+        }
+        set = SetUtils.instantiateSetFor(TestModelRoot.class);
+        set.addAll(Arrays.asList(PATHS));
+        writer = JsonWriterFactory.compile(TestModelRoot.class, set);
+        accessors = new ArrayList<IPropertyAccessor<TestModelRoot, Object>>();
+        for(String p : PATHS)
+        {
+            accessors.add(SetUtils.<TestModelRoot, Object>compileAccessor(TestModelRoot.class, p));
+        }
+        // Warm up, so both ways are compiled before measuring
+        for(int i = 0; i < rounds; i++)
+        {
+            streaming(writer, beans);
+            mapped(accessors, beans);
+        }
+        direct = mapped = 0L;
+        for(int i = 0; i < rounds; i++)
+        {
+            direct += streaming(writer, beans);
+            mapped += mapped(accessors, beans);
+        }
+        System.out.println(String.format("JSON of %d beans x %d: streaming writer %d us, map then serialize %d us"
+                , count, rounds, direct / 1000L, mapped / 1000L));
+    }
+    /**
+     * Build a model with all levels.
+     * @param n A number to differentiate the models
+     * @return The model
+     */
+    private static TestModelRoot model(int n)
+    {
+        TestModelRoot root;
+        TestModelSecondLevel second;
+        TestModelThirdLevel third;
+        
+        third = new TestModelThirdLevel();
+        third.setString3Property("city " + n);
+        third.setInt3Property(n);
+        second = new TestModelSecondLevel();
+        second.setThirdLevel2ModelProperty(third);
+        second.setInt2Property(-n);
+        second.setString2Property("second");
+        root = new TestModelRoot();
+        root.setSecondLevelModelProperty(second);
+        root.setIntProperty(n);
+        root.setStringProperty("root");
+        root.setDateProperty(new Date(1000L * n));
+        return root;
+    }
+    /**
+     * Write the beans with the JSON writer.
+     * @return The elapsed nanoseconds
+     */
+    private static long streaming(IJsonWriter<TestModelRoot> writer, List<TestModelRoot> beans) throws IOException
+    {
+        StringWriter sw;
+        long t;
+        
+        sw = new StringWriter(1 << 18);
+        t = System.nanoTime();
+        writer.writeAll(beans, sw);
+        return System.nanoTime() - t;
+    }
+    /**
+     * Build the map of each bean and serialize the maps, the baseline.
+     * @return The elapsed nanoseconds
+     */
+    private static long mapped(List<IPropertyAccessor<TestModelRoot, Object>> accessors, List<TestModelRoot> beans) throws IOException
+    {
+        List<Map<String, Object>> maps;
+        StringWriter sw;
+        long t;
+        
+        sw = new StringWriter(1 << 18);
+        t = System.nanoTime();
+        maps = new ArrayList<Map<String, Object>>(beans.size());
+        for(TestModelRoot bean : beans)
+        {
+            maps.add(toMap(bean, accessors));
+        }
+        writeMaps(maps, sw);
+        return System.nanoTime() - t;
+    }
+    /**
+     * Build the map of the selected properties of the bean.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(TestModelRoot bean, List<IPropertyAccessor<TestModelRoot, Object>> accessors)
+    {
+        Map<String, Object> map;
+        Map<String, Object> m;
+        Object child;
+        
+        map = new LinkedHashMap<String, Object>();
+        for(IPropertyAccessor<TestModelRoot, Object> a : accessors)
+        {
+            m = map;
+            for(int i = 0; i < a.getPropertyPath().depth() - 1; i++)
+            {
+                if((child = m.get(a.getPropertyPath().segment(i))) == null)
+                {
+                    child = new LinkedHashMap<String, Object>();
+                    m.put(a.getPropertyPath().segment(i), child);
+                }
+                m = (Map<String, Object>) child;
+            }
+            m.put(a.getPropertyPath().getName(), a.get(bean));
+        }
+        return map;
+    }
+    /**
+     * Serialize the maps.
+     */
+    private static void writeMaps(List<Map<String, Object>> maps, Writer out) throws IOException
+    {
+        StringBuilder sb;
+        
+        sb = new StringBuilder();
+        sb.append('[');
+        for(Map<String, Object> m : maps)
+        {
+            if(sb.length() > 1)
+            {
+                sb.append(',');
+            }
+            appendValue(sb, m);
+        }
+        sb.append(']');
+        out.write(sb.toString());
+    }
+    /**
+     * Serialize a value of a map.
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendValue(StringBuilder sb, Object value)
+    {
+        boolean first;
+        
+        if(value instanceof Map)
+        {
+            sb.append('{');
+            first = true;
+            for(Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet())
+            {
+                if(!first)
+                {
+                    sb.append(',');
+                }
+                sb.append('"').append(e.getKey()).append("\":");
+                appendValue(sb, e.getValue());
+                first = false;
+            }
+            sb.append('}');
+        }
+        else if(value instanceof String)
+        {
+            sb.append('"').append(((String) value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        else if(value instanceof Date)
+        {
+            sb.append(String.valueOf(((Date) value).getTime()));
+        }
+        else
+        {
+            sb.append(String.valueOf(value));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.ITestModelAllPrimitives;
+import cat.albirar.framework.sets.impl.models.ITestModelAllPrimitivesArray;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
+
+/**
+ * Test for {@link JsonWriterFactory} and {@link IJsonWriter}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class JsonWriterFactoryTest
+{
+    private static final String DEEP_PATH = "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property";
+    
+    /**
+     * Build a model with all levels.
+     * @param n A number to differentiate the models
+     * @return The model
+     */
+    private TestModelRoot model(int n)
+    {
+        TestModelRoot root;
+        TestModelSecondLevel second;
+        TestModelThirdLevel third;
+        
+        third = new TestModelThirdLevel();
+        third.setString3Property("city " + n);
+        third.setInt3Property(n);
+        second = new TestModelSecondLevel();
+        second.setThirdLevel2ModelProperty(third);
+        second.setInt2Property(-n);
+        second.setString2Property("second");
+        root = new TestModelRoot();
+        root.setSecondLevelModelProperty(second);
+        root.setIntProperty(n);
+        root.setStringProperty("root");
+        root.setDateProperty(new Date(1000L * n));
+        return root;
+    }
+    /**
+     * Build a set for {@link TestModelRoot}.
+     * @param paths The property paths
+     * @return The set
+     */
+    private ISet<TestModelRoot> set(String... paths)
+    {
+        ISet<TestModelRoot> set;
+        
+        set = SetUtils.instantiateSetFor(TestModelRoot.class);
+        set.addAll(Arrays.asList(paths));
+        return set;
+    }
+    /**
+     * Write to a string.
+     * @param bean The bean
+     * @param set The set
+     * @return The JSON
+     */
+    private String json(Object bean, ISet<?> set) throws IOException
+    {
+        StringWriter sw;
+        
+        sw = new StringWriter();
+        JsonWriterFactory.write(bean, set, sw);
+        return sw.toString();
+    }
+    /**
+     * Test write of first level properties.
+     */
+    @Test public void testWriteFirstLevel() throws IOException
+    {
+        Assert.assertEquals("{\"dateProperty\":12000,\"intProperty\":12,\"stringProperty\":\"root\"}"
+                , json(model(12), set("intProperty", "stringProperty", "dateProperty")));
+        Assert.assertEquals("null", json(null, set("intProperty")));
+    }
+    /**
+     * Test write of nested properties and null intermediate properties.
+     */
+    @Test public void testWriteNested() throws IOException
+    {
+        TestModelRoot root;
+        ISet<TestModelRoot> set;
+        
+        root = model(3);
+        set = set(DEEP_PATH, "secondLevelModelProperty.int2Property", "thirdLevelModelProperty.int3Property");
+        Assert.assertEquals("{\"secondLevelModelProperty\":{\"int2Property\":-3,\"thirdLevel2ModelProperty\":{\"string3Property\":\"city 3\"}}"
+                + ",\"thirdLevelModelProperty\":null}", json(root, set));
+        root.getSecondLevelModelProperty().setThirdLevel2ModelProperty(null);
+        Assert.assertEquals("{\"secondLevelModelProperty\":{\"int2Property\":-3,\"thirdLevel2ModelProperty\":null}"
+                + ",\"thirdLevelModelProperty\":null}", json(root, set));
+    }
+    /**
+     * Test the escape of strings and the UTF-8 encoding.
+     */
+    @Test public void testEscape() throws IOException
+    {
+        TestModelRoot root;
+        ByteArrayOutputStream bos;
+        String expected;
+        
+        root = model(1);
+        root.setStringProperty("a\"b\\c\nd\u0001 é 😀");
+        expected = "{\"stringProperty\":\"a\\\"b\\\\c\\nd\\u0001 é 😀\"}";
+        Assert.assertEquals(expected, json(root, set("stringProperty")));
+        bos = new ByteArrayOutputStream();
+        JsonWriterFactory.write(root, set("stringProperty"), bos);
+        Assert.assertEquals(expected, new String(bos.toByteArray(), "UTF-8"));
+    }
+    /**
+     * Test write of collections, larger than the buffer, to writer and stream.
+     */
+    @Test public void testWriteAll() throws IOException
+    {
+        List<TestModelRoot> beans;
+        IJsonWriter<TestModelRoot> writer;
+        StringWriter sw;
+        ByteArrayOutputStream bos;
+        
+        beans = new ArrayList<TestModelRoot>();
+        for(int i = 0; i < 2000; i++)
+        {
+            beans.add(model(i));
+            beans.get(i).setStringProperty("é😀" + i);
+        }
+        writer = JsonWriterFactory.compile(TestModelRoot.class, set("intProperty", "stringProperty", DEEP_PATH));
+        sw = new StringWriter();
+        writer.writeAll(beans, sw);
+        Assert.assertTrue(sw.toString().startsWith("[{\"intProperty\":0,\"secondLevelModelProperty\":{\"thirdLevel2ModelProperty\":{\"string3Property\":\"city 0\"}}"));
+        Assert.assertTrue(sw.toString().endsWith(",\"stringProperty\":\"é😀1999\"}]"));
+        bos = new ByteArrayOutputStream();
+        writer.writeAll(beans, bos);
+        Assert.assertEquals(sw.toString(), new String(bos.toByteArray(), "UTF-8"));
+        Assert.assertSame(writer, JsonWriterFactory.compile(TestModelRoot.class, set("intProperty", "stringProperty", DEEP_PATH)));
+    }
+    /**
+     * Test a bean not instance of the model of the set.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testWrongBean() throws IOException
+    {
+        json(new TestModelSecondLevel(), set("intProperty"));
+    }
+    /**
+     * Build a bean of a model interface that returns the indicated values.
+     * @param model The model interface
+     * @param values The value of each getter, by method name
+     * @return The bean
+     */
+    private <T> T bean(Class<T> model, final Map<String, Object> values)
+    {
+        return model.cast(Proxy.newProxyInstance(model.getClassLoader(), new Class<?> [] {model}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object [] args)
+            {
+                return values.get(method.getName());
+            }
+        }));
+    }
+    /**
+     * Test that float and double properties are written with his own precision, and that integral values are written without decimals.
+     */
+    @Test public void testWriteDecimals() throws IOException
+    {
+        ISet<ITestModelAllPrimitives> set;
+        ISet<ITestModelAllPrimitivesArray> arraySet;
+        Map<String, Object> values;
+        
+        set = SetUtils.instantiateSetFor(ITestModelAllPrimitives.class);
+        set.addAll(Arrays.asList("float", "double"));
+        values = new HashMap<String, Object>();
+        values.put("getFloat", 0.1f);
+        values.put("getDouble", 0.1d);
+        Assert.assertEquals("{\"double\":0.1,\"float\":0.1}", json(bean(ITestModelAllPrimitives.class, values), set));
+        values.put("getFloat", 3.0f);
+        values.put("getDouble", -1.5e-10d);
+        Assert.assertEquals("{\"double\":-1.5E-10,\"float\":3}", json(bean(ITestModelAllPrimitives.class, values), set));
+        values.put("getFloat", Float.NaN);
+        Assert.assertEquals("{\"double\":-1.5E-10,\"float\":null}", json(bean(ITestModelAllPrimitives.class, values), set));
+        // Boxed floats, through the arrays
+        arraySet = SetUtils.instantiateSetFor(ITestModelAllPrimitivesArray.class);
+        arraySet.add("float");
+        values.put("getFloat", new float [] {0.1f, 2.5f, 1f / 3f});
+        Assert.assertEquals("{\"float\":[0.1,2.5,0.33333334]}", json(bean(ITestModelAllPrimitivesArray.class, values), arraySet));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.projection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.impl.models.TestModelThirdLevel;
+import cat.albirar.framework.sets.projection.models.TestDtoRoot;
+import cat.albirar.framework.sets.projection.models.TestDtoSecondLevel;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+import cat.albirar.framework.sets.registry.SetNotFoundException;
+import cat.albirar.framework.sets.registry.SetRegistryFactory;
+
+/**
+ * Test for {@link ProjectionFactory} and {@link IProjection}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class ProjectionFactoryTest
+{
+    private static final String DEEP_PATH = "secondLevelModelProperty.thirdLevel2ModelProperty.string3Property";
+    
+    /**
+     * Build a model with all levels.
+     * @return The model
+     */
+    private TestModelRoot model()
+    {
+        TestModelRoot root;
+        TestModelSecondLevel second;
+        TestModelThirdLevel third;
+        
+        third = new TestModelThirdLevel();
+        third.setString3Property("city");
+        third.setInt3Property(3);
+        second = new TestModelSecondLevel();
+        second.setThirdLevel2ModelProperty(third);
+        second.setInt2Property(2000);
+        second.setString2Property("second");
+        root = new TestModelRoot();
+        root.setSecondLevelModelProperty(second);
+        root.setThirdLevelModelProperty(new TestModelThirdLevel());
+        root.setIntProperty(1);
+        root.setStringProperty("root");
+        return root;
+    }
+    /**
+     * Build a set for {@link TestModelRoot}.
+     * @param paths The property paths
+     * @return The set
+     */
+    private ISet<TestModelRoot> set(String... paths)
+    {
+        ISet<TestModelRoot> set;
+        
+        set = SetUtils.instantiateSetFor(TestModelRoot.class);
+        for(String p : paths)
+        {
+            set.add(p);
+        }
+        return set;
+    }
+    /**
+     * Test projection of first level properties.
+     */
+    @Test public void testProjectFirstLevel()
+    {
+        TestDtoRoot dto;
+        
+        dto = ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set("intProperty", "stringProperty")).project(model());
+        Assert.assertEquals(Integer.valueOf(1), dto.getIntProperty());
+        Assert.assertEquals("root", dto.getStringProperty());
+        Assert.assertNull(dto.getSecondLevelModelProperty());
+        Assert.assertNull(dto.getThirdLevelModelProperty());
+    }
+    /**
+     * Test projection of nested properties, with intermediate objects creation.
+     */
+    @Test public void testProjectNested()
+    {
+        TestModelRoot root;
+        TestDtoRoot dto;
+        
+        root = model();
+        dto = ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class
+                , set(DEEP_PATH, "secondLevelModelProperty.int2Property", "thirdLevelModelProperty")).project(root);
+        Assert.assertNull(dto.getIntProperty());
+        Assert.assertNotNull(dto.getSecondLevelModelProperty());
+        Assert.assertEquals(Integer.valueOf(2000), dto.getSecondLevelModelProperty().getInt2Property());
+        Assert.assertNull(dto.getSecondLevelModelProperty().getString2Property());
+        Assert.assertEquals("city", dto.getSecondLevelModelProperty().getThirdLevel2ModelProperty().getString3Property());
+        Assert.assertEquals(0, dto.getSecondLevelModelProperty().getThirdLevel2ModelProperty().getInt3Property());
+        Assert.assertSame(root.getThirdLevelModelProperty(), dto.getThirdLevelModelProperty());
+    }
+    /**
+     * Test projection with null intermediate source properties.
+     */
+    @Test public void testProjectNullIntermediate()
+    {
+        TestModelRoot root;
+        TestDtoRoot dto;
+        IProjection<TestModelRoot, TestDtoRoot> projection;
+        
+        projection = ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set(DEEP_PATH, "intProperty"));
+        Assert.assertNull(projection.project(null));
+        root = model();
+        root.getSecondLevelModelProperty().setThirdLevel2ModelProperty(null);
+        dto = projection.project(root);
+        Assert.assertNotNull(dto.getSecondLevelModelProperty());
+        Assert.assertNull(dto.getSecondLevelModelProperty().getThirdLevel2ModelProperty());
+        root.setSecondLevelModelProperty(null);
+        projection.project(root, dto);
+        Assert.assertNull(dto.getSecondLevelModelProperty());
+    }
+    /**
+     * Test projection on an existing target, reusing intermediate objects.
+     */
+    @Test public void testProjectOnTarget()
+    {
+        TestDtoRoot dto;
+        TestDtoSecondLevel second;
+        
+        dto = new TestDtoRoot();
+        second = new TestDtoSecondLevel();
+        second.setString2Property("kept");
+        dto.setSecondLevelModelProperty(second);
+        Assert.assertSame(dto, ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set(DEEP_PATH)).project(model(), dto));
+        Assert.assertSame(second, dto.getSecondLevelModelProperty());
+        Assert.assertEquals("kept", second.getString2Property());
+        Assert.assertEquals("city", second.getThirdLevel2ModelProperty().getString3Property());
+    }
+    /**
+     * Test the projections cache, and that the compiled set is immutable.
+     */
+    @Test public void testCache()
+    {
+        ISet<TestModelRoot> set;
+        IProjection<TestModelRoot, TestDtoRoot> projection;
+        
+        set = set("intProperty", DEEP_PATH);
+        projection = ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set);
+        Assert.assertSame(projection, ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set("intProperty", DEEP_PATH)));
+        Assert.assertSame(projection, ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set.freeze()));
+        set.add("stringProperty");
+        Assert.assertNotSame(projection, ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set));
+        Assert.assertEquals(2, projection.getSet().size());
+        Assert.assertNull(projection.project(model()).getStringProperty());
+    }
+    /**
+     * Test projection with a named set of the JVM registry.
+     */
+    @Test public void testProjectNamedSet()
+    {
+        TestDtoRoot dto;
+        
+        SetRegistryFactory.getJVMRegistry().putSet(NamedSetUtils.instantiateNamedSetFor(set("stringProperty", DEEP_PATH), "projectionTest"));
+        try
+        {
+            dto = ProjectionFactory.project(model(), TestDtoRoot.class, "projectionTest");
+            Assert.assertEquals("root", dto.getStringProperty());
+            Assert.assertEquals("city", dto.getSecondLevelModelProperty().getThirdLevel2ModelProperty().getString3Property());
+        }
+        finally
+        {
+            SetRegistryFactory.getJVMRegistry().removeSet("projectionTest");
+        }
+    }
+    /**
+     * Test projection with an unknown named set.
+     */
+    @Test(expected = SetNotFoundException.class) public void testProjectUnknownNamedSet()
+    {
+        ProjectionFactory.project(model(), TestDtoRoot.class, "projectionTestUnknown");
+    }
+    /**
+     * Test a leaf property with not assignable types.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testNotAssignable()
+    {
+        ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set("secondLevelModelProperty"));
+    }
+    /**
+     * Test a property unknown on target.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testUnknownOnTarget()
+    {
+        ProjectionFactory.compile(TestModelRoot.class, TestDtoRoot.class, set("dateProperty"));
+    }
+    /**
+     * Test a source type not related with the set.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testWrongSource()
+    {
+        ProjectionFactory.compile(TestModelSecondLevel.class, TestDtoRoot.class, set("intProperty"));
+    }
+    /**
+     * Test a source not instance of the model of the set.
+     */
+    @Test(expected = IllegalArgumentException.class) public void testWrongSourceInstance()
+    {
+        ProjectionFactory.project(new TestModelSecondLevel(), TestDtoRoot.class, set("intProperty"));
+    }
+}
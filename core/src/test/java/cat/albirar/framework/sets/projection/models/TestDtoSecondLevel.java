@@ -0,0 +1,56 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+package cat.albirar.framework.sets.projection.models;
+
+/**
+ * A target model (DTO) for projection test purposes.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class TestDtoSecondLevel
+{
+    private Integer int2Property;
+    private String string2Property;
+    private TestDtoThirdLevel thirdLevel2ModelProperty;
+
+    public Integer getInt2Property()
+    {
+        return int2Property;
+    }
+    public void setInt2Property(Integer int2Property)
+    {
+        this.int2Property = int2Property;
+    }
+    public String getString2Property()
+    {
+        return string2Property;
+    }
+    public void setString2Property(String string2Property)
+    {
+        this.string2Property = string2Property;
+    }
+    public TestDtoThirdLevel getThirdLevel2ModelProperty()
+    {
+        return thirdLevel2ModelProperty;
+    }
+    public void setThirdLevel2ModelProperty(TestDtoThirdLevel thirdLevel2ModelProperty)
+    {
+        this.thirdLevel2ModelProperty = thirdLevel2ModelProperty;
+    }
+}
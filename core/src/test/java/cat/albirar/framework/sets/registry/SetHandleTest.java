@@ -0,0 +1,153 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.registry.impl.SetRegistryDefaultImpl;
+import cat.albirar.framework.sets.registry.impl.SetRegistryOverlayImpl;
+
+/**
+ * Test for {@link SetHandle}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetHandleTest
+{
+    /** Name for set. */
+    private static final String SET_NAME = "a";
+    private ISetRegistry registry;
+    
+    /**
+     * Prepare test.
+     */
+    @Before
+    public void initTest()
+    {
+        registry = new SetRegistryDefaultImpl();
+    }
+    /**
+     * Creates a set of {@link TestModelRoot}.
+     * @param paths The property paths
+     * @return The set
+     */
+    private INamedSet<TestModelRoot> set(String ... paths)
+    {
+        INamedSet<TestModelRoot> ns;
+        
+        ns = NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, SET_NAME);
+        for(String p : paths)
+        {
+            ns.add(p);
+        }
+        return ns;
+    }
+    /**
+     * Test the handle follows the replacements and removals of the set.
+     */
+    @Test public void testCurrentVersion()
+    {
+        SetHandle handle;
+        INamedSet<?> s;
+        
+        handle = registry.getHandle(SET_NAME);
+        Assert.assertEquals(SET_NAME, handle.getSetName());
+        Assert.assertSame(registry, handle.getRegistry());
+        Assert.assertNull(handle.find());
+        registry.putSet(set("intProperty"));
+        s = handle.get();
+        Assert.assertEquals(1, s.size());
+        // Resolved once while not modified
+        Assert.assertSame(s, handle.get());
+        registry.putSet(set("intProperty", "stringProperty"));
+        Assert.assertEquals(2, handle.get().size());
+        registry.removeSet(SET_NAME);
+        Assert.assertNull(handle.find());
+        // Version never repeats
+        registry.putSet(set("stringProperty"));
+        Assert.assertTrue(handle.get().contains("stringProperty"));
+        registry.clear();
+        Assert.assertNull(handle.find());
+    }
+    /**
+     * Test the handle of a not registered set.
+     */
+    @Test(expected = SetNotFoundException.class)
+    public void testNotFound()
+    {
+        registry.getHandle(SET_NAME).get();
+    }
+    /**
+     * Test the handle of a overlay follows the modifications of the parent.
+     */
+    @Test public void testOverlay()
+    {
+        ISetRegistry overlay;
+        SetHandle handle;
+        
+        overlay = new SetRegistryOverlayImpl(registry);
+        handle = overlay.getHandle(SET_NAME);
+        Assert.assertNull(handle.find());
+        registry.putSet(set("intProperty"));
+        Assert.assertEquals(1, handle.get().size());
+        overlay.putSet(set("intProperty", "stringProperty"));
+        Assert.assertEquals(2, handle.get().size());
+        overlay.removeSet(SET_NAME);
+        Assert.assertEquals(1, handle.get().size());
+    }
+    /**
+     * Test the reads by handle search the set by name only once for each version, against the reads by name.
+     */
+    @Test public void testReadsByHandle()
+    {
+        SetHandle handle;
+        INamedSet<?> s;
+        
+        for(int n = 0; n < 1000; n++)
+        {
+            registry.putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, "set" + n));
+        }
+        registry.putSet(set("intProperty"));
+        registry.getMetrics().setEnabled(true);
+        s = registry.getSet(SET_NAME);
+        for(int n = 0; n < 100000; n++)
+        {
+            Assert.assertSame(s, registry.getSet(SET_NAME));
+        }
+        Assert.assertEquals(100001L, registry.getMetrics().getLookupCount());
+        registry.getMetrics().reset();
+        handle = registry.getHandle(SET_NAME);
+        for(int n = 0; n < 100000; n++)
+        {
+            Assert.assertSame(s, handle.get());
+        }
+        Assert.assertEquals(1L, registry.getMetrics().getLookupCount());
+        // Once again on each modification
+        registry.removeSet("set0");
+        for(int n = 0; n < 100000; n++)
+        {
+            Assert.assertSame(s, handle.get());
+        }
+        Assert.assertEquals(2L, registry.getMetrics().getLookupCount());
+    }
+}
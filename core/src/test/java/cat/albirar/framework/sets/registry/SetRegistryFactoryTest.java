@@ -72,7 +72,7 @@ public class SetRegistryFactoryTest
         Assert.assertNotSame(sr2, sr1);
     }
     /**
-     * Test for different registry named sets between jvm and thread.
+     * Test for named sets between jvm and thread, the thread registry reads through the jvm registry.
      */
     @Test public void testCheckDifferentRegistry()
     {
@@ -87,7 +87,8 @@ public class SetRegistryFactoryTest
         ns1 = NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, SET_NAME);
         sr1.putSet(ns1);
         Assert.assertTrue(sr1.containsSet(SET_NAME));
-        Assert.assertFalse(sr2.containsSet(SET_NAME));
+        Assert.assertTrue(sr2.containsSet(SET_NAME));
+        Assert.assertSame(sr1.getSet(SET_NAME), sr2.getSet(SET_NAME));
         sr1.removeSet(SET_NAME);
         Assert.assertFalse(sr1.containsSet(SET_NAME));
         Assert.assertFalse(sr2.containsSet(SET_NAME));
@@ -99,4 +100,29 @@ public class SetRegistryFactoryTest
         Assert.assertFalse(sr2.containsSet(SET_NAME));
         Assert.assertFalse(sr1.containsSet(SET_NAME));
     }
+    /**
+     * Test the scope registries are new for each call and read through the jvm registry.
+     */
+    @Test public void testCreateScopeRegistry()
+    {
+        ISetRegistry sr1, sr2;
+        
+        sr1 = SetRegistryFactory.createScopeRegistry();
+        sr2 = SetRegistryFactory.createScopeRegistry();
+        Assert.assertNotSame(sr1, sr2);
+        Assert.assertNotSame(SetRegistryFactory.getThreadRegistry(), sr1);
+        SetRegistryFactory.getJVMRegistry().putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, SET_NAME));
+        try
+        {
+            Assert.assertTrue(sr1.containsSet(SET_NAME));
+            sr2.putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, SET_NAME));
+            Assert.assertNotSame(sr1.getSet(SET_NAME), sr2.getSet(SET_NAME));
+        }
+        finally
+        {
+            SetRegistryFactory.getJVMRegistry().removeSet(SET_NAME);
+        }
+        Assert.assertFalse(sr1.containsSet(SET_NAME));
+        Assert.assertTrue(sr2.containsSet(SET_NAME));
+    }
 }
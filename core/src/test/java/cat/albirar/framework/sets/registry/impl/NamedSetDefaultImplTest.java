@@ -26,6 +26,7 @@ import cat.albirar.framework.sets.ISet;
 import cat.albirar.framework.sets.impl.SetDefaultImplTest;
 import cat.albirar.framework.sets.impl.models.TestModelRoot;
 import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
 import cat.albirar.framework.sets.registry.impl.NamedSetDefaultImpl;
 
 /**
@@ -103,4 +104,24 @@ public class NamedSetDefaultImplTest extends SetDefaultImplTest
         nset1 = instance(TestModelRoot.class, DEFAULT_NAME_2);
         Assert.assertFalse(nset.equals(nset1));
     }
+    /**
+     * Test {@link INamedSet#freeze()} and {@link NamedSetUtils#immutableCopyOf(ISet, String)}.
+     */
+    @Test public void testFreeze()
+    {
+        INamedSet<TestModelRoot> nset;
+        INamedSet<TestModelRoot> frozen;
+        
+        nset = instance(TestModelRoot.class, DEFAULT_NAME_1);
+        nset.add(KNOWN_1L_PROPERTY);
+        nset.add(KNOWN_3L_PROPERTY);
+        frozen = nset.freeze();
+        Assert.assertEquals(DEFAULT_NAME_1, frozen.getName());
+        Assert.assertEquals(nset, frozen);
+        Assert.assertEquals(frozen, nset);
+        Assert.assertEquals(nset.hashCode(), frozen.hashCode());
+        Assert.assertSame(frozen, NamedSetUtils.immutableCopyOf(frozen));
+        Assert.assertFalse(frozen.equals(NamedSetUtils.immutableCopyOf(frozen, DEFAULT_NAME_2)));
+        Assert.assertEquals(DEFAULT_NAME_2, NamedSetUtils.immutableCopyOf(nset, DEFAULT_NAME_2).getName());
+    }
 }
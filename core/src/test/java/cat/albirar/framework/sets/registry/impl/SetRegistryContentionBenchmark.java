@@ -0,0 +1,149 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU General Public License along with calendar. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.registry.INamedSet;
+
+/**
+ * Compare the time of {@link SetRegistryDefaultImpl#getSet(String)} from 64 threads with a synchronized sorted map, the
+ * storage of previous versions.
+ * <p>Not a test, is not run by the build; run it with the test classpath:</p>
+ * <pre>java cat.albirar.framework.sets.registry.impl.SetRegistryContentionBenchmark [threads] [reads] [rounds]</pre>
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryContentionBenchmark
+{
+    /**
+     * Run the benchmark.
+     * @param args The number of threads (64 by default), the reads of each thread on each round (20000 by default) and the
+     * number of timed rounds (3 by default)
+     * @throws InterruptedException If interrupted
+     */
+    public static void main(String [] args) throws InterruptedException
+    {
+        final SetRegistryDefaultImpl registry;
+        final Map<String, INamedSet<?>> synchronizedMap;
+        final String [] names;
+        final int reads;
+        Runnable snapshotTask;
+        Runnable synchronizedTask;
+        INamedSet<TestModelRoot> nset;
+        int threads;
+        int rounds;
+        long snapshot;
+        long synchronizedTime;
+
+        threads = (args.length > 0 ? Integer.parseInt(args[0]) : 64);
+        reads = (args.length > 1 ? Integer.parseInt(args[1]) : 20000);
+        rounds = (args.length > 2 ? Integer.parseInt(args[2]) : 3);
+        registry = new SetRegistryDefaultImpl();
+        synchronizedMap = Collections.synchronizedMap(new TreeMap<String, INamedSet<?>>());
+        names = new String[100];
+        for(int n = 0; n < names.length; n++)
+        {
+            names[n] = "set" + n;
+            nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, names[n]);
+            nset.add("intProperty");
+            registry.putSet(nset);
+            synchronizedMap.put(names[n], nset.freeze());
+        }
+        snapshotTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < reads; n++)
+                {
+                    registry.getSet(names[n % names.length]);
+                }
+            }
+        };
+        synchronizedTask = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < reads; n++)
+                {
+                    synchronizedMap.get(names[n % names.length]);
+                }
+            }
+        };
+        // Warm up, so both ways are compiled before measuring
+        readers(threads, snapshotTask);
+        readers(threads, synchronizedTask);
+        snapshot = synchronizedTime = 0L;
+        for(int round = 0; round < rounds; round++)
+        {
+            snapshot += readers(threads, snapshotTask);
+            synchronizedTime += readers(threads, synchronizedTask);
+        }
+        System.out.println(String.format("Registry reads from %d threads x %d: snapshot %d us, synchronized map %d us"
+                , threads, rounds, snapshot / 1000L, synchronizedTime / 1000L));
+    }
+    /**
+     * Run the task on the threads, started at once, and wait for them.
+     * @param count The number of threads
+     * @param task The task
+     * @return The elapsed time, in nanoseconds
+     */
+    private static long readers(int count, final Runnable task) throws InterruptedException
+    {
+        final CountDownLatch start;
+        Thread [] threads;
+        long t;
+
+        start = new CountDownLatch(1);
+        threads = new Thread[count];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    task.run();
+                }
+            };
+            threads[n].start();
+        }
+        t = System.nanoTime();
+        start.countDown();
+        for(Thread th : threads)
+        {
+            th.join();
+        }
+        return System.nanoTime() - t;
+    }
+}
@@ -17,10 +17,20 @@
 
 package cat.albirar.framework.sets.registry.impl;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -28,11 +38,14 @@ import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
+import cat.albirar.framework.sets.impl.SetFrozenImpl;
 import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelRootExtended;
 import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
 import cat.albirar.framework.sets.registry.INamedSet;
 import cat.albirar.framework.sets.registry.SetNotFoundException;
 import cat.albirar.framework.sets.registry.impl.NamedSetDefaultImpl;
+import cat.albirar.framework.sets.registry.impl.NamedSetFrozenImpl;
 import cat.albirar.framework.sets.registry.impl.SetRegistryDefaultImpl;
 
 /**
@@ -174,6 +187,444 @@ public class SetRegistryDefaultImplTest
         Assert.assertEquals(2, registry.size());
         Assert.assertTrue(registry.containsSet("set1"));
         Assert.assertTrue(registry.containsSet("set2"));
+        Assert.assertEquals(5, registry.getSet("set1").size());
+        Assert.assertTrue(registry.getSet("set1").contains("thirdLevelModelProperty.string3Property"));
+        Assert.assertEquals(2, registry.getSet("set2").size());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#findSet(String)} doesn't throw if the set doesn't exists, and the name of the set not found.
+     */
+    @Test
+    public void testFindSet() throws Exception
+    {
+        Properties props;
+        INamedSet<TestModelRoot> nset;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        registry.putSet(nset);
+        Assert.assertEquals(nset, registry.findSet("set1"));
+        Assert.assertNull(registry.findSet("xxx"));
+        try
+        {
+            registry.getSet("xxx");
+            Assert.fail("The set doesn't exists");
+        }
+        catch(SetNotFoundException e)
+        {
+            Assert.assertEquals("xxx", e.getSetName());
+        }
+        // Incorrect pending sets
+        props = new Properties();
+        props.setProperty("set2", TestModelRoot.class.getName() + ":xxx");
+        registry.loadFromPropertiesInBackground(props);
+        Assert.assertNull(registry.findSet("set2"));
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#getVersion()} increases on each modification.
+     */
+    @Test
+    public void testVersion()
+    {
+        INamedSet<TestModelRoot> nset;
+        long v;
+
+        v = registry.getVersion();
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        registry.putSet(nset);
+        Assert.assertTrue(registry.getVersion() > v);
+        v = registry.getVersion();
+        registry.removeSet("xxx");
+        Assert.assertEquals(v, registry.getVersion());
+        registry.clear();
+        Assert.assertTrue(registry.getVersion() > v);
+    }
+
+    /**
+     * Test the sets with the same content share the state, on put and on load.
+     */
+    @Test
+    public void testInterning() throws Exception
+    {
+        Properties props;
+        INamedSet<TestModelRoot> nset;
+        SetFrozenImpl<?> s1;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        props.setProperty("set2", TestModelRoot.class.getName() + ":stringProperty, intProperty");
+        props.setProperty("set3", TestModelRootExtended.class.getName() + ":intProperty,stringProperty");
+        props.setProperty("set4", TestModelRoot.class.getName() + ":intProperty");
+        registry.loadFromProperties(props);
+        s1 = (SetFrozenImpl<?>) registry.getSet("set1");
+        Assert.assertTrue(s1.sharesContent((SetFrozenImpl<?>) registry.getSet("set2")));
+        Assert.assertFalse(s1.sharesContent((SetFrozenImpl<?>) registry.getSet("set3")));
+        Assert.assertFalse(s1.sharesContent((SetFrozenImpl<?>) registry.getSet("set4")));
+        Assert.assertEquals("set2", registry.getSet("set2").getName());
+        // Put
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set5");
+        nset.add("stringProperty");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        registry.putSet(nset);
+        Assert.assertTrue(s1.sharesContent((SetFrozenImpl<?>) registry.getSet("set5")));
+        Assert.assertEquals(nset, registry.getSet("set5"));
+        // Not frozen registries keep the sets as is
+        registry = new SetRegistryDefaultImpl(false);
+        registry.putSet(nset);
+        Assert.assertSame(nset, registry.getSet("set5"));
+    }
+
+    /**
+     * Test a registry with 10000 sets of 4 distinct contents keeps only 4 contents, shared by the sets with the same content.
+     */
+    @Test
+    public void testInterningFootprint() throws Exception
+    {
+        Properties props;
+        List<SetFrozenImpl<?>> contents;
+        SetRegistryDefaultImpl other;
+        boolean shared;
+
+        props = new Properties();
+        for(int n = 0; n < 10000; n++)
+        {
+            props.setProperty("set" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty,dateProperty"
+                    + ",secondLevelModelProperty.int2Property,thirdLevelModelProperty.int3Property"
+                    + (n % 10 == 0 ? "" : ",thirdLevelModelProperty.string3Property") + (n % 5 == 0 ? "" : ",secondLevelModelProperty.string2Property")
+                    + (n % 2 == 0 ? "" : ",secondLevelModelProperty.thirdLevel2ModelProperty.string3Property"));
+        }
+        registry.loadFromProperties(props);
+        contents = new ArrayList<SetFrozenImpl<?>>();
+        for(INamedSet<?> s : registry)
+        {
+            shared = false;
+            for(SetFrozenImpl<?> c : contents)
+            {
+                shared |= c.sharesContent((SetFrozenImpl<?>) s);
+            }
+            if(!shared)
+            {
+                contents.add((SetFrozenImpl<?>) s);
+            }
+        }
+        Assert.assertEquals(4, contents.size());
+        // Without interning, each set holds its own content
+        other = new SetRegistryDefaultImpl(false);
+        other.loadFromProperties(props);
+        Assert.assertTrue(registry.approximateHeapSize() * 2L < other.approximateHeapSize());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#getSetsFor(Class)} and {@link SetRegistryDefaultImpl#findSet(Class, String)}, with the sets of supertypes.
+     */
+    @Test
+    public void testGetSetsFor() throws Exception
+    {
+        Properties props;
+        List<INamedSet<? super TestModelRootExtended>> sets;
+
+        props = new Properties();
+        props.setProperty("set3", TestModelRoot.class.getName() + ":intProperty");
+        props.setProperty("set1", TestModelRootExtended.class.getName() + ":intProperty,extendedProperty");
+        props.setProperty("set2", TestModelSecondLevel.class.getName() + ":int2Property,string2Property");
+        registry.loadFromProperties(props);
+        sets = registry.getSetsFor(TestModelRootExtended.class);
+        Assert.assertEquals(2, sets.size());
+        Assert.assertEquals("set1", sets.get(0).getName());
+        Assert.assertEquals("set3", sets.get(1).getName());
+        Assert.assertEquals(1, registry.getSetsFor(TestModelRoot.class).size());
+        Assert.assertSame(registry.getSetsFor(TestModelRoot.class), registry.getSetsFor(TestModelRoot.class));
+        Assert.assertTrue(registry.getSetsFor(String.class).isEmpty());
+        Assert.assertSame(registry.getSet("set3"), registry.findSet(TestModelRootExtended.class, "set3"));
+        Assert.assertSame(registry.getSet("set3"), registry.findSet(TestModelRoot.class, "set3"));
+        Assert.assertNull(registry.findSet(TestModelRoot.class, "set1"));
+        Assert.assertNull(registry.findSet(TestModelRoot.class, "xxx"));
+        // Consistent with modifications
+        registry.removeSet("set3");
+        Assert.assertEquals(1, registry.getSetsFor(TestModelRootExtended.class).size());
+        Assert.assertTrue(registry.getSetsFor(TestModelRoot.class).isEmpty());
+        // Pending sets
+        props = new Properties();
+        props.setProperty("set4", TestModelRoot.class.getName() + ":intProperty");
+        registry.loadFromPropertiesInBackground(props);
+        Assert.assertEquals(2, registry.getSetsFor(TestModelRootExtended.class).size());
+    }
+
+    /**
+     * Test the index by model is consistent under concurrent modifications.
+     */
+    @Test
+    public void testGetSetsForConcurrent() throws Exception
+    {
+        final AtomicInteger errors;
+
+        errors = new AtomicInteger();
+        readers(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                INamedSet<TestModelRoot> nset;
+                String name;
+
+                name = Thread.currentThread().getName();
+                for(int n = 0; n < 100; n++)
+                {
+                    nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, name);
+                    nset.add(MODEL_ROOT_INT_PROPERTY);
+                    registry.putSet(nset);
+                    if(registry.findSet(TestModelRoot.class, name) == null || !registry.getSetsFor(TestModelRoot.class).contains(nset))
+                    {
+                        errors.incrementAndGet();
+                    }
+                    registry.removeSet(name);
+                    if(registry.findSet(TestModelRoot.class, name) != null)
+                    {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+        });
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(registry.getSetsFor(TestModelRoot.class).isEmpty());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromPropertiesInBackground(Properties)} registers the sets at once and validates them.
+     */
+    @Test
+    public void testLoadInBackground() throws Exception
+    {
+        Properties props;
+        Future<Integer> ready;
+        SetRegistryDefaultImpl other;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty,secondLevelModelProperty.int2Property " + ",thirdLevelModelProperty.string3Property "
+                + ",secondLevelModelProperty.thirdLevel2ModelProperty.string3Property " + ",stringProperty");
+        props.setProperty("set2", TestModelSecondLevel.class.getName() + ":int2Property,string2Property");
+        ready = registry.loadFromPropertiesInBackground(props);
+        Assert.assertEquals(2, registry.size());
+        Assert.assertTrue(registry.containsSet("set1"));
+        Assert.assertTrue(registry.containsSet("set2"));
+        Assert.assertEquals(5, registry.getSet("set1").size());
+        Assert.assertEquals(2, ready.get().intValue());
+        Assert.assertTrue(ready.isDone());
+        other = new SetRegistryDefaultImpl();
+        other.loadFromProperties(props);
+        Assert.assertEquals(other.getSet("set1"), registry.getSet("set1"));
+        Assert.assertEquals(other.getSet("set2"), registry.getSet("set2"));
+        Assert.assertTrue(registry.getSet("set2") instanceof NamedSetFrozenImpl);
+        // Not frozen
+        other = new SetRegistryDefaultImpl(false);
+        other.loadFromPropertiesInBackground(props).get();
+        Assert.assertTrue(other.getSet("set1") instanceof NamedSetDefaultImpl);
+        Assert.assertEquals(registry.getSet("set1"), other.getSet("set1"));
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromPropertiesInBackground(Properties)} with incorrect sets, that are removed once validated.
+     */
+    @Test
+    public void testLoadInBackgroundErrors() throws Exception
+    {
+        Properties props;
+        Future<Integer> ready;
+        Iterator<INamedSet<?>> it;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty,xxx");
+        props.setProperty("set2", TestModelSecondLevel.class.getName() + ":int2Property,string2Property");
+        ready = registry.loadFromPropertiesInBackground(props);
+        try
+        {
+            // Validated now or already removed
+            registry.getSet("set1");
+            Assert.fail("The set1 is incorrect");
+        }
+        catch(SetNotFoundException e)
+        {
+            // Expected
+        }
+        // Only the correct ones are iterated
+        it = registry.iterator();
+        Assert.assertEquals("set2", it.next().getName());
+        Assert.assertFalse(it.hasNext());
+        try
+        {
+            ready.get();
+            Assert.fail("The set1 is incorrect");
+        }
+        catch(ExecutionException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            Assert.assertTrue(e.getCause().getMessage().contains("set1"));
+        }
+        Assert.assertFalse(registry.containsSet("set1"));
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(2, registry.getSet("set2").size());
+        // Unknown class
+        props = new Properties();
+        props.setProperty("set3", "cat.albirar.XXX:intProperty");
+        try
+        {
+            registry.loadFromPropertiesInBackground(props).get();
+            Assert.fail("The class is unknown");
+        }
+        catch(ExecutionException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof ClassNotFoundException);
+        }
+        Assert.assertFalse(registry.containsSet("set3"));
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromPropertiesInBackground(Properties)} doesn't publish the sets replaced or removed
+     * while are pending.
+     */
+    @Test
+    public void testLoadInBackgroundReplaced() throws Exception
+    {
+        Properties props;
+        Future<Integer> ready;
+        INamedSet<TestModelRoot> nset;
+
+        props = new Properties();
+        for(int n = 0; n < 200; n++)
+        {
+            props.setProperty("set" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        }
+        ready = registry.loadFromPropertiesInBackground(props);
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set0");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        registry.putSet(nset);
+        registry.removeSet("set1");
+        ready.get();
+        Assert.assertEquals(199, registry.size());
+        Assert.assertEquals(1, registry.getSet("set0").size());
+        Assert.assertFalse(registry.containsSet("set1"));
+        Assert.assertEquals(2, registry.getSet("set2").size());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromPropertiesInBackground(Properties)} of a lot of sets registers all of them at once,
+     * and validates the same sets as {@link SetRegistryDefaultImpl#loadFromProperties(Properties)}.
+     */
+    @Test
+    public void testLoadInBackgroundLarge() throws Exception
+    {
+        Properties props;
+        SetRegistryDefaultImpl other;
+        Future<Integer> ready;
+
+        props = new Properties();
+        for(int n = 0; n < 2000; n++)
+        {
+            props.setProperty("set" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty,secondLevelModelProperty.int2Property"
+                    + ",secondLevelModelProperty.thirdLevel2ModelProperty.string3Property,thirdLevelModelProperty.string3Property");
+        }
+        other = new SetRegistryDefaultImpl();
+        Assert.assertEquals(2000, other.loadFromProperties(props));
+        ready = registry.loadFromPropertiesInBackground(props);
+        // Registered before validated
+        Assert.assertEquals(2000, registry.size());
+        for(int n = 0; n < 2000; n++)
+        {
+            Assert.assertTrue(registry.containsSet("set" + n));
+        }
+        Assert.assertEquals(2000, ready.get().intValue());
+        for(INamedSet<?> s : other)
+        {
+            Assert.assertEquals(s, registry.getSet(s.getName()));
+        }
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromSnapshot(Path, Resource)} writes the snapshot on first load, uses it on next loads
+     * and discards it if it's not valid.
+     */
+    @Test
+    public void testLoadFromSnapshot() throws Exception
+    {
+        Path snapshot;
+        Resource resource;
+        SetRegistryDefaultImpl other;
+        FileTime written;
+
+        snapshot = Files.createTempFile("sets", ".snapshot");
+        Files.delete(snapshot);
+        resource = new ClassPathResource(Q_NAME_FILE_OK);
+        try
+        {
+            Assert.assertEquals(2, registry.loadFromSnapshot(snapshot, resource));
+            Assert.assertTrue(Files.exists(snapshot));
+            written = Files.getLastModifiedTime(snapshot);
+            // From snapshot
+            other = new SetRegistryDefaultImpl();
+            Assert.assertEquals(2, other.loadFromSnapshot(snapshot, resource));
+            Assert.assertEquals(written, Files.getLastModifiedTime(snapshot));
+            Assert.assertEquals(registry.getSet("set1"), other.getSet("set1"));
+            Assert.assertEquals(registry.getSet("set2"), other.getSet("set2"));
+            // Not frozen
+            other = new SetRegistryDefaultImpl(false);
+            other.loadFromSnapshot(snapshot, resource);
+            Assert.assertTrue(other.getSet("set1") instanceof NamedSetDefaultImpl);
+            Assert.assertEquals(registry.getSet("set1"), other.getSet("set1"));
+            // Not valid snapshot, loaded from resource and written again
+            Files.write(snapshot, new byte [] {1, 2, 3});
+            other = new SetRegistryDefaultImpl();
+            Assert.assertEquals(2, other.loadFromSnapshot(snapshot, resource));
+            Assert.assertEquals(registry.getSet("set1"), other.getSet("set1"));
+            Assert.assertTrue(Files.size(snapshot) > 3L);
+        }
+        finally
+        {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromProperties(Properties)} with wildcards, kept as is on the frozen sets.
+     */
+    @Test
+    public void testLoadPropertiesWildcards() throws Exception
+    {
+        Properties props;
+        INamedSet<?> set;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty, secondLevelModelProperty.* ,thirdLevelModelProperty.**{1}");
+        props.setProperty("set2", TestModelRoot.class.getName() + ":**{3}");
+        registry.loadFromProperties(props);
+        set = registry.getSet("set1");
+        Assert.assertTrue(set instanceof NamedSetFrozenImpl);
+        Assert.assertEquals(2, ((NamedSetFrozenImpl<?>) set).getWildcards().length);
+        Assert.assertEquals(5, set.size());
+        Assert.assertTrue(set.contains("secondLevelModelProperty.string2Property"));
+        Assert.assertFalse(set.contains("secondLevelModelProperty.thirdLevel2ModelProperty"));
+        set = registry.getSet("set2");
+        Assert.assertTrue(set.contains("secondLevelModelProperty.thirdLevel2ModelProperty.string3Property"));
+        Assert.assertEquals(12, set.size());
+        // Not frozen, the wildcards are expanded
+        registry = new SetRegistryDefaultImpl(false);
+        registry.loadFromProperties(props);
+        Assert.assertEquals(5, registry.getSet("set1").size());
+        Assert.assertTrue(registry.getSet("set1").contains("thirdLevelModelProperty.string3Property"));
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromProperties(Properties)} with incorrect wildcards.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadPropertiesWildcardsError() throws Exception
+    {
+        Properties props;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty.*");
+        registry.loadFromProperties(props);
     }
 
     /**
@@ -269,6 +720,30 @@ public class SetRegistryDefaultImplTest
         registry.loadFromResource(resource);
     }
 
+    /**
+     * Test {@link SetRegistryDefaultImpl#loadFromResource(org.springframework.core.io.Resource)} with undefined
+     * properties, all of them are reported and no set is registered.
+     */
+    @Test
+    public void testLoadResourceErrorPropertyNotFoundReportsAll() throws Exception
+    {
+        Resource resource;
+
+        resource = new ClassPathResource(Q_NAME_FILE_ERROR_PROP_ERROR);
+        try
+        {
+            registry.loadFromResource(resource);
+            Assert.fail("Incorrect properties accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("set1="));
+            Assert.assertTrue(e.getMessage().contains("set2="));
+            Assert.assertTrue(e.getMessage().contains("testpropyy"));
+        }
+        Assert.assertTrue(registry.isEmpty());
+    }
+
     /**
      * Test {@link SetRegistryDefaultImpl#loadFromResource(org.springframework.core.io.Resource)} without errors.
      */
@@ -392,7 +867,52 @@ public class SetRegistryDefaultImplTest
         Assert.assertEquals(1, registry.size());
         nsetr = registry.getSet(nset.getName());
         Assert.assertNotNull(nsetr);
-        Assert.assertSame(nset, nsetr);
+        Assert.assertEquals(nset, nsetr);
+        Assert.assertTrue(nsetr instanceof NamedSetFrozenImpl);
+    }
+
+    /**
+     * Test for {@link SetRegistryDefaultImpl#putSet(INamedSet)} with an already frozen set, should to be stored as is.
+     */
+    @Test
+    public void testPutFrozen()
+    {
+        INamedSet<TestModelRoot> nset;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        nset = nset.freeze();
+        registry.putSet(nset);
+        Assert.assertSame(nset, registry.getSet(nset.getName()));
+    }
+
+    /**
+     * Test for {@link SetRegistryDefaultImpl#putSet(INamedSet)} on a registry that doesn't freeze the sets.
+     */
+    @Test
+    public void testPutNotFrozen()
+    {
+        INamedSet<TestModelRoot> nset;
+
+        registry = new SetRegistryDefaultImpl(false);
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        registry.putSet(nset);
+        Assert.assertSame(nset, registry.getSet(nset.getName()));
+    }
+
+    /**
+     * Test that the stored sets cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testStoredSetImmutable()
+    {
+        INamedSet<TestModelRoot> nset;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        nset.add(MODEL_ROOT_INT_PROPERTY);
+        registry.putSet(nset);
+        registry.getSet(nset.getName()).add("stringProperty");
     }
 
     /**
@@ -498,14 +1018,14 @@ public class SetRegistryDefaultImplTest
         Assert.assertEquals(1, registry.size());
         nsetr = registry.getSet(nset2.getName());
         Assert.assertNotNull(nsetr);
-        Assert.assertSame(nset2, nsetr);
+        Assert.assertEquals(nset2, nsetr);
         // remove an inexistent set
         Assert.assertFalse(registry.removeSet("xxx"));
         Assert.assertFalse(registry.isEmpty());
         Assert.assertEquals(1, registry.size());
         nsetr = registry.getSet(nset2.getName());
         Assert.assertNotNull(nsetr);
-        Assert.assertSame(nset2, nsetr);
+        Assert.assertEquals(nset2, nsetr);
     }
 
     /**
@@ -561,7 +1081,189 @@ public class SetRegistryDefaultImplTest
             nsetr = registry.getSet(ns1.getName());
             Assert.assertEquals("set" + n, nsetr.getName());
             n++;
-            Assert.assertSame(ns1, nsetr);
+            Assert.assertEquals(ns1, nsetr);
+        }
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#iterator()} is not affected by the modifications made after its creation.
+     */
+    @Test
+    public void testIteratorSnapshot()
+    {
+        Iterator<INamedSet<?>> iterator;
+        INamedSet<TestModelRoot> nset;
+        int n;
+
+        for(n = 0; n < 3; n++)
+        {
+            nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set" + n);
+            nset.add(MODEL_ROOT_INT_PROPERTY);
+            registry.putSet(nset);
+        }
+        iterator = registry.iterator();
+        registry.removeSet("set1");
+        registry.putSet(new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set3"));
+        n = 0;
+        while(iterator.hasNext())
+        {
+            Assert.assertEquals("set" + n, iterator.next().getName());
+            n++;
+        }
+        Assert.assertEquals(3, n);
+        Assert.assertEquals(3, registry.size());
+        Assert.assertFalse(registry.removeSet("set1"));
+        registry.clear();
+        Assert.assertTrue(registry.isEmpty());
+        Assert.assertFalse(registry.iterator().hasNext());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#addAll(Set)} is published at once, a reader sees all the sets of a batch or none.
+     */
+    @Test
+    public void testAddAllAtomic() throws Exception
+    {
+        final AtomicBoolean stop;
+        final AtomicInteger partial;
+        Thread reader;
+        Set<INamedSet<?>> batch;
+
+        stop = new AtomicBoolean(false);
+        partial = new AtomicInteger(0);
+        reader = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                int n;
+
+                while(!stop.get())
+                {
+                    n = registry.size();
+                    if(n % 10 != 0)
+                    {
+                        partial.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        for(int round = 0; round < 200; round++)
+        {
+            batch = new TreeSet<INamedSet<?>>();
+            for(int n = 0; n < 10; n++)
+            {
+                batch.add(new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set" + round + "_" + n));
+            }
+            registry.addAll(batch);
+        }
+        stop.set(true);
+        reader.join();
+        Assert.assertEquals(0, partial.get());
+        Assert.assertEquals(2000, registry.size());
+    }
+
+    /**
+     * Test {@link SetRegistryDefaultImpl#getSet(String)} from 64 threads meanwhile the sets are replaced: every read finds the set
+     * with his whole content.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception
+    {
+        final String [] names;
+        final AtomicInteger errors;
+        final AtomicBoolean stop;
+        INamedSet<TestModelRoot> nset;
+        Thread writer;
+
+        names = new String[100];
+        errors = new AtomicInteger();
+        stop = new AtomicBoolean();
+        for(int n = 0; n < names.length; n++)
+        {
+            names[n] = "set" + n;
+            nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, names[n]);
+            nset.add(MODEL_ROOT_INT_PROPERTY);
+            registry.putSet(nset);
+        }
+        writer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                INamedSet<TestModelRoot> ns;
+                int n;
+
+                n = 0;
+                while(!stop.get())
+                {
+                    ns = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, names[n++ % names.length]);
+                    ns.add(MODEL_ROOT_INT_PROPERTY);
+                    registry.putSet(ns);
+                }
+            }
+        };
+        writer.start();
+        try
+        {
+            readers(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int n = 0; n < 20000; n++)
+                    {
+                        if(!registry.getSet(names[n % names.length]).contains(MODEL_ROOT_INT_PROPERTY))
+                        {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        finally
+        {
+            stop.set(true);
+            writer.join();
+        }
+        Assert.assertEquals(0, errors.get());
+    }
+    /**
+     * Run the task on 64 threads, started at once, and wait for them.
+     * @param task The task
+     */
+    private void readers(final Runnable task) throws InterruptedException
+    {
+        final CountDownLatch start;
+        Thread [] threads;
+
+        start = new CountDownLatch(1);
+        threads = new Thread[64];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    task.run();
+                }
+            };
+            threads[n].start();
+        }
+        start.countDown();
+        for(Thread th : threads)
+        {
+            th.join();
         }
     }
 }
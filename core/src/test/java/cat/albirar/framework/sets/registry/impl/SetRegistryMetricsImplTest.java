@@ -0,0 +1,340 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.registry.ISetRegistryMetrics;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+import cat.albirar.framework.sets.registry.SetNotFoundException;
+
+/**
+ * Test for {@link SetRegistryMetricsImpl}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryMetricsImplTest
+{
+    private SetRegistryDefaultImpl registry;
+    private SetRegistryMetricsImpl metrics;
+    
+    /**
+     * A registry with two sets and the metrics enabled.
+     */
+    @Before
+    public void setUp()
+    {
+        registry = new SetRegistryDefaultImpl();
+        registry.putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, "set1"));
+        registry.putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, "set2"));
+        metrics = registry.getMetrics();
+        metrics.setEnabled(true);
+    }
+    /**
+     * Lookup each set the indicated times.
+     * @param times1 Times for {@code set1}
+     * @param times2 Times for {@code set2}
+     */
+    private void lookups(int times1, int times2)
+    {
+        for(int n = 0; n < times1; n++)
+        {
+            registry.getSet("set1");
+        }
+        for(int n = 0; n < times2; n++)
+        {
+            registry.findSet("set2");
+        }
+    }
+    /**
+     * Test nothing is counted while disabled.
+     */
+    @Test public void testDisabled()
+    {
+        metrics.setEnabled(false);
+        Assert.assertFalse(new SetRegistryDefaultImpl().getMetrics().isEnabled());
+        lookups(3, 2);
+        registry.findSet("xxx");
+        Assert.assertEquals(0L, metrics.getLookupCount());
+        Assert.assertEquals(0L, metrics.getMissCount());
+        Assert.assertTrue(metrics.getTopSets().isEmpty());
+        // Available anyway
+        Assert.assertEquals(2, metrics.getSetCount());
+        Assert.assertTrue(metrics.getApproximateHeapSize() > 0L);
+    }
+    /**
+     * Test the lookups, misses and hits of each set.
+     */
+    @Test public void testLookups()
+    {
+        Map<String, Long> top;
+        Iterator<String> it;
+        
+        lookups(3, 5);
+        Assert.assertNull(registry.findSet("xxx"));
+        Assert.assertNull(registry.findSet(TestModelRoot.class, "yyy"));
+        try
+        {
+            registry.getSet("zzz");
+            Assert.fail("Unknown set found");
+        }
+        catch(SetNotFoundException e)
+        {
+            // Expected
+        }
+        Assert.assertEquals(11L, metrics.getLookupCount());
+        Assert.assertEquals(3L, metrics.getMissCount());
+        top = metrics.getTopSets();
+        Assert.assertEquals(2, top.size());
+        it = top.keySet().iterator();
+        Assert.assertEquals("set2", it.next());
+        Assert.assertEquals("set1", it.next());
+        Assert.assertEquals(Long.valueOf(5L), top.get("set2"));
+        Assert.assertEquals(Long.valueOf(3L), top.get("set1"));
+        metrics.setTopSetsSize(1);
+        Assert.assertEquals(1, metrics.getTopSets().size());
+        Assert.assertTrue(metrics.getTopSets().containsKey("set2"));
+        metrics.reset();
+        Assert.assertEquals(0L, metrics.getLookupCount());
+        Assert.assertEquals(0L, metrics.getMissCount());
+        Assert.assertTrue(metrics.getTopSets().isEmpty());
+    }
+    /**
+     * Test an incorrect top sets size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopSetsSizeIncorrect()
+    {
+        metrics.setTopSetsSize(0);
+    }
+    /**
+     * Test the lookups through an overlay are counted on the overlay and, if read through, on the parent.
+     */
+    @Test public void testOverlay()
+    {
+        SetRegistryOverlayImpl overlay;
+        
+        overlay = new SetRegistryOverlayImpl(registry);
+        overlay.getMetrics().setEnabled(true);
+        overlay.putSet(NamedSetUtils.instantiateNamedSetFor(TestModelRoot.class, "local"));
+        overlay.getSet("local");
+        overlay.getSet("set1");
+        overlay.findSet("xxx");
+        overlay.findSet(TestModelRoot.class, "set2");
+        Assert.assertEquals(4L, overlay.getMetrics().getLookupCount());
+        Assert.assertEquals(1L, overlay.getMetrics().getMissCount());
+        Assert.assertEquals(3, overlay.getMetrics().getTopSets().size());
+        Assert.assertEquals(3L, metrics.getLookupCount());
+        Assert.assertEquals(1L, metrics.getMissCount());
+        Assert.assertFalse(metrics.getTopSets().containsKey("local"));
+    }
+    /**
+     * Test the loads, successful or not, and the validation time.
+     */
+    @Test public void testLoads() throws Exception
+    {
+        Properties props;
+        
+        props = new Properties();
+        for(int n = 0; n < 100; n++)
+        {
+            props.setProperty("loaded" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        }
+        registry.loadFromProperties(props);
+        Assert.assertEquals(1L, metrics.getLoadCount());
+        Assert.assertEquals(0L, metrics.getLoadErrorCount());
+        Assert.assertTrue(metrics.getLastLoadMicros() >= metrics.getLastValidationMicros());
+        Assert.assertEquals(metrics.getLastLoadMicros(), metrics.getTotalLoadMicros());
+        Assert.assertEquals(102, metrics.getSetCount());
+        registry.loadFromPropertiesInBackground(props).get();
+        Assert.assertEquals(2L, metrics.getLoadCount());
+        props.setProperty("incorrect", TestModelRoot.class.getName() + ":xxx");
+        try
+        {
+            registry.loadFromProperties(props);
+            Assert.fail("Incorrect set loaded");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        Assert.assertEquals(3L, metrics.getLoadCount());
+        Assert.assertEquals(1L, metrics.getLoadErrorCount());
+        Assert.assertTrue(metrics.getTotalLoadMicros() >= metrics.getTotalValidationMicros());
+        metrics.reset();
+        Assert.assertEquals(0L, metrics.getLoadCount());
+        Assert.assertEquals(0L, metrics.getTotalLoadMicros());
+    }
+    /**
+     * Test the heap size counts once the state shared by the sets with the same content.
+     */
+    @Test public void testApproximateHeapSize() throws Exception
+    {
+        Properties same;
+        Properties different;
+        SetRegistryDefaultImpl other;
+        String [] paths;
+        
+        paths = new String [] {"intProperty", "stringProperty", "dateProperty", "thirdLevelModelProperty.int3Property"};
+        same = new Properties();
+        different = new Properties();
+        for(int n = 0; n < 100; n++)
+        {
+            same.setProperty("set" + n, TestModelRoot.class.getName() + ":" + paths[0] + "," + paths[1] + "," + paths[2] + "," + paths[3]);
+            different.setProperty("set" + n, TestModelRoot.class.getName() + ":" + paths[n % 4] + "," + paths[(n / 4) % 4]);
+        }
+        registry = new SetRegistryDefaultImpl();
+        Assert.assertEquals(0L, registry.getMetrics().getApproximateHeapSize());
+        registry.loadFromProperties(same);
+        other = new SetRegistryDefaultImpl(false);
+        other.loadFromProperties(same);
+        Assert.assertTrue(registry.getMetrics().getApproximateHeapSize() < other.getMetrics().getApproximateHeapSize());
+        other = new SetRegistryDefaultImpl();
+        other.loadFromProperties(different);
+        Assert.assertTrue(registry.getMetrics().getApproximateHeapSize() < other.getMetrics().getApproximateHeapSize());
+    }
+    /**
+     * Test the metrics as MXBean.
+     */
+    @Test public void testMBean() throws Exception
+    {
+        MBeanServer server;
+        ObjectName name;
+        
+        server = ManagementFactory.getPlatformMBeanServer();
+        name = SetRegistryMetricsImpl.registerMBean(metrics, "test");
+        try
+        {
+            Assert.assertEquals(SetRegistryMetricsImpl.JMX_DOMAIN, name.getDomain());
+            lookups(1, 0);
+            Assert.assertEquals(1L, server.getAttribute(name, "LookupCount"));
+            Assert.assertEquals(2, server.getAttribute(name, "SetCount"));
+            server.setAttribute(name, new Attribute("Enabled", Boolean.FALSE));
+            Assert.assertFalse(metrics.isEnabled());
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assert.assertEquals(0L, metrics.getLookupCount());
+            try
+            {
+                SetRegistryMetricsImpl.registerMBean(metrics, "test");
+                Assert.fail("Registered twice");
+            }
+            catch(IllegalStateException e)
+            {
+                // Expected
+            }
+        }
+        finally
+        {
+            SetRegistryMetricsImpl.unregisterMBean(name);
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+    /**
+     * Test the lookups from many threads are all counted.
+     */
+    @Test public void testConcurrentLookups() throws Exception
+    {
+        readers(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                lookups(1000, 1000);
+            }
+        });
+        Assert.assertEquals(64L * 2000L, metrics.getLookupCount());
+        Assert.assertEquals(Long.valueOf(64L * 1000L), metrics.getTopSets().get("set1"));
+        Assert.assertEquals(0L, metrics.getMissCount());
+    }
+    /**
+     * Test the lookups from many threads are not counted while the metrics are disabled, and are counted again once enabled.
+     */
+    @Test public void testConcurrentLookupsDisabled() throws Exception
+    {
+        Runnable task;
+        
+        task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                lookups(1000, 1000);
+            }
+        };
+        metrics.setEnabled(false);
+        readers(task);
+        Assert.assertEquals(0L, metrics.getLookupCount());
+        Assert.assertTrue(metrics.getTopSets().isEmpty());
+        metrics.setEnabled(true);
+        readers(task);
+        Assert.assertEquals(64L * 2000L, metrics.getLookupCount());
+        Assert.assertEquals(Long.valueOf(64L * 1000L), metrics.getTopSets().get("set2"));
+    }
+    /**
+     * Run the task on 64 threads, started at once, and wait for them.
+     * @param task The task
+     */
+    private void readers(final Runnable task) throws InterruptedException
+    {
+        final CountDownLatch start;
+        Thread [] threads;
+
+        start = new CountDownLatch(1);
+        threads = new Thread[64];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    task.run();
+                }
+            };
+            threads[n].start();
+        }
+        start.countDown();
+        for(Thread th : threads)
+        {
+            th.join();
+        }
+    }
+}
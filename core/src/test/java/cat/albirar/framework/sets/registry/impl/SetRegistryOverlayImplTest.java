@@ -0,0 +1,247 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.ISetRegistry;
+import cat.albirar.framework.sets.registry.SetNotFoundException;
+
+/**
+ * Test for {@link SetRegistryOverlayImpl}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryOverlayImplTest
+{
+    private SetRegistryDefaultImpl parent;
+    private SetRegistryOverlayImpl overlay;
+
+    /**
+     * Prepare test, the parent with "set1" and "set2".
+     */
+    @Before
+    public void initTest() throws Exception
+    {
+        Properties props;
+
+        props = new Properties();
+        props.setProperty("set1", TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        props.setProperty("set2", TestModelSecondLevel.class.getName() + ":int2Property,string2Property");
+        parent = new SetRegistryDefaultImpl();
+        parent.loadFromProperties(props);
+        overlay = new SetRegistryOverlayImpl(parent);
+    }
+    /**
+     * Test the sets of the parent are read through.
+     */
+    @Test
+    public void testReadThrough()
+    {
+        Assert.assertSame(parent, overlay.getParent());
+        Assert.assertFalse(overlay.isEmpty());
+        Assert.assertEquals(2, overlay.size());
+        Assert.assertTrue(overlay.containsSet("set1"));
+        Assert.assertSame(parent.getSet("set1"), overlay.getSet("set1"));
+        // Changes of parent are seen at once
+        parent.removeSet("set2");
+        Assert.assertFalse(overlay.containsSet("set2"));
+        Assert.assertEquals(1, overlay.size());
+    }
+    /**
+     * Test {@link SetRegistryOverlayImpl#findSet(String)} and the version, local and of the parent.
+     */
+    @Test
+    public void testFindSet()
+    {
+        INamedSet<TestModelRoot> nset;
+        long v;
+
+        Assert.assertSame(parent.getSet("set1"), overlay.findSet("set1"));
+        Assert.assertNull(overlay.findSet("set3"));
+        v = overlay.getVersion();
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set3");
+        overlay.putSet(nset);
+        Assert.assertEquals(nset, overlay.findSet("set3"));
+        Assert.assertTrue(overlay.getVersion() > v);
+        v = overlay.getVersion();
+        parent.removeSet("set1");
+        Assert.assertTrue(overlay.getVersion() > v);
+        Assert.assertNull(overlay.findSet("set1"));
+    }
+    /**
+     * Test a unknown set.
+     */
+    @Test(expected = SetNotFoundException.class)
+    public void testUnknown()
+    {
+        overlay.getSet("xxx");
+    }
+    /**
+     * Test the local sets override the sets of the parent, without modify it.
+     */
+    @Test
+    public void testOverride()
+    {
+        INamedSet<TestModelRoot> nset;
+        INamedSet<TestModelRoot> other;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set1");
+        nset.add("intProperty");
+        Assert.assertFalse(overlay.putSet(nset));
+        Assert.assertEquals(1, overlay.getSet("set1").size());
+        Assert.assertEquals(2, parent.getSet("set1").size());
+        Assert.assertEquals(2, overlay.size());
+        other = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set3");
+        other.add("intProperty");
+        Assert.assertTrue(overlay.putSet(other));
+        Assert.assertEquals(3, overlay.size());
+        Assert.assertFalse(parent.containsSet("set3"));
+        // Removing the override shows the set of the parent again
+        Assert.assertTrue(overlay.removeSet("set1"));
+        Assert.assertEquals(2, overlay.getSet("set1").size());
+        Assert.assertFalse(overlay.removeSet("set2"));
+        Assert.assertTrue(parent.containsSet("set2"));
+        overlay.clear();
+        Assert.assertEquals(2, overlay.size());
+        Assert.assertEquals(2, parent.size());
+    }
+    /**
+     * Test the iteration of the local sets and the sets of the parent not overridden, by name.
+     */
+    @Test
+    public void testIterator()
+    {
+        INamedSet<TestModelRoot> nset;
+        Iterator<INamedSet<?>> it;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set2");
+        nset.add("intProperty");
+        overlay.putSet(nset);
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set0");
+        nset.add("intProperty");
+        overlay.putSet(nset);
+        it = overlay.iterator();
+        Assert.assertEquals("set0", it.next().getName());
+        Assert.assertSame(parent.getSet("set1"), it.next());
+        Assert.assertEquals(TestModelRoot.class, it.next().getModelRoot());
+        Assert.assertFalse(it.hasNext());
+    }
+    /**
+     * Test the sets applicable to a model, local and of the parent.
+     */
+    @Test
+    public void testGetSetsFor()
+    {
+        INamedSet<TestModelSecondLevel> nset;
+        List<INamedSet<? super TestModelRoot>> sets;
+
+        Assert.assertEquals(1, overlay.getSetsFor(TestModelRoot.class).size());
+        nset = new NamedSetDefaultImpl<TestModelSecondLevel>(TestModelSecondLevel.class, "set1");
+        nset.add("int2Property");
+        overlay.putSet(nset);
+        Assert.assertTrue(overlay.getSetsFor(TestModelRoot.class).isEmpty());
+        Assert.assertNull(overlay.findSet(TestModelRoot.class, "set1"));
+        Assert.assertEquals(2, overlay.getSetsFor(TestModelSecondLevel.class).size());
+        Assert.assertSame(parent.getSet("set2"), overlay.findSet(TestModelSecondLevel.class, "set2"));
+        overlay.removeSet("set1");
+        sets = overlay.getSetsFor(TestModelRoot.class);
+        Assert.assertEquals(1, sets.size());
+        Assert.assertSame(parent.getSet("set1"), sets.get(0));
+    }
+    /**
+     * Test nested overlays.
+     */
+    @Test
+    public void testNested()
+    {
+        ISetRegistry nested;
+        INamedSet<TestModelRoot> nset;
+
+        nset = new NamedSetDefaultImpl<TestModelRoot>(TestModelRoot.class, "set3");
+        nset.add("intProperty");
+        overlay.putSet(nset);
+        nested = new SetRegistryOverlayImpl(overlay);
+        Assert.assertEquals(3, nested.size());
+        Assert.assertTrue(nested.containsSet("set1"));
+        Assert.assertTrue(nested.containsSet("set3"));
+    }
+    /**
+     * Test {@link SetRegistryOverlayImpl#loadFromProperties(Properties)} and
+     * {@link SetRegistryOverlayImpl#loadFromPropertiesInBackground(Properties)} count and return each set of the parent only once,
+     * while the local sets are pending and once validated.
+     */
+    @Test
+    public void testLoadPending() throws Exception
+    {
+        Properties props;
+        Future<Integer> ready;
+
+        props = new Properties();
+        props.setProperty("set3", TestModelRoot.class.getName() + ":intProperty");
+        Assert.assertEquals(1, overlay.loadFromProperties(props));
+        Assert.assertEquals(3, overlay.size());
+        props = new Properties();
+        for(int n = 0; n < 2000; n++)
+        {
+            props.setProperty("local" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        }
+        ready = overlay.loadFromPropertiesInBackground(props);
+        Assert.assertEquals(2003, overlay.size());
+        Assert.assertEquals(2002, overlay.getSetsFor(TestModelRoot.class).size());
+        Assert.assertEquals(1, overlay.getSetsFor(TestModelSecondLevel.class).size());
+        Assert.assertEquals(2001, ready.get().intValue());
+        Assert.assertEquals(2003, overlay.size());
+        Assert.assertEquals(2002, overlay.getSetsFor(TestModelRoot.class).size());
+        Assert.assertEquals(1, overlay.getSetsFor(TestModelSecondLevel.class).size());
+        Assert.assertEquals(2, parent.size());
+    }
+    /**
+     * Test a registry for each of many scopes, by overlay, shares the sets of the parent.
+     */
+    @Test
+    public void testManyScopes() throws Exception
+    {
+        Properties props;
+
+        props = new Properties();
+        for(int n = 0; n < 100; n++)
+        {
+            props.setProperty("set" + n, TestModelRoot.class.getName() + ":intProperty,stringProperty");
+        }
+        parent.loadFromProperties(props);
+        for(int n = 0; n < 1000; n++)
+        {
+            overlay = new SetRegistryOverlayImpl(parent);
+            Assert.assertSame(parent.getSet("set" + (n % 100)), overlay.getSet("set" + (n % 100)));
+            Assert.assertEquals(parent.size(), overlay.size());
+        }
+    }
+}
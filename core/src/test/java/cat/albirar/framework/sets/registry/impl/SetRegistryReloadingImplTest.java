@@ -0,0 +1,183 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+
+/**
+ * Test for {@link SetRegistryReloadingImpl}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistryReloadingImplTest
+{
+    private static final String SET1 = "set1=" + TestModelRoot.class.getName() + ":intProperty,stringProperty\n";
+    private static final String SET2 = "set2=" + TestModelRoot.class.getName() + ":secondLevelModelProperty.*\n";
+    
+    /**
+     * Write the content to the file.
+     */
+    private void write(Path file, String content) throws IOException
+    {
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+    /**
+     * Test {@link SetRegistryReloadingImpl#reload()} replaces the sets, and keeps them if the file is incorrect.
+     */
+    @Test public void testReload() throws Exception
+    {
+        Path file;
+        SetRegistryReloadingImpl registry;
+        
+        file = Files.createTempFile("sets", ".properties");
+        registry = new SetRegistryReloadingImpl(file);
+        try
+        {
+            write(file, SET1);
+            Assert.assertEquals(0L, registry.getGeneration());
+            Assert.assertTrue(registry.reload());
+            Assert.assertEquals(1L, registry.getGeneration());
+            Assert.assertNull(registry.getLastError());
+            Assert.assertTrue(registry.getLastReloadDuration(TimeUnit.NANOSECONDS) > 0L);
+            Assert.assertEquals(2, registry.getSet("set1").size());
+            
+            write(file, SET2);
+            Assert.assertTrue(registry.reload());
+            Assert.assertEquals(2L, registry.getGeneration());
+            Assert.assertFalse(registry.containsSet("set1"));
+            Assert.assertEquals(2, registry.getSet("set2").size());
+            // Incorrect, the previous sets are kept
+            write(file, SET1 + "set3=" + TestModelRoot.class.getName() + ":xxx\n");
+            Assert.assertFalse(registry.reload());
+            Assert.assertEquals(2L, registry.getGeneration());
+            Assert.assertTrue(registry.getLastError() instanceof IllegalArgumentException);
+            Assert.assertFalse(registry.containsSet("set1"));
+            Assert.assertTrue(registry.containsSet("set2"));
+            // Not found class
+            write(file, "set1=cat.albirar.Xxx:intProperty\n");
+            Assert.assertFalse(registry.reload());
+            Assert.assertTrue(registry.getLastError() instanceof ClassNotFoundException);
+            Assert.assertTrue(registry.containsSet("set2"));
+        }
+        finally
+        {
+            registry.close();
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test {@link SetRegistryReloadingImpl#start()} loads the file and reloads it on changes.
+     */
+    @Test public void testWatch() throws Exception
+    {
+        Path file;
+        SetRegistryReloadingImpl registry;
+        long deadline;
+        
+        file = Files.createTempFile("sets", ".properties");
+        registry = new SetRegistryReloadingImpl(file);
+        try
+        {
+            write(file, SET1);
+            registry.start();
+            Assert.assertEquals(1L, registry.getGeneration());
+            Assert.assertTrue(registry.containsSet("set1"));
+            write(file, SET1 + SET2);
+            deadline = System.currentTimeMillis() + 20000L;
+            while(!registry.containsSet("set2") && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20L);
+            }
+            Assert.assertTrue(registry.containsSet("set2"));
+            Assert.assertTrue(registry.containsSet("set1"));
+            Assert.assertTrue(registry.getGeneration() >= 2L);
+        }
+        finally
+        {
+            registry.close();
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test {@link SetRegistryReloadingImpl#start()} with an incorrect file.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testStartIncorrect() throws Exception
+    {
+        Path file;
+        SetRegistryReloadingImpl registry;
+        
+        file = Files.createTempFile("sets", ".properties");
+        registry = new SetRegistryReloadingImpl(file);
+        try
+        {
+            write(file, "set1=" + TestModelRoot.class.getName() + ":intProperty.*\n");
+            registry.start();
+        }
+        finally
+        {
+            registry.close();
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test {@link SetRegistryReloadingImpl#start()} can be called again after a failed start.
+     */
+    @Test public void testStartAgain() throws Exception
+    {
+        Path file;
+        SetRegistryReloadingImpl registry;
+        
+        file = Files.createTempFile("sets", ".properties");
+        registry = new SetRegistryReloadingImpl(file);
+        try
+        {
+            write(file, "set1=" + TestModelRoot.class.getName() + ":intProperty.*\n");
+            try
+            {
+                registry.start();
+                Assert.fail("The file is incorrect");
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+            Assert.assertEquals(0L, registry.getGeneration());
+            write(file, SET1);
+            registry.start();
+            Assert.assertEquals(1L, registry.getGeneration());
+            Assert.assertTrue(registry.containsSet("set1"));
+        }
+        finally
+        {
+            registry.close();
+            Files.delete(file);
+        }
+    }
+}
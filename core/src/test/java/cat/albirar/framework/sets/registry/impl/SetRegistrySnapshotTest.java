@@ -0,0 +1,256 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+
+import cat.albirar.framework.sets.IncompatibleModelException;
+import cat.albirar.framework.sets.SetUtils;
+import cat.albirar.framework.sets.impl.models.TestModelRoot;
+import cat.albirar.framework.sets.impl.models.TestModelSecondLevel;
+import cat.albirar.framework.sets.registry.INamedSet;
+import cat.albirar.framework.sets.registry.NamedSetUtils;
+
+/**
+ * Test for {@link SetRegistrySnapshot}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class SetRegistrySnapshotTest
+{
+    /**
+     * The sets to write.
+     */
+    private List<INamedSet<?>> sets()
+    {
+        List<INamedSet<?>> sets;
+        
+        sets = new ArrayList<INamedSet<?>>();
+        sets.add(NamedSetUtils.immutableCopyOf(SetUtils.frozenSetOf(TestModelRoot.class
+                , Arrays.asList("intProperty", "secondLevelModelProperty.**{2}")), "set1"));
+        sets.add(NamedSetUtils.immutableCopyOf(SetUtils.frozenSetOf(TestModelRoot.class
+                , Arrays.asList("stringProperty")), "set2"));
+        sets.add(NamedSetUtils.immutableCopyOf(SetUtils.frozenSetOf(TestModelSecondLevel.class
+                , Arrays.asList("int2Property", "thirdLevel2ModelProperty.string3Property")), "set3"));
+        return sets;
+    }
+    /**
+     * Test {@link SetRegistrySnapshot#write(Iterable, long, Path)} and {@link SetRegistrySnapshot#read(Path, long)}.
+     */
+    @Test public void testWriteRead() throws Exception
+    {
+        Path file;
+        List<INamedSet<?>> sets;
+        List<INamedSet<?>> read;
+        
+        file = Files.createTempFile("sets", ".snapshot");
+        try
+        {
+            sets = sets();
+            SetRegistrySnapshot.write(sets, 123L, file);
+            read = SetRegistrySnapshot.read(file, 123L);
+            Assert.assertEquals(sets, read);
+            for(INamedSet<?> ns : read)
+            {
+                Assert.assertTrue(ns instanceof NamedSetFrozenImpl);
+            }
+            try
+            {
+                SetRegistrySnapshot.read(file, 124L);
+                Assert.fail("Other source");
+            }
+            catch(IOException e)
+            {
+                // Expected
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test {@link SetRegistrySnapshot#read(Path, long)} of a snapshot of other version of the model.
+     */
+    @Test(expected = IncompatibleModelException.class)
+    public void testReadIncompatible() throws Exception
+    {
+        Path file;
+        
+        file = Files.createTempFile("sets", ".snapshot");
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(file)))
+        {
+            out.writeInt(SetRegistrySnapshot.MAGIC);
+            out.writeByte(SetRegistrySnapshot.VERSION);
+            out.writeLong(1L);
+            // String table
+            out.writeByte(1);
+            out.writeUTF(TestModelRoot.class.getName());
+            // Models
+            out.writeByte(1);
+            out.writeByte(0);
+            out.writeLong(SetUtils.modelFingerprint(TestModelRoot.class) + 1L);
+            // Sets
+            out.writeByte(0);
+        }
+        try
+        {
+            SetRegistrySnapshot.read(file, 1L);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test {@link SetRegistrySnapshot#read(Path, long)} of a snapshot with corrupted counts, greater than the elements that the
+     * file can have: rejected before allocate the elements.
+     */
+    @Test public void testReadCorruptedCounts() throws Exception
+    {
+        Path file;
+        
+        file = Files.createTempFile("sets", ".snapshot");
+        try
+        {
+            for(int corrupted = 0; corrupted < 3; corrupted++)
+            {
+                try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(file)))
+                {
+                    out.writeInt(SetRegistrySnapshot.MAGIC);
+                    out.writeByte(SetRegistrySnapshot.VERSION);
+                    out.writeLong(1L);
+                    // String table
+                    count(out, corrupted == 0, 1);
+                    out.writeUTF(TestModelRoot.class.getName());
+                    // Models
+                    count(out, corrupted == 1, 1);
+                    out.writeByte(0);
+                    out.writeLong(SetUtils.modelFingerprint(TestModelRoot.class));
+                    // Sets
+                    count(out, corrupted == 2, 0);
+                }
+                try
+                {
+                    SetRegistrySnapshot.read(file, 1L);
+                    Assert.fail("Corrupted count not detected");
+                }
+                catch(StreamCorruptedException e)
+                {
+                    // Expected
+                }
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+    /**
+     * Write a count, or {@link Integer#MAX_VALUE} if corrupted.
+     * @param out The output
+     * @param corrupted If the count is corrupted
+     * @param count The count, less than 128
+     */
+    private void count(DataOutputStream out, boolean corrupted, int count) throws IOException
+    {
+        if(corrupted)
+        {
+            out.write(new byte [] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        }
+        else
+        {
+            out.writeByte(count);
+        }
+    }
+    /**
+     * Test {@link SetRegistrySnapshot#read(Path, long)} of a file that is not a snapshot.
+     */
+    @Test(expected = StreamCorruptedException.class)
+    public void testReadNotSnapshot() throws Exception
+    {
+        Path file;
+        
+        file = Files.createTempFile("sets", ".snapshot");
+        Files.write(file, new byte [] {1, 2, 3, 4, 5, 6});
+        try
+        {
+            SetRegistrySnapshot.read(file, 1L);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+    /**
+     * Test that 2000 sets loaded from their snapshot are the same as loaded from the property file, and the snapshot is smaller.
+     */
+    @Test public void testLoadLarge() throws Exception
+    {
+        Path properties;
+        Path snapshot;
+        StringBuilder content;
+        SetRegistryDefaultImpl fromProperties;
+        SetRegistryDefaultImpl fromSnapshot;
+        
+        content = new StringBuilder();
+        for(int n = 0; n < 2000; n++)
+        {
+            content.append("set").append(n).append('=').append(TestModelRoot.class.getName())
+                .append(":intProperty,stringProperty,dateProperty,secondLevelModelProperty.int2Property")
+                .append(",secondLevelModelProperty.thirdLevel2ModelProperty.string3Property,thirdLevelModelProperty.int3Property\n");
+        }
+        properties = Files.createTempFile("sets", ".properties");
+        snapshot = Files.createTempFile("sets", ".snapshot");
+        Files.delete(snapshot);
+        try
+        {
+            Files.write(properties, content.toString().getBytes("ISO-8859-1"));
+            // Writes the snapshot
+            new SetRegistryDefaultImpl().loadFromSnapshot(snapshot, new FileSystemResource(properties.toFile()));
+            Assert.assertTrue(Files.size(snapshot) < Files.size(properties));
+            fromProperties = new SetRegistryDefaultImpl();
+            fromProperties.loadFromResource(new FileSystemResource(properties.toFile()));
+            fromSnapshot = new SetRegistryDefaultImpl();
+            fromSnapshot.loadFromSnapshot(snapshot, new FileSystemResource(properties.toFile()));
+            Assert.assertEquals(2000, fromSnapshot.size());
+            for(int n = 0; n < 2000; n++)
+            {
+                Assert.assertEquals(fromProperties.getSet("set" + n), fromSnapshot.getSet("set" + n));
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(properties);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+}
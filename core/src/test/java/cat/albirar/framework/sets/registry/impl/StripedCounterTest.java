@@ -0,0 +1,95 @@
+/*
+ * This file is part of "albirar-framework".
+ * 
+ * "albirar-framework" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * "albirar-framework" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2015 Octavi Fornés
+ */
+
+package cat.albirar.framework.sets.registry.impl;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for {@link StripedCounter}.
+ * @author Octavi Fornés ofornes@albirar.cat
+ * @since 2.1.0
+ */
+public class StripedCounterTest
+{
+    /**
+     * Test the counter from a single thread.
+     */
+    @Test public void testCounter()
+    {
+        StripedCounter counter;
+        
+        counter = new StripedCounter();
+        Assert.assertEquals(0L, counter.sum());
+        counter.increment();
+        counter.add(10L);
+        Assert.assertEquals(11L, counter.sum());
+        counter.reset();
+        Assert.assertEquals(0L, counter.sum());
+    }
+    /**
+     * Test the increments from many threads are all counted, once split in stripes.
+     */
+    @Test public void testConcurrent() throws Exception
+    {
+        final StripedCounter counter;
+        final CountDownLatch start;
+        Thread [] threads;
+        
+        counter = new StripedCounter();
+        start = new CountDownLatch(1);
+        threads = new Thread[16];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    for(int i = 0; i < 100000; i++)
+                    {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[n].start();
+        }
+        start.countDown();
+        for(Thread th : threads)
+        {
+            th.join();
+        }
+        Assert.assertEquals(16L * 100000L, counter.sum());
+        counter.reset();
+        Assert.assertEquals(0L, counter.sum());
+        counter.add(5L);
+        Assert.assertEquals(5L, counter.sum());
+    }
+}
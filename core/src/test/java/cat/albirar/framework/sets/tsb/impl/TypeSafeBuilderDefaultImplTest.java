@@ -20,11 +20,14 @@
 package cat.albirar.framework.sets.tsb.impl;
 
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import cat.albirar.framework.sets.ISet;
+import cat.albirar.framework.sets.impl.SetBuilderDefaultImpl;
 import cat.albirar.framework.sets.impl.models.ITestModelAllPrimitives;
 import cat.albirar.framework.sets.impl.models.ITestModelAllPrimitivesArray;
 import cat.albirar.framework.sets.impl.models.ITestModelErrorMethods;
@@ -372,4 +375,204 @@ public class TypeSafeBuilderDefaultImplTest
         Assert.assertTrue(iset.contains("secondLevelModelProperty.string2Property"));
         Assert.assertTrue(iset.contains("thirdLevelModelProperty"));
     }
+    /**
+     * Build a set with three properties of {@link ITestModelRoot}.
+     * @param tsb The builder
+     * @return The set
+     */
+    private ISet<ITestModelRoot> buildDeep(ITypeSafeBuilder<ITestModelRoot> tsb)
+    {
+        return tsb.addProperty(tsb.getModel().getSecondLevelModelProperty().getThirdLevel2ModelProperty().getInt3Property())
+                .addProperty(tsb.getModel().getSecondLevelModelProperty().getString2Property())
+                .addProperty(tsb.getModel().getThirdLevelModelProperty())
+                .build();
+    }
+    /**
+     * Test the recording proxies are reused by each builder and not shared with other builders, and the immutable placeholders
+     * are reused.
+     */
+    @Test public void testProxiesReused()
+    {
+        ITypeSafeBuilder<ITestModelRoot> tsb1;
+        ITypeSafeBuilder<ITestModelRoot> tsb2;
+        
+        tsb1 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        tsb2 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        Assert.assertSame(tsb1.getModel(), tsb1.getModel());
+        Assert.assertNotSame(tsb1.getModel(), tsb2.getModel());
+        Assert.assertSame(tsb1.getModel().getSecondLevelModelProperty(), tsb1.getModel().getSecondLevelModelProperty());
+        Assert.assertNotSame(tsb2.getModel().getSecondLevelModelProperty(), tsb1.getModel().getSecondLevelModelProperty());
+        Assert.assertSame(tsb1.getModel().getSecondLevelModelProperty().getThirdLevel2ModelProperty(), tsb1.getModel().getThirdLevelModelProperty());
+        Assert.assertSame(tsb1.getModel().getStringProperty(), tsb2.getModel().getStringProperty());
+    }
+    /**
+     * Test the mutable placeholders, as dates and arrays, are not shared, so the changes made by a caller are not seen by the others.
+     */
+    @Test public void testPlaceholdersNotShared()
+    {
+        ITypeSafeBuilder<ITestModelRoot> tsb;
+        ITypeSafeBuilder<ITestModelAllPrimitivesArray> tsbArray;
+        Date d;
+        String [] strings;
+        int [] ints;
+        
+        tsb = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        d = tsb.getModel().getDateProperty();
+        Assert.assertNotSame(d, new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class).getModel().getDateProperty());
+        d.setTime(12345L);
+        Assert.assertNotEquals(12345L, tsb.getModel().getDateProperty().getTime());
+        tsbArray = new TypeSafeBuilderDefaultImpl<ITestModelAllPrimitivesArray>(ITestModelAllPrimitivesArray.class);
+        strings = tsbArray.getModel().getString();
+        strings[0] = "changed";
+        Assert.assertEquals("", tsbArray.getModel().getString()[0]);
+        ints = tsbArray.getModel().getInt();
+        ints[0] = 5;
+        Assert.assertEquals(0, tsbArray.getModel().getInt()[0]);
+        tsbArray.getModel().getObject()[0].setTime(12345L);
+        Assert.assertNotEquals(12345L, tsbArray.getModel().getObject()[0].getTime());
+    }
+    /**
+     * Test a model kept out of its builder records on its builder, even after the model of other builder is got.
+     */
+    @Test public void testModelKeptOut()
+    {
+        ITypeSafeBuilder<ITestModelRoot> tsb1;
+        ITypeSafeBuilder<ITestModelRoot> tsb2;
+        ITestModelRoot m1;
+        ITestModelRoot m2;
+        ISet<ITestModelRoot> set1;
+        ISet<ITestModelRoot> set2;
+        
+        tsb1 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        tsb2 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        m1 = tsb1.getModel();
+        m2 = tsb2.getModel();
+        tsb1.addProperty(m1.getIntProperty());
+        tsb2.addProperty(m2.getStringProperty());
+        tsb1.addProperty(m1.getSecondLevelModelProperty().getString2Property());
+        set1 = tsb1.build();
+        set2 = tsb2.build();
+        Assert.assertEquals(2, set1.size());
+        Assert.assertTrue(set1.contains("intProperty"));
+        Assert.assertTrue(set1.contains("secondLevelModelProperty.string2Property"));
+        Assert.assertEquals(1, set2.size());
+        Assert.assertTrue(set2.contains("stringProperty"));
+    }
+    /**
+     * Test the builders record each one its own properties, although the proxies are shared.
+     */
+    @Test public void testBuildersInterleaved()
+    {
+        ITypeSafeBuilder<ITestModelRoot> tsb1;
+        ITypeSafeBuilder<ITestModelRoot> tsb2;
+        ISet<ITestModelRoot> set1;
+        ISet<ITestModelRoot> set2;
+        
+        tsb1 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        tsb2 = new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class);
+        tsb1.addProperty(tsb1.getModel().getIntProperty());
+        tsb2.addProperty(tsb2.getModel().getSecondLevelModelProperty().getString2Property());
+        tsb1.addProperty(tsb1.getModel().getThirdLevelModelProperty().getInt3Property());
+        set1 = tsb1.build();
+        set2 = tsb2.build();
+        Assert.assertEquals(2, set1.size());
+        Assert.assertTrue(set1.contains("intProperty"));
+        Assert.assertTrue(set1.contains("thirdLevelModelProperty.int3Property"));
+        Assert.assertEquals(1, set2.size());
+        Assert.assertTrue(set2.contains("secondLevelModelProperty.string2Property"));
+    }
+    /**
+     * Test the builders of many threads, sharing the proxies.
+     */
+    @Test public void testConcurrentBuilders() throws Exception
+    {
+        final CountDownLatch start;
+        final AtomicInteger errors;
+        Thread [] threads;
+        
+        start = new CountDownLatch(1);
+        errors = new AtomicInteger();
+        threads = new Thread[16];
+        for(int n = 0; n < threads.length; n++)
+        {
+            threads[n] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    ISet<ITestModelRoot> set;
+                    
+                    try
+                    {
+                        start.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        return;
+                    }
+                    for(int i = 0; i < 1000; i++)
+                    {
+                        set = buildDeep(new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class));
+                        if(set.size() != 3 || !set.contains("secondLevelModelProperty.thirdLevel2ModelProperty.int3Property"))
+                        {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[n].start();
+        }
+        start.countDown();
+        for(Thread th : threads)
+        {
+            th.join();
+        }
+        Assert.assertEquals(0, errors.get());
+    }
+    /**
+     * Test many sets built with the type safe builder are the same as the sets built with the property paths.
+     */
+    @Test public void testBuildMany()
+    {
+        ISet<ITestModelRoot> expected;
+        
+        expected = new SetBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class)
+                .addProperty("secondLevelModelProperty.thirdLevel2ModelProperty.int3Property")
+                .addProperty("secondLevelModelProperty.string2Property")
+                .addProperty("thirdLevelModelProperty")
+                .build();
+        for(int n = 0; n < 10000; n++)
+        {
+            Assert.assertEquals(expected, buildDeep(new TypeSafeBuilderDefaultImpl<ITestModelRoot>(ITestModelRoot.class)));
+        }
+    }
+    /**
+     * Test many sets built with the type safe builder of a concrete class model: the proxy classes are reused by all the builders,
+     * each builder with its own proxies.
+     */
+    @Test public void testBuildManyWithClass()
+    {
+        ISet<TestModelRoot> expected;
+        ITypeSafeBuilder<TestModelRoot> tsb;
+        ITypeSafeBuilder<TestModelRoot> first;
+        
+        expected = new SetBuilderDefaultImpl<TestModelRoot>(TestModelRoot.class)
+                .addProperty("secondLevelModelProperty.thirdLevel2ModelProperty.int3Property")
+                .addProperty("secondLevelModelProperty.string2Property")
+                .addProperty("thirdLevelModelProperty")
+                .build();
+        first = new TypeSafeBuilderDefaultImpl<TestModelRoot>(TestModelRoot.class);
+        for(int n = 0; n < 10000; n++)
+        {
+            tsb = new TypeSafeBuilderDefaultImpl<TestModelRoot>(TestModelRoot.class);
+            tsb.addProperty(tsb.getModel().getSecondLevelModelProperty().getThirdLevel2ModelProperty().getInt3Property());
+            tsb.addProperty(tsb.getModel().getSecondLevelModelProperty().getString2Property());
+            tsb.addProperty(tsb.getModel().getThirdLevelModelProperty());
+            Assert.assertEquals(expected, tsb.build());
+            // The getters record on the builders, so the proxies are checked after build
+            Assert.assertNotSame(first.getModel(), tsb.getModel());
+            Assert.assertSame(first.getModel().getClass(), tsb.getModel().getClass());
+            Assert.assertSame(first.getModel().getSecondLevelModelProperty().getClass(), tsb.getModel().getSecondLevelModelProperty().getClass());
+        }
+    }
 }